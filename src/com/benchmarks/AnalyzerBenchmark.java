@@ -0,0 +1,149 @@
+package com.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.tartarus.snowball.EnglishSnowballStemmerFactory;
+import org.tartarus.snowball.util.StemmerException;
+
+import com.build_index.Analyzer;
+import com.build_index.StemCache;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Measures tokens per second and bytes allocated per token of splitting document text into terms: with the
+ *         pattern \w+(\.?\w+)* and toLowerCase on every match as the indexer used to, with and without stemming each
+ *         token, against Analyzer, and checks both give the same terms at the same positions
+ *
+ *         Allocation is read from the JVM's per thread allocation counter, so it needs a HotSpot JVM.
+ *
+ *         Usage: AnalyzerBenchmark [documentCount] [rounds]
+ */
+public class AnalyzerBenchmark {
+
+    private static final String[] words = {"Northeastern", "university", "Boston", "research", "students", "campus",
+            "engineering", "science", "faculty", "library", "admissions", "graduate", "program", "college", "health",
+            "The", "of", "and", "computing", "information", "retrieval", "index", "search", "ranking", "crawler",
+            "U.S.", "ph.d", "3.14", "e-mail", "co_op", "caf\u00e9"};
+    private static final String[] punctuation = {" ", " ", " ", ", ", ". ", " - ", "... ", " (", ") ", "\n"};
+
+
+    public static void main (String[] args) throws StemmerException {
+
+        int documentCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(42);
+        String[] documents = new String[documentCount];
+        long bytes = 0;
+        for (int document = 0; document < documentCount; document++) {
+            StringBuilder text = new StringBuilder();
+            int wordCount = 300 + random.nextInt(1500);
+            for (int word = 0; word < wordCount; word++)
+                text.append(words[random.nextInt(words.length)]).append(random.nextInt(4) == 0 ? random.nextInt(100)
+                        : "").append(punctuation[random.nextInt(punctuation.length)]);
+            documents[document] = text.toString();
+            bytes += documents[document].length();
+        }
+        HashSet<String> stopWords = new HashSet<String>();
+        stopWords.add("the");
+        stopWords.add("of");
+        stopWords.add("and");
+
+        EnglishSnowballStemmerFactory stemmer = EnglishSnowballStemmerFactory.getInstance();
+        Pattern wordPattern = Pattern.compile("\\w+(\\.?\\w+)*");
+        Analyzer analyzer = new Analyzer(stopWords, new StemCache(stemmer, 1 << 20));
+
+        for (int document = 0; document < documentCount; document++) { // Same terms at the same positions
+            List<String> expected = analyzeWithPattern(documents[document], wordPattern, stopWords, stemmer);
+            List<String> actual = new ArrayList<String>();
+            analyzer.reset(documents[document]);
+            while (analyzer.next())
+                actual.add(analyzer.getPosition() + ":" + analyzer.getTerm());
+            BenchmarkCorpus.check(expected.equals(actual), "terms differ for document " + document);
+        }
+        System.out.printf("Same terms from pattern and Analyzer for %d documents, %.1f MB of text%n", documentCount,
+                bytes / 1e6);
+
+        for (int round = 0; round < rounds; round++) { // Early rounds warm up the JIT
+            System.out.println("Round " + round);
+
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            long tokens = 0;
+            for (String document : documents) {
+                Matcher matchedWords = wordPattern.matcher(document);
+                while (matchedWords.find())
+                    if (!stopWords.contains(matchedWords.group().toLowerCase()))
+                        tokens++;
+            }
+            report("Pattern, toLowerCase, stop list", start, allocated, tokens);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            tokens = 0;
+            for (String document : documents) {
+                Matcher matchedWords = wordPattern.matcher(document);
+                while (matchedWords.find()) {
+                    String matched = matchedWords.group().toLowerCase();
+                    if (!stopWords.contains(matched) && null != stemmer.process(matched))
+                        tokens++;
+                }
+            }
+            report("Pattern, toLowerCase, stop list, stem", start, allocated, tokens);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            tokens = 0;
+            for (String document : documents) {
+                analyzer.reset(document);
+                while (analyzer.next())
+                    tokens++;
+            }
+            report("Analyzer", start, allocated, tokens);
+        }
+    }
+
+
+    /*
+     * Terms of a document with their positions the way BuildIndexes found them before
+     */
+    private static List<String> analyzeWithPattern (String document, Pattern wordPattern, HashSet<String> stopWords,
+            EnglishSnowballStemmerFactory stemmer) throws StemmerException {
+
+        List<String> terms = new ArrayList<String>();
+        int wordPosition = 0;
+        Matcher matchedWords = wordPattern.matcher(document);
+        while (matchedWords.find()) {
+            wordPosition++;
+            String matched = matchedWords.group().toLowerCase();
+            if (!stopWords.contains(matched))
+                terms.add(wordPosition + ":" + stemmer.process(matched));
+        }
+        return terms;
+    }
+
+
+    private static long allocatedBytes () {
+
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+                .currentThread().getId());
+    }
+
+
+    private static void report (String name, long start, long allocated, long tokens) {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocatedBytes = allocatedBytes() - allocated;
+        System.out.printf("  %-40s %12.0f tokens/s %8.1f bytes/token%n", name, tokens / seconds,
+                (double) allocatedBytes / tokens);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Synthetic corpus and stop list shared by the indexing and ranking benchmarks, and the check all benchmarks
+ *         fail on when results differ
+ *
+ *         Corpus files are named page_N and hold the url of page N, the headers and the html, like files saved by the
+ *         crawler. Pages are paragraphs of numbered university words, so a corpus of a given size is the same on
+ *         every run.
+ */
+class BenchmarkCorpus {
+
+    static final long seed = 42;
+
+    private static final String[] words = {"northeastern", "university", "boston", "research", "students", "campus",
+            "engineering", "science", "faculty", "library", "admissions", "graduate", "program", "college", "health",
+            "the", "of", "and", "computing", "information", "retrieval", "index", "search", "ranking", "crawler"};
+
+
+    private BenchmarkCorpus () {
+
+    }
+
+
+    /*
+     * Write pages 0 to pageCount - 1 to corpusDirectory, return the bytes written
+     */
+    static long writeCorpus (File corpusDirectory, int pageCount) throws IOException {
+
+        return writeCorpus(corpusDirectory, new Random(seed), 0, pageCount);
+    }
+
+
+    /*
+     * Write pageCount pages from firstPage on to corpusDirectory, drawing words from random, return the bytes written
+     */
+    static long writeCorpus (File corpusDirectory, Random random, int firstPage, int pageCount) throws IOException {
+
+        corpusDirectory.mkdirs();
+        long corpusBytes = 0;
+        for (int page = firstPage; page < firstPage + pageCount; page++)
+            corpusBytes += writePage(corpusDirectory, page, generatePage(random, page));
+        return corpusBytes;
+    }
+
+
+    /*
+     * Write given html as corpus file of page to corpusDirectory, return the bytes written
+     */
+    static long writePage (File corpusDirectory, int page, String html) throws IOException {
+
+        byte[] content = ("http://www.northeastern.edu/page/" + page + "\r\n\r\nContent-Type: text/html\r\n\r\n" + html)
+                .getBytes("UTF-8");
+        FileOutputStream corpusFile = new FileOutputStream(new File(corpusDirectory, "page_" + page));
+        try {
+            corpusFile.write(content);
+        } finally {
+            corpusFile.close();
+        }
+        return content.length;
+    }
+
+
+    /*
+     * Write the stop list used by the benchmarks to workDirectory
+     */
+    static File writeStopList (File workDirectory) throws IOException {
+
+        File stopList = new File(workDirectory, "stoplist.txt");
+        FileUtils.writeStringToFile(stopList, "the\nof\nand\n", StandardCharsets.UTF_8);
+        return stopList;
+    }
+
+
+    /*
+     * Exit with status 1 and print failure if condition does not hold, so scripted runs fail on wrong results
+     */
+    static void check (boolean condition, String failure) {
+
+        if (!condition) {
+            System.err.println("FAILED: " + failure);
+            System.exit(1);
+        }
+    }
+
+
+    private static String generatePage (Random random, int page) {
+
+        StringBuilder html = new StringBuilder("<html><head><title>Page " + page + "</title></head><body>");
+        int paragraphs = 10 + random.nextInt(30);
+        for (int paragraph = 0; paragraph < paragraphs; paragraph++) {
+            html.append("<p>");
+            for (int word = 0; word < 60; word++)
+                html.append(words[random.nextInt(words.length)]).append(random.nextInt(50)).append(' ');
+            html.append("</p>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+
+import com.crawler.PageFetcher;
+import com.crawler.WebCrawler;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Checks that a crawl with a disk frontier killed part way and resumed writes the same output as an
+ *         uninterrupted crawl, and reports the time of both
+ *
+ *         A local stub server serves a synthetic graph. The benchmark first crawls it in one go, then starts the same
+ *         crawl in a separate JVM, kills that process once its checkpoint shows half of the pages visited and resumes
+ *         the crawl from the frontier directory it left. Exits with status 1 if the outputs differ.
+ *
+ *         Usage: CrawlResumeBenchmark [pageCount] [latencyMs] [hostCount]
+ */
+public class CrawlResumeBenchmark {
+
+    public static void main (String[] args) throws IOException, InterruptedException {
+
+        PageFetcher.cacheHostLookups(); // Same resolver settings as a crawl, in the crawl process too
+        if (args.length > 0 && args[0].equals("crawl")) {
+            crawl(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), new File(args[4]), new File(args[5]));
+            return;
+        }
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int latency = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int hostCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        StubHttpServer server = new StubHttpServer(0, latency, hostCount, 5);
+        server.start();
+        File workDirectory = new File(System.getProperty("java.io.tmpdir"), "crawl_resume_benchmark");
+        FileUtils.deleteDirectory(workDirectory);
+
+        try {
+            File fullOutput = new File(workDirectory, "full.txt");
+            long start = System.nanoTime();
+            crawl(server.pageUrl(0), pageCount, hostCount, new File(workDirectory, "full_frontier"), fullOutput);
+            System.out.printf("Uninterrupted crawl: %.2f s%n", (System.nanoTime() - start) / 1e9);
+
+            File resumedOutput = new File(workDirectory, "resumed.txt");
+            File frontierDirectory = new File(workDirectory, "resumed_frontier");
+            start = System.nanoTime();
+            Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(), "-cp",
+                    System.getProperty("java.class.path"), CrawlResumeBenchmark.class.getName(), "crawl", server
+                            .pageUrl(0), String.valueOf(pageCount), String.valueOf(hostCount), frontierDirectory
+                            .getPath(), resumedOutput.getPath()).inheritIO().start();
+
+            long visited;
+            while ((visited = getCheckpointVisited(frontierDirectory)) < pageCount / 2 && process.isAlive())
+                Thread.sleep(1);
+            Thread.sleep(latency * 20); // Let it get past the checkpoint before the kill
+            process.destroyForcibly();
+            BenchmarkCorpus.check(process.waitFor() != 0, "crawl finished before it was killed");
+            System.out.println("Killed crawl process after checkpoint at " + visited + " visited pages");
+
+            crawl(server.pageUrl(0), pageCount, hostCount, frontierDirectory, resumedOutput);
+            System.out.printf("Killed and resumed crawl: %.2f s%n", (System.nanoTime() - start) / 1e9);
+
+            BenchmarkCorpus.check(FileUtils.readFileToString(fullOutput, StandardCharsets.UTF_8).equals(
+                    FileUtils.readFileToString(resumedOutput, StandardCharsets.UTF_8)),
+                    "resumed crawl output differs from uninterrupted crawl");
+            System.out.println("Outputs match: " + FileUtils.readLines(fullOutput, StandardCharsets.UTF_8).size()
+                    + " pages");
+        } finally {
+            server.stop();
+            FileUtils.deleteDirectory(workDirectory);
+        }
+    }
+
+
+    /*
+     * Crawl pageCount pages of the stub server from seedUrl with the frontier in frontierDirectory
+     */
+    private static void crawl (String seedUrl, int pageCount, int hostCount, File frontierDirectory, File output) {
+
+        WebCrawler crawler = new WebCrawler();
+        for (int host = 1; host <= hostCount; host++)
+            crawler.addAllowedDomain("127.0.0." + host);
+        crawler.setCrawlLimits(pageCount - 1, Integer.MAX_VALUE); // Visit limit is inclusive
+        crawler.setHeadProbe(false);
+        crawler.setDuplicateDetector(null); // Stub pages differ in page numbers only
+        crawler.crawlWebPages(seedUrl, output.getPath(), frontierDirectory);
+    }
+
+
+    /*
+     * Return visited page count of the last checkpoint in frontierDirectory, 0 if there is none yet
+     */
+    private static long getCheckpointVisited (File frontierDirectory) {
+
+        Properties checkpoint = new Properties();
+        try {
+            FileInputStream checkpointStream = new FileInputStream(new File(frontierDirectory, "checkpoint"));
+            try {
+                checkpoint.load(checkpointStream);
+            } finally {
+                checkpointStream.close();
+            }
+        } catch (IOException e) { // Not written yet or being replaced
+            return 0;
+        }
+        return Long.parseLong(checkpoint.getProperty("crawl.visited", "0"));
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+
+import com.crawler.PageFetcher;
+import com.crawler.WebCrawler;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Compares sequential and concurrent crawl throughput against a local stub server with injected latency
+ * 
+ *         Usage: CrawlThroughputBenchmark [latencyMs] [hostCount] [threadCount]
+ */
+public class CrawlThroughputBenchmark {
+
+    public static void main (String[] args) throws IOException {
+
+        int latency = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int hostCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        PageFetcher.cacheHostLookups(); // Same resolver settings as a crawl
+
+        StubHttpServer server = new StubHttpServer(0, latency, hostCount, 5);
+        server.start();
+
+        File output = File.createTempFile("crawl_benchmark", ".txt");
+        output.deleteOnExit();
+
+        try {
+            long start = System.nanoTime();
+            newCrawler(hostCount).crawlWebPages(server.pageUrl(0), output.getPath());
+            report("Sequential crawl", start, output, server);
+
+            start = System.nanoTime();
+            newCrawler(hostCount).crawlWebPagesConcurrently(server.pageUrl(0), output.getPath(), threadCount, 0);
+            report("Concurrent crawl (" + threadCount + " workers)", start, output, server);
+
+            WebCrawler crawler = newCrawler(hostCount);
+            crawler.setHeadProbe(false);
+            start = System.nanoTime();
+            crawler.crawlWebPagesConcurrently(server.pageUrl(0), output.getPath(), threadCount, 0);
+            report("Concurrent crawl, no head probe", start, output, server);
+        } finally {
+            server.stop();
+        }
+    }
+
+
+    /*
+     * Create a crawler restricted to the loopback hosts served by the stub server
+     */
+    private static WebCrawler newCrawler (int hostCount) {
+
+        WebCrawler crawler = new WebCrawler();
+        for (int host = 1; host <= hostCount; host++)
+            crawler.addAllowedDomain("127.0.0." + host);
+        return crawler;
+    }
+
+
+    /*
+     * Print pages crawled, pages per second since start and http requests per page
+     */
+    private static void report (String name, long start, File output, StubHttpServer server) throws IOException {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int pages = FileUtils.readLines(output, StandardCharsets.UTF_8).size();
+        System.out.printf("%s: %d pages in %.2f s (%.1f pages/s, %.2f requests/page)%n", name, pages, seconds, pages
+                / seconds, (double) server.resetRequestCount() / pages);
+    }
+
+}
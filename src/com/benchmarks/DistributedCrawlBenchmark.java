@@ -0,0 +1,124 @@
+package com.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import com.crawler.FileLinkTransport;
+import com.crawler.HostPartitioner;
+import com.crawler.PageFetcher;
+import com.crawler.WebCrawler;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Measures how distributed crawl throughput grows with the number of worker processes
+ *
+ *         A local stub server with injected latency serves a synthetic graph spread over many loopback hosts. For each
+ *         worker count the benchmark starts that many JVMs, each crawling its host partition with the same thread count
+ *         and visit limit and exchanging links through a FileLinkTransport, and reports pages crawled by all workers
+ *         divided by the crawl time of the slowest one.
+ *
+ *         Usage: DistributedCrawlBenchmark [maxWorkers] [pagesPerWorker] [threadsPerWorker] [latencyMs] [hostCount]
+ */
+public class DistributedCrawlBenchmark {
+
+    private static final String resultPrefix = "RESULT ";
+    private static final long idleTimeout = 3000;
+
+
+    public static void main (String[] args) throws IOException, InterruptedException {
+
+        PageFetcher.cacheHostLookups(); // Same resolver settings as a crawl, in the workers too
+        if (args.length > 0 && args[0].equals("worker")) {
+            runWorker(args);
+            return;
+        }
+
+        int maxWorkers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int pagesPerWorker = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int threadsPerWorker = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int latency = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+        int hostCount = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+
+        StubHttpServer server = new StubHttpServer(0, latency, hostCount, 5);
+        server.start();
+        File workDirectory = new File(System.getProperty("java.io.tmpdir"), "distributed_crawl_benchmark");
+
+        try {
+            for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+                FileUtils.deleteDirectory(workDirectory);
+                workDirectory.mkdirs();
+
+                List<Process> processes = new ArrayList<Process>();
+                for (int partition = 0; partition < workers; partition++) {
+                    ProcessBuilder builder = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java")
+                            .getPath(), "-cp", System.getProperty("java.class.path"), DistributedCrawlBenchmark.class
+                            .getName(), "worker", server.pageUrl(0), String.valueOf(hostCount), String
+                            .valueOf(workers), String.valueOf(partition), workDirectory.getPath(), String
+                            .valueOf(pagesPerWorker), String.valueOf(threadsPerWorker));
+                    processes.add(builder.redirectErrorStream(true).start());
+                }
+
+                long pages = 0;
+                double slowestSeconds = 0;
+                for (Process process : processes) {
+                    BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                    String line;
+                    while (null != (line = output.readLine())) {
+                        if (line.startsWith(resultPrefix)) {
+                            String[] result = line.substring(resultPrefix.length()).split(" ");
+                            pages += Long.parseLong(result[0]);
+                            slowestSeconds = Math.max(slowestSeconds, Double.parseDouble(result[1]));
+                        }
+                    }
+                    process.waitFor();
+                }
+
+                System.out.printf("%d worker(s): %6d pages in %6.2f s (%7.1f pages/s, %d requests)%n", workers, pages,
+                        slowestSeconds, pages / slowestSeconds, server.resetRequestCount());
+            }
+        } finally {
+            server.stop();
+            FileUtils.deleteDirectory(workDirectory);
+        }
+    }
+
+
+    /*
+     * One worker process: crawl the hosts of its partition and print pages crawled and crawl time
+     */
+    private static void runWorker (String[] args) throws IOException {
+
+        String seedUrl = args[1];
+        int hostCount = Integer.parseInt(args[2]);
+        int partitionCount = Integer.parseInt(args[3]);
+        int partition = Integer.parseInt(args[4]);
+        File workDirectory = new File(args[5]);
+        int pagesPerWorker = Integer.parseInt(args[6]);
+        int threadsPerWorker = Integer.parseInt(args[7]);
+
+        WebCrawler crawler = new WebCrawler();
+        for (int host = 1; host <= hostCount; host++)
+            crawler.addAllowedDomain("127.0.0." + host);
+        crawler.setCrawlLimits(pagesPerWorker - 1, Integer.MAX_VALUE); // Visit limit is inclusive
+        crawler.setHeadProbe(false);
+        crawler.setDuplicateDetector(null); // Stub pages differ in page numbers only
+
+        File output = new File(workDirectory, "crawled_" + partition + ".txt");
+        long start = System.nanoTime();
+        crawler.crawlWebPagesDistributed(seedUrl, output.getPath(), new HostPartitioner(partitionCount), partition,
+                new FileLinkTransport(new File(workDirectory, "links"), partition), threadsPerWorker, 0, idleTimeout);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(resultPrefix + FileUtils.readLines(output, StandardCharsets.UTF_8).size() + " " + seconds);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import com.build_index.PostingsWriter;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Inverts doc_index.txt lines sorted with DocIndexLineComparator, the text path the indexer used before it
+ *         inverted postings itself, kept for the benchmarks that compare the two
+ */
+class DocIndexInverter {
+
+    private DocIndexInverter () {
+
+    }
+
+
+    /*
+     * Invert a forward index sorted by term id with given postings writer, closing it when done
+     */
+    static void invert (File sortedDocIndexFile, PostingsWriter postingsWriter) throws IOException {
+
+        try {
+            BufferedReader sortedDocIndexReader = new BufferedReader(new FileReader(sortedDocIndexFile));
+            try {
+                int[] postings = new int[64]; // {docId, position count, positions...} of one line
+                String line;
+                while (null != (line = sortedDocIndexReader.readLine())) { // Read one term of a document at a time
+
+                    String[] tokens = line.split("\t"); // {docId, termId, [list of positions...]}
+                    if (tokens.length > postings.length)
+                        postings = new int[tokens.length * 2];
+
+                    postings[0] = Integer.parseInt(tokens[0]);
+                    postings[1] = tokens.length - 2;
+                    for (int index = 2; index < tokens.length; index++)
+                        postings[index] = Integer.parseInt(tokens[index]);
+
+                    postingsWriter.addPostings(Integer.parseInt(tokens[1]), postings, 0, tokens.length);
+                }
+            } finally {
+                sortedDocIndexReader.close();
+            }
+        } finally {
+            postingsWriter.close();
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.benchmarks;
+
+import java.util.Comparator;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Orders doc_index.txt lines {docId, termId, [list of positions...]} by term id, then by document id, for the
+ *         external sort of the forward index that benchmarks compare in memory inversion against
+ */
+class DocIndexLineComparator implements Comparator<String> {
+
+    @Override
+    public int compare (String line1, String line2) {
+
+        int tab1 = line1.indexOf('\t'), tab2 = line2.indexOf('\t');
+        int termId1 = Integer.parseInt(field(line1, tab1 + 1));
+        int termId2 = Integer.parseInt(field(line2, tab2 + 1));
+        if (termId1 != termId2) // Sort first on basis of term id
+            return termId1 < termId2 ? -1 : 1;
+
+        int docId1 = Integer.parseInt(line1.substring(0, tab1)); // Then on basis of document id
+        int docId2 = Integer.parseInt(line2.substring(0, tab2));
+        return docId1 < docId2 ? -1 : docId1 == docId2 ? 0 : 1;
+    }
+
+
+    /*
+     * Field of a line starting at given index up to the next tab or the end of the line
+     */
+    private static String field (String line, int start) {
+
+        int end = line.indexOf('\t', start);
+        return line.substring(start, end < 0 ? line.length() : end);
+    }
+
+}
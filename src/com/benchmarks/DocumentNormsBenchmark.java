@@ -0,0 +1,210 @@
+package com.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BuildIndexes;
+import com.build_index.DocumentNorms;
+import com.build_index.DocumentStats;
+import com.build_index.IndexReader;
+import com.build_index.TermPostings;
+import com.main_search_documents.FileNamesInterface;
+import com.rank_documents.DocumentPreProcessor;
+import com.rank_documents.ScoringFunctions;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Compares Okapi TF and TF-IDF cosine scoring of random queries when the magnitude of every relevant document
+ *         is summed over all its terms from doc_index.txt term counts held in memory, as the ranker used to, against
+ *         reading it from the magnitudes the indexer writes to doc_norms.bin, and checks both rank the same
+ *
+ *         Writes indexes to the indexes folder of the current directory like the search engine does.
+ *
+ *         Usage: DocumentNormsBenchmark [pageCount] [queryCount] [termsPerQuery] [rounds] [workDirectory]
+ */
+public class DocumentNormsBenchmark implements FileNamesInterface {
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int termsPerQuery = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        File workDirectory = new File(args.length > 4 ? args[4] : "document_norms_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        FileUtils.deleteDirectory(workDirectory);
+        corpusDirectory.mkdirs();
+
+        Random random = new Random(BenchmarkCorpus.seed); // Queries are drawn after the pages
+        BenchmarkCorpus.writeCorpus(corpusDirectory, random, 0, pageCount);
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+        new BuildIndexes().buildIndex(corpusDirectory.getPath(), stopList.getPath(), true);
+
+        DocumentStats stats = DocumentStats.read(docStatsFile);
+        IndexReader indexReader = new IndexReader(termIndexFile, termPostingsFile, termInfoFile);
+        DocumentPreProcessor preProcess = new DocumentPreProcessor();
+        ScoringFunctions scoringFn = new ScoringFunctions();
+        LinkedHashMap<String, Double> termTfIdfScore = scoringFn.getTermTfIdfScores(preProcess
+                .getTermOccurenceInDocuments(indexReader), stats.getDocumentCount());
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        HashMap<Integer, HashMap<String, Integer>> docTermCount = getDocTermCounts(docIndexFile);
+        double loadTermCountsMillis = (System.nanoTime() - start) / 1e6;
+        long termCountsHeap = usedHeap() - heapBefore;
+
+        start = System.nanoTime();
+        DocumentNorms norms = DocumentNorms.read(docNormsFile);
+        double readNormsMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("Load doc_index.txt term counts %8.2f ms, %.1f MB heap; read doc_norms.bin %6.2f ms, "
+                + "%.1f KB%n", loadTermCountsMillis, termCountsHeap / 1e6, readNormsMillis,
+                docNormsFile.length() / 1e3);
+
+        ArrayList<LinkedHashMap<String, Long>> queries = new ArrayList<LinkedHashMap<String, Long>>();
+        ArrayList<String> termIds = new ArrayList<String>(termTfIdfScore.keySet());
+        for (int query = 0; query < queryCount; query++) {
+            LinkedHashMap<String, Long> termOffsetInIndex = new LinkedHashMap<String, Long>();
+            for (int term = 0; term < termsPerQuery; term++)
+                termOffsetInIndex.put(termIds.get(random.nextInt(termIds.size())), 0L);
+            queries.add(termOffsetInIndex);
+        }
+        ArrayList<LinkedHashMap<Integer, LinkedHashMap<String, Integer>>> relevantDocuments = new ArrayList<LinkedHashMap<Integer, LinkedHashMap<String, Integer>>>();
+        for (LinkedHashMap<String, Long> query : queries)
+            relevantDocuments.add(getRelevantDocuments(indexReader, query));
+        indexReader.close();
+
+        int[] docLengths = stats.getDocLengths();
+        double avgDocLength = stats.getAvgDocLength();
+        double avgQueryLength = termsPerQuery;
+        for (int round = 0; round < rounds; round++) { // Early rounds warm up the JIT
+            for (int model = 1; model <= 2; model++) {
+                double summedMillis = 0, storedMillis = 0;
+                boolean same = true;
+                for (int query = 0; query < queryCount; query++) {
+                    HashMap<String, Double> queryVector = scoringFn.buildQueryVector(scoringFn
+                            .computeTermFrequencyInQuery(queries.get(query)), avgQueryLength);
+
+                    start = System.nanoTime();
+                    HashMap<Integer, HashMap<String, Double>> documentVector = model == 1 ? scoringFn
+                            .buildTFDocumentVector(relevantDocuments.get(query), docLengths, avgDocLength) : scoringFn
+                            .buildTFIDFDocumentVector(relevantDocuments.get(query), termTfIdfScore, docLengths,
+                                    avgDocLength);
+                    float[] summedNorms = sumMagnitudes(relevantDocuments.get(query), docTermCount, model == 1 ? null
+                            : termTfIdfScore, docLengths, avgDocLength, stats.getDocumentCount());
+                    Map<Integer, Double> summedScores = scoringFn.computeOkapiScore(documentVector, queryVector,
+                            summedNorms);
+                    summedMillis += (System.nanoTime() - start) / 1e6;
+
+                    start = System.nanoTime();
+                    documentVector = model == 1 ? scoringFn.buildTFDocumentVector(relevantDocuments.get(query),
+                            docLengths, avgDocLength) : scoringFn.buildTFIDFDocumentVector(relevantDocuments.get(query),
+                            termTfIdfScore, docLengths, avgDocLength);
+                    Map<Integer, Double> storedScores = scoringFn.computeOkapiScore(documentVector, queryVector,
+                            model == 1 ? norms.getOkapiTFNorms() : norms.getTfIdfNorms());
+                    storedMillis += (System.nanoTime() - start) / 1e6;
+
+                    for (Map.Entry<Integer, Double> score : summedScores.entrySet()) {
+                        double summed = score.getValue(), stored = storedScores.get(score.getKey());
+                        same &= Double.isNaN(summed) ? Double.isNaN(stored) : Math.abs(summed - stored) <= 1e-6 * Math
+                                .abs(summed); // Magnitudes are stored as float
+                    }
+                }
+                System.out.printf("Round %d %-8s: summed per query %8.3f ms/query, stored %7.3f ms/query (%.0fx), %s%n",
+                        round, model == 1 ? "Okapi TF" : "TF-IDF", summedMillis / queryCount, storedMillis / queryCount,
+                        summedMillis / storedMillis, same ? "same scores" : "scores DIFFER");
+                BenchmarkCorpus.check(same, "scores with stored magnitudes differ");
+            }
+        }
+    }
+
+
+    /*
+     * Documents containing the terms of a query with the frequency of each term, like the ranker collects them
+     */
+    private static LinkedHashMap<Integer, LinkedHashMap<String, Integer>> getRelevantDocuments (
+            IndexReader indexReader, LinkedHashMap<String, Long> query) throws IOException {
+
+        LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments = new LinkedHashMap<Integer, LinkedHashMap<String, Integer>>();
+        for (String termId : query.keySet()) {
+            TermPostings postings = indexReader.getPostings(Integer.parseInt(termId));
+            while (postings.nextDoc()) {
+                LinkedHashMap<String, Integer> termCount = relevantDocuments.get(postings.getDocId());
+                if (null == termCount) {
+                    termCount = new LinkedHashMap<String, Integer>();
+                    relevantDocuments.put(postings.getDocId(), termCount);
+                }
+                termCount.put(termId, postings.getFrequency());
+            }
+        }
+        return relevantDocuments;
+    }
+
+
+    /*
+     * Frequency of every term of every document from doc_index.txt {docId, termId, [list of positions...]}, held in
+     * memory like the ranker used to
+     */
+    private static HashMap<Integer, HashMap<String, Integer>> getDocTermCounts (File docIndexFile) throws IOException {
+
+        HashMap<Integer, HashMap<String, Integer>> docTermCount = new HashMap<Integer, HashMap<String, Integer>>();
+        BufferedReader reader = new BufferedReader(new FileReader(docIndexFile));
+        try {
+            String line;
+            while (null != (line = reader.readLine())) {
+                String[] tokens = line.split("\t");
+                int docId = Integer.parseInt(tokens[0]);
+                HashMap<String, Integer> termCount = docTermCount.get(docId);
+                if (null == termCount) {
+                    termCount = new HashMap<String, Integer>();
+                    docTermCount.put(docId, termCount);
+                }
+                termCount.put(tokens[1], tokens.length - 2); // Positions follow the doc id and term id
+            }
+        } finally {
+            reader.close();
+        }
+        return docTermCount;
+    }
+
+
+    /*
+     * Magnitudes of the relevant documents summed over all their terms, the way the ranker worked them out per query
+     * termTfIdfScore : null for Okapi TF
+     */
+    private static float[] sumMagnitudes (LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments,
+            HashMap<Integer, HashMap<String, Integer>> docTermCount, LinkedHashMap<String, Double> termTfIdfScore,
+            int[] docLengths, double avgDocLength, int documentCount) {
+
+        float[] magnitudes = new float[documentCount + 1];
+        for (int docId : relevantDocuments.keySet()) {
+            double ratio = docLengths[docId] / avgDocLength, magnitude = 0.0;
+            for (Map.Entry<String, Integer> termFrequency : docTermCount.get(docId).entrySet()) {
+                double component = DocumentNorms.okapiTF(termFrequency.getValue(), ratio);
+                magnitude += component * component * (null == termTfIdfScore ? 1 : termTfIdfScore.get(termFrequency
+                        .getKey()));
+            }
+            magnitudes[docId] = (float) Math.sqrt(magnitude);
+        }
+        return magnitudes;
+    }
+
+
+    private static long usedHeap () {
+
+        for (int count = 0; count < 3; count++)
+            System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BuildIndexes;
+import com.build_index.DocumentStats;
+import com.main_search_documents.FileNamesInterface;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Compares the time the ranker takes to get document lengths and corpus totals before the first query: by
+ *         scanning doc_index.txt and term_ids.txt as it does for indexes without doc_stats.bin, against reading
+ *         doc_stats.bin written by the indexer, and checks both give the same statistics
+ *
+ *         Writes indexes to the indexes folder of the current directory like the search engine does.
+ *
+ *         Usage: DocumentStatsBenchmark [pageCount] [rounds] [workDirectory]
+ */
+public class DocumentStatsBenchmark implements FileNamesInterface {
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File workDirectory = new File(args.length > 2 ? args[2] : "document_stats_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        FileUtils.deleteDirectory(workDirectory);
+        corpusDirectory.mkdirs();
+
+        BenchmarkCorpus.writeCorpus(corpusDirectory, pageCount);
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+        new BuildIndexes().buildIndex(corpusDirectory.getPath(), stopList.getPath(), true);
+
+        for (int round = 0; round < rounds; round++) { // Early rounds warm up the JIT
+            long start = System.nanoTime();
+            DocumentStats scanned = DocumentStats.readForwardIndex(docIndexFile, termsIdFile);
+            double scanMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            DocumentStats stats = DocumentStats.read(docStatsFile);
+            double readMillis = (System.nanoTime() - start) / 1e6;
+
+            boolean same = stats.getDocumentCount() == scanned.getDocumentCount()
+                    && stats.getCorpusTermCount() == scanned.getCorpusTermCount()
+                    && stats.getAvgDocLength() == scanned.getAvgDocLength()
+                    && stats.getVocabularySize() == scanned.getVocabularySize();
+            for (int docId = 1; docId <= stats.getDocumentCount(); docId++)
+                same &= scanned.getDocLengths()[docId] == stats.getDocLengths()[docId];
+
+            System.out.printf("Round %d: scan doc_index.txt %8.2f ms, read doc_stats.bin %6.2f ms (%.0fx), %s%n",
+                    round, scanMillis, readMillis, scanMillis / readMillis, same ? "same statistics"
+                            : "statistics DIFFER");
+            BenchmarkCorpus.check(same, "statistics read from doc_stats.bin differ");
+        }
+        System.out.printf("doc_index.txt %.1f MB, doc_stats.bin %.1f KB%n", docIndexFile.length() / 1e6,
+                docStatsFile.length() / 1e3);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.jsoup.Jsoup;
+
+import com.crawler.FetchedPage;
+import com.crawler.PageFetcher;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Measures fetch rate of PageFetcher against a local stub server with and without keep-alive, next to the
+ *         previous one connection per request Jsoup fetch
+ * 
+ *         Usage: FetcherBenchmark [pageCount] [latencyMs] [inFlight]
+ */
+public class FetcherBenchmark {
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int latency = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int inFlight = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        PageFetcher.cacheHostLookups(); // Same resolver settings as a crawl
+
+        StubHttpServer server = new StubHttpServer(0, latency, 1, 20);
+        server.start();
+
+        try {
+            PageFetcher fetcher = new PageFetcher();
+            fetchSequential(fetcher, server, 200); // Warm up
+
+            for (boolean keepAlive : new boolean[] {true, false}) {
+                server.setKeepAlive(keepAlive);
+                String mode = keepAlive ? "keep-alive" : "no keep-alive";
+
+                long start = System.nanoTime();
+                fetchSequential(fetcher, server, pageCount);
+                report("PageFetcher sequential, " + mode, start, pageCount);
+
+                start = System.nanoTime();
+                fetchAsync(fetcher, server, pageCount, inFlight);
+                report("PageFetcher async x" + inFlight + ", " + mode, start, pageCount);
+            }
+
+            server.setKeepAlive(true);
+            long start = System.nanoTime();
+            for (int page = 0; page < pageCount; page++)
+                Jsoup.connect(server.pageUrl(page)).userAgent("Mozilla").timeout(3000).get();
+            report("Jsoup.connect sequential", start, pageCount);
+        } finally {
+            server.stop();
+        }
+    }
+
+
+    private static void fetchSequential (PageFetcher fetcher, StubHttpServer server, int pageCount)
+            throws IOException {
+
+        for (int page = 0; page < pageCount; page++)
+            fetcher.fetch(server.pageUrl(page), true);
+    }
+
+
+    /*
+     * Keep inFlight fetches outstanding at any time
+     */
+    private static void fetchAsync (PageFetcher fetcher, StubHttpServer server, int pageCount, int inFlight)
+            throws IOException {
+
+        List<CompletableFuture<FetchedPage>> window = new ArrayList<CompletableFuture<FetchedPage>>();
+        for (int page = 0; page < pageCount; page++) {
+            if (window.size() == inFlight)
+                PageFetcher.await(window.remove(0));
+            window.add(fetcher.fetchAsync(server.pageUrl(page), true));
+        }
+        for (CompletableFuture<FetchedPage> pageFuture : window)
+            PageFetcher.await(pageFuture);
+    }
+
+
+    private static void report (String name, long start, int pageCount) {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-40s %6d pages in %6.2f s (%8.1f pages/s)%n", name, pageCount, seconds, pageCount / seconds);
+    }
+
+}
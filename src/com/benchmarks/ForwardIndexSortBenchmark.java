@@ -0,0 +1,107 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BuildIndexes;
+import com.build_index.SortingInverter;
+import com.build_index.TextPostingsWriter;
+import com.google.code.externalsorting.ExternalSort;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Compares the share of index build time spent sorting the forward index by term id: external sort of
+ *         doc_index.txt lines with DocIndexLineComparator against radix sorting binary records with SortingInverter,
+ *         run size limited by a memory budget so both spill, and checks both write the same term_index and term_info
+ *         files
+ *
+ *         Usage: ForwardIndexSortBenchmark [pageCount] [runMegabytes] [workDirectory]
+ */
+public class ForwardIndexSortBenchmark {
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long runBudget = (args.length > 1 ? Long.parseLong(args[1]) : 4) << 20;
+        File workDirectory = new File(args.length > 2 ? args[2] : "forward_index_sort_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        corpusDirectory.mkdirs();
+
+        BenchmarkCorpus.writeCorpus(corpusDirectory, pageCount);
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+
+        for (int round = 0; round < 2; round++) { // First round warms up the JIT
+            File textDirectory = new File(workDirectory, "text");
+            File binaryDirectory = new File(workDirectory, "binary");
+
+            // Forward index, then external sort of its lines and inversion of the sorted lines
+            BuildIndexes indexer = prepare(textDirectory);
+            long start = System.nanoTime();
+            buildForwardIndex(indexer, corpusDirectory, stopList, textDirectory);
+            long forwardNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            File sortedDocIndex = new File(textDirectory, "sorted_doc_index.txt");
+            DocIndexLineComparator comparator = new DocIndexLineComparator();
+            List<File> chunks = ExternalSort.sortInBatch(new File(textDirectory, "doc_index.txt"), comparator);
+            ExternalSort.mergeSortedFiles(chunks, sortedDocIndex, comparator);
+            long textSortNanos = System.nanoTime() - start;
+            DocIndexInverter.invert(sortedDocIndex, new TextPostingsWriter(new File(textDirectory, "term_index.txt"),
+                    new File(textDirectory, "term_info.txt")));
+            long textNanos = forwardNanos + System.nanoTime() - start;
+
+            // Forward index with binary records collected and radix sorted in runs, then merged and inverted
+            indexer = prepare(binaryDirectory);
+            SortingInverter inverter = new SortingInverter(new File(binaryDirectory, "sort"), runBudget);
+            indexer.setInvertedIndexer(inverter);
+            start = System.nanoTime();
+            buildForwardIndex(indexer, corpusDirectory, stopList, binaryDirectory);
+            int runCount = inverter.getRunCount() + 1; // Last run is written with the inverted index
+            inverter.writeInvertedIndex(new TextPostingsWriter(new File(binaryDirectory, "term_index.txt"), new File(
+                    binaryDirectory, "term_info.txt")));
+            long binaryNanos = System.nanoTime() - start;
+
+            boolean same = FileUtils.contentEquals(new File(textDirectory, "term_index.txt"), new File(
+                    binaryDirectory, "term_index.txt"))
+                    && FileUtils.contentEquals(new File(textDirectory, "term_info.txt"), new File(binaryDirectory,
+                            "term_info.txt"));
+
+            if (round == 1) {
+                System.out.printf("Forward index alone:             %6.2f s%n", forwardNanos / 1e9);
+                System.out.printf("Text lines, external sort:       %6.2f s build, %6.2f s sorting (%4.1f%%)%n",
+                        textNanos / 1e9, textSortNanos / 1e9, 100.0 * textSortNanos / textNanos);
+                System.out.printf("Binary records, radix sort:      %6.2f s build, %6.2f s over forward index "
+                        + "(%4.1f%%), %d run(s)%n", binaryNanos / 1e9, (binaryNanos - forwardNanos) / 1e9, 100.0
+                        * (binaryNanos - forwardNanos) / binaryNanos, runCount);
+                System.out.println("Inverted index " + (same ? "identical" : "DIFFERS"));
+            }
+            BenchmarkCorpus.check(same, "inverted indexes differ");
+        }
+    }
+
+
+    private static BuildIndexes prepare (File outputDirectory) throws IOException {
+
+        FileUtils.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+        BuildIndexes indexer = new BuildIndexes();
+        indexer.setParallelism(1);
+        indexer.setReaderThreads(0);
+        return indexer;
+    }
+
+
+    private static void buildForwardIndex (BuildIndexes indexer, File corpusDirectory, File stopList,
+            File outputDirectory) {
+
+        indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), new File(outputDirectory,
+                "doc_ids.txt"), new File(outputDirectory, "term_ids.txt"), new File(outputDirectory, "doc_index.txt"),
+                true);
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.crawler.PriorityFrontier;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Simulates a limited crawl over a synthetic scale free link graph and reports how much of the graph's
+ *         importance(in-links of the crawled pages) the crawl budget captures, for the previous BFS levels of hash sets
+ *         and for the OPIC PriorityFrontier
+ *
+ *         No network is involved, the link graph is built with preferential attachment so a few pages collect most
+ *         in-links like on the web.
+ *
+ *         Usage: FrontierOrderBenchmark [pageCount] [linksPerPage] [hostCount] [crawlBudget]
+ */
+public class FrontierOrderBenchmark {
+
+    public static void main (String[] args) {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int linksPerPage = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int hostCount = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int crawlBudget = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+
+        int[][] links = buildGraph(pageCount, linksPerPage, new Random(42));
+        int[] inLinks = new int[pageCount];
+        for (int[] pageLinks : links)
+            for (int target : pageLinks)
+                inLinks[target]++;
+
+        int[] sortedInLinks = inLinks.clone();
+        Arrays.sort(sortedInLinks);
+        long bestPossible = 0;
+        for (int rank = 0; rank < crawlBudget; rank++)
+            bestPossible += sortedInLinks[pageCount - 1 - rank];
+
+        int seed = pageCount - 1; // Newest page, a poorly linked start like a typical seed
+        report("BFS levels", crawlBfs(links, hostCount, seed, crawlBudget), inLinks, bestPossible);
+        report("OPIC priority frontier", crawlOpic(links, hostCount, seed, crawlBudget), inLinks, bestPossible);
+    }
+
+
+    /*
+     * Preferential attachment: each new page links to pages picked proportionally to their in-links(plus one)
+     */
+    private static int[][] buildGraph (int pageCount, int linksPerPage, Random random) {
+
+        int[][] links = new int[pageCount][];
+        int[] targets = new int[pageCount * (linksPerPage + 1)]; // Every page once plus once per in-link
+        int targetCount = 0;
+
+        for (int page = 0; page < pageCount; page++) {
+            int linkCount = Math.min(page, linksPerPage);
+            links[page] = new int[linkCount];
+            for (int link = 0; link < linkCount; link++) {
+                int target = targets[random.nextInt(targetCount)];
+                links[page][link] = target;
+                targets[targetCount++] = target;
+            }
+            targets[targetCount++] = page;
+        }
+
+        for (int page = 0; page < pageCount / 2; page++) { // Older pages also link to newer ones so the graph is
+            int[] backLinks = new int[linksPerPage];       // reachable from the seed
+            for (int link = 0; link < linksPerPage; link++)
+                backLinks[link] = targets[random.nextInt(targetCount)];
+            int[] allLinks = Arrays.copyOf(links[page], links[page].length + linksPerPage);
+            System.arraycopy(backLinks, 0, allLinks, links[page].length, linksPerPage);
+            links[page] = allLinks;
+        }
+        return links;
+    }
+
+
+    /*
+     * Visit order of the previous sequential crawl: hash set levels iterated in arbitrary order
+     */
+    private static List<Integer> crawlBfs (int[][] links, int hostCount, int seed, int crawlBudget) {
+
+        List<Integer> crawled = new ArrayList<Integer>();
+        HashSet<String> seen = new HashSet<String>();
+        HashSet<String> currentFrontier = new HashSet<String>();
+        HashSet<String> futureFrontier = new HashSet<String>();
+        currentFrontier.add(pageUrl(seed, hostCount));
+        seen.add(pageUrl(seed, hostCount));
+
+        Iterator<String> iterator = currentFrontier.iterator();
+        while (crawled.size() < crawlBudget && (iterator.hasNext() || !futureFrontier.isEmpty())) {
+            if (!iterator.hasNext()) {
+                currentFrontier = futureFrontier;
+                iterator = currentFrontier.iterator();
+                futureFrontier = new HashSet<String>();
+            }
+            int page = pageNumber(iterator.next());
+            iterator.remove();
+            crawled.add(page);
+            for (int target : links[page]) {
+                String url = pageUrl(target, hostCount);
+                if (seen.add(url))
+                    futureFrontier.add(url);
+            }
+        }
+        return crawled;
+    }
+
+
+    private static List<Integer> crawlOpic (int[][] links, int hostCount, int seed, int crawlBudget) {
+
+        List<Integer> crawled = new ArrayList<Integer>();
+        PriorityFrontier frontier = new PriorityFrontier();
+        frontier.addSeed(pageUrl(seed, hostCount));
+
+        String url;
+        while (crawled.size() < crawlBudget && null != (url = frontier.poll())) {
+            int page = pageNumber(url);
+            crawled.add(page);
+
+            List<String> pageLinks = new ArrayList<String>();
+            for (int target : links[page]) {
+                String targetUrl = pageUrl(target, hostCount);
+                frontier.add(targetUrl);
+                pageLinks.add(targetUrl);
+            }
+            frontier.distributeCash(pageLinks);
+        }
+        return crawled;
+    }
+
+
+    private static String pageUrl (int page, int hostCount) {
+
+        return "http://host" + (page % hostCount) + ".example.edu/page/" + page;
+    }
+
+
+    private static int pageNumber (String url) {
+
+        return Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+    }
+
+
+    private static void report (String name, List<Integer> crawled, int[] inLinks, long bestPossible) {
+
+        long captured = 0;
+        for (int page : crawled)
+            captured += inLinks[page];
+        System.out.printf("%-25s %6d pages, %9d in-links captured(%5.1f%% of the best possible)%n", name, crawled
+                .size(), captured, 100.0 * captured / bestPossible);
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BuildIndexes;
+import com.build_index.IndexReader;
+import com.build_index.IndexSegments;
+import com.build_index.TermPostings;
+import com.generic_utilities.Utilities;
+import com.main_search_documents.FileNamesInterface;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Compares the time to make a batch of new pages searchable by rebuilding all indexes against adding the batch
+ *         to indexes built before as a new segment, with segments merged in the background, and checks the base index
+ *         with its merged segments holds the same postings as the rebuilt one
+ *
+ *         Writes indexes to the indexes folder of the current directory like the search engine does.
+ *
+ *         Usage: IncrementalIndexBenchmark [basePageCount] [batchPageCount] [batchCount] [workDirectory]
+ */
+public class IncrementalIndexBenchmark implements FileNamesInterface {
+
+    public static void main (String[] args) throws IOException {
+
+        int basePageCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int batchPageCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int batchCount = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        File workDirectory = new File(args.length > 3 ? args[3] : "incremental_index_benchmark");
+        FileUtils.deleteDirectory(workDirectory);
+
+        // Base corpus, batches crawled later, and all pages together for rebuilding
+        Random random = new Random(BenchmarkCorpus.seed);
+        File allPages = new File(workDirectory, "all");
+        File basePages = new File(workDirectory, "base");
+        BenchmarkCorpus.writeCorpus(basePages, random, 0, basePageCount);
+        FileUtils.copyDirectory(basePages, allPages);
+        File[] batches = new File[batchCount];
+        for (int batch = 0; batch < batchCount; batch++) {
+            batches[batch] = new File(workDirectory, "batch_" + batch);
+            BenchmarkCorpus.writeCorpus(batches[batch], random, basePageCount + batch * batchPageCount,
+                    batchPageCount);
+        }
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+
+        new BuildIndexes().buildIndex(basePages.getPath(), stopList.getPath(), true); // Warm up the JIT
+
+        double rebuildSeconds = 0;
+        double addSeconds = 0;
+        for (int batch = 0; batch < batchCount; batch++) {
+            FileUtils.copyDirectory(batches[batch], allPages);
+
+            long start = System.nanoTime();
+            new BuildIndexes().buildIndex(allPages.getPath(), stopList.getPath(), true);
+            rebuildSeconds += (System.nanoTime() - start) / 1e9;
+        }
+        File rebuiltFolder = new File(workDirectory, "rebuilt"); // All pages indexed at once to check merges against
+        FileUtils.copyDirectory(new File(indexFolder), rebuiltFolder);
+
+        new BuildIndexes().buildIndex(basePages.getPath(), stopList.getPath(), true);
+        for (int batch = 0; batch < batchCount; batch++) {
+            long start = System.nanoTime();
+            new BuildIndexes().addToIndex(batches[batch].getPath(), stopList.getPath(), true);
+            addSeconds += (System.nanoTime() - start) / 1e9;
+        }
+        long start = System.nanoTime();
+        BuildIndexes.waitForMerges();
+        double mergeWaitSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%n%d base pages, %d batches of %d pages%n", basePageCount, batchCount, batchPageCount);
+        System.out.printf("Rebuild all indexes:   %8.3f s per batch%n", rebuildSeconds / batchCount);
+        System.out.printf("Add batch as segment:  %8.3f s per batch (%.1fx faster)%n", addSeconds / batchCount,
+                rebuildSeconds / addSeconds);
+        System.out.printf("Merges still running after the last batch: %.3f s, %d segment(s) left%n",
+                mergeWaitSeconds, new IndexSegments(segmentInfoFile).getSegmentFolders().size());
+
+        checkSamePostings(rebuiltFolder);
+        System.out.println("Base index with merged segments holds the same postings as the rebuilt index");
+    }
+
+
+    /*
+     * Exit with status 1 unless the base index and its merged segments hold the same postings as the index rebuilt
+     * from all pages in rebuiltFolder
+     * Pages are listed by name when rebuilding, so documents and terms are matched by name as their ids differ
+     */
+    private static void checkSamePostings (File rebuiltFolder) throws IOException {
+
+        Utilities utility = new Utilities();
+        HashMap<Integer, String> rebuiltDocNames = utility.getDocNames(new File(rebuiltFolder, docIdFile.getName()));
+        HashMap<Integer, String> rebuiltTerms = utility.getDocNames(new File(rebuiltFolder, termsIdFile.getName()));
+        HashMap<String, Integer> docIds = byName(utility.getDocNames(docIdFile));
+        HashMap<String, Integer> termIds = byName(utility.getDocNames(termsIdFile));
+        BenchmarkCorpus.check(docIds.size() == rebuiltDocNames.size() && termIds.size() == rebuiltTerms.size(),
+                "merged index has " + docIds.size() + " documents and " + termIds.size() + " terms, rebuilt index "
+                        + rebuiltDocNames.size() + " and " + rebuiltTerms.size());
+
+        IndexReader rebuilt = new IndexReader(new File(rebuiltFolder, termIndexFile.getName()), new File(
+                rebuiltFolder, termPostingsFile.getName()), new File(rebuiltFolder, termInfoFile.getName()));
+        IndexReader merged = new IndexSegments(segmentInfoFile).openIndexReader(termIndexFile, termPostingsFile,
+                termInfoFile);
+        for (Map.Entry<Integer, String> term : rebuiltTerms.entrySet()) {
+            int rebuiltId = term.getKey();
+            Integer mergedId = termIds.get(term.getValue());
+            BenchmarkCorpus.check(null != mergedId && rebuilt.contains(rebuiltId) == merged.contains(mergedId),
+                    "term " + term.getValue() + " is not in both indexes");
+            if (!rebuilt.contains(rebuiltId)) // Stop words have ids but no postings
+                continue;
+
+            HashMap<Integer, int[]> mergedPositions = new HashMap<Integer, int[]>(); // Positions by document id
+            TermPostings postings = merged.getPostings(mergedId);
+            while (postings.nextDoc())
+                mergedPositions.put(postings.getDocId(), postings.getPositions());
+            postings = rebuilt.getPostings(rebuiltId);
+            while (postings.nextDoc()) {
+                int[] positions = mergedPositions.remove(docIds.get(rebuiltDocNames.get(postings.getDocId())));
+                BenchmarkCorpus.check(Arrays.equals(postings.getPositions(), positions), "postings of term "
+                        + term.getValue() + " differ in " + rebuiltDocNames.get(postings.getDocId()));
+            }
+            BenchmarkCorpus.check(mergedPositions.isEmpty() && rebuilt.getOccurrences(rebuiltId) == merged
+                    .getOccurrences(mergedId), "merged index has more postings of term " + term.getValue());
+        }
+        rebuilt.close();
+        merged.close();
+    }
+
+
+    /*
+     * Ids by name from names by id
+     */
+    private static HashMap<String, Integer> byName (HashMap<Integer, String> names) {
+
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        for (Map.Entry<Integer, String> name : names.entrySet())
+            ids.put(name.getValue(), name.getKey());
+        return ids;
+    }
+
+}
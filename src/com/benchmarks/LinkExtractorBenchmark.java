@@ -0,0 +1,163 @@
+package com.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+import com.crawler.DuplicateDetector;
+import com.crawler.LinkExtractor;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Compares extracting the links of large synthetic html pages with a Jsoup DOM and select("a[href]") against
+ *         the streaming LinkExtractor, reading all links, all links while hashing the page text, and only the first
+ *         links up to a per page cap
+ *
+ *         Pages mix relative and absolute links, a <base> tag, comments, scripts containing markup and entities in
+ *         hrefs. Before timing the extracted links are checked to equal Jsoup's.
+ *
+ *         Usage: LinkExtractorBenchmark [pageCount] [pageKilobytes] [linkCap] [rounds]
+ */
+public class LinkExtractorBenchmark {
+
+    private static final String[] words = {"northeastern", "university", "boston", "research", "students", "campus",
+            "engineering", "science", "faculty", "library", "admissions", "graduate", "program", "college", "health"};
+
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int pageKilobytes = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int linkCap = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Random random = new Random(42);
+        List<String> pages = new ArrayList<String>(pageCount);
+        long pageBytes = 0;
+        for (int page = 0; page < pageCount; page++) {
+            pages.add(generatePage(random, page, pageKilobytes << 10));
+            pageBytes += pages.get(page).length();
+        }
+        System.out.printf("%d pages, %.1f MB of html%n", pageCount, pageBytes / 1e6);
+
+        LinkExtractor extractor = new LinkExtractor();
+        for (int page = 0; page < pageCount; page++) { // Same links as the DOM path
+            List<String> expected = jsoupLinks(pages.get(page), pageUrl(page));
+            List<String> actual = extractor.extract(new StringReader(pages.get(page)), pageUrl(page),
+                    Integer.MAX_VALUE, null);
+            BenchmarkCorpus.check(expected.equals(actual), "links differ on page " + page + ": " + expected.size()
+                    + " from Jsoup, " + actual.size() + " extracted");
+        }
+        System.out.println("Extracted links match Jsoup on every page");
+
+        for (int round = 0; round < rounds; round++) { // Early rounds warm up the JIT
+            System.out.println("Round " + round);
+
+            long start = System.nanoTime();
+            long allocated = allocatedBytes();
+            long links = 0;
+            for (int page = 0; page < pageCount; page++)
+                links += jsoupLinks(pages.get(page), pageUrl(page)).size();
+            report("Jsoup DOM + select", start, allocated, pageCount, links);
+
+            start = System.nanoTime();
+            allocated = allocatedBytes();
+            links = 0;
+            for (int page = 0; page < pageCount; page++)
+                links += extractor.extract(new StringReader(pages.get(page)), pageUrl(page), Integer.MAX_VALUE, null)
+                        .size();
+            report("Streaming, all links", start, allocated, pageCount, links);
+
+            start = System.nanoTime();
+            allocated = allocatedBytes();
+            links = 0;
+            for (int page = 0; page < pageCount; page++)
+                links += extractor.extract(new StringReader(pages.get(page)), pageUrl(page), Integer.MAX_VALUE,
+                        new DuplicateDetector.SimHash()).size();
+            report("Streaming, all links + SimHash", start, allocated, pageCount, links);
+
+            start = System.nanoTime();
+            allocated = allocatedBytes();
+            links = 0;
+            for (int page = 0; page < pageCount; page++)
+                links += extractor.extract(new StringReader(pages.get(page)), pageUrl(page), linkCap, null).size();
+            report("Streaming, first " + linkCap + " links", start, allocated, pageCount, links);
+        }
+    }
+
+
+    private static List<String> jsoupLinks (String html, String pageUrl) {
+
+        List<String> links = new ArrayList<String>();
+        for (Element link : Jsoup.parse(html, pageUrl).select("a[href]"))
+            links.add(link.attr("abs:href"));
+        return links;
+    }
+
+
+    private static String generatePage (Random random, int page, int size) {
+
+        StringBuilder html = new StringBuilder(size + 1024);
+        html.append("<!DOCTYPE html>\n<html><head><title>Page ").append(page).append("</title>\n");
+        html.append("<base href=\"http://www.northeastern.edu/section/").append(page % 10).append("/\">\n");
+        html.append("<script type=\"text/javascript\">var menu = '<a href=\"/not-a-link\">x</a>';</script>\n");
+        html.append("<style>a > span { color: red; }</style></head>\n<body class=main>\n");
+
+        while (html.length() < size) {
+            html.append("<div class=\"content\"><p>");
+            for (int word = 0; word < 40; word++)
+                html.append(words[random.nextInt(words.length)]).append(' ');
+            html.append("</p>\n<!-- <a href=\"/commented-out\">old</a> -->\n");
+
+            switch (random.nextInt(4)) {
+            case 0:
+                html.append("<a href=\"page/").append(random.nextInt(100000)).append(".html\">relative</a>");
+                break;
+            case 1:
+                html.append("<a class='nav' href='/news/").append(random.nextInt(100000))
+                        .append("?id=1&amp;lang=en'>news</a>");
+                break;
+            case 2:
+                html.append("<A HREF=http://www.neu.edu/").append(random.nextInt(100000)).append(">absolute</A>");
+                break;
+            default:
+                html.append("<a name=\"anchor").append(random.nextInt(100)).append("\">no href</a>");
+            }
+            html.append("</div>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+
+    private static String pageUrl (int page) {
+
+        return "http://www.northeastern.edu/page/" + page;
+    }
+
+
+    /*
+     * Bytes allocated so far by the current thread
+     */
+    private static long allocatedBytes () {
+
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+                .currentThread().getId());
+    }
+
+
+    private static void report (String name, long start, long allocated, int pageCount, long links) {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-32s %8.1f pages/s %8.1f KB allocated/page %8d links%n", name, pageCount / seconds,
+                (allocatedBytes() - allocated) / 1024.0 / pageCount, links);
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import com.build_index.BuildIndexes;
+import com.crawler.FetchedPage;
+import com.crawler.PageStoreReader;
+import com.crawler.PageStoreWriter;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Compares reading a corpus of synthetic pages stored one file per page(offline indexer format, header
+ *         stripped with removeFileHeader) against streaming the same pages from a block compressed page store
+ *
+ *         Usage: PageStoreBenchmark [pageCount] [workDirectory]
+ */
+public class PageStoreBenchmark {
+
+    private static final String[] words = {"northeastern", "university", "boston", "research", "students", "campus",
+            "engineering", "science", "faculty", "library", "admissions", "graduate", "program", "college", "health"};
+
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File workDirectory = new File(args.length > 1 ? args[1] : "page_store_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        File storeDirectory = new File(workDirectory, "store");
+        corpusDirectory.mkdirs();
+
+        Random random = new Random(42);
+        PageStoreWriter storeWriter = new PageStoreWriter(storeDirectory);
+        long contentBytes = 0;
+
+        long start = System.nanoTime();
+        for (int page = 0; page < pageCount; page++) {
+            String url = "http://www.northeastern.edu/page/" + page;
+            String html = generatePage(random, page);
+            contentBytes += html.length();
+
+            BenchmarkCorpus.writePage(corpusDirectory, page, html);
+            storeWriter.write(url, new FetchedPage(url, 200, "text/html", html, html.length()));
+        }
+        storeWriter.close();
+        System.out.printf("Wrote %d pages(%.1f MB) in %.2f s%n", pageCount, contentBytes / 1e6,
+                (System.nanoTime() - start) / 1e9);
+        System.out.printf("Page store on disk %.1f MB%n", directorySize(storeDirectory) / 1e6);
+
+        for (int round = 0; round < 3; round++) { // Later rounds read from a warm page cache
+            BuildIndexes indexer = new BuildIndexes();
+            start = System.nanoTime();
+            long readBytes = 0;
+            for (File corpusFile : corpusDirectory.listFiles())
+                readBytes += indexer.removeFileHeader(corpusFile).length();
+            report("One file per page, round " + round, start, pageCount, readBytes);
+
+            start = System.nanoTime();
+            readBytes = 0;
+            PageStoreReader storeReader = new PageStoreReader(storeDirectory);
+            FetchedPage page;
+            while (null != (page = storeReader.next()))
+                readBytes += page.getContent().length();
+            storeReader.close();
+            report("Page store, round " + round, start, pageCount, readBytes);
+        }
+    }
+
+
+    private static String generatePage (Random random, int page) {
+
+        StringBuilder html = new StringBuilder("<html><head><title>Page " + page + "</title></head><body>");
+        int paragraphs = 20 + random.nextInt(40);
+        for (int paragraph = 0; paragraph < paragraphs; paragraph++) {
+            html.append("<p>");
+            for (int word = 0; word < 50; word++)
+                html.append(words[random.nextInt(words.length)]).append(' ');
+            html.append("</p><a href=\"http://www.northeastern.edu/page/").append(random.nextInt(1000000))
+                    .append("\">link</a>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+
+    private static long directorySize (File directory) {
+
+        long size = 0;
+        for (File file : directory.listFiles())
+            size += file.length();
+        return size;
+    }
+
+
+    private static void report (String name, long start, int pageCount, long readBytes) {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-30s %8.1f pages/s %8.1f MB/s%n", name, pageCount / seconds, readBytes / 1e6 / seconds);
+    }
+
+}
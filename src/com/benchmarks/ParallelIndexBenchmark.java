@@ -0,0 +1,69 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BuildIndexes;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Times the offline forward index build over a synthetic corpus of one file per page with 1, 2, 4... analyzing
+ *         threads up to the number of cores, both pipelined and in fork join batches, and checks every parallel build
+ *         writes the same doc_ids, term_ids and doc_index files as the single threaded one, exiting with status 1 if
+ *         not
+ *
+ *         Usage: ParallelIndexBenchmark [pageCount] [maxThreads] [workDirectory]
+ */
+public class ParallelIndexBenchmark {
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        File workDirectory = new File(args.length > 2 ? args[2] : "parallel_index_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        corpusDirectory.mkdirs();
+
+        BenchmarkCorpus.writeCorpus(corpusDirectory, pageCount);
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+
+        File[] expected = null;
+        for (int threads = 1; threads <= Math.max(maxThreads, 1); threads *= 2) {
+            // 1 thread is the sequential build the others are checked against
+            for (int pipelined = 0; pipelined < (threads == 1 ? 1 : 2); pipelined++) {
+                for (int round = 0; round < 2; round++) { // First round warms up the JIT
+                    File outputDirectory = new File(workDirectory, "threads_" + threads + "_" + pipelined);
+                    FileUtils.deleteDirectory(outputDirectory);
+                    outputDirectory.mkdirs();
+                    File[] output = {new File(outputDirectory, "doc_ids.txt"),
+                            new File(outputDirectory, "term_ids.txt"), new File(outputDirectory, "doc_index.txt")};
+
+                    BuildIndexes indexer = new BuildIndexes();
+                    indexer.setParallelism(threads);
+                    indexer.setPipelined(pipelined == 1);
+                    long start = System.nanoTime();
+                    indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), output[0], output[1],
+                            output[2], true);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+
+                    if (null == expected)
+                        expected = output;
+                    boolean same = true;
+                    for (int file = 0; file < output.length; file++)
+                        same &= FileUtils.contentEquals(expected[file], output[file]);
+
+                    if (round == 1)
+                        System.out.printf("%2d thread(s) %-10s: %6.2f s (%7.1f files/s), output %s%n", threads,
+                                threads == 1 ? "sequential" : pipelined == 1 ? "pipelined" : "fork join", seconds,
+                                pageCount / seconds, same ? "identical to 1 thread" : "DIFFERS from 1 thread");
+                    BenchmarkCorpus.check(same, threads + " thread(s) output differs from 1 thread");
+                }
+            }
+        }
+    }
+
+}
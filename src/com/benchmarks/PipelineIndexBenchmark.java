@@ -0,0 +1,144 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BuildIndexes;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Times the offline forward index build over a synthetic corpus of one file per page on a cold page cache,
+ *         reading, parsing, analyzing and writing every file in turn on one thread against the staged pipeline, prints
+ *         the work and queue depths counted by each stage, and checks both write the same doc_ids, term_ids and
+ *         doc_index files
+ *
+ *         The page cache is dropped through /proc/sys/vm/drop_caches before every build, which needs root on Linux.
+ *         Timings are on a warm cache otherwise, and say so.
+ *
+ *         Usage: PipelineIndexBenchmark [pageCount] [readerThreads] [parserThreads] [analyzerThreads] [queueCapacity]
+ *         [workDirectory]
+ */
+public class PipelineIndexBenchmark {
+
+    public static void main (String[] args) throws IOException, InterruptedException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int readerThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int parserThreads = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int analyzerThreads = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int queueCapacity = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        File workDirectory = new File(args.length > 5 ? args[5] : "pipeline_index_benchmark");
+        final File corpusDirectory = new File(workDirectory, "corpus");
+        FileUtils.deleteDirectory(workDirectory);
+        corpusDirectory.mkdirs();
+
+        long corpusBytes = BenchmarkCorpus.writeCorpus(corpusDirectory, pageCount);
+        final File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+        System.out.printf("%d files, %.1f MB, %d cores%n", pageCount, corpusBytes / 1e6, Runtime.getRuntime()
+                .availableProcessors());
+
+        File[] expected = null;
+        double sequentialSeconds = 0;
+        for (int round = 0; round < 3; round++) { // First round warms up the JIT
+            for (int pipelined = 0; pipelined < 2; pipelined++) {
+                File outputDirectory = new File(workDirectory, pipelined == 1 ? "pipelined" : "sequential");
+                FileUtils.deleteDirectory(outputDirectory);
+                outputDirectory.mkdirs();
+                File[] output = {new File(outputDirectory, "doc_ids.txt"), new File(outputDirectory, "term_ids.txt"),
+                        new File(outputDirectory, "doc_index.txt")};
+
+                BuildIndexes indexer = new BuildIndexes();
+                if (pipelined == 1) {
+                    indexer.setReaderThreads(readerThreads);
+                    indexer.setParserThreads(parserThreads);
+                    indexer.setAnalyzerThreads(analyzerThreads);
+                    indexer.setPipelineQueueCapacity(queueCapacity);
+                } else {
+                    indexer.setParallelism(1);
+                    indexer.setReaderThreads(0); // Every stage on the calling thread
+                }
+                boolean cold = dropPageCache();
+                long start = System.nanoTime();
+                indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), output[0], output[1],
+                        output[2], true);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                if (pipelined == 0)
+                    sequentialSeconds = seconds;
+
+                if (null == expected)
+                    expected = output;
+                boolean same = true;
+                for (int file = 0; file < output.length; file++)
+                    same &= FileUtils.contentEquals(expected[file], output[file]);
+
+                System.out.printf("Round %d %-10s %s cache: %6.2f s (%7.1f files/s, %6.1f MB/s), output %s%n", round,
+                        pipelined == 1 ? "pipelined" : "sequential", cold ? "cold" : "warm", seconds, pageCount
+                                / seconds, corpusBytes / 1e6 / seconds, same ? "identical" : "DIFFERS");
+                BenchmarkCorpus.check(same, "pipelined output differs from the sequential build");
+                if (pipelined == 1 && round == 2)
+                    System.out.print(indexer.getPipeline());
+            }
+        }
+
+        // Small queues with more reader threads than files fit between the stages, which hung the build when readers
+        // took a file before a place in the window
+        int[][] smallPipelines = { {4, 2}, {8, 2}, {8, 1}}; // {reader threads, queue capacity}
+        for (int[] smallPipeline : smallPipelines) {
+            File outputDirectory = new File(workDirectory, "small_pipeline");
+            FileUtils.deleteDirectory(outputDirectory);
+            outputDirectory.mkdirs();
+            final File[] output = {new File(outputDirectory, "doc_ids.txt"),
+                    new File(outputDirectory, "term_ids.txt"), new File(outputDirectory, "doc_index.txt")};
+
+            final BuildIndexes indexer = new BuildIndexes();
+            indexer.setParallelism(2);
+            indexer.setReaderThreads(smallPipeline[0]);
+            indexer.setPipelineQueueCapacity(smallPipeline[1]);
+            Thread build = new Thread(new Runnable() {
+
+                @Override
+                public void run () {
+
+                    indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), output[0], output[1],
+                            output[2], true);
+                }
+            }, "small-pipeline-build");
+            build.setDaemon(true);
+            build.start();
+            build.join((long) (Math.max(60, 10 * sequentialSeconds) * 1000));
+
+            boolean same = !build.isAlive();
+            for (int file = 0; same && file < output.length; file++)
+                same &= FileUtils.contentEquals(expected[file], output[file]);
+            System.out.printf("%d reader thread(s), queue capacity %d: %s%n", smallPipeline[0], smallPipeline[1],
+                    build.isAlive() ? "HUNG" : same ? "output identical" : "output DIFFERS");
+            BenchmarkCorpus.check(same, "small pipeline " + (build.isAlive() ? "hung" : "output differs"));
+        }
+    }
+
+
+    /*
+     * Write dirty pages and drop clean ones from the page cache, false if this is not allowed
+     */
+    private static boolean dropPageCache () throws InterruptedException {
+
+        try {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            FileWriter dropCaches = new FileWriter("/proc/sys/vm/drop_caches");
+            try {
+                dropCaches.write("3");
+            } finally {
+                dropCaches.close();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
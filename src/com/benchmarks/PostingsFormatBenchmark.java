@@ -0,0 +1,199 @@
+package com.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BlockPostingsReader;
+import com.build_index.BlockPostingsWriter;
+import com.build_index.BuildIndexes;
+import com.build_index.PostingsReader;
+import com.build_index.SpimiIndexer;
+import com.build_index.TermPostings;
+import com.build_index.TextPostingsReader;
+import com.build_index.TextPostingsWriter;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Indexes a synthetic corpus once with text postings and once with block compressed postings, compares index
+ *         sizes, checks both formats decode to the same documents, frequencies and positions, and times decoding the
+ *         postings of every term the way the ranker needs them (documents and frequencies): with String.split on the
+ *         text line as the ranker used to, with TextPostingsReader and with BlockPostingsReader
+ *
+ *         Usage: PostingsFormatBenchmark [pageCount] [rounds] [workDirectory]
+ */
+public class PostingsFormatBenchmark {
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File workDirectory = new File(args.length > 2 ? args[2] : "postings_format_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        corpusDirectory.mkdirs();
+
+        BenchmarkCorpus.writeCorpus(corpusDirectory, pageCount);
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+
+        File textDirectory = new File(workDirectory, "text");
+        File termIndex = new File(textDirectory, "term_index.txt");
+        File textInfo = new File(textDirectory, "term_info.txt");
+        File blockDirectory = new File(workDirectory, "block");
+        File termPostings = new File(blockDirectory, "term_postings.bin");
+        File blockInfo = new File(blockDirectory, "term_info.txt");
+
+        SpimiIndexer spimiIndexer = buildForwardIndex(corpusDirectory, stopList, textDirectory);
+        spimiIndexer.writeInvertedIndex(new TextPostingsWriter(termIndex, textInfo));
+        spimiIndexer = buildForwardIndex(corpusDirectory, stopList, blockDirectory);
+        spimiIndexer.writeInvertedIndex(new BlockPostingsWriter(termPostings, blockInfo));
+
+        System.out.printf("Text postings:  %8.2f MB%n", termIndex.length() / 1e6);
+        System.out.printf("Block postings: %8.2f MB (%.1fx smaller)%n", termPostings.length() / 1e6,
+                (double) termIndex.length() / termPostings.length());
+
+        long[] textOffsets = readOffsets(textInfo);
+        long[] blockOffsets = readOffsets(blockInfo);
+        PostingsReader textReader = new TextPostingsReader(termIndex);
+        PostingsReader blockReader = new BlockPostingsReader(termPostings);
+
+        BenchmarkCorpus.check(textOffsets.length == blockOffsets.length, textOffsets.length + " text and "
+                + blockOffsets.length + " block postings lists");
+        for (int term = 0; term < textOffsets.length; term++) { // Same postings from both formats
+            TermPostings expected = textReader.read(textOffsets[term]);
+            TermPostings actual = blockReader.read(blockOffsets[term]);
+            boolean same = expected.getDocCount() == actual.getDocCount();
+            while (same && expected.nextDoc()) {
+                same = actual.nextDoc() && expected.getDocId() == actual.getDocId()
+                        && expected.getFrequency() == actual.getFrequency()
+                        && Arrays.equals(expected.getPositions(), actual.getPositions());
+            }
+            BenchmarkCorpus.check(same && !actual.nextDoc(), "postings differ for term " + (term + 1));
+        }
+        System.out.println("Both formats decode to the same postings for all " + textOffsets.length + " terms");
+
+        for (int round = 0; round < rounds; round++) { // Early rounds warm up the JIT
+            System.out.println("Round " + round);
+
+            long start = System.nanoTime();
+            long expected = decodeWithSplit(termIndex, textOffsets);
+            report("Text, String.split", start, textOffsets.length, expected);
+
+            start = System.nanoTime();
+            long checksum = decode(textReader, textOffsets, false);
+            report("TextPostingsReader", start, textOffsets.length, checksum);
+            BenchmarkCorpus.check(checksum == expected, "TextPostingsReader decodes other documents or frequencies");
+
+            start = System.nanoTime();
+            checksum = decode(blockReader, blockOffsets, false);
+            report("BlockPostingsReader", start, blockOffsets.length, checksum);
+            BenchmarkCorpus.check(checksum == expected, "BlockPostingsReader decodes other documents or frequencies");
+
+            start = System.nanoTime();
+            checksum = decode(blockReader, blockOffsets, true);
+            report("BlockPostingsReader + positions", start, blockOffsets.length, checksum);
+            BenchmarkCorpus.check(checksum == expected, "BlockPostingsReader decodes other documents or frequencies");
+        }
+
+        textReader.close();
+        blockReader.close();
+    }
+
+
+    /*
+     * Build the forward index of the corpus into outputDirectory, returning the postings inverted in memory
+     */
+    private static SpimiIndexer buildForwardIndex (File corpusDirectory, File stopList, File outputDirectory)
+            throws IOException {
+
+        FileUtils.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+
+        SpimiIndexer spimiIndexer = new SpimiIndexer(new File(outputDirectory, "segments"), 256L << 20);
+        BuildIndexes indexer = new BuildIndexes();
+        indexer.setInvertedIndexer(spimiIndexer);
+        indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), new File(outputDirectory,
+                "doc_ids.txt"), new File(outputDirectory, "term_ids.txt"), new File(outputDirectory, "doc_index.txt"),
+                true);
+        return spimiIndexer;
+    }
+
+
+    private static long[] readOffsets (File termInfoFile) throws IOException {
+
+        List<Long> offsets = new ArrayList<Long>();
+        BufferedReader reader = new BufferedReader(new FileReader(termInfoFile));
+        String line;
+        while (null != (line = reader.readLine()))
+            offsets.add(Long.parseLong(line.split("\t")[1]));
+        reader.close();
+
+        long[] offsetArray = new long[offsets.size()];
+        for (int index = 0; index < offsetArray.length; index++)
+            offsetArray[index] = offsets.get(index);
+        return offsetArray;
+    }
+
+
+    /*
+     * Documents and frequencies of every term the way DocumentRanker decoded the text line before
+     */
+    private static long decodeWithSplit (File termIndex, long[] offsets) throws IOException {
+
+        long checksum = 0;
+        for (long offset : offsets) {
+            RandomAccessFile indexFile = new RandomAccessFile(termIndex, "r");
+            indexFile.seek(offset);
+            String[] termPositions = indexFile.readLine().split("\t");
+
+            int docId = 0;
+            int previousDocId = Integer.parseInt(termPositions[1].split(":")[0]);
+            int termFrequency = 0;
+            for (int index = 1; index < termPositions.length; index++) {
+                docId += Integer.parseInt(termPositions[index].split(":")[0]);
+                if (docId == previousDocId)
+                    termFrequency++;
+                else {
+                    checksum += previousDocId * 31L + termFrequency;
+                    termFrequency = 1;
+                    previousDocId = docId;
+                }
+            }
+            checksum += previousDocId * 31L + termFrequency;
+            indexFile.close();
+        }
+        return checksum;
+    }
+
+
+    private static long decode (PostingsReader reader, long[] offsets, boolean withPositions) throws IOException {
+
+        long checksum = 0;
+        for (long offset : offsets) {
+            TermPostings postings = reader.read(offset);
+            while (postings.nextDoc()) {
+                checksum += postings.getDocId() * 31L + postings.getFrequency();
+                if (withPositions)
+                    postings.getPositions();
+            }
+        }
+        return checksum;
+    }
+
+
+    private static void report (String name, long start, int termCount, long checksum) {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-32s %8.1f ms %10.1f terms/s (checksum %d)%n", name, seconds * 1e3, termCount / seconds,
+                checksum);
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BlockPostingsWriter;
+import com.build_index.BuildIndexes;
+import com.build_index.IndexReader;
+import com.build_index.SpimiIndexer;
+import com.build_index.TermPostings;
+import com.build_index.TextPostingsWriter;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Measures latency of looking up the terms of a query and reading the documents and frequencies of their
+ *         postings, the work DocumentRanker does per query before scoring
+ *
+ *         Compares scanning term_info.txt and opening term_index.txt with a RandomAccessFile and readLine for every
+ *         term as the ranker used to, against one IndexReader opened for all queries over text and block compressed
+ *         postings, and reports throughput of the block IndexReader shared by 1, 2, 4... threads.
+ *
+ *         Usage: QueryLatencyBenchmark [pageCount] [queryCount] [termsPerQuery] [maxThreads] [workDirectory]
+ */
+public class QueryLatencyBenchmark {
+
+    public static void main (String[] args) throws IOException, InterruptedException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int termsPerQuery = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        File workDirectory = new File(args.length > 4 ? args[4] : "query_latency_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        corpusDirectory.mkdirs();
+
+        Random random = new Random(BenchmarkCorpus.seed); // Queries are drawn after the pages
+        BenchmarkCorpus.writeCorpus(corpusDirectory, random, 0, pageCount);
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+
+        File textDirectory = new File(workDirectory, "text");
+        File termIndex = new File(textDirectory, "term_index.txt");
+        File textInfo = new File(textDirectory, "term_info.txt");
+        buildForwardIndex(corpusDirectory, stopList, textDirectory).writeInvertedIndex(new TextPostingsWriter(
+                termIndex, textInfo));
+        File blockDirectory = new File(workDirectory, "block");
+        File termPostings = new File(blockDirectory, "term_postings.bin");
+        File blockInfo = new File(blockDirectory, "term_info.txt");
+        buildForwardIndex(corpusDirectory, stopList, blockDirectory).writeInvertedIndex(new BlockPostingsWriter(
+                termPostings, blockInfo));
+
+        IndexReader textReader = new IndexReader(termIndex, new File(textDirectory, "none"), textInfo);
+        IndexReader blockReader = new IndexReader(termIndex, termPostings, blockInfo);
+
+        int[] termIds = new int[textReader.getTermCount()]; // Indexed terms, ids of stop words are skipped
+        for (int termId = 1, term = 0; term < termIds.length; termId++)
+            if (textReader.contains(termId))
+                termIds[term++] = termId;
+        final int[][] queries = new int[queryCount][termsPerQuery]; // Term ids of each query
+        for (int query = 0; query < queryCount; query++)
+            for (int term = 0; term < termsPerQuery; term++)
+                queries[query][term] = termIds[random.nextInt(termIds.length)];
+        System.out.printf("%d terms, %d queries of %d terms%n", textReader.getTermCount(), queryCount, termsPerQuery);
+
+        for (int round = 0; round < 3; round++) { // Early rounds warm up the JIT
+            System.out.println("Round " + round);
+
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (int[] query : queries)
+                checksum += runQueryWithFiles(query, termIndex, textInfo);
+            report("Scan term_info + readLine", start, queryCount, checksum);
+
+            start = System.nanoTime();
+            checksum = 0;
+            for (int[] query : queries)
+                checksum += runQuery(query, textReader);
+            report("IndexReader, text", start, queryCount, checksum);
+
+            start = System.nanoTime();
+            checksum = 0;
+            for (int[] query : queries)
+                checksum += runQuery(query, blockReader);
+            report("IndexReader, block", start, queryCount, checksum);
+        }
+
+        for (int threads = 1; threads <= Math.max(maxThreads, 1); threads *= 2) {
+            final IndexReader sharedReader = blockReader;
+            final AtomicLong checksum = new AtomicLong();
+            final int threadCount = threads;
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int thread = 0; thread < threads; thread++) {
+                final int first = thread;
+                workers[thread] = new Thread(new Runnable() {
+
+                    @Override
+                    public void run () {
+
+                        try {
+                            long sum = 0;
+                            for (int query = first; query < queries.length; query += threadCount)
+                                sum += runQuery(queries[query], sharedReader);
+                            checksum.addAndGet(sum);
+                        } catch (IOException e) {
+                            System.err.println("Could not read postings");
+                        }
+                    }
+                });
+                workers[thread].start();
+            }
+            for (Thread worker : workers)
+                worker.join();
+            report("Shared block reader, " + threads + " thread(s)", start, queryCount, checksum.get());
+        }
+
+        textReader.close();
+        blockReader.close();
+    }
+
+
+    /*
+     * Build the forward index of the corpus into outputDirectory, returning the postings inverted in memory
+     */
+    private static SpimiIndexer buildForwardIndex (File corpusDirectory, File stopList, File outputDirectory)
+            throws IOException {
+
+        FileUtils.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+
+        SpimiIndexer spimiIndexer = new SpimiIndexer(new File(outputDirectory, "segments"), 256L << 20);
+        BuildIndexes indexer = new BuildIndexes();
+        indexer.setInvertedIndexer(spimiIndexer);
+        indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), new File(outputDirectory,
+                "doc_ids.txt"), new File(outputDirectory, "term_ids.txt"), new File(outputDirectory, "doc_index.txt"),
+                true);
+        return spimiIndexer;
+    }
+
+
+    /*
+     * Sum of documents and frequencies of a query's terms read through the shared index reader
+     */
+    private static long runQuery (int[] query, IndexReader reader) throws IOException {
+
+        long checksum = 0;
+        for (int termId : query) {
+            TermPostings postings = reader.getPostings(termId);
+            while (postings.nextDoc())
+                checksum += postings.getDocId() * 31L + postings.getFrequency();
+        }
+        return checksum;
+    }
+
+
+    /*
+     * Same sum the way the ranker read the index for every term before: scan term_info.txt for the offset, then open
+     * term_index.txt, seek and readLine
+     */
+    private static long runQueryWithFiles (int[] query, File termIndex, File termInfo) throws IOException {
+
+        long checksum = 0;
+        for (int termId : query) {
+            String id = String.valueOf(termId);
+            long offset = 0;
+            BufferedReader reader = new BufferedReader(new FileReader(termInfo));
+            String line;
+            while (null != (line = reader.readLine())) {
+                String[] tokens = line.split("\t");
+                if (tokens[0].equals(id)) {
+                    offset = Long.parseLong(tokens[1]);
+                    break;
+                }
+            }
+            reader.close();
+
+            RandomAccessFile indexFile = new RandomAccessFile(termIndex, "r");
+            indexFile.seek(offset);
+            String[] termPositions = indexFile.readLine().split("\t");
+            indexFile.close();
+
+            int docId = 0;
+            int previousDocId = Integer.parseInt(termPositions[1].split(":")[0]);
+            int termFrequency = 0;
+            for (int index = 1; index < termPositions.length; index++) {
+                docId += Integer.parseInt(termPositions[index].split(":")[0]);
+                if (docId == previousDocId)
+                    termFrequency++;
+                else {
+                    checksum += previousDocId * 31L + termFrequency;
+                    termFrequency = 1;
+                    previousDocId = docId;
+                }
+            }
+            checksum += previousDocId * 31L + termFrequency;
+        }
+        return checksum;
+    }
+
+
+    private static void report (String name, long start, int queryCount, long checksum) {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-36s %9.1f us/query %9.1f queries/s (checksum %d)%n", name, seconds * 1e6 / queryCount,
+                queryCount / seconds, checksum);
+    }
+
+}
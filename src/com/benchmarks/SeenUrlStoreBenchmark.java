@@ -0,0 +1,124 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+
+import com.crawler.BloomSeenUrlStore;
+import com.crawler.MappedSeenUrlStore;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Compares memory and lookup rate of the crawler's seen url structures
+ * 
+ *         1. Three HashSet<String> levels as used by the sequential crawl (visited, current and future frontier)
+ *         2. Bloom filter at the given false positive rate
+ *         3. Memory mapped fingerprint table(off heap, reported as file size)
+ * 
+ *         Usage: SeenUrlStoreBenchmark [urlCount] [falsePositiveRate]
+ *         The default of 10M urls needs a heap of about 3GB for the HashSet run (-Xmx3g)
+ */
+public class SeenUrlStoreBenchmark {
+
+    private static final String urlPrefix = "http://www.ccs.neu.edu/home/course/page_";
+
+
+    public static void main (String[] args) throws IOException {
+
+        int urlCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        double falsePositiveRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+
+        System.out.println("Urls: " + urlCount + ", lookups: " + 2 * urlCount + " (half present, half absent)");
+
+        benchmarkHashSets(urlCount);
+        benchmarkBloomFilter(urlCount, falsePositiveRate);
+        benchmarkMappedStore(urlCount);
+    }
+
+
+    /*
+     * Urls split across three sets, each lookup checks all three like WebCrawler.extractLinks
+     */
+    private static void benchmarkHashSets (int urlCount) {
+
+        long heapBefore = usedHeap();
+        HashSet<String> visitedUrls = new HashSet<String>();
+        HashSet<String> currentFrontier = new HashSet<String>();
+        HashSet<String> futureFrontier = new HashSet<String>();
+
+        for (int count = 0; count < urlCount; count++) {
+            String url = urlPrefix + count;
+            (count % 3 == 0 ? visitedUrls : count % 3 == 1 ? currentFrontier : futureFrontier).add(url);
+        }
+        long memory = usedHeap() - heapBefore;
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (int count = 0; count < 2 * urlCount; count++) {
+            String url = urlPrefix + count;
+            if (visitedUrls.contains(url) || currentFrontier.contains(url) || futureFrontier.contains(url))
+                found++;
+        }
+        report("HashSet x3", memory, start, 2 * urlCount, found - urlCount, urlCount);
+    }
+
+
+    private static void benchmarkBloomFilter (int urlCount, double falsePositiveRate) {
+
+        BloomSeenUrlStore bloomFilter = new BloomSeenUrlStore(urlCount, falsePositiveRate);
+        for (int count = 0; count < urlCount; count++)
+            bloomFilter.add(urlPrefix + count);
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (int count = 0; count < 2 * urlCount; count++)
+            if (bloomFilter.contains(urlPrefix + count))
+                found++;
+        report("Bloom filter (p=" + falsePositiveRate + ")", bloomFilter.getMemoryUsage(), start, 2 * urlCount,
+                found - urlCount, urlCount);
+    }
+
+
+    private static void benchmarkMappedStore (int urlCount) throws IOException {
+
+        File storeFile = File.createTempFile("seen_urls", ".bin");
+        storeFile.delete();
+
+        MappedSeenUrlStore mappedStore = new MappedSeenUrlStore(storeFile, 2L * urlCount);
+        for (int count = 0; count < urlCount; count++)
+            mappedStore.add(urlPrefix + count);
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (int count = 0; count < 2 * urlCount; count++)
+            if (mappedStore.contains(urlPrefix + count))
+                found++;
+        report("Mapped fingerprints (off heap)", storeFile.length(), start, 2 * urlCount, found - urlCount, urlCount);
+
+        mappedStore.close();
+        storeFile.delete();
+    }
+
+
+    /*
+     * Print memory, lookup rate and observed false positive rate
+     */
+    private static void report (String name, long memory, long start, int lookups, int falsePositives, int absent) {
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-32s %8.1f MB %6.1f bytes/url %12.0f lookups/s  false positives %.4f%%%n", name,
+                memory / 1048576.0, (double) memory / absent, lookups / seconds, 100.0 * falsePositives / absent);
+    }
+
+
+    private static long usedHeap () {
+
+        Runtime runtime = Runtime.getRuntime();
+        for (int count = 0; count < 3; count++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import com.build_index.BuildIndexes;
+import com.build_index.SpimiIndexer;
+import com.build_index.TextPostingsWriter;
+import com.google.code.externalsorting.ExternalSort;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Compares building the inverted index of a synthetic corpus by external sorting doc_index.txt into
+ *         sorted_doc_index.txt and inverting it against single pass in memory inversion with a given memory budget,
+ *         reporting build time and the most disk the index files and temporary files take at once, and checks both
+ *         write the same term_index and term_info files
+ *
+ *         Usage: SpimiIndexBenchmark [pageCount] [memoryBudgetMegabytes] [workDirectory]
+ */
+public class SpimiIndexBenchmark {
+
+    public static void main (String[] args) throws IOException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long memoryBudget = (args.length > 1 ? Long.parseLong(args[1]) : 8) << 20;
+        File workDirectory = new File(args.length > 2 ? args[2] : "spimi_index_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        corpusDirectory.mkdirs();
+
+        BenchmarkCorpus.writeCorpus(corpusDirectory, pageCount);
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+
+        for (int round = 0; round < 2; round++) { // First round warms up the JIT
+            File sortDirectory = new File(workDirectory, "sort");
+            File spimiDirectory = new File(workDirectory, "spimi");
+
+            // Forward index, external sort and inversion of the sorted forward index
+            prepare(sortDirectory);
+            BuildIndexes indexer = new BuildIndexes();
+            indexer.setParallelism(1);
+            indexer.setReaderThreads(0);
+            long start = System.nanoTime();
+            indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), new File(sortDirectory,
+                    "doc_ids.txt"), new File(sortDirectory, "term_ids.txt"), new File(sortDirectory, "doc_index.txt"),
+                    true);
+            long forwardNanos = System.nanoTime() - start;
+
+            File docIndex = new File(sortDirectory, "doc_index.txt");
+            File sortedDocIndex = new File(sortDirectory, "sorted_doc_index.txt");
+            DocIndexLineComparator comparator = new DocIndexLineComparator();
+            List<File> chunks = ExternalSort.sortInBatch(docIndex, comparator);
+            long chunkBytes = 0;
+            for (File chunk : chunks)
+                chunkBytes += chunk.length();
+            ExternalSort.mergeSortedFiles(chunks, sortedDocIndex, comparator); // Deletes the chunks
+            DocIndexInverter.invert(sortedDocIndex, new TextPostingsWriter(new File(sortDirectory, "term_index.txt"),
+                    new File(sortDirectory, "term_info.txt")));
+            long sortNanos = System.nanoTime() - start;
+            long sortPeakBytes = docIndex.length()
+                    + Math.max(chunkBytes + sortedDocIndex.length(), sortedDocIndex.length() + invertedBytes(
+                            sortDirectory));
+
+            // Forward index with postings inverted in memory
+            prepare(spimiDirectory);
+            indexer = new BuildIndexes();
+            indexer.setParallelism(1);
+            indexer.setReaderThreads(0);
+            SpimiIndexer spimiIndexer = new SpimiIndexer(new File(spimiDirectory, "segments"), memoryBudget);
+            indexer.setInvertedIndexer(spimiIndexer);
+            start = System.nanoTime();
+            indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), new File(spimiDirectory,
+                    "doc_ids.txt"), new File(spimiDirectory, "term_ids.txt"), new File(spimiDirectory,
+                    "doc_index.txt"), true);
+            int segmentCount = spimiIndexer.getSegmentCount(); // Written while indexing, the rest is written last
+            spimiIndexer.writeInvertedIndex(new TextPostingsWriter(new File(spimiDirectory, "term_index.txt"),
+                    new File(spimiDirectory, "term_info.txt")));
+            long spimiNanos = System.nanoTime() - start;
+            long spimiPeakBytes = new File(spimiDirectory, "doc_index.txt").length() + spimiIndexer.getSegmentBytes()
+                    + invertedBytes(spimiDirectory);
+
+            boolean same = FileUtils.contentEquals(new File(sortDirectory, "term_index.txt"), new File(
+                    spimiDirectory, "term_index.txt"))
+                    && FileUtils.contentEquals(new File(sortDirectory, "term_info.txt"), new File(spimiDirectory,
+                            "term_info.txt"));
+
+            if (round == 1) {
+                System.out.printf("Forward index alone:      %6.2f s%n", forwardNanos / 1e9);
+                System.out.printf("External sort + invert:   %6.2f s, peak disk %7.1f MB%n", sortNanos / 1e9,
+                        sortPeakBytes / 1e6);
+                System.out.printf("In memory inversion:      %6.2f s, peak disk %7.1f MB, %d full segment(s), "
+                        + "%.1f MB%n", spimiNanos / 1e9, spimiPeakBytes / 1e6, segmentCount,
+                        spimiIndexer.getSegmentBytes() / 1e6);
+                System.out.println("Inverted index " + (same ? "identical" : "DIFFERS"));
+            }
+            BenchmarkCorpus.check(same, "inverted indexes differ");
+        }
+    }
+
+
+    private static void prepare (File outputDirectory) throws IOException {
+
+        FileUtils.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+    }
+
+
+    private static long invertedBytes (File outputDirectory) {
+
+        return new File(outputDirectory, "term_index.txt").length()
+                + new File(outputDirectory, "term_info.txt").length();
+    }
+
+}
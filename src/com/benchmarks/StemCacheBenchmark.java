@@ -0,0 +1,103 @@
+package com.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.tartarus.snowball.EnglishSnowballStemmerFactory;
+import org.tartarus.snowball.util.StemmerException;
+
+import com.build_index.BuildIndexes;
+import com.build_index.StemCache;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Times the offline forward index build over a synthetic corpus whose words follow Zipf's law, stemming every
+ *         word with the Snowball stemmer against stemming through StemCache, on one thread and on all cores, and
+ *         reports the hits and misses of the cache
+ *
+ *         Usage: StemCacheBenchmark [pageCount] [vocabularySize] [workDirectory]
+ */
+public class StemCacheBenchmark {
+
+    private static final String[] suffixes = {"", "s", "ing", "ed", "ation", "ness", "ly", "er", "ies", "ement"};
+
+
+    public static void main (String[] args) throws IOException, StemmerException {
+
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        File workDirectory = new File(args.length > 2 ? args[2] : "stem_cache_benchmark");
+        File corpusDirectory = new File(workDirectory, "corpus");
+        FileUtils.deleteDirectory(workDirectory);
+        corpusDirectory.mkdirs();
+
+        Random random = new Random(42);
+        String[] vocabulary = new String[vocabularySize];
+        for (int word = 0; word < vocabularySize; word++) {
+            StringBuilder letters = new StringBuilder();
+            for (int letter = 3 + random.nextInt(6); letter > 0; letter--)
+                letters.append((char) ('a' + random.nextInt(26)));
+            vocabulary[word] = letters.append(suffixes[random.nextInt(suffixes.length)]).toString();
+        }
+        double[] cumulative = new double[vocabularySize]; // Zipf's law with exponent 1: frequency of rank r is 1 / r
+        double total = 0;
+        for (int rank = 0; rank < vocabularySize; rank++)
+            cumulative[rank] = total += 1.0 / (rank + 1);
+
+        for (int page = 0; page < pageCount; page++)
+            BenchmarkCorpus.writePage(corpusDirectory, page, generatePage(random, page, vocabulary, cumulative));
+        File stopList = BenchmarkCorpus.writeStopList(workDirectory);
+
+        EnglishSnowballStemmerFactory stemmer = EnglishSnowballStemmerFactory.getInstance();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : cores > 1 ? new int[] {1, cores} : new int[] {1}) {
+            for (int cached = 0; cached < 2; cached++) {
+                StemCache stemCache = null;
+                double seconds = 0;
+                for (int round = 0; round < 2; round++) { // First round warms up the JIT
+                    File outputDirectory = new File(workDirectory, "output");
+                    FileUtils.deleteDirectory(outputDirectory);
+                    outputDirectory.mkdirs();
+
+                    stemCache = new StemCache(stemmer, cached == 1 ? 1 << 20 : 0);
+                    BuildIndexes indexer = new BuildIndexes();
+                    indexer.setParallelism(threads);
+                    indexer.setStemCache(stemCache);
+                    long start = System.nanoTime();
+                    indexer.buildForwardIndex(corpusDirectory.getPath(), stopList.getPath(), new File(
+                            outputDirectory, "doc_ids.txt"), new File(outputDirectory, "term_ids.txt"), new File(
+                            outputDirectory, "doc_index.txt"), true);
+                    seconds = (System.nanoTime() - start) / 1e9;
+                }
+                System.out.printf("%2d thread(s), %-14s %6.2f s (%7.1f files/s), %s%n", threads, cached == 1
+                        ? "stem cache:" : "stemmer only:", seconds, pageCount / seconds, stemCache);
+            }
+        }
+    }
+
+
+    /*
+     * Page of words drawn from vocabulary by their Zipf frequency
+     */
+    private static String generatePage (Random random, int page, String[] vocabulary, double[] cumulative) {
+
+        StringBuilder html = new StringBuilder("<html><head><title>Page " + page + "</title></head><body>");
+        int paragraphs = 10 + random.nextInt(30);
+        for (int paragraph = 0; paragraph < paragraphs; paragraph++) {
+            html.append("<p>");
+            for (int word = 0; word < 60; word++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble()
+                        * cumulative[cumulative.length - 1]);
+                html.append(vocabulary[rank < 0 ? -rank - 1 : rank]).append(' ');
+            }
+            html.append("</p>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+}
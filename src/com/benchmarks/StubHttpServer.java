@@ -0,0 +1,157 @@
+package com.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Local http server serving a synthetic web graph with injected latency, used by the crawler benchmarks
+ * 
+ *         Page /page/N links to linksPerPage other pages spread across hostCount loopback hosts (127.0.0.1,
+ *         127.0.0.2, ...) so that a crawl sees several distinct hosts while talking to a single process
+ */
+public class StubHttpServer {
+
+    private final int latency; // Milliseconds slept before every response
+    private final int hostCount;
+    private final int linksPerPage;
+    private final HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger(0);
+    private volatile boolean keepAlive = true;
+    private final ExecutorService handlers;
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true"); // Headers and body go out in separate writes, avoid
+                                                                   // Nagle delaying the body on kept alive connections
+    }
+
+
+    public StubHttpServer (int port, int latency, int hostCount, int linksPerPage) throws IOException {
+
+        this.latency = latency;
+        this.hostCount = hostCount;
+        this.linksPerPage = linksPerPage;
+
+        server = HttpServer.create(new InetSocketAddress("0.0.0.0", port), 128);
+        handlers = Executors.newFixedThreadPool(64); // Serve requests concurrently so latency does not serialize
+        server.setExecutor(handlers);
+        server.createContext("/", new HttpHandler() {
+
+            @Override
+            public void handle (HttpExchange exchange) throws IOException {
+
+                respond(exchange);
+            }
+        });
+    }
+
+
+    /*
+     * Start serving requests
+     */
+    public void start () {
+
+        server.start();
+    }
+
+
+    /*
+     * Stop the server and its handler threads
+     */
+    public void stop () {
+
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+
+    /*
+     * Return the port the server is bound to
+     */
+    public int getPort () {
+
+        return server.getAddress().getPort();
+    }
+
+
+    /*
+     * Enable or disable persistent connections, without them every response closes its connection
+     */
+    public void setKeepAlive (boolean keepAlive) {
+
+        this.keepAlive = keepAlive;
+    }
+
+
+    /*
+     * Return count of requests served since the last call and reset it
+     */
+    public int resetRequestCount () {
+
+        return requestCount.getAndSet(0);
+    }
+
+
+    /*
+     * Return url of given page number on the host it is assigned to
+     */
+    public String pageUrl (int page) {
+
+        return "http://127.0.0." + (1 + page % hostCount) + ":" + getPort() + "/page/" + page;
+    }
+
+
+    /*
+     * Serve a synthetic html page after the injected latency, robots.txt and unknown paths are answered with 404
+     */
+    private void respond (HttpExchange exchange) throws IOException {
+
+        requestCount.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        if (!path.startsWith("/page/")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        int page = Integer.parseInt(path.substring("/page/".length()));
+        StringBuilder html = new StringBuilder("<html><head><title>Page " + page + "</title></head><body>");
+        for (int count = 1; count <= linksPerPage; count++) {
+            int target = page * linksPerPage + count; // Tree shaped graph, every page has unique children
+            html.append("<p>Stub text for page ").append(page).append("</p><a href=\"").append(pageUrl(target))
+                    .append("\">link ").append(target).append("</a>");
+        }
+        html.append("</body></html>");
+
+        byte[] body = html.toString().getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        if (!keepAlive)
+            exchange.getResponseHeaders().set("Connection", "close");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+        exchange.close();
+    }
+
+}
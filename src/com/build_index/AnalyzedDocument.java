@@ -0,0 +1,33 @@
+package com.build_index;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ *
+ *         Tokenized document waiting for its document and term ids
+ *
+ *         Holds everything the forward index needs from a document that does not depend on other documents, so
+ *         documents can be analyzed on any thread and given ids afterwards in corpus order.
+ */
+class AnalyzedDocument {
+
+    final String name;
+    final long contentHash; // Hash of the parsed text for exact duplicate detection
+    final long fingerprint; // SimHash of the stemmed tokens for near duplicate detection
+    final String[] terms; // Stemmed terms in document order, stop words left out
+    final int[] positions; // Word position of each term
+    final int termCount; // Terms set in terms and positions
+
+
+    AnalyzedDocument (String name, long contentHash, long fingerprint, String[] terms, int[] positions,
+            int termCount) {
+
+        this.name = name;
+        this.contentHash = contentHash;
+        this.fingerprint = fingerprint;
+        this.terms = terms;
+        this.positions = positions;
+        this.termCount = termCount;
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.build_index;
+
+import java.util.Set;
+
+import org.tartarus.snowball.util.StemmerException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Splits text into the terms that are indexed and searched, used alike by the indexer and the ranker so a query
+ *         term matches the indexed term exactly
+ *
+ *         Words are runs of letters, digits and underscores joined by single dots, the same as the pattern
+ *         \w+(\.?\w+)*, lower cased, stop words left out and the rest stemmed. Text is copied into a reusable char
+ *         buffer and scanned by hand, each word is lower cased in place, looked up in a table of the stop words keyed
+ *         by their characters and stemmed through the shared StemCache, so only a word stemmed for the first time
+ *         makes new Strings.
+ *
+ *         Positions count every word of the text, stop words included. An analyzer is not thread safe, each indexing
+ *         thread uses its own.
+ */
+public class Analyzer {
+
+    private final char[][] stopWords; // Table of stop words: open addressing with linear probing
+    private final StemCache stemCache;
+
+    private char[] text = new char[4096]; // Text being analyzed
+    private int textLength = 0;
+    private int offset = 0; // Next character to scan
+    private int position = 0; // Position of current word in text
+    private int wordStart;
+    private int wordLength;
+    private String term; // Stemmed current word
+
+
+    /*
+     * Analyzer leaving out given lower cased stop words and stemming other words through given cache
+     */
+    public Analyzer (Set<String> stopWords, StemCache stemCache) {
+
+        this.stemCache = stemCache;
+        int capacity = 16; // At most half full
+        while (capacity < stopWords.size() * 2)
+            capacity *= 2;
+        this.stopWords = new char[capacity][];
+        for (String stopWord : stopWords) {
+            int slot = hash(stopWord.toCharArray(), 0, stopWord.length()) & (capacity - 1);
+            while (null != this.stopWords[slot])
+                slot = (slot + 1) & (capacity - 1);
+            this.stopWords[slot] = stopWord.toCharArray();
+        }
+    }
+
+
+    /*
+     * Start analyzing given text from its first word
+     */
+    public void reset (String text) {
+
+        textLength = text.length();
+        if (textLength > this.text.length)
+            this.text = new char[Math.max(textLength, this.text.length * 2)];
+        text.getChars(0, textLength, this.text, 0);
+        offset = 0;
+        position = 0;
+        term = null;
+    }
+
+
+    /*
+     * Move to the next word that is not a stop word, false at the end of the text
+     */
+    public boolean next () throws StemmerException {
+
+        while (nextWord()) {
+            position++;
+            if (!isStopWord()) {
+                term = stemCache.stem(text, wordStart, wordLength);
+                return true;
+            }
+        }
+        term = null;
+        return false;
+    }
+
+
+    /*
+     * Stemmed current word
+     */
+    public String getTerm () {
+
+        return term;
+    }
+
+
+    /*
+     * Position of current word in the text, counted from 1 over all words
+     */
+    public int getPosition () {
+
+        return position;
+    }
+
+
+    /*
+     * Scan to the end of the next word, lower casing it in place
+     */
+    private boolean nextWord () {
+
+        char[] chars = text;
+        int index = offset;
+        while (index < textLength && !isWordChar(chars[index]))
+            index++;
+        if (index == textLength) {
+            offset = index;
+            return false;
+        }
+
+        wordStart = index;
+        while (true) {
+            while (index < textLength && isWordChar(chars[index])) {
+                char next = chars[index];
+                if (next >= 'A' && next <= 'Z') // Only ASCII letters are word characters
+                    chars[index] = (char) (next + ('a' - 'A'));
+                index++;
+            }
+            if (index + 1 < textLength && chars[index] == '.' && isWordChar(chars[index + 1]))
+                index++; // A single dot joins two runs of word characters
+            else
+                break;
+        }
+        wordLength = index - wordStart;
+        offset = index;
+        return true;
+    }
+
+
+    private static boolean isWordChar (char next) {
+
+        return (next >= 'a' && next <= 'z') || (next >= 'A' && next <= 'Z') || (next >= '0' && next <= '9')
+                || next == '_';
+    }
+
+
+    /*
+     * Whether the current word is in the stop word table
+     */
+    private boolean isStopWord () {
+
+        int mask = stopWords.length - 1;
+        for (int slot = hash(text, wordStart, wordLength) & mask; null != stopWords[slot]; slot = (slot + 1) & mask) {
+            char[] stopWord = stopWords[slot];
+            if (stopWord.length != wordLength)
+                continue;
+            int index = 0;
+            while (index < wordLength && stopWord[index] == text[wordStart + index])
+                index++;
+            if (index == wordLength)
+                return true;
+        }
+        return false;
+    }
+
+
+    private static int hash (char[] chars, int offset, int length) {
+
+        int hash = 0;
+        for (int index = offset; index < offset + length; index++)
+            hash = 31 * hash + chars[index];
+        return hash ^ (hash >>> 16);
+    }
+
+}
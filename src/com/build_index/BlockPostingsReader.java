@@ -0,0 +1,186 @@
+package com.build_index;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Reads compressed postings from term_postings.bin written by BlockPostingsWriter
+ *
+ *         term_postings.bin is memory mapped and a term is decoded straight from the mapping a block at a time as
+ *         documents are visited, positions of a block are only decoded when asked for.
+ */
+public class BlockPostingsReader extends PostingsReader {
+
+    private MappedIndexFile postingsFile;
+
+
+    public BlockPostingsReader (File termPostingsFile) throws IOException {
+
+        postingsFile = new MappedIndexFile(termPostingsFile);
+    }
+
+
+    @Override
+    public TermPostings read (long offset) {
+
+        return new BlockTermPostings(postingsFile, offset + 4); // Skip byte length of the term
+    }
+
+
+    @Override
+    public void close () {
+
+        postingsFile = null; // Unmapped once no postings refer to it
+    }
+
+
+    /*
+     * Postings of a term decoded one block at a time
+     */
+    static class BlockTermPostings implements TermPostings {
+
+        private final MappedIndexFile bytes;
+        private long offset; // Next byte to decode
+        private final int docCount;
+        private int docsRead = 0; // Documents in blocks decoded so far
+
+        private final int[] docIds = new int[BlockPostingsWriter.blockSize];
+        private final int[] frequencies = new int[BlockPostingsWriter.blockSize];
+        private int blockCount = 0;
+        private int current = -1; // Current document within block
+        private int previousDocId = 0;
+
+        private long blockEnd; // Offset after the positions of current block
+        private long blockPositions; // Offset of positions of current block
+        private int[] positions = new int[BlockPostingsWriter.blockSize]; // Position deltas of current block
+        private final int[] positionStarts = new int[BlockPostingsWriter.blockSize + 1];
+        private boolean positionsDecoded;
+
+
+        BlockTermPostings (MappedIndexFile bytes, long offset) {
+
+            this.bytes = bytes;
+            this.offset = offset;
+            this.docCount = readVByte();
+            this.blockEnd = this.offset; // First block follows the document count
+        }
+
+
+        @Override
+        public int getDocCount () {
+
+            return docCount;
+        }
+
+
+        @Override
+        public boolean nextDoc () {
+
+            if (++current < blockCount)
+                return true;
+            if (docsRead == docCount)
+                return false;
+
+            // Decode next block
+            offset = blockEnd; // Positions of the previous block are skipped
+            blockCount = Math.min(BlockPostingsWriter.blockSize, docCount - docsRead);
+            readPacked(docIds, 0, blockCount);
+            for (int index = 0; index < blockCount; index++) { // Document ids from gaps
+                previousDocId += docIds[index];
+                docIds[index] = previousDocId;
+            }
+            readPacked(frequencies, 0, blockCount);
+            for (int index = 0; index < blockCount; index++)
+                frequencies[index]++;
+
+            int positionLength = readVByte();
+            blockPositions = offset;
+            positionsDecoded = false;
+            blockEnd = offset + positionLength;
+
+            docsRead += blockCount;
+            current = 0;
+            return true;
+        }
+
+
+        @Override
+        public int getDocId () {
+
+            return docIds[current];
+        }
+
+
+        @Override
+        public int getFrequency () {
+
+            return frequencies[current];
+        }
+
+
+        @Override
+        public int[] getPositions () {
+
+            if (!positionsDecoded) { // Unpack positions of all documents of the block
+                for (int index = 0; index < blockCount; index++)
+                    positionStarts[index + 1] = positionStarts[index] + frequencies[index];
+                int blockPositionCount = positionStarts[blockCount];
+                if (blockPositionCount > positions.length)
+                    positions = new int[Math.max(positions.length * 2, blockPositionCount)];
+
+                offset = blockPositions;
+                for (int from = 0; from < blockPositionCount; from += BlockPostingsWriter.blockSize)
+                    readPacked(positions, from, Math.min(BlockPostingsWriter.blockSize, blockPositionCount - from));
+                positionsDecoded = true;
+            }
+
+            int[] documentPositions = new int[frequencies[current]];
+            int position = 0;
+            for (int index = 0; index < documentPositions.length; index++) { // Positions from deltas
+                position += positions[positionStarts[current] + index];
+                documentPositions[index] = position;
+            }
+            return documentPositions;
+        }
+
+
+        private int readVByte () {
+
+            int value = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = bytes.get(offset++);
+                value |= (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            return value;
+        }
+
+
+        /*
+         * Unpack count values preceded by their bit width
+         */
+        private void readPacked (int[] values, int from, int count) {
+
+            int bits = bytes.get(offset++);
+            long mask = (1L << bits) - 1;
+            long buffer = 0; // Bits read but not yet unpacked, lowest first
+            int bufferedBits = 0;
+            for (int index = from; index < from + count; index++) {
+                while (bufferedBits < bits) {
+                    buffer |= (bytes.get(offset++) & 0xFFL) << bufferedBits;
+                    bufferedBits += 8;
+                }
+                values[index] = (int) (buffer & mask);
+                buffer >>>= bits;
+                bufferedBits -= bits;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.build_index;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Writes postings compressed in blocks to term_postings.bin
+ *
+ *         Each term is {int byte length, VByte document count, blocks...}. A block covers up to blockSize documents:
+ *         document id gaps and frequencies - 1 are each bit packed with the fewest bits their largest value needs
+ *         (frame of reference), followed by the VByte length of the block's positions and the positions themselves,
+ *         delta encoded within each document and bit packed blockSize at a time the same way. Readers that only need
+ *         frequencies skip the positions of a block without decoding them.
+ *
+ *         Block: {byte docBits, packed docGaps, byte frequencyBits, packed frequencies, VByte positionsLength,
+ *         [byte positionBits, packed positions]...}
+ */
+public class BlockPostingsWriter implements PostingsWriter {
+
+    static final int blockSize = 128; // Documents in a full block
+
+    private static final String seperator = "\t";
+    private static final String newLine = "\r\n";
+
+    private final OutputStream postingsStream;
+    private final BufferedWriter termInfoWriter;
+
+    private long position = 0; // Bytes written to term_postings
+    private int currentTermId = -1;
+    private int docCount = 0;
+    private int posCount = 0;
+    private int[] docIds = new int[blockSize];
+    private int[] frequencies = new int[blockSize];
+    private int[] positions = new int[blockSize];
+
+    private byte[] termBytes = new byte[1024]; // Encoded postings of current term
+    private int termLength = 0;
+    private byte[] positionBytes = new byte[1024]; // Encoded positions of current block
+    private int[] values = new int[blockSize]; // Values of a block being packed
+
+
+    public BlockPostingsWriter (File termPostingsFile, File termInfoFile) throws IOException {
+
+        postingsStream = new BufferedOutputStream(new FileOutputStream(termPostingsFile), 1 << 16);
+        termInfoWriter = new BufferedWriter(new FileWriter(termInfoFile.getAbsoluteFile(), true));
+    }
+
+
+    @Override
+    public void addPostings (int termId, int[] postings, int from, int to) throws IOException {
+
+        if (termId != currentTermId) { // Encountered new term
+            finishTerm();
+            currentTermId = termId;
+            docCount = 0;
+            posCount = 0;
+        }
+
+        int index = from;
+        while (index < to) {
+            int positionCount = postings[index + 1];
+            if (docCount == docIds.length) {
+                docIds = Arrays.copyOf(docIds, docCount * 2);
+                frequencies = Arrays.copyOf(frequencies, docCount * 2);
+            }
+            if (posCount + positionCount > positions.length)
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, posCount + positionCount));
+
+            docIds[docCount] = postings[index];
+            frequencies[docCount++] = positionCount;
+            System.arraycopy(postings, index + 2, positions, posCount, positionCount);
+            posCount += positionCount;
+            index += 2 + positionCount;
+        }
+    }
+
+
+    @Override
+    public void close () throws IOException {
+
+        finishTerm();
+        postingsStream.close();
+        termInfoWriter.close();
+    }
+
+
+    /*
+     * Encode postings of the current term, write them to term_postings and the term's entry to term_info
+     */
+    private void finishTerm () throws IOException {
+
+        if (currentTermId == -1)
+            return;
+
+        termLength = 0;
+        termLength = writeVByte(termBytes, termLength, docCount);
+
+        int previousDocId = 0;
+        int positionIndex = 0;
+        for (int blockStart = 0; blockStart < docCount; blockStart += blockSize) {
+            int blockCount = Math.min(blockSize, docCount - blockStart);
+
+            ensureCapacity(2 + blockCount * 8);
+            for (int index = 0; index < blockCount; index++) { // Document id gaps
+                values[index] = docIds[blockStart + index] - previousDocId;
+                previousDocId = docIds[blockStart + index];
+            }
+            termLength = writePacked(termBytes, termLength, values, 0, blockCount);
+
+            for (int index = 0; index < blockCount; index++)
+                // Frequencies are at least 1
+                values[index] = frequencies[blockStart + index] - 1;
+            termLength = writePacked(termBytes, termLength, values, 0, blockCount);
+
+            int blockPositions = 0;
+            for (int index = 0; index < blockCount; index++) { // Positions delta encoded within each document
+                if (blockPositions + frequencies[blockStart + index] > values.length)
+                    values = Arrays.copyOf(values, Math.max(values.length * 2, blockPositions
+                            + frequencies[blockStart + index]));
+                int previousPosition = 0;
+                for (int count = 0; count < frequencies[blockStart + index]; count++) {
+                    values[blockPositions++] = positions[positionIndex] - previousPosition;
+                    previousPosition = positions[positionIndex++];
+                }
+            }
+            if (blockPositions * 5 > positionBytes.length)
+                positionBytes = new byte[blockPositions * 5];
+            int positionLength = 0;
+            for (int from = 0; from < blockPositions; from += blockSize)
+                positionLength = writePacked(positionBytes, positionLength, values, from, Math.min(blockSize,
+                        blockPositions - from));
+
+            ensureCapacity(5 + positionLength);
+            termLength = writeVByte(termBytes, termLength, positionLength);
+            System.arraycopy(positionBytes, 0, termBytes, termLength, positionLength);
+            termLength += positionLength;
+        }
+
+        termInfoWriter.write(currentTermId + seperator + position + seperator + posCount + seperator + docCount
+                + newLine);
+
+        postingsStream.write(termLength >>> 24);
+        postingsStream.write(termLength >>> 16);
+        postingsStream.write(termLength >>> 8);
+        postingsStream.write(termLength);
+        postingsStream.write(termBytes, 0, termLength);
+        position += 4 + termLength;
+    }
+
+
+    /*
+     * Bit pack count values with the fewest bits the largest of them needs, preceded by the bit width
+     * Returns position after the values, bytes must have room for 1 + 4 * count bytes
+     */
+    static int writePacked (byte[] bytes, int position, int[] values, int from, int count) {
+
+        int maximum = 0;
+        for (int index = from; index < from + count; index++)
+            maximum |= values[index];
+        int bits = 32 - Integer.numberOfLeadingZeros(maximum);
+        bytes[position++] = (byte) bits;
+
+        long buffer = 0; // Bits not yet written, lowest first
+        int bufferedBits = 0;
+        for (int index = from; index < from + count; index++) {
+            buffer |= (values[index] & 0xFFFFFFFFL) << bufferedBits;
+            bufferedBits += bits;
+            while (bufferedBits >= 8) {
+                bytes[position++] = (byte) buffer;
+                buffer >>>= 8;
+                bufferedBits -= 8;
+            }
+        }
+        if (bufferedBits > 0)
+            bytes[position++] = (byte) buffer;
+        return position;
+    }
+
+
+    private void ensureCapacity (int length) {
+
+        if (termLength + length > termBytes.length)
+            termBytes = Arrays.copyOf(termBytes, Math.max(termBytes.length * 2, termLength + length));
+    }
+
+
+    /*
+     * Write value 7 bits at a time, lowest first, the high bit set on all but the last byte
+     * Returns position after the value, bytes must have room for 5 bytes
+     */
+    static int writeVByte (byte[] bytes, int position, int value) {
+
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+}
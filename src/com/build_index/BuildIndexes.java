@@ -6,24 +6,26 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.io.FileUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.tartarus.snowball.EnglishSnowballStemmerFactory;
 import org.tartarus.snowball.util.StemmerException;
 
+import com.crawler.CrawledDocument;
+import com.crawler.DuplicateDetector;
+import com.crawler.FetchedPage;
+import com.crawler.PageFetcher;
+import com.crawler.PageStoreReader;
+import com.crawler.WebCrawler;
 import com.generic_utilities.Utilities;
-import com.google.code.externalsorting.ExternalSort;
 import com.main_search_documents.FileNamesInterface;
 
 /**
@@ -36,25 +38,50 @@ import com.main_search_documents.FileNamesInterface;
  *         term_ids.txt - Contains id-term mapping for each unique term in all the documents indexed
  *         doc_index.txt - Forward index containing positions of each term occurring in a given document(id) {docId
  *         termId [list of positions.....]}
- *         sorted_doc_index.txt - Above document index sorted by term id
+ *         doc_stats.bin - Length of each document, document count, corpus term count and vocabulary size for ranking
  *         term_index.txt - Word level inverted index(documents & positions) containing delta encoded documents(id's)
  *         and
  *         positions for each term across corpus
+ *         term_postings.bin - Same inverted index compressed in blocks, written instead of term_index.txt by default
  *         term_info.txt - Contains information about term {termId, offset for term in inverted index, count of
  *         occurrence in entire corpus, document count containing term}
+ *         segment_info.txt - Segments of documents added to the indexes after they were built, each folder holding
+ *         its own term_info and postings {segment folder name, document count}
  * 
  */
 public class BuildIndexes implements FileNamesInterface {
 
     private static final String seperator = "\t";
     private static final String newLine = "\r\n";
-    private static final String pattern = "\\w+(\\.?\\w+)*";
+    private static final int pageQueueCapacity = 64; // Crawled pages buffered ahead of the indexer
+    private static final int parallelBatchSize = 256; // Files analyzed in parallel before their ids are assigned
+    private static final int defaultReaderThreads = 4; // Files read ahead while others are parsed and analyzed
+    private static final int defaultPipelineQueueCapacity = 64; // Documents waiting between two stages
+    private static final long defaultInversionMemoryBudget = 64L << 20; // Bytes of postings buffered before a segment
+                                                                         // is written
+    private static final CrawledDocument endOfCrawl = new CrawledDocument(null, null); // Marks the end of a crawl
+    private static final IndexSegments indexSegments = new IndexSegments(segmentInfoFile); // Merged in background
 
     int docId = 0; // Counter to track current document id in corpus
     int termsId = 0; // Counter to track current term id in corpus
-    HashMap<String, Integer> terms; // Store a list of all terms in corpus
-    Pattern wordPattern; // Generic word pattern used to tokenize documents
-    EnglishSnowballStemmerFactory stemmer;
+    TermDictionary terms; // Store a list of all terms in corpus
+    DocumentTerms docTerms = new DocumentTerms(); // Term positions of the document being added
+    DocumentStats documentStats = new DocumentStats(); // Lengths of the documents indexed and corpus totals
+    char[] digits = new char[10]; // Digits of a number written to doc_index
+    StemCache stemCache; // Stems words for every analyzing thread
+    Analyzer analyzer; // Splits documents into terms on the indexing thread
+    DuplicateDetector duplicateDetector = new DuplicateDetector(); // Skips duplicate and near duplicate documents
+    int parallelism = Runtime.getRuntime().availableProcessors(); // Threads parsing and analyzing local corpus files
+    boolean pipelined = true; // Read, parse and analyze local corpus files in stages instead of fork join batches
+    int readerThreads = defaultReaderThreads; // Threads reading local corpus files
+    int parserThreads = 0; // Threads parsing local corpus files, 0 for parallelism
+    int analyzerThreads = 0; // Threads tokenizing and stemming local corpus files, 0 for parallelism
+    int pipelineQueueCapacity = defaultPipelineQueueCapacity;
+    IndexPipeline pipeline; // Stages of the last local corpus indexed on several threads
+    long inversionMemoryBudget = defaultInversionMemoryBudget; // 0 inverts by sorting forward index records instead
+    DocumentInverter invertedIndexer; // Inverts documents as they are added to the forward index
+    boolean compressedPostings = true; // Write term_postings.bin instead of term_index.txt
+    int mergeFactor = 10; // Segments of a tier merged into one segment of the next tier
 
 
     /**
@@ -72,6 +99,8 @@ public class BuildIndexes implements FileNamesInterface {
         System.out.println("\nBuilding indexes....");
 
         initializeOutputFiles(); // Initialize output files to be initially empty
+        resetBuildState(); // Ids and statistics of an earlier build on this instance are not continued
+        startInversion();
 
         buildForwardIndex(documentSource, stopListPath, docIdFile, termsIdFile, docIndexFile, offlineMode); // Build
                                                                                                             // forward
@@ -80,21 +109,407 @@ public class BuildIndexes implements FileNamesInterface {
                                                                                                             // in
                                                                                                             // document
                                                                                                             // source
+        reportDuplicates();
+        writeDocumentStats(); // Document lengths and corpus totals for the ranker
 
-        try { // Using external sort to sort forward index : doc_index.txt
-            DocIndexComparator docIndexComparator = new DocIndexComparator(); // Create doc_index comparator object
-            List<File> fileChunk = ExternalSort.sortInBatch(docIndexFile, docIndexComparator); // Sort chunks of
-                                                                                               // doc_index.txt
-            ExternalSort.mergeSortedFiles(fileChunk, sortedDocIndexFile, docIndexComparator); // Merge sorted chunks of
-                                                                                              // doc_index.txt
+        buildInvertedIndex(); // Invert forward index
+        writeDocumentNorms(); // Document magnitudes for the ranker
+
+        System.out.println("Indexes created in " + indexFolder + " folder in current directory");
+
+    }
+
+
+    /**
+     * Adds documents to indexes built before without rebuilding them
+     * 
+     * New documents get the next document ids and are appended to doc_ids.txt, term_ids.txt and doc_index.txt, their
+     * postings are written to a new segment of the inverted index. Segments are merged in the background afterwards.
+     * Indexes are built from scratch if there are none yet.
+     * documentSource
+     * - a text file containing list of urls to be indexed
+     * - a corpus path containing list of documents stored offline
+     * stoplistPath
+     * - a text file containing list of stop words
+     * offlineMode
+     * - boolean indicating whether generating indexes from online webpages or local files
+     */
+    public void addToIndex (String documentSource, String stopListPath, boolean offlineMode) {
+
+        if (!docIdFile.exists() || !termInfoFile.exists()) { // Nothing to add to
+            buildIndex(documentSource, stopListPath, offlineMode);
+            return;
+        }
+
+        System.out.println("\nAdding documents to indexes....");
+
+        try {
+            loadIndexedTerms();
         } catch (IOException e) {
-            System.err.println("Unable to external sort forward index as I/O exception occured");
+            System.err.println("Could not read file : " + termsIdFile.getAbsolutePath());
+            return;
+        }
+        int firstDocId = docId + 1;
+        startInversion();
+
+        buildForwardIndex(documentSource, stopListPath, docIdFile, termsIdFile, docIndexFile, offlineMode);
+        reportDuplicates();
+        writeDocumentStats();
+
+        int addedDocCount = docId - firstDocId + 1;
+        if (addedDocCount == 0) {
+            invertedIndexer = null;
+            System.out.println("No new documents to add");
+            return;
         }
 
-        buildInvertedIndex(sortedDocIndexFile, termIndexFile, termInfoFile); // Build inverted index
+        File segment = indexSegments.newSegmentFolder();
+        try {
+            invertedIndexer.writeInvertedIndex(IndexSegments.createPostingsWriter(segment, compressedPostings));
+            indexSegments.addSegment(segment, addedDocCount);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(segment);
+            System.err.println("Unable to create index segment as I/O exception occured");
+            return;
+        } finally {
+            invertedIndexer = null;
+        }
+        writeDocumentNorms(); // Average length, document count and document frequencies changed for all documents
+        indexSegments.mergeInBackground(mergeFactor, compressedPostings);
 
-        System.out.println("Indexes created in " + indexFolder + " folder in current directory");
+        System.out.println("Added " + addedDocCount + " documents to indexes in " + indexFolder + " folder as "
+                + segment.getName());
+    }
+
+
+    /**
+     * Crawls from seedUrl and builds indexes from the crawled pages in a single pass
+     * 
+     * Every html page fetched by the crawler goes through a bounded queue straight to tokenization and forward index
+     * writing on the calling thread, so pages are downloaded once and indexing overlaps with network waits of the
+     * crawl. When the indexer falls behind the queue fills up and the crawl waits for it.
+     * crawler
+     * - a configured crawler, allowed domains and limits are used as set
+     * outputFile
+     * - text file receiving crawled urls like a plain crawl
+     * stoplistPath
+     * - a text file containing list of stop words
+     * concurrent
+     * - crawl with the concurrent crawler instead of the sequential one
+     */
+    public void buildIndexFromCrawl (final WebCrawler crawler, final String seedUrl, final String outputFile,
+            String stopListPath, final boolean concurrent) {
+
+        System.out.println("\nCrawling and building indexes....");
+
+        initializeOutputFiles(); // Initialize output files to be initially empty
+        resetBuildState(); // Ids and statistics of an earlier build on this instance are not continued
+        startInversion();
+
+        final BlockingQueue<CrawledDocument> pageQueue = new ArrayBlockingQueue<CrawledDocument>(pageQueueCapacity);
+        crawler.setPageQueue(pageQueue);
+
+        Thread crawlThread = new Thread(new Runnable() {
+
+            @Override
+            public void run () {
+
+                try {
+                    if (concurrent)
+                        crawler.crawlWebPagesConcurrently(seedUrl, outputFile);
+                    else
+                        crawler.crawlWebPages(seedUrl, outputFile);
+                } finally {
+                    try {
+                        pageQueue.put(endOfCrawl); // Let the indexer finish
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "crawler");
+        crawlThread.start();
+
+        boolean indexed = buildForwardIndex(pageQueue, stopListPath, docIdFile, termsIdFile, docIndexFile);
+
+        if (!indexed) // Indexer gave up, stop feeding it
+            crawler.setPageQueue(null);
+        try {
+            while (crawlThread.isAlive()) {
+                if (!indexed) // Release crawl threads still waiting on the full queue
+                    pageQueue.clear();
+                crawlThread.join(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            crawler.setPageQueue(null);
+        }
+
+        if (indexed) {
+            reportDuplicates();
+            writeDocumentStats(); // Document lengths and corpus totals for the ranker
+            buildInvertedIndex(); // Invert forward index
+            writeDocumentNorms(); // Document magnitudes for the ranker
+            System.out.println("Indexes created in " + indexFolder + " folder in current directory");
+        }
+    }
+
+
+    /*
+     * Set count of threads parsing and of threads tokenizing and stemming local corpus files unless set apart
+     * 1 indexes on the calling thread only, unless pipelined with reader threads
+     * Document and term ids do not depend on it
+     */
+    public void setParallelism (int parallelism) {
+
+        this.parallelism = parallelism;
+    }
+
+
+    /*
+     * Set whether local corpus files are read, parsed and analyzed in stages on their own threads, or else parsed and
+     * analyzed in batches by a fork join pool of parallelism threads while the calling thread reads nothing ahead
+     */
+    public void setPipelined (boolean pipelined) {
+
+        this.pipelined = pipelined;
+    }
+
+
+    /*
+     * Set count of threads reading local corpus files ahead of the parse stage when pipelined
+     * 0 with parallelism 1 indexes on the calling thread only, else reads on one thread
+     */
+    public void setReaderThreads (int readerThreads) {
+
+        this.readerThreads = readerThreads;
+    }
+
+
+    /*
+     * Set count of threads parsing the html of local corpus files with Jsoup, 0 uses parallelism
+     */
+    public void setParserThreads (int parserThreads) {
+
+        this.parserThreads = parserThreads;
+    }
+
+
+    /*
+     * Set count of threads tokenizing, filtering and stemming the text of local corpus files, 0 uses parallelism
+     */
+    public void setAnalyzerThreads (int analyzerThreads) {
+
+        this.analyzerThreads = analyzerThreads;
+    }
+
+
+    /*
+     * Set count of documents waiting between two stages when indexing local corpus files on several threads
+     */
+    public void setPipelineQueueCapacity (int pipelineQueueCapacity) {
+
+        this.pipelineQueueCapacity = pipelineQueueCapacity;
+    }
+
+
+    /*
+     * Stages of the last local corpus indexed on several threads with the work counted by each, null if none was
+     */
+    public IndexPipeline getPipeline () {
+
+        return pipeline;
+    }
+
+
+    /*
+     * Set bytes of postings held in memory before they are written to a segment when inverting in memory
+     * 0 inverts by sorting binary forward index records with the default memory budget instead
+     */
+    public void setInversionMemoryBudget (long inversionMemoryBudget) {
+
+        this.inversionMemoryBudget = inversionMemoryBudget;
+    }
+
+
+    /*
+     * Write postings compressed in blocks to term_postings.bin, or else as text to term_index.txt
+     * Readers of the index open whichever was written
+     */
+    public void setCompressedPostings (boolean compressedPostings) {
+
+        this.compressedPostings = compressedPostings;
+    }
+
+
+    /*
+     * Set count of adjacent segments of similar size merged into one when documents are added to the indexes
+     */
+    public void setMergeFactor (int mergeFactor) {
+
+        this.mergeFactor = Math.max(2, mergeFactor);
+    }
+
+
+    /*
+     * Wait for segments of the indexes being merged in the background
+     */
+    public static void waitForMerges () {
+
+        indexSegments.waitForMerges();
+    }
+
+
+    /*
+     * Invert documents with given inverter as they are added to the forward index, null builds the forward index only
+     */
+    public void setInvertedIndexer (DocumentInverter invertedIndexer) {
+
+        this.invertedIndexer = invertedIndexer;
+    }
+
+
+    /*
+     * Stem words through given cache, the cache shared with the ranker unless set
+     */
+    public void setStemCache (StemCache stemCache) {
+
+        this.stemCache = stemCache;
+    }
+
+
+    /*
+     * Use given detector to skip duplicate documents, null indexes every document
+     */
+    public void setDuplicateDetector (DuplicateDetector duplicateDetector) {
+
+        this.duplicateDetector = duplicateDetector;
+    }
+
+
+    /*
+     * Report documents left out of the forward index as duplicates
+     */
+    private void reportDuplicates () {
+
+        if (null != duplicateDetector)
+            System.out.println("Skipped " + duplicateDetector.getExactDuplicates() + " duplicate and "
+                    + duplicateDetector.getNearDuplicates() + " near duplicate documents");
+    }
+
+
+    /*
+     * Write lengths of all documents indexed and corpus totals to doc_stats.bin
+     */
+    private void writeDocumentStats () {
+
+        documentStats.setVocabularySize(termsId);
+        try {
+            documentStats.write(docStatsFile);
+        } catch (IOException e) {
+            docStatsFile.delete(); // The ranker works them out from doc_index.txt instead
+            System.err.println("Unable to write document statistics as I/O exception occured");
+        }
+    }
+
+
+    /*
+     * Write magnitudes of all documents for Okapi TF and TF-IDF to doc_norms.bin from the inverted index and its
+     * segments
+     */
+    private void writeDocumentNorms () {
+
+        try {
+            IndexReader indexReader = indexSegments.openIndexReader(termIndexFile, termPostingsFile, termInfoFile);
+            try {
+                DocumentNorms.compute(indexReader, documentStats).write(docNormsFile);
+            } finally {
+                indexReader.close();
+            }
+        } catch (IOException e) {
+            docNormsFile.delete(); // The ranker works them out from the inverted index instead
+            System.err.println("Unable to write document norms as I/O exception occured");
+        }
+    }
+
+
+    /*
+     * Start document and term ids, document statistics and duplicate detection over for indexes built from scratch
+     */
+    private void resetBuildState () {
+
+        docId = 0;
+        termsId = 0;
+        terms = null; // Created when the forward index is built
+        documentStats = new DocumentStats();
+        if (null != duplicateDetector)
+            duplicateDetector.clear();
+    }
+
+
+    /*
+     * Continue document and term ids and document statistics of indexes built before, from doc_ids.txt, term_ids.txt
+     * and doc_stats.bin
+     */
+    private void loadIndexedTerms () throws IOException {
+
+        terms = TermDictionary.read(termsIdFile);
+        termsId = terms.getMaxId();
+
+        docId = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(docIdFile)); // {docId, document name}
+        try {
+            String line;
+            while (null != (line = reader.readLine()))
+                docId = Math.max(docId, Integer.parseInt(line.substring(0, line.indexOf(seperator))));
+        } finally {
+            reader.close();
+        }
 
+        if (docStatsFile.exists())
+            documentStats = DocumentStats.read(docStatsFile);
+        else // Indexes built before document statistics were written
+            documentStats = DocumentStats.readForwardIndex(docIndexFile, termsIdFile);
+    }
+
+
+    /*
+     * Invert the documents in memory while building the forward index, or sort their records if the memory budget is 0
+     */
+    private void startInversion () {
+
+        if (inversionMemoryBudget > 0)
+            setInvertedIndexer(new SpimiIndexer(segmentFolder, inversionMemoryBudget));
+        else
+            setInvertedIndexer(new SortingInverter(segmentFolder, defaultInversionMemoryBudget));
+    }
+
+
+    /*
+     * Write the inverted index from postings collected while building the forward index
+     */
+    private void buildInvertedIndex () {
+
+        try {
+            invertedIndexer.writeInvertedIndex(createPostingsWriter());
+        } catch (IOException e) {
+            System.err.println("Unable to create inverted index as I/O exception occured");
+        } finally {
+            invertedIndexer = null;
+        }
+    }
+
+
+    /*
+     * Writer for the postings format selected, term_postings.bin for compressed postings or else term_index.txt
+     */
+    private PostingsWriter createPostingsWriter () throws IOException {
+
+        if (compressedPostings)
+            return new BlockPostingsWriter(termPostingsFile, termInfoFile);
+        return new TextPostingsWriter(termIndexFile, termInfoFile);
     }
 
 
@@ -121,49 +536,275 @@ public class BuildIndexes implements FileNamesInterface {
 
         try {
 
-            wordPattern = Pattern.compile(pattern); // Compile pattern to tokenize words
-            stemmer = EnglishSnowballStemmerFactory.getInstance(); // Create Snowball stemmer object
+            if (null == stemCache)
+                stemCache = StemCache.getInstance(); // Snowball stems shared with the ranker
+            analyzer = new Analyzer(stopWords, stemCache); // Tokenize, filter stop words and stem like the ranker
 
             // Initialize writers for output files
             BufferedWriter docIDWriter = new BufferedWriter(new FileWriter(docIdFile.getAbsoluteFile(), true));
             BufferedWriter termsIDWriter = new BufferedWriter(new FileWriter(termsIdFile.getAbsoluteFile(), true));
             BufferedWriter docIndexWriter = new BufferedWriter(new FileWriter(docIndexFile.getAbsoluteFile(), true));
 
-            terms = new HashMap<String, Integer>(); // Store all the terms in corpus
+            if (null == terms) // Not adding to indexes built before
+                terms = new TermDictionary(); // Store all the terms in corpus
+
+            if (offlineMode && PageStoreReader.isPageStore(new File(documentSource))) // Generate indexes offline
+                                                                                      // from a crawler page store
+                indexPageStore(new File(documentSource), stopWords, docIDWriter, termsIDWriter, docIndexWriter);
+            else
+                if (offlineMode) { // Generate indexes offline from local files
+
+                    File[] listOfFiles = utility.getFileHandlers(documentSource); // Get file handlers for all the
+                                                                                  // files in corpus folder
+                    if (null == listOfFiles)
+                        listOfFiles = new File[0];
+                    Arrays.sort(listOfFiles); // Same document ids on every run and file system
+
+                    if (pipelined && (parallelism > 1 || readerThreads > 0)) // Read, parse and analyze in stages,
+                        indexFilesPipelined(listOfFiles, stopWords, docIDWriter, termsIDWriter, docIndexWriter);
+                    else                                                     // ids still given in file order
+                        if (parallelism > 1) // Analyze files in fork join batches, ids still given in file order
+                            indexFilesInParallel(listOfFiles, stopWords, docIDWriter, termsIDWriter, docIndexWriter);
+                        else
+                            for (File corpusFile : listOfFiles) // Process one file at a time
+                            {
+                                if (corpusFile.isFile()) { // Check for valid file
+                                    String corpusFileName = corpusFile.getName(); // Get name of one file
+                                    processDocument(corpusFileName, documentSource, stopWords, docIDWriter,
+                                            termsIDWriter, docIndexWriter, offlineMode);
+                                } else
+                                    System.out.println(corpusFile + " is invalid file"); // Invalid file found
+                            }
+                } else { // Generate indexes online from webpage url's
+                    HashSet<String> urls = utility.getFileWords(new File(documentSource), " "); // Load set of urls
+                                                                                                // from text file
+                    Iterator<String> iterator = urls.iterator();
+                    while (iterator.hasNext())
+                        processDocument(iterator.next(), "", stopWords, docIDWriter, termsIDWriter, docIndexWriter,
+                                offlineMode);
+                }
 
-            if (offlineMode) { // Generate indexes offline from local files
+            // Close output file writers
+            docIDWriter.close();
+            termsIDWriter.close();
+            docIndexWriter.close();
+        } catch (IOException io) {
+            io.printStackTrace();
+            System.err.println("Unable to create forward index as I/O exception occured");
+        } catch (StemmerException se) {
+            se.printStackTrace();
+        }
+
+    }
 
-                File[] listOfFiles = utility.getFileHandlers(documentSource); // Get file handlers for all the files in
-                                                                              // corpus folder
-                for (File corpusFile : listOfFiles) // Process one file at a time
-                {
-                    if (corpusFile.isFile()) { // Check for valid file
-                        String corpusFileName = corpusFile.getName(); // Get name of one file
-                        processDocument(corpusFileName, documentSource, stopWords, docIDWriter, termsIDWriter,
-                                docIndexWriter, offlineMode);
-                    } else
-                        System.out.println(corpusFile + " is invalid file"); // Invalid file found
-                }
-            } else { // Generate indexes online from webpage url's
-                HashSet<String> urls = utility.getFileWords(new File(documentSource), " "); // Load set of urls from
-                                                                                            // text file
-                Iterator<String> iterator = urls.iterator();
-                while (iterator.hasNext())
-                    processDocument(iterator.next(), "", stopWords, docIDWriter, termsIDWriter, docIndexWriter,
-                            offlineMode);
-            }
+
+    /**
+     * Builds forward index, doc_ids.txt and term_ids.txt like above from pages taken off pageQueue as they are crawled
+     * Returns once the end of crawl marker is taken, false if indexing had to be abandoned
+     */
+    public boolean buildForwardIndex (BlockingQueue<CrawledDocument> pageQueue, String stopListSource,
+            File docIdFile, File termsIdFile, File docIndexFile) {
+
+        Utilities utility = new Utilities(); // Create utility object
+        HashSet<String> stopWords = utility.getFileWords(new File(stopListSource), null); // Load stop words
+
+        try {
+
+            if (null == stemCache)
+                stemCache = StemCache.getInstance(); // Snowball stems shared with the ranker
+            analyzer = new Analyzer(stopWords, stemCache); // Tokenize, filter stop words and stem like the ranker
+
+            // Initialize writers for output files
+            BufferedWriter docIDWriter = new BufferedWriter(new FileWriter(docIdFile.getAbsoluteFile(), true));
+            BufferedWriter termsIDWriter = new BufferedWriter(new FileWriter(termsIdFile.getAbsoluteFile(), true));
+            BufferedWriter docIndexWriter = new BufferedWriter(new FileWriter(docIndexFile.getAbsoluteFile(), true));
+
+            if (null == terms) // Not adding to indexes built before
+                terms = new TermDictionary(); // Store all the terms in corpus
+
+            CrawledDocument page;
+            while (endOfCrawl != (page = pageQueue.take())) // Index pages in the order they were crawled
+                indexDocument(page.getUrl(), page.getDocument(), stopWords, docIDWriter, termsIDWriter,
+                        docIndexWriter);
 
             // Close output file writers
             docIDWriter.close();
             termsIDWriter.close();
             docIndexWriter.close();
+            return true;
         } catch (IOException io) {
             io.printStackTrace();
             System.err.println("Unable to create forward index as I/O exception occured");
         } catch (StemmerException se) {
             se.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return false;
+    }
+
+
+    /*
+     * Index corpus files through read, parse, analyze and write stages on their own threads, the calling thread
+     * giving document and term ids in file order and writing, so the output is the same as indexing the files one at a
+     * time
+     */
+    private void indexFilesPipelined (File[] corpusFiles, HashSet<String> stopWords, BufferedWriter docIDWriter,
+            BufferedWriter termsIDWriter, BufferedWriter docIndexWriter) throws IOException, StemmerException {
+
+        pipeline = new IndexPipeline(this, corpusFiles, stopWords, readerThreads, parserThreads > 0 ? parserThreads
+                : parallelism, analyzerThreads > 0 ? analyzerThreads : parallelism, pipelineQueueCapacity);
+        pipeline.run(docIDWriter, termsIDWriter, docIndexWriter);
+    }
+
+
+
+    /*
+     * Index corpus files with a fork join pool of parallelism threads
+     * Files are taken in batches: the pool parses, tokenizes and stems a batch while the calling thread gives the
+     * previous batch document and term ids in file order and writes it, so the output is the same as indexing the files
+     * one at a time
+     */
+    private void indexFilesInParallel (File[] corpusFiles, HashSet<String> stopWords, BufferedWriter docIDWriter,
+            BufferedWriter termsIDWriter, BufferedWriter docIndexWriter) throws IOException, StemmerException {
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final HashSet<String> analyzedStopWords = stopWords;
+        ThreadLocal<Analyzer> analyzers = new ThreadLocal<Analyzer>() {
+
+            @Override
+            protected Analyzer initialValue () {
+
+                return new Analyzer(analyzedStopWords, stemCache);
+            }
+        };
 
+        try {
+            AnalyzeTask pending = null;
+            int batchStart = 0;
+            while (batchStart < corpusFiles.length || null != pending) {
+
+                AnalyzeTask next = null;
+                if (batchStart < corpusFiles.length) { // Start on the next batch before writing the pending one
+                    int batchEnd = Math.min(batchStart + parallelBatchSize, corpusFiles.length);
+                    next = new AnalyzeTask(corpusFiles, batchStart, batchEnd, analyzers);
+                    pool.execute(next);
+                    batchStart = batchEnd;
+                }
+
+                if (null != pending) {
+                    pending.join();
+                    for (int index = 0; index < pending.documents.length; index++) {
+                        File corpusFile = corpusFiles[pending.start + index];
+                        if (null != pending.failures[index]) // Same failure as the sequential build, in file order
+                            throwFailure(pending.failures[index]);
+                        if (corpusFile.isFile()) {
+                            if (null != pending.documents[index])
+                                addDocument(pending.documents[index], docIDWriter, termsIDWriter, docIndexWriter);
+                        } else
+                            System.out.println(corpusFile + " is invalid file"); // Invalid file found
+                    }
+                }
+                pending = next;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+    /*
+     * Throw a failure caught on another thread while analyzing a file
+     */
+    static void throwFailure (Exception failure) throws IOException, StemmerException {
+
+        if (failure instanceof StemmerException)
+            throw (StemmerException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        throw (IOException) failure;
+    }
+
+
+    /**
+     * Analyzes corpus files from start to end into documents, splitting the range in halves down to a few files
+     */
+    private class AnalyzeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int leafSize = 4; // Files analyzed by a task without splitting
+
+        final int start;
+        final AnalyzedDocument[] documents;
+        final Exception[] failures;
+        private final File[] corpusFiles;
+        private final int from;
+        private final int to;
+        private final ThreadLocal<Analyzer> analyzers; // Analyzer of each pool thread
+
+
+        AnalyzeTask (File[] corpusFiles, int start, int end, ThreadLocal<Analyzer> analyzers) {
+
+            this(corpusFiles, start, end, new AnalyzedDocument[end - start], new Exception[end - start], start,
+                    analyzers);
+        }
+
+
+        private AnalyzeTask (File[] corpusFiles, int from, int to, AnalyzedDocument[] documents, Exception[] failures,
+                int start, ThreadLocal<Analyzer> analyzers) {
+
+            this.corpusFiles = corpusFiles;
+            this.from = from;
+            this.to = to;
+            this.documents = documents;
+            this.failures = failures;
+            this.start = start;
+            this.analyzers = analyzers;
+        }
+
+
+        @Override
+        protected void compute () {
+
+            if (to - from > leafSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AnalyzeTask(corpusFiles, from, middle, documents, failures, start, analyzers),
+                        new AnalyzeTask(corpusFiles, middle, to, documents, failures, start, analyzers));
+                return;
+            }
+
+            for (int index = from; index < to; index++) {
+                File corpusFile = corpusFiles[index];
+                if (!corpusFile.isFile())
+                    continue;
+                try {
+                    String parsedText = Jsoup.parse(removeFileHeader(corpusFile)).text();
+                    documents[index - start] = analyzeDocument(corpusFile.getName(), parsedText, analyzers.get());
+                } catch (IOException e) {
+                    failures[index - start] = e;
+                } catch (StemmerException e) {
+                    failures[index - start] = e;
+                }
+            }
+        }
+    }
+
+
+    /*
+     * Index every page of a crawler page store, reading the store files sequentially
+     */
+    public void indexPageStore (File storeDirectory, HashSet<String> stopWords, BufferedWriter docIDWriter,
+            BufferedWriter termsIDWriter, BufferedWriter docIndexWriter) throws IOException, StemmerException {
+
+        PageStoreReader pageStore = new PageStoreReader(storeDirectory);
+        try {
+            FetchedPage page;
+            while (null != (page = pageStore.next())) // Pages come back in the order they were stored
+                indexDocument(page.getUrl(), Jsoup.parse(page.getContent(), page.getUrl()), stopWords, docIDWriter,
+                        termsIDWriter, docIndexWriter);
+        } finally {
+            pageStore.close();
+        }
     }
 
 
@@ -174,57 +815,111 @@ public class BuildIndexes implements FileNamesInterface {
             BufferedWriter docIDWriter, BufferedWriter termsIDWriter, BufferedWriter docIndexWriter, boolean offlineMode)
             throws IOException, StemmerException {
 
-        int wordPosition = 0; // Reinitialize word position start to 0 for each document
-
-        docIDWriter.write(++docId + seperator + fileName + newLine); // Write a document name and its id to docids.txt
-                                                                     // file
-
-        ArrayList<Integer> positions; // Store all positions for given term in a document
-        HashMap<Integer, ArrayList<Integer>> docTerms = new HashMap<Integer, ArrayList<Integer>>(); // Store all
-                                                                                                    // term-positions
-                                                                                                    // pair in a
-                                                                                                    // document
-
         Document doc;
         if (offlineMode)
             doc = Jsoup.parse(removeFileHeader(new File(documentSource + "/" + fileName))); // Get the document with
                                                                                             // header removed using
                                                                                             // Jsoup
-        else
-            doc = Jsoup.connect(fileName).userAgent("Mozilla").timeout(3000).get(); // Get the document associated with
-                                                                                    // given url using Jsoup
+        else {
+            FetchedPage page = PageFetcher.getInstance().fetch(fileName, true); // Get the page associated with given
+                                                                                // url using the shared fetcher
+            if (!page.isHtml())
+                throw new IOException("Could not fetch html page: " + fileName + " (status " + page.getStatusCode()
+                        + ")");
+            doc = Jsoup.parse(page.getContent(), page.getUrl()); // Parse fetched page using Jsoup
+        }
+
+        indexDocument(fileName, doc, stopWords, docIDWriter, termsIDWriter, docIndexWriter);
+    }
+
+
+    /*
+     * Index an already parsed document under given name, extracting all the terms and associated positions within the
+     * document
+     * Returns false without assigning a document id if the document duplicates or nearly duplicates one indexed before
+     */
+    public boolean indexDocument (String documentName, Document doc, HashSet<String> stopWords,
+            BufferedWriter docIDWriter, BufferedWriter termsIDWriter, BufferedWriter docIndexWriter)
+            throws IOException, StemmerException {
 
         String parsedText = doc.text(); // Extract the text from parsed Jsoup document
 
-        Matcher matchedWords = wordPattern.matcher(parsedText); // Extract set of words matching given pattern
-        while (matchedWords.find()) {
+        if (null == analyzer) { // Not called from buildForwardIndex
+            if (null == stemCache)
+                stemCache = StemCache.getInstance();
+            analyzer = new Analyzer(stopWords, stemCache);
+        }
+        return addDocument(analyzeDocument(documentName, parsedText, analyzer), docIDWriter, termsIDWriter,
+                docIndexWriter);
+    }
+
 
-            wordPosition++; // Increment the word counter
+    /*
+     * Tokenize, filter and stem the text of a document, the part of indexing that needs no shared state
+     * analyzer : analyzer owned by the calling thread
+     */
+    AnalyzedDocument analyzeDocument (String documentName, String parsedText, Analyzer analyzer)
+            throws StemmerException {
 
-            String matched = matchedWords.group().toLowerCase(); // Returns input subsequence matched by the previous
-                                                                 // match
-            if (!stopWords.contains(matched)) { // Filter Stop Words
+        String[] terms = new String[Math.max(16, parsedText.length() / 6)]; // About one term every 6 characters
+        int[] positions = new int[terms.length];
+        int termCount = 0;
+        DuplicateDetector.SimHash simHash = new DuplicateDetector.SimHash(); // Fingerprint of the token stream
 
-                matched = stemmer.process(matched); // Create tokens using snowball stemmer
+        analyzer.reset(parsedText);
+        while (analyzer.next()) { // Stop words are left out but counted in positions
 
-                if (!terms.containsKey(matched)) { // Unique term found
-                    ++termsId; // Increment unique terms count
-                    terms.put(matched, termsId); // Put unique terms in hash map
-                    termsIDWriter.write(termsId + seperator + matched + newLine); // Write unique terms to termids.txt
-                }
+            String term = analyzer.getTerm(); // Lower cased and stemmed word
 
-                int termKey = terms.get(matched); // Extract termID for given term from hash map
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, termCount * 2);
+                positions = Arrays.copyOf(positions, termCount * 2);
+            }
+            terms[termCount] = term;
+            positions[termCount++] = analyzer.getPosition();
+            simHash.add(term);
+        }
 
-                if (!docTerms.containsKey(termKey)) // Unique term found
-                    docTerms.put(termKey, new ArrayList<Integer>()); // Initialize position array list for unique term
+        return new AnalyzedDocument(documentName, DuplicateDetector.contentHash(parsedText), simHash.getFingerprint(),
+                terms, positions, termCount);
+    }
+
+
+    /*
+     * Give an analyzed document the next document id, give its new terms ids and write it to the forward index
+     * Returns false without assigning a document id if the document duplicates or nearly duplicates one indexed before
+     */
+    boolean addDocument (AnalyzedDocument document, BufferedWriter docIDWriter, BufferedWriter termsIDWriter,
+            BufferedWriter docIndexWriter) throws IOException {
 
-                positions = docTerms.get(termKey); // Extract existing position list for current term
-                positions.add(wordPosition); // Add new position to position list for given term
+        if (null != duplicateDetector && !duplicateDetector.addContentHash(document.contentHash)) // Same text indexed
+            return false;                                                                        // before
+        if (null != duplicateDetector && !duplicateDetector.addFingerprint(document.fingerprint)) // Near duplicate
+            return false;
+
+        docIDWriter.write(++docId + seperator + document.name + newLine); // Write a document name and its id to
+                                                                          // docids.txt file
+        documentStats.addDocument(docId, document.termCount);
+
+        docTerms.clear(); // Reused for every document
+        for (int index = 0; index < document.termCount; index++) {
+
+            String token = document.terms[index];
+            int termKey = terms.get(token); // Extract termID for given term from the dictionary
+
+            if (0 == termKey) { // Unique term found
+                termKey = ++termsId; // Increment unique terms count
+                terms.put(token, termKey); // Put unique terms in the dictionary
+                termsIDWriter.write(termsId + seperator + token + newLine); // Write unique terms to termids.txt
             }
+
+            docTerms.addPosition(termKey, document.positions[index]); // Terms kept in order of first occurrence
         }
 
         writeDocIndex(docId, docTerms, docIndexWriter); // Write doc index for current document
-        docTerms = null;
+        if (null != invertedIndexer)
+            invertedIndexer.addDocument(docId, docTerms); // Add postings to the in memory inverted index
+        return true;
     }
 
 
@@ -232,23 +927,39 @@ public class BuildIndexes implements FileNamesInterface {
      * Write forward index: doc_index one document at a time
      * 	{docId, termId, [list of term positions within document...]}
      */
-    public void writeDocIndex (int docId, HashMap<Integer, ArrayList<Integer>> docTerms, BufferedWriter docIndexWriter)
-            throws IOException {
+    public void writeDocIndex (int docId, DocumentTerms docTerms, BufferedWriter docIndexWriter) throws IOException {
 
-        // Process termId, List<positions>
-        for (Map.Entry<Integer, ArrayList<Integer>> entry : docTerms.entrySet()) { // Iterate each term in a document
-                                                                                   // one by one
+        for (int index = 0; index < docTerms.size(); index++) { // Iterate each term in a document one by one
 
-            docIndexWriter.write(docId + seperator + entry.getKey()); // Write document id, term name to doc_index
-            for (Integer position : entry.getValue())
-                // Iterate over each term positions
-                docIndexWriter.write(seperator + position); // Write one position at a time to doc_index
+            writeNumber(docId, docIndexWriter); // Write document id, term id to doc_index
+            docIndexWriter.write(seperator);
+            writeNumber(docTerms.getTermId(index), docIndexWriter);
+
+            int[] positions = docTerms.getPositions(index);
+            for (int position = 0; position < docTerms.getPositionCount(index); position++) {
+                docIndexWriter.write(seperator); // Write one position at a time to doc_index
+                writeNumber(positions[position], docIndexWriter);
+            }
 
             docIndexWriter.newLine(); // Write a new line after each term to doc_index
         }
     }
 
 
+    /*
+     * Write the digits of a non negative number without making a String
+     */
+    private void writeNumber (int number, BufferedWriter writer) throws IOException {
+
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + number % 10);
+            number /= 10;
+        } while (number > 0);
+        writer.write(digits, start, digits.length - start);
+    }
+
+
     /*
      * Function to strip of file header(here the pattern used is consecutive occurrence of 2 new lines)                                                        
      */
@@ -265,93 +976,6 @@ public class BuildIndexes implements FileNamesInterface {
     }
 
 
-    /*
-     * Process a forward index to form a word level inverted index(documents & positions) : term_index.txt and term_info.txt
-     * using forward index sorted by term id
-     */
-    public void buildInvertedIndex (File sortedDocIndexFile, File termIndexFile, File termInfoFile) {
-
-        try {
-
-            RandomAccessFile indexFile = new RandomAccessFile(termIndexFile, "rw"); // Read term_index file in random
-                                                                                    // read/write access mode
-            BufferedReader sortedDocIndexReader = new BufferedReader(new FileReader(
-                    sortedDocIndexFile.getAbsoluteFile())); // Read doc_index.txt
-            BufferedWriter termInfoWriter = new BufferedWriter(new FileWriter(termInfoFile.getAbsoluteFile(), true)); // Writer
-                                                                                                                      // for
-                                                                                                                      // term_info.txt
-
-            // Variables to track information to write to term_info.txt
-            int docCount = 0;
-            int posCount = 0;
-            int previousDocId = 0;
-            String previousTermId = "1";
-            long offset = indexFile.getFilePointer();
-            String line = "";
-
-            indexFile.writeBytes(previousTermId + ""); // Write first term id
-            while (null != (line = sortedDocIndexReader.readLine())) { // Read doc_index.txt one line at a time
-
-                String[] tokens = line.split(seperator); // Split input file on tokens
-
-                int currentDocId = Integer.parseInt(tokens[0]); // Extract doc id
-                String currentTermId = tokens[1]; // Extract term id
-
-                if (!currentTermId.equals(previousTermId)) { // Encountered new term
-
-                    // Write term_info for previous term
-                    termInfoWriter.write(previousTermId + seperator + offset + seperator + posCount + seperator
-                            + docCount + newLine);
-
-                    // Start processing new term
-                    indexFile.writeBytes(newLine); // Start new line for new term
-                    offset = indexFile.getFilePointer(); // Get current offset of term_index file for term_info
-                    indexFile.writeBytes(currentTermId + ""); // Write term index to term_index.txt
-
-                    // Reset variables for new term
-                    posCount = 0;
-                    docCount = 0;
-                    previousDocId = 0;
-                    previousTermId = currentTermId;
-                }
-
-                indexFile.write((seperator + (currentDocId - previousDocId) + ":" + tokens[2]).getBytes()); // Write
-                                                                                                            // first
-                                                                                                            // delta
-                                                                                                            // encoded
-                                                                                                            // doc:position
-                                                                                                            // pair
-
-                int docPosCount;
-                int previousPosition = Integer.parseInt(tokens[2]);
-                for (docPosCount = 3; docPosCount < tokens.length; docPosCount++) {
-                    int currentPosition = Integer.parseInt(tokens[docPosCount]);
-                    indexFile.writeBytes(seperator + 0 + ":" + (currentPosition - previousPosition)); // Write delta
-                                                                                                      // position to
-                                                                                                      // term_index.txt
-                    previousPosition = currentPosition; // Update previous position
-                }
-
-                docCount++; // Update document count for current term
-                posCount += docPosCount - 2; // Add current document occurrence to total term occurrence
-                previousDocId = currentDocId; // Update previous doc id to refer to current doc id
-            }
-
-            // Write term_info for last term
-            termInfoWriter.write(previousTermId + seperator + offset + seperator + posCount + seperator + docCount
-                    + newLine);
-
-            // Close file readers/writers
-            indexFile.close();
-            termInfoWriter.close();
-            sortedDocIndexReader.close();
-
-        } catch (IOException e) {
-            System.err.println("Unable to create inverted index as I/O exception occured");
-        }
-    }
-
-
     /*
      * Initialize the output files
      * 	- Create folder containing all the indexes
@@ -362,11 +986,15 @@ public class BuildIndexes implements FileNamesInterface {
         Utilities utility = new Utilities(); // Create utility object
 
         new File(indexFolder).mkdirs(); // Create folder to store all indexes
+        indexSegments.clear(); // Remove segments added to indexes built before
         utility.initializeFile(docIdFile); // Initialize docids.txt
         utility.initializeFile(docIndexFile); // Initialize doc_index.txt
+        docStatsFile.delete(); // Written once the forward index is built
+        docNormsFile.delete(); // Written once the inverted index is built
         utility.initializeFile(termsIdFile); // Initialize termids.txt
         utility.initializeFile(termIndexFile); // Initialize term_index.txt
         utility.initializeFile(termInfoFile); // Initialize term info file
+        termPostingsFile.delete(); // Only written for compressed postings, readers look for it
     }
 
 }
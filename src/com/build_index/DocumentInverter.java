@@ -0,0 +1,29 @@
+package com.build_index;
+
+import java.io.IOException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Collects postings of documents as they are added to the forward index and writes them out as the inverted
+ *         index once all documents are in
+ *
+ *         Documents must be added in increasing id order.
+ */
+public interface DocumentInverter {
+
+    /*
+     * Add postings of a document {termId, [list of term positions within document...]}, docTerms is reused for the
+     * next document once this returns
+     */
+    void addDocument (int docId, DocumentTerms docTerms) throws IOException;
+
+
+    /*
+     * Write the inverted index from postings of all documents added with given writer, close it and delete any
+     * temporary files
+     */
+    void writeInvertedIndex (PostingsWriter writer) throws IOException;
+
+}
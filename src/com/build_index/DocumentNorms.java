@@ -0,0 +1,179 @@
+package com.build_index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Vector magnitude of every document for cosine scoring with Okapi TF and with TF-IDF, written to
+ *         doc_norms.bin once the inverted index is built so the ranker does not work them out from all terms of every
+ *         relevant document on every query
+ *
+ *         The magnitude of a document sums a component for each of its terms, and the components depend on the
+ *         average document length, the document count and the document frequency of every term. Adding documents
+ *         changes all of those, so magnitudes are worked out again over the whole index each time.
+ *
+ *         doc_norms.bin holds {magic, document count, Okapi TF magnitude of each document in id order, TF-IDF
+ *         magnitude of each document in id order}, big endian floats.
+ */
+public class DocumentNorms {
+
+    private static final int magic = 0x444E5231; // "DNR1"
+    private static final double logBase2 = Math.log(2);
+
+    private final int documentCount;
+    private final float[] okapiTFNorms; // Indexed by document id, 0 is not used
+    private final float[] tfIdfNorms;
+
+
+    /*
+     * Magnitudes of an empty index
+     */
+    public DocumentNorms () {
+
+        this(0, new float[1], new float[1]);
+    }
+
+
+    private DocumentNorms (int documentCount, float[] okapiTFNorms, float[] tfIdfNorms) {
+
+        this.documentCount = documentCount;
+        this.okapiTFNorms = okapiTFNorms;
+        this.tfIdfNorms = tfIdfNorms;
+    }
+
+
+    /*
+     * Okapi TF component of a term occurring frequency times in a document or query
+     * ratio : length of the document or query over the average length
+     */
+    public static double okapiTF (int frequency, double ratio) {
+
+        return (frequency / (frequency + 0.5 + 1.5 * ratio)); // okapi term vector formula
+    }
+
+
+    /*
+     * Inverse document frequency, log base 2, of a term contained in docFrequency of documentCount documents
+     */
+    public static double idf (int documentCount, int docFrequency) {
+
+        return Math.log(documentCount / docFrequency) / logBase2; // Integer division like the TF-IDF model always had
+    }
+
+
+    /*
+     * Work out the magnitudes of all documents from the postings of every term in the index and its segments
+     */
+    public static DocumentNorms compute (IndexReader indexReader, DocumentStats documentStats) throws IOException {
+
+        int documentCount = documentStats.getDocumentCount();
+        int[] docLengths = documentStats.getDocLengths();
+        double avgDocLength = documentStats.getAvgDocLength();
+        double[] okapiTFSquares = new double[documentCount + 1];
+        double[] tfIdfSquares = new double[documentCount + 1];
+
+        for (int termId = 1; termId <= indexReader.getMaxTermId(); termId++) {
+            if (!indexReader.contains(termId))
+                continue;
+            double termIdf = idf(documentCount, indexReader.getDocCount(termId));
+            TermPostings postings = indexReader.getPostings(termId);
+            while (postings.nextDoc()) {
+                int docId = postings.getDocId();
+                if (docId > documentCount) // Not counted in the statistics
+                    continue;
+                double component = okapiTF(postings.getFrequency(), docLengths[docId] / avgDocLength);
+                okapiTFSquares[docId] += component * component;
+                tfIdfSquares[docId] += component * component * termIdf;
+            }
+        }
+
+        float[] okapiTFNorms = new float[documentCount + 1];
+        float[] tfIdfNorms = new float[documentCount + 1];
+        for (int docId = 1; docId <= documentCount; docId++) {
+            okapiTFNorms[docId] = (float) Math.sqrt(okapiTFSquares[docId]);
+            tfIdfNorms[docId] = (float) Math.sqrt(tfIdfSquares[docId]);
+        }
+        return new DocumentNorms(documentCount, okapiTFNorms, tfIdfNorms);
+    }
+
+
+    public int getDocumentCount () {
+
+        return documentCount;
+    }
+
+
+    /*
+     * Okapi TF magnitudes indexed by document id
+     */
+    public float[] getOkapiTFNorms () {
+
+        return okapiTFNorms;
+    }
+
+
+    /*
+     * TF-IDF magnitudes indexed by document id
+     */
+    public float[] getTfIdfNorms () {
+
+        return tfIdfNorms;
+    }
+
+
+    /*
+     * Write the magnitudes to given file
+     */
+    public void write (File normsFile) throws IOException {
+
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(normsFile),
+                1 << 16));
+        try {
+            stream.writeInt(magic);
+            stream.writeInt(documentCount);
+            for (int docId = 1; docId <= documentCount; docId++)
+                stream.writeFloat(okapiTFNorms[docId]);
+            for (int docId = 1; docId <= documentCount; docId++)
+                stream.writeFloat(tfIdfNorms[docId]);
+        } finally {
+            stream.close();
+        }
+    }
+
+
+    /*
+     * Read magnitudes written to given file
+     */
+    public static DocumentNorms read (File normsFile) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(normsFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != magic)
+                throw new IOException("Not a document norms file : " + normsFile.getAbsolutePath());
+            int documentCount = buffer.getInt();
+            if (buffer.remaining() < documentCount * 8L)
+                throw new IOException("Truncated document norms file : " + normsFile.getAbsolutePath());
+
+            float[] okapiTFNorms = new float[documentCount + 1];
+            float[] tfIdfNorms = new float[documentCount + 1];
+            buffer.asFloatBuffer().get(okapiTFNorms, 1, documentCount);
+            buffer.position(buffer.position() + documentCount * 4);
+            buffer.asFloatBuffer().get(tfIdfNorms, 1, documentCount);
+            return new DocumentNorms(documentCount, okapiTFNorms, tfIdfNorms);
+        } finally {
+            file.close();
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.build_index;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Length of every document and totals of the corpus the ranking models need, written by the indexer to
+ *         doc_stats.bin so the ranker does not scan doc_index.txt to work them out
+ *
+ *         doc_stats.bin holds {magic, document count, vocabulary size, corpus term count, average document length,
+ *         length of each document in id order}, big endian. The length of a document is the count of its terms that
+ *         are not stop words, the same as the positions of all its doc_index.txt lines.
+ */
+public class DocumentStats {
+
+    private static final int magic = 0x44535431; // "DST1"
+    private static final String seperator = "\t";
+
+    private int[] docLengths; // Indexed by document id, 0 is not used
+    private int documentCount = 0; // Highest document id
+    private long corpusTermCount = 0;
+    private int vocabularySize = 0;
+
+
+    public DocumentStats () {
+
+        this.docLengths = new int[1024];
+    }
+
+
+    private DocumentStats (int[] docLengths, int documentCount, long corpusTermCount, int vocabularySize) {
+
+        this.docLengths = docLengths;
+        this.documentCount = documentCount;
+        this.corpusTermCount = corpusTermCount;
+        this.vocabularySize = vocabularySize;
+    }
+
+
+    /*
+     * Add a document of given length, documents are added in increasing id order
+     */
+    public void addDocument (int docId, int length) {
+
+        if (docId >= docLengths.length)
+            docLengths = Arrays.copyOf(docLengths, Math.max(docId + 1, docLengths.length * 2));
+        docLengths[docId] = length;
+        documentCount = Math.max(documentCount, docId);
+        corpusTermCount += length;
+    }
+
+
+    public void setVocabularySize (int vocabularySize) {
+
+        this.vocabularySize = vocabularySize;
+    }
+
+
+    /*
+     * Lengths of all documents indexed by document id
+     */
+    public int[] getDocLengths () {
+
+        return docLengths;
+    }
+
+
+    public int getDocumentCount () {
+
+        return documentCount;
+    }
+
+
+    public long getCorpusTermCount () {
+
+        return corpusTermCount;
+    }
+
+
+    public double getAvgDocLength () {
+
+        return documentCount == 0 ? 0 : (double) corpusTermCount / documentCount;
+    }
+
+
+    public int getVocabularySize () {
+
+        return vocabularySize;
+    }
+
+
+    /*
+     * Write the statistics to given file
+     */
+    public void write (File statsFile) throws IOException {
+
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(statsFile),
+                1 << 16));
+        try {
+            stream.writeInt(magic);
+            stream.writeInt(documentCount);
+            stream.writeInt(vocabularySize);
+            stream.writeLong(corpusTermCount);
+            stream.writeDouble(getAvgDocLength());
+            for (int docId = 1; docId <= documentCount; docId++)
+                stream.writeInt(docLengths[docId]);
+        } finally {
+            stream.close();
+        }
+    }
+
+
+    /*
+     * Read statistics written to given file
+     */
+    public static DocumentStats read (File statsFile) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(statsFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 28 || buffer.getInt() != magic)
+                throw new IOException("Not a document statistics file : " + statsFile.getAbsolutePath());
+            int documentCount = buffer.getInt();
+            int vocabularySize = buffer.getInt();
+            long corpusTermCount = buffer.getLong();
+            buffer.getDouble(); // Average document length, worked out again from the counts
+            if (buffer.remaining() < documentCount * 4L)
+                throw new IOException("Truncated document statistics file : " + statsFile.getAbsolutePath());
+
+            int[] docLengths = new int[documentCount + 1];
+            buffer.asIntBuffer().get(docLengths, 1, documentCount);
+            return new DocumentStats(docLengths, documentCount, corpusTermCount, vocabularySize);
+        } finally {
+            file.close();
+        }
+    }
+
+
+    /*
+     * Work the statistics out from the forward index and term ids of indexes built without doc_stats.bin
+     */
+    public static DocumentStats readForwardIndex (File docIndexFile, File termsIdFile) throws IOException {
+
+        DocumentStats stats = new DocumentStats();
+        BufferedReader reader = new BufferedReader(new FileReader(docIndexFile)); // {docId, termId, positions...}
+        try {
+            String line;
+            while (null != (line = reader.readLine())) {
+                int docIdEnd = line.indexOf(seperator);
+                if (docIdEnd < 0)
+                    continue;
+                int positionCount = 0;
+                for (int index = line.indexOf(seperator, docIdEnd + 1); index >= 0; index = line.indexOf(
+                        seperator, index + 1))
+                    positionCount++;
+                int docId = Integer.parseInt(line.substring(0, docIdEnd));
+                int length = docId < stats.docLengths.length ? stats.docLengths[docId] : 0;
+                stats.corpusTermCount -= length; // Replaced by the length with this line
+                stats.addDocument(docId, length + positionCount);
+            }
+        } finally {
+            reader.close();
+        }
+
+        reader = new BufferedReader(new FileReader(termsIdFile)); // One line per term
+        try {
+            while (null != reader.readLine())
+                stats.vocabularySize++;
+        } finally {
+            reader.close();
+        }
+        return stats;
+    }
+
+}
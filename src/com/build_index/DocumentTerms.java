@@ -0,0 +1,138 @@
+package com.build_index;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Term ids of one document with the positions of each term within it, in order of first occurrence
+ *
+ *         Replaces a map of boxed term ids to lists of boxed positions: term ids are kept in an open addressing table
+ *         with linear probing, positions in growable int arrays. The indexer keeps one instance and clears it for each
+ *         document, so the table and position arrays are reused and indexing a document allocates nothing here once
+ *         they have grown to fit the largest document. Slots of the table are stamped with the document they belong
+ *         to, so clearing is constant time.
+ */
+public class DocumentTerms {
+
+    private int[] termIds = new int[256]; // Terms in order of first occurrence
+    private int[][] positions = new int[256][]; // Positions of each term, kept for reuse after clear
+    private int[] positionCounts = new int[256];
+    private int size = 0;
+
+    private int[] slots = new int[512]; // Index of a term in termIds
+    private int[] stamps = new int[512]; // Slot is in use when stamped with the current generation
+    private int generation = 1;
+
+
+    /*
+     * Empty the document, keeping all arrays for the next one
+     */
+    public void clear () {
+
+        size = 0;
+        if (++generation == 0) { // Stamps wrapped around
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+
+    /*
+     * Add a position of given term, positions of a term are added in increasing order
+     */
+    public void addPosition (int termId, int position) {
+
+        int mask = slots.length - 1;
+        int slot = mix(termId) & mask;
+        while (stamps[slot] == generation) {
+            int index = slots[slot];
+            if (termIds[index] == termId) {
+                int count = positionCounts[index];
+                if (count == positions[index].length)
+                    positions[index] = Arrays.copyOf(positions[index], count * 2);
+                positions[index][count] = position;
+                positionCounts[index] = count + 1;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == termIds.length) {
+            termIds = Arrays.copyOf(termIds, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
+            positionCounts = Arrays.copyOf(positionCounts, size * 2);
+        }
+        if (null == positions[size])
+            positions[size] = new int[4];
+        termIds[size] = termId;
+        positions[size][0] = position;
+        positionCounts[size] = 1;
+        slots[slot] = size;
+        stamps[slot] = generation;
+
+        if (++size * 2 > slots.length)
+            growTable();
+    }
+
+
+    /*
+     * Count of distinct terms in the document
+     */
+    public int size () {
+
+        return size;
+    }
+
+
+    /*
+     * Id of the term added index-th
+     */
+    public int getTermId (int index) {
+
+        return termIds[index];
+    }
+
+
+    /*
+     * Positions of the term added index-th, only the first getPositionCount(index) are set
+     */
+    public int[] getPositions (int index) {
+
+        return positions[index];
+    }
+
+
+    public int getPositionCount (int index) {
+
+        return positionCounts[index];
+    }
+
+
+    private void growTable () {
+
+        slots = new int[slots.length * 2];
+        stamps = new int[slots.length];
+        generation = 1;
+        int mask = slots.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = mix(termIds[index]) & mask;
+            while (stamps[slot] == generation)
+                slot = (slot + 1) & mask;
+            slots[slot] = index;
+            stamps[slot] = generation;
+        }
+    }
+
+
+    /*
+     * Spread consecutive term ids over the table
+     */
+    private static int mix (int termId) {
+
+        int hash = termId * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
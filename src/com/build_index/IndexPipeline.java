@@ -0,0 +1,410 @@
+package com.build_index;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.Jsoup;
+import org.tartarus.snowball.util.StemmerException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Indexes corpus files through read, parse, analyze and write stages running on their own threads, so disk
+ *         reads of some files overlap parsing and stemming of others
+ *
+ *         read - reads files and strips their header, waiting on the disk
+ *         parse - parses the html with Jsoup and extracts its text
+ *         analyze - tokenizes, filters stop words and stems the text
+ *         write - gives documents and terms ids in file order on the calling thread and writes the forward index
+ *
+ *         Stages hand documents over through bounded queues. Files are read at most a window ahead of the one being
+ *         written, so documents finishing out of order wait for the write stage without growing without bound, and
+ *         the output is the same as indexing the files one at a time. Each stage counts time spent working, waiting for
+ *         documents and blocked on a full queue, and samples the depth of the queue it takes documents from.
+ */
+public class IndexPipeline {
+
+    private final BuildIndexes indexer;
+    private final File[] corpusFiles;
+    private final ThreadLocal<Analyzer> analyzers; // Analyzer of each analyze thread
+    private final int windowSize; // Files read ahead of the one being written at most
+    private final Semaphore window; // Files read and not yet written
+    private final AtomicInteger nextFile = new AtomicInteger(); // Next file to read
+    private final BlockingQueue<PipelineDocument> parseQueue;
+    private final BlockingQueue<PipelineDocument> analyzeQueue;
+    private final BlockingQueue<PipelineDocument> writeQueue;
+    private final Stage readStage;
+    private final Stage parseStage;
+    private final Stage analyzeStage;
+    private final Stage writeStage;
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+
+    /*
+     * Pipeline indexing corpusFiles in their order with indexer
+     * queueCapacity : documents held between two stages, files are read at most 4 times as many ahead of the write
+     */
+    IndexPipeline (BuildIndexes indexer, File[] corpusFiles, final HashSet<String> stopWords, int readerThreads,
+            int parserThreads, int analyzerThreads, int queueCapacity) {
+
+        this.indexer = indexer;
+        this.corpusFiles = corpusFiles;
+        final StemCache stemCache = indexer.stemCache;
+        analyzers = new ThreadLocal<Analyzer>() {
+
+            @Override
+            protected Analyzer initialValue () {
+
+                return new Analyzer(stopWords, stemCache);
+            }
+        };
+        queueCapacity = Math.max(1, queueCapacity);
+        windowSize = 4 * queueCapacity;
+        window = new Semaphore(windowSize);
+        parseQueue = new ArrayBlockingQueue<PipelineDocument>(queueCapacity);
+        analyzeQueue = new ArrayBlockingQueue<PipelineDocument>(queueCapacity);
+        writeQueue = new ArrayBlockingQueue<PipelineDocument>(queueCapacity);
+        readStage = new Stage("read", Math.max(1, readerThreads), 0);
+        parseStage = new Stage("parse", Math.max(1, parserThreads), queueCapacity);
+        analyzeStage = new Stage("analyze", Math.max(1, analyzerThreads), queueCapacity);
+        writeStage = new Stage("write", 1, queueCapacity);
+    }
+
+
+    /*
+     * Index all the files, returning once every one of them is written
+     * Failures are thrown in file order like indexing one file at a time would
+     */
+    void run (BufferedWriter docIDWriter, BufferedWriter termsIDWriter, BufferedWriter docIndexWriter)
+            throws IOException, StemmerException {
+
+        startStage(readStage, null, parseQueue);
+        startStage(parseStage, parseQueue, analyzeQueue);
+        startStage(analyzeStage, analyzeQueue, writeQueue);
+
+        long documents = 0, busyNanos = 0, waitNanos = 0, queueDepthSum = 0, maxQueueDepth = 0;
+        PipelineDocument[] pending = new PipelineDocument[windowSize]; // Done before the documents ahead of them,
+                                                                       // by sequence modulo the window
+        try {
+            for (int sequence = 0; sequence < corpusFiles.length; sequence++) {
+
+                long start = System.nanoTime();
+                PipelineDocument document;
+                while (null == (document = pending[sequence % windowSize])) {
+                    int queueDepth = writeQueue.size();
+                    queueDepthSum += queueDepth;
+                    maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+                    document = writeQueue.take(); // Sequences in the window differ by less than its size, so no
+                    pending[document.sequence % windowSize] = document; // two of them share a slot
+                }
+                pending[sequence % windowSize] = null;
+                long taken = System.nanoTime();
+
+                if (null != document.failure) // Same failure as the sequential build, in file order
+                    BuildIndexes.throwFailure(document.failure);
+                if (document.isFile) {
+                    if (null != document.analyzed)
+                        indexer.addDocument(document.analyzed, docIDWriter, termsIDWriter, docIndexWriter);
+                } else
+                    System.out.println(document.file + " is invalid file"); // Invalid file found
+                window.release();
+
+                documents++;
+                waitNanos += taken - start;
+                busyNanos += System.nanoTime() - taken;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing corpus files");
+        } finally {
+            writeStage.add(documents, busyNanos, waitNanos, 0, queueDepthSum, maxQueueDepth);
+            stopThreads();
+        }
+    }
+
+
+    /*
+     * Stages of the pipeline in order, with the work counted by each
+     */
+    public List<Stage> getStages () {
+
+        List<Stage> stages = new ArrayList<Stage>();
+        stages.add(readStage);
+        stages.add(parseStage);
+        stages.add(analyzeStage);
+        stages.add(writeStage);
+        return stages;
+    }
+
+
+    @Override
+    public String toString () {
+
+        StringBuilder stages = new StringBuilder();
+        for (Stage stage : getStages())
+            stages.append(stage).append(System.lineSeparator());
+        return stages.toString();
+    }
+
+
+    private void startStage (Stage stage, BlockingQueue<PipelineDocument> input,
+            BlockingQueue<PipelineDocument> output) {
+
+        for (int thread = 1; thread <= stage.threads; thread++) {
+            Thread worker = new Thread(new Worker(stage, input, output), "index-" + stage.name + "-" + thread);
+            worker.setDaemon(true); // Never keeps the JVM alive if the write stage gave up
+            threads.add(worker);
+            worker.start();
+        }
+    }
+
+
+    /*
+     * Interrupt stage threads waiting for documents that will not come and wait for them to count their work
+     */
+    private void stopThreads () {
+
+        for (Thread worker : threads)
+            worker.interrupt();
+        boolean interrupted = false;
+        for (Thread worker : threads) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+
+    /*
+     * Work of one stage on a document, a stage leaves documents that failed before it or are not files alone
+     */
+    private void process (Stage stage, PipelineDocument document) throws Exception {
+
+        if (readStage == stage) {
+            document.isFile = document.file.isFile();
+            if (document.isFile)
+                document.html = indexer.removeFileHeader(document.file);
+        } else
+            if (parseStage == stage) {
+                if (null != document.html)
+                    document.text = Jsoup.parse(document.html).text();
+                document.html = null;
+            } else
+                if (analyzeStage == stage) {
+                    if (null != document.text)
+                        document.analyzed = indexer.analyzeDocument(document.file.getName(), document.text,
+                                analyzers.get());
+                    document.text = null;
+                }
+    }
+
+
+    /**
+     * Thread of a stage taking documents from its input queue, or files to read, and passing them to the next stage
+     */
+    private class Worker implements Runnable {
+
+        private final Stage stage;
+        private final BlockingQueue<PipelineDocument> input; // null for the read stage
+        private final BlockingQueue<PipelineDocument> output;
+
+
+        Worker (Stage stage, BlockingQueue<PipelineDocument> input, BlockingQueue<PipelineDocument> output) {
+
+            this.stage = stage;
+            this.input = input;
+            this.output = output;
+        }
+
+
+        @Override
+        public void run () {
+
+            long documents = 0, busyNanos = 0, waitNanos = 0, blockedNanos = 0, queueDepthSum = 0, maxQueueDepth = 0;
+            try {
+                while (true) {
+
+                    long start = System.nanoTime();
+                    PipelineDocument document;
+                    if (null == input) { // Read stage takes the next file once the window has room
+                        window.acquire(); // Before taking a file, so every file taken holds a place in the window
+                        int sequence = nextFile.getAndIncrement();
+                        if (sequence >= corpusFiles.length) {
+                            window.release();
+                            return;
+                        }
+                        document = new PipelineDocument(sequence, corpusFiles[sequence]);
+                    } else {
+                        int queueDepth = input.size();
+                        queueDepthSum += queueDepth;
+                        maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+                        document = input.take();
+                    }
+                    long taken = System.nanoTime();
+
+                    if (null == document.failure) {
+                        try {
+                            process(stage, document);
+                        } catch (Exception e) {
+                            document.failure = e; // Thrown by the write stage when it gets to this document
+                        }
+                    }
+                    long processed = System.nanoTime();
+
+                    output.put(document);
+                    documents++;
+                    waitNanos += taken - start;
+                    busyNanos += processed - taken;
+                    blockedNanos += System.nanoTime() - processed;
+                }
+            } catch (InterruptedException e) { // Write stage has every document or gave up
+            } finally {
+                stage.add(documents, busyNanos, waitNanos, blockedNanos, queueDepthSum, maxQueueDepth);
+            }
+        }
+    }
+
+
+    /**
+     * A corpus file on its way through the stages
+     */
+    private static class PipelineDocument {
+
+        final int sequence; // Position of the file in the corpus
+        final File file;
+        boolean isFile;
+        String html; // Header less file content, once read
+        String text; // Text of the html, once parsed
+        AnalyzedDocument analyzed; // Terms of the text, once analyzed
+        Exception failure;
+
+
+        PipelineDocument (int sequence, File file) {
+
+            this.sequence = sequence;
+            this.file = file;
+        }
+    }
+
+
+    /**
+     * Work counted by the threads of a stage
+     */
+    public static class Stage {
+
+        private final String name;
+        private final int threads;
+        private final int queueCapacity; // 0 for the read stage which takes files instead
+        private long documents;
+        private long busyNanos; // Reading, parsing, analyzing or writing documents
+        private long waitNanos; // Waiting for a document, or for the window to read the next file
+        private long blockedNanos; // Waiting for room in the queue of the next stage
+        private long queueDepthSum; // Depth of the input queue each time a document is taken
+        private long maxQueueDepth;
+
+
+        Stage (String name, int threads, int queueCapacity) {
+
+            this.name = name;
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+
+
+        synchronized void add (long documents, long busyNanos, long waitNanos, long blockedNanos,
+                long queueDepthSum, long maxQueueDepth) {
+
+            this.documents += documents;
+            this.busyNanos += busyNanos;
+            this.waitNanos += waitNanos;
+            this.blockedNanos += blockedNanos;
+            this.queueDepthSum += queueDepthSum;
+            this.maxQueueDepth = Math.max(this.maxQueueDepth, maxQueueDepth);
+        }
+
+
+        public String getName () {
+
+            return name;
+        }
+
+
+        public int getThreads () {
+
+            return threads;
+        }
+
+
+        public int getQueueCapacity () {
+
+            return queueCapacity;
+        }
+
+
+        public synchronized long getDocuments () {
+
+            return documents;
+        }
+
+
+        public synchronized double getBusySeconds () {
+
+            return busyNanos / 1e9;
+        }
+
+
+        public synchronized double getWaitSeconds () {
+
+            return waitNanos / 1e9;
+        }
+
+
+        public synchronized double getBlockedSeconds () {
+
+            return blockedNanos / 1e9;
+        }
+
+
+        /*
+         * Average documents in the input queue when the stage took one, 0 for the read stage
+         */
+        public synchronized double getAvgQueueDepth () {
+
+            return 0 == documents || 0 == queueCapacity ? 0 : (double) queueDepthSum / documents;
+        }
+
+
+        public synchronized long getMaxQueueDepth () {
+
+            return maxQueueDepth;
+        }
+
+
+        @Override
+        public synchronized String toString () {
+
+            String queue = 0 == queueCapacity ? "files" : String.format("queue %5.1f avg %3d max of %3d",
+                    getAvgQueueDepth(), maxQueueDepth, queueCapacity);
+            return String.format("%-7s %2d thread(s) %7d documents, %-27s busy %7.2f s, waiting %7.2f s, "
+                    + "blocked %7.2f s", name, threads, documents, queue, getBusySeconds(), getWaitSeconds(),
+                    getBlockedSeconds());
+        }
+    }
+
+}
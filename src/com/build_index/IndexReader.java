@@ -0,0 +1,258 @@
+package com.build_index;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.main_search_documents.FileNamesInterface;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Inverted index opened once and shared by all queries and threads
+ *
+ *         term_info.txt is loaded into arrays indexed by term id and the postings file is memory mapped, so looking up
+ *         a term and decoding its postings make no system calls.
+ *
+ *         The index may be made of the base index and segments added after it, each with its own term info and
+ *         postings for a range of documents. Counts of a term are summed over all of them and its postings are read
+ *         segment after segment in document order.
+ */
+public class IndexReader implements FileNamesInterface {
+
+    private final List<PostingsReader> postingsReaders = new ArrayList<PostingsReader>(); // Each segment in order
+    private final List<long[]> offsets = new ArrayList<long[]>(); // Offset of postings of each term id in each
+                                                                  // segment, -1 if term not in the segment
+    private int[] occurrences = new int[1024]; // Count of occurrences of each term id in the corpus
+    private int[] docCounts = new int[1024]; // Count of documents containing each term id
+    private int termCount = 0;
+    private int maxTermId = 0;
+
+
+    /*
+     * Open the inverted index in the format it was built with and load its term info
+     */
+    public IndexReader (File termIndexFile, File termPostingsFile, File termInfoFile) throws IOException {
+
+        this(termIndexFile, termPostingsFile, termInfoFile, new ArrayList<File>());
+    }
+
+
+    /*
+     * Open the base inverted index followed by segments added to it, each folder holding a segment's files
+     */
+    public IndexReader (File termIndexFile, File termPostingsFile, File termInfoFile, List<File> segmentFolders)
+            throws IOException {
+
+        try {
+            openSegment(termIndexFile, termPostingsFile, termInfoFile);
+            for (File segmentFolder : segmentFolders)
+                openSegment(segmentFolder);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+
+    /*
+     * Open segments only, each folder holding a segment's files
+     */
+    public IndexReader (List<File> segmentFolders) throws IOException {
+
+        try {
+            for (File segmentFolder : segmentFolders)
+                openSegment(segmentFolder);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+
+    private void openSegment (File segmentFolder) throws IOException {
+
+        openSegment(new File(segmentFolder, termIndexFile.getName()), new File(segmentFolder,
+                termPostingsFile.getName()), new File(segmentFolder, termInfoFile.getName()));
+    }
+
+
+    private void openSegment (File termIndexFile, File termPostingsFile, File termInfoFile) throws IOException {
+
+        long[] segmentOffsets = new long[Math.max(1024, occurrences.length)];
+        Arrays.fill(segmentOffsets, -1);
+
+        BufferedReader reader = new BufferedReader(new FileReader(termInfoFile)); // Read term_info.txt
+        try {
+            String line;
+            while (null != (line = reader.readLine())) { // {termId, offset, occurrences, document count}
+                String[] tokens = line.split("\t");
+                int termId = Integer.parseInt(tokens[0]);
+                if (termId >= segmentOffsets.length) {
+                    int oldCapacity = segmentOffsets.length;
+                    segmentOffsets = Arrays.copyOf(segmentOffsets, Math.max(oldCapacity * 2, termId + 1));
+                    Arrays.fill(segmentOffsets, oldCapacity, segmentOffsets.length, -1);
+                }
+                if (termId >= occurrences.length) {
+                    occurrences = Arrays.copyOf(occurrences, segmentOffsets.length);
+                    docCounts = Arrays.copyOf(docCounts, segmentOffsets.length);
+                }
+                segmentOffsets[termId] = Long.parseLong(tokens[1]);
+                if (docCounts[termId] == 0) // Term not seen in earlier segments
+                    termCount++;
+                occurrences[termId] += Integer.parseInt(tokens[2]);
+                docCounts[termId] += Integer.parseInt(tokens[3]);
+                maxTermId = Math.max(maxTermId, termId);
+            }
+        } finally {
+            reader.close();
+        }
+
+        postingsReaders.add(PostingsReader.open(termIndexFile, termPostingsFile));
+        offsets.add(segmentOffsets);
+    }
+
+
+    /*
+     * Check whether given term id has postings in the index
+     */
+    public boolean contains (int termId) {
+
+        return termId > 0 && termId < docCounts.length && docCounts[termId] > 0;
+    }
+
+
+    /*
+     * Offset of the postings of a term in the postings file of the first segment, the base index, -1 if it has none
+     */
+    public long getOffset (int termId) {
+
+        long[] baseOffsets = offsets.get(0);
+        return termId < baseOffsets.length ? baseOffsets[termId] : -1;
+    }
+
+
+    public int getOccurrences (int termId) {
+
+        return occurrences[termId];
+    }
+
+
+    public int getDocCount (int termId) {
+
+        return docCounts[termId];
+    }
+
+
+    public int getTermCount () {
+
+        return termCount;
+    }
+
+
+    public int getMaxTermId () {
+
+        return maxTermId;
+    }
+
+
+    /*
+     * Postings of the term whose postings start at given offset in the first segment
+     */
+    public TermPostings readPostings (long offset) throws IOException {
+
+        return postingsReaders.get(0).read(offset);
+    }
+
+
+    /*
+     * Postings of a term contained in the index, across all segments holding it
+     */
+    public TermPostings getPostings (int termId) throws IOException {
+
+        List<TermPostings> segmentPostings = new ArrayList<TermPostings>(1);
+        for (int segment = 0; segment < offsets.size(); segment++) {
+            long[] segmentOffsets = offsets.get(segment);
+            if (termId < segmentOffsets.length && segmentOffsets[termId] != -1)
+                segmentPostings.add(postingsReaders.get(segment).read(segmentOffsets[termId]));
+        }
+        if (segmentPostings.size() == 1)
+            return segmentPostings.get(0);
+        return new SegmentedPostings(segmentPostings);
+    }
+
+
+    public void close () throws IOException {
+
+        for (PostingsReader postingsReader : postingsReaders)
+            postingsReader.close();
+    }
+
+
+    /*
+     * Postings of a term in several segments, visited one segment after the other
+     */
+    private static class SegmentedPostings implements TermPostings {
+
+        private final List<TermPostings> segmentPostings;
+        private int segment = 0;
+        private final int docCount;
+
+
+        private SegmentedPostings (List<TermPostings> segmentPostings) {
+
+            this.segmentPostings = segmentPostings;
+            int count = 0;
+            for (TermPostings postings : segmentPostings)
+                count += postings.getDocCount();
+            this.docCount = count;
+        }
+
+
+        @Override
+        public int getDocCount () {
+
+            return docCount;
+        }
+
+
+        @Override
+        public boolean nextDoc () {
+
+            while (segment < segmentPostings.size()) {
+                if (segmentPostings.get(segment).nextDoc())
+                    return true;
+                segment++;
+            }
+            return false;
+        }
+
+
+        @Override
+        public int getDocId () {
+
+            return segmentPostings.get(segment).getDocId();
+        }
+
+
+        @Override
+        public int getFrequency () {
+
+            return segmentPostings.get(segment).getFrequency();
+        }
+
+
+        @Override
+        public int[] getPositions () {
+
+            return segmentPostings.get(segment).getPositions();
+        }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+package com.build_index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import com.main_search_documents.FileNamesInterface;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Segments added to the inverted index after it was built, listed in document order in segment_info.txt
+ *         {segment folder name, document count}
+ *
+ *         Each segment is a folder next to the base index holding its own term_info.txt and postings for the documents
+ *         added with it, written once and never changed. Queries read the base index and every listed segment.
+ *
+ *         Segments are merged in the background with a tiered policy: a segment is in tier t when it holds at least
+ *         mergeFactor^t and fewer than mergeFactor^(t + 1) documents, and mergeFactor segments of the highest tier,
+ *         with any smaller segments before and between them, are merged into one segment of a higher tier. Every
+ *         document is rewritten about once per tier, so keeping the index fresh costs work proportional to the
+ *         documents added rather than to the whole corpus. Only adjacent segments are merged so documents stay in id
+ *         order. The merged segment replaces its sources in segment_info.txt with a rename and the sources are deleted.
+ *         Readers holding the old segments open keep reading them, and readers opened through openIndexReader read
+ *         segment_info.txt again when a merge deletes folders they were about to open.
+ */
+public class IndexSegments implements FileNamesInterface {
+
+    private static final String seperator = "\t";
+    private static final String newLine = "\r\n";
+    private static final String segmentPrefix = "segment_";
+    private static final int maxOpenAttempts = 5; // Merges finishing while the index is opened, in a row
+
+    private final File segmentInfoFile;
+    private final File indexFolder;
+    private final HashSet<String> merging = new HashSet<String>(); // Segments being merged
+    private final ExecutorService merger; // Merges one set of segments at a time
+    private Future<?> pendingMerge; // Last merge submitted
+
+
+    public IndexSegments (File segmentInfoFile) {
+
+        this.segmentInfoFile = segmentInfoFile;
+        this.indexFolder = segmentInfoFile.getAbsoluteFile().getParentFile();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true); // Do not keep the program running once merges are done
+        this.merger = executor;
+    }
+
+
+    /*
+     * Folders of all segments in document order
+     */
+    public synchronized List<File> getSegmentFolders () throws IOException {
+
+        List<File> folders = new ArrayList<File>();
+        for (String[] segment : readSegments())
+            folders.add(new File(indexFolder, segment[0]));
+        return folders;
+    }
+
+
+    /*
+     * Open the base index followed by the segments listed in segment_info.txt
+     * A merge finishing between reading the list and opening the folders deletes some of them, the list is read and
+     * the index opened again then
+     */
+    public IndexReader openIndexReader (File termIndexFile, File termPostingsFile, File termInfoFile)
+            throws IOException {
+
+        for (int attempt = 1;; attempt++) {
+            List<File> segmentFolders = getSegmentFolders();
+            try {
+                return new IndexReader(termIndexFile, termPostingsFile, termInfoFile, segmentFolders);
+            } catch (IOException e) {
+                if (attempt >= maxOpenAttempts || segmentFolders.equals(getSegmentFolders()))
+                    throw e; // Not a merge replacing the segments
+            }
+        }
+    }
+
+
+    /*
+     * Create an empty folder for a new segment, named after the highest segment number used so far
+     */
+    public synchronized File newSegmentFolder () {
+
+        int number = 0;
+        String[] names = indexFolder.list();
+        if (null != names)
+            for (String name : names)
+                if (name.startsWith(segmentPrefix) && name.substring(segmentPrefix.length()).matches("\\d+"))
+                    number = Math.max(number, Integer.parseInt(name.substring(segmentPrefix.length())) + 1);
+
+        File folder = new File(indexFolder, segmentPrefix + number);
+        folder.mkdirs();
+        return folder;
+    }
+
+
+    /*
+     * Add a segment written to given folder after all other segments, its documents follow theirs
+     */
+    public synchronized void addSegment (File segmentFolder, int docCount) throws IOException {
+
+        List<String[]> segments = readSegments();
+        segments.add(new String[] {segmentFolder.getName(), String.valueOf(docCount)});
+        writeSegments(segments);
+    }
+
+
+    /*
+     * Merge segments the tiered policy selects on the background thread until none are left to merge
+     * compressedPostings
+     * - write merged segments as term_postings.bin, else as term_index.txt
+     */
+    public synchronized void mergeInBackground (final int mergeFactor, final boolean compressedPostings) {
+
+        pendingMerge = merger.submit(new Runnable() { // Runs after merges submitted before
+
+            @Override
+            public void run () {
+
+                try {
+                    List<String> sources;
+                    while (null != (sources = selectMerge(mergeFactor)))
+                        merge(sources, compressedPostings);
+                } catch (IOException e) {
+                    System.err.println("Unable to merge index segments as I/O exception occured");
+                }
+            }
+        });
+    }
+
+
+    /*
+     * Wait for background merges, if any, to finish
+     */
+    public void waitForMerges () {
+
+        Future<?> merge;
+        synchronized (this) {
+            merge = pendingMerge;
+        }
+        if (null == merge)
+            return;
+        try {
+            merge.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Unable to merge index segments");
+        }
+    }
+
+
+    /*
+     * Delete every segment and the segment list, once merges are done
+     */
+    public void clear () {
+
+        waitForMerges();
+        synchronized (this) {
+            segmentInfoFile.delete();
+            String[] names = indexFolder.list();
+            if (null != names)
+                for (String name : names)
+                    if (name.startsWith(segmentPrefix))
+                        FileUtils.deleteQuietly(new File(indexFolder, name));
+        }
+    }
+
+
+    /*
+     * Names of the first adjacent segments to merge, null if none
+     * Segments are taken in groups: from the first segment left to the last one of the highest tier among them. In a
+     * group every mergeFactor segments of that tier in order are merged, along with the smaller segments before and
+     * between them, unless one of them is already being merged. Only segments of the highest tier count toward
+     * mergeFactor.
+     */
+    private synchronized List<String> selectMerge (int mergeFactor) throws IOException {
+
+        List<String[]> segments = readSegments();
+        int[] tiers = new int[segments.size()];
+        for (int index = 0; index < tiers.length; index++)
+            tiers[index] = getTier(Integer.parseInt(segments.get(index)[1]), mergeFactor);
+
+        int start = 0;
+        while (start < tiers.length) {
+            int highestTier = 0;
+            for (int index = start; index < tiers.length; index++)
+                highestTier = Math.max(highestTier, tiers[index]);
+            List<Integer> peers = new ArrayList<Integer>(); // Segments of the highest tier in the group
+            for (int index = start; index < tiers.length; index++)
+                if (tiers[index] == highestTier)
+                    peers.add(index);
+
+            int from = start; // First segment of the next run
+            for (int last = mergeFactor - 1; last < peers.size(); last += mergeFactor) {
+                int to = peers.get(last); // Last segment of the run, its mergeFactor-th peer
+                List<String> run = new ArrayList<String>();
+                for (int index = from; index <= to; index++)
+                    run.add(segments.get(index)[0]);
+                if (!containsAny(merging, run)) {
+                    merging.addAll(run);
+                    return run;
+                }
+                from = to + 1;
+            }
+            start = peers.get(peers.size() - 1) + 1; // Segments after the group have a lower highest tier
+        }
+        return null;
+    }
+
+
+    private static boolean containsAny (HashSet<String> names, List<String> run) {
+
+        for (String name : run)
+            if (names.contains(name))
+                return true;
+        return false;
+    }
+
+
+    private static int getTier (int docCount, int mergeFactor) {
+
+        int tier = 0;
+        for (long limit = mergeFactor; docCount >= limit; limit *= mergeFactor)
+            tier++;
+        return tier;
+    }
+
+
+    /*
+     * Write postings of the given adjacent segments into a new segment and put it in their place
+     */
+    private void merge (List<String> sources, boolean compressedPostings) throws IOException {
+
+        File mergedFolder = newSegmentFolder();
+        int docCount = 0;
+        try {
+            List<File> sourceFolders = new ArrayList<File>();
+            for (String source : sources)
+                sourceFolders.add(new File(indexFolder, source));
+            IndexReader sourceReader = new IndexReader(sourceFolders);
+
+            PostingsWriter writer = createPostingsWriter(mergedFolder, compressedPostings);
+            try {
+                int[] postings = new int[64]; // {docId, position count, positions...} of one document
+                for (int termId = 1; termId <= sourceReader.getMaxTermId(); termId++) {
+                    if (!sourceReader.contains(termId))
+                        continue;
+                    TermPostings termPostings = sourceReader.getPostings(termId);
+                    while (termPostings.nextDoc()) { // Segments are adjacent, documents stay in increasing id order
+                        int[] positions = termPostings.getPositions();
+                        if (positions.length + 2 > postings.length)
+                            postings = new int[(positions.length + 2) * 2];
+                        postings[0] = termPostings.getDocId();
+                        postings[1] = positions.length;
+                        System.arraycopy(positions, 0, postings, 2, positions.length);
+                        writer.addPostings(termId, postings, 0, positions.length + 2);
+                    }
+                }
+            } finally {
+                writer.close();
+                sourceReader.close();
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(mergedFolder);
+            synchronized (this) {
+                merging.removeAll(sources);
+            }
+            throw e;
+        }
+
+        synchronized (this) { // Replace the sources by the merged segment
+            List<String[]> segments = readSegments();
+            List<String[]> merged = new ArrayList<String[]>();
+            for (String[] segment : segments) {
+                if (!sources.contains(segment[0]))
+                    merged.add(segment);
+                else {
+                    docCount += Integer.parseInt(segment[1]);
+                    if (segment[0].equals(sources.get(sources.size() - 1)))
+                        merged.add(new String[] {mergedFolder.getName(), String.valueOf(docCount)});
+                }
+            }
+            writeSegments(merged);
+            merging.removeAll(sources);
+        }
+
+        for (String source : sources) // Open readers keep their mappings, openIndexReader retries
+            FileUtils.deleteQuietly(new File(indexFolder, source));
+    }
+
+
+    /*
+     * Writer of the postings files of a segment, term_postings.bin for compressed postings or else term_index.txt
+     */
+    static PostingsWriter createPostingsWriter (File segmentFolder, boolean compressedPostings) throws IOException {
+
+        if (compressedPostings)
+            return new BlockPostingsWriter(new File(segmentFolder, termPostingsFile.getName()), new File(
+                    segmentFolder, termInfoFile.getName()));
+        return new TextPostingsWriter(new File(segmentFolder, termIndexFile.getName()), new File(segmentFolder,
+                termInfoFile.getName()));
+    }
+
+
+    private List<String[]> readSegments () throws IOException {
+
+        List<String[]> segments = new ArrayList<String[]>();
+        if (!segmentInfoFile.exists())
+            return segments;
+
+        BufferedReader reader = new BufferedReader(new FileReader(segmentInfoFile));
+        try {
+            String line;
+            while (null != (line = reader.readLine()))
+                if (!line.isEmpty())
+                    segments.add(line.split(seperator));
+        } finally {
+            reader.close();
+        }
+        return segments;
+    }
+
+
+    /*
+     * Write the segment list to a temporary file renamed over segment_info.txt, so readers never see half of it
+     */
+    private void writeSegments (List<String[]> segments) throws IOException {
+
+        File temporaryFile = new File(indexFolder, segmentInfoFile.getName() + ".tmp");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(temporaryFile));
+        try {
+            for (String[] segment : segments)
+                writer.write(segment[0] + seperator + segment[1] + newLine);
+        } finally {
+            writer.close();
+        }
+
+        if (!temporaryFile.renameTo(segmentInfoFile)) { // Rename does not replace files on every platform
+            segmentInfoFile.delete();
+            if (!temporaryFile.renameTo(segmentInfoFile))
+                throw new IOException("Could not replace " + segmentInfoFile.getAbsolutePath());
+        }
+    }
+
+}
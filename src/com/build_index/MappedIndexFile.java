@@ -0,0 +1,69 @@
+package com.build_index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Read only memory mapping of an index file, mapped in chunks of 1GB so files larger than 2GB can be addressed
+ *
+ *         Reads use absolute positions and never move a buffer's position, so one mapping can be read by any number of
+ *         threads at once. Values straddling two chunks are read a byte at a time.
+ */
+public class MappedIndexFile {
+
+    private static final int chunkShift = 30;
+    private static final long chunkMask = (1L << chunkShift) - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long length;
+
+
+    public MappedIndexFile (File indexFile) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            length = channel.size();
+            chunks = new MappedByteBuffer[(int) ((length >>> chunkShift) + 1)];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                long start = (long) chunk << chunkShift;
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkMask + 1, length
+                        - start));
+            }
+        } finally {
+            file.close(); // Mappings stay valid after the channel is closed
+        }
+    }
+
+
+    public long length () {
+
+        return length;
+    }
+
+
+    public byte get (long position) {
+
+        return chunks[(int) (position >>> chunkShift)].get((int) (position & chunkMask));
+    }
+
+
+    /*
+     * Big endian int at given position
+     */
+    public int getInt (long position) {
+
+        int offset = (int) (position & chunkMask);
+        if (offset <= chunkMask - 3) // Within one chunk
+            return chunks[(int) (position >>> chunkShift)].getInt(offset);
+        return (get(position) & 0xFF) << 24 | (get(position + 1) & 0xFF) << 16 | (get(position + 2) & 0xFF) << 8
+                | (get(position + 3) & 0xFF);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.build_index;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Reads the postings of a term at the offset term_info.txt gives for it
+ *
+ *         Postings are decoded from a memory mapping of the index file, a reader can be shared by any number of
+ *         threads.
+ */
+public abstract class PostingsReader {
+
+    /*
+     * Open the inverted index in the format it was built with, compressed postings when termPostingsFile exists or
+     * else the text term_index
+     */
+    public static PostingsReader open (File termIndexFile, File termPostingsFile) throws IOException {
+
+        if (termPostingsFile.exists())
+            return new BlockPostingsReader(termPostingsFile);
+        return new TextPostingsReader(termIndexFile);
+    }
+
+
+    /*
+     * Read postings of the term at given offset
+     */
+    public abstract TermPostings read (long offset) throws IOException;
+
+
+    public abstract void close () throws IOException;
+
+}
@@ -0,0 +1,28 @@
+package com.build_index;
+
+import java.io.IOException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Writes the inverted index of a corpus in one postings format along with term_info.txt {termId, offset of the
+ *         term's postings, occurrences, document count}
+ *
+ *         Terms are given in increasing term id order, postings of a term may be given in several consecutive calls as
+ *         long as document ids keep increasing.
+ */
+public interface PostingsWriter {
+
+    /*
+     * Append postings of a term, postings hold from..to of {docId, position count, positions...} records
+     */
+    void addPostings (int termId, int[] postings, int from, int to) throws IOException;
+
+
+    /*
+     * Write the last term and close the output files
+     */
+    void close () throws IOException;
+
+}
@@ -0,0 +1,305 @@
+package com.build_index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Inverts the forward index by sorting fixed width binary records instead of doc_index.txt lines
+ *
+ *         Positions of each term in each document are appended to a positions file {count, positions...} and the
+ *         document gets one record per term {termId << 32 | docId, offset of its positions}. Records are buffered as
+ *         primitive longs and radix sorted on the key when the buffer is full, the sorted run is spilled to a run file
+ *         and a heap merges the runs at the end. Postings are then read from the memory mapped positions file in key
+ *         order, terms by id and documents by id within a term.
+ */
+public class SortingInverter implements DocumentInverter {
+
+    private static final int recordBytes = 32; // Key and offset of a record and their radix sort copies
+
+    private final File workFolder;
+    private final int runSize; // Records sorted in memory at a time
+
+    private long[] keys;
+    private long[] offsets;
+    private long[] keyBuffer; // Radix sort scratch space
+    private long[] offsetBuffer;
+    private int recordCount = 0;
+    private final List<File> runs = new ArrayList<File>();
+
+    private final File positionsFile;
+    private DataOutputStream positionsStream;
+    private long positionsLength = 0; // Bytes written to the positions file
+
+
+    /**
+     * workFolder
+     * - folder receiving the positions file and run files
+     * memoryBudget
+     * - bytes of records sorted in memory at a time
+     */
+    public SortingInverter (File workFolder, long memoryBudget) {
+
+        this.workFolder = workFolder;
+        this.runSize = (int) Math.max(1024, Math.min(Integer.MAX_VALUE - 8, memoryBudget / recordBytes));
+        this.positionsFile = new File(workFolder, "positions.bin");
+    }
+
+
+    @Override
+    public void addDocument (int docId, DocumentTerms docTerms) throws IOException {
+
+        if (null == positionsStream) { // First document
+            workFolder.mkdirs();
+            positionsStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(positionsFile),
+                    1 << 16));
+            keys = new long[Math.min(runSize, 1024)];
+            offsets = new long[keys.length];
+        }
+
+        for (int index = 0; index < docTerms.size(); index++) {
+
+            if (recordCount == runSize) // Buffer full
+                writeRun();
+            if (recordCount == keys.length) {
+                int capacity = (int) Math.min(runSize, keys.length * 2L);
+                keys = Arrays.copyOf(keys, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+            }
+
+            keys[recordCount] = (long) docTerms.getTermId(index) << 32 | docId;
+            offsets[recordCount++] = positionsLength;
+
+            int[] positions = docTerms.getPositions(index);
+            int positionCount = docTerms.getPositionCount(index);
+            positionsStream.writeInt(positionCount);
+            for (int position = 0; position < positionCount; position++)
+                positionsStream.writeInt(positions[position]);
+            positionsLength += 4 + positionCount * 4;
+        }
+    }
+
+
+    @Override
+    public void writeInvertedIndex (PostingsWriter writer) throws IOException {
+
+        try {
+            if (null == positionsStream) // No documents
+                return;
+            positionsStream.close();
+
+            if (runs.isEmpty()) // Every record fit in memory
+                sort();
+            else
+                writeRun();
+
+            MappedIndexFile positions = new MappedIndexFile(positionsFile);
+            int[] postings = new int[64]; // {docId, position count, positions...} of one record
+
+            if (runs.isEmpty())
+                for (int index = 0; index < recordCount; index++)
+                    postings = addPostings(writer, keys[index], offsets[index], positions, postings);
+            else
+                mergeRuns(writer, positions, postings);
+        } finally {
+            writer.close();
+            keys = offsets = keyBuffer = offsetBuffer = null;
+            recordCount = 0;
+            positionsStream = null;
+            positionsLength = 0;
+            for (File run : runs)
+                run.delete();
+            runs.clear();
+            positionsFile.delete();
+            workFolder.delete(); // Only removed if nothing else is left in it
+        }
+    }
+
+
+    public int getRunCount () {
+
+        return runs.size();
+    }
+
+
+    /*
+     * Radix sort buffered records on their keys and spill them to a new run file {key, offset...}
+     */
+    private void writeRun () throws IOException {
+
+        sort();
+
+        File run = new File(workFolder, "run_" + runs.size() + ".bin");
+        DataOutputStream runStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run),
+                1 << 16));
+        try {
+            for (int index = 0; index < recordCount; index++) {
+                runStream.writeLong(keys[index]);
+                runStream.writeLong(offsets[index]);
+            }
+        } finally {
+            runStream.close();
+        }
+
+        runs.add(run);
+        recordCount = 0;
+    }
+
+
+    /*
+     * Least significant digit radix sort of buffered records on their keys, a byte at a time
+     * Bytes equal in every key are skipped, so small term and document ids take only a few passes
+     */
+    private void sort () {
+
+        int[][] counts = new int[8][256];
+        for (int index = 0; index < recordCount; index++) {
+            long key = keys[index];
+            for (int digit = 0; digit < 8; digit++)
+                counts[digit][(int) (key >>> (digit << 3)) & 0xFF]++;
+        }
+
+        if (null == keyBuffer || keyBuffer.length < recordCount) {
+            keyBuffer = new long[keys.length];
+            offsetBuffer = new long[keys.length];
+        }
+
+        for (int digit = 0; digit < 8; digit++) {
+            int[] count = counts[digit];
+            if (recordCount == 0 || count[(int) (keys[0] >>> (digit << 3)) & 0xFF] == recordCount)
+                continue; // Every key has the same byte here
+
+            int start = 0;
+            for (int value = 0; value < 256; value++) { // Start of each byte value in the output
+                int valueCount = count[value];
+                count[value] = start;
+                start += valueCount;
+            }
+
+            int shift = digit << 3;
+            for (int index = 0; index < recordCount; index++) {
+                int target = count[(int) (keys[index] >>> shift) & 0xFF]++;
+                keyBuffer[target] = keys[index];
+                offsetBuffer[target] = offsets[index];
+            }
+
+            long[] swap = keys; // Sorted records become the buffer
+            keys = keyBuffer;
+            keyBuffer = swap;
+            swap = offsets;
+            offsets = offsetBuffer;
+            offsetBuffer = swap;
+        }
+    }
+
+
+    /*
+     * Heap merge of the run files in key order
+     */
+    private void mergeRuns (PostingsWriter writer, MappedIndexFile positions, int[] postings) throws IOException {
+
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runs.size(), new Comparator<RunReader>() {
+
+            @Override
+            public int compare (RunReader reader1, RunReader reader2) {
+
+                return reader1.key < reader2.key ? -1 : (reader1.key == reader2.key ? 0 : 1);
+            }
+        });
+
+        List<RunReader> readers = new ArrayList<RunReader>();
+        try {
+            for (File run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next())
+                    queue.add(reader);
+            }
+
+            RunReader reader;
+            while (null != (reader = queue.poll())) {
+                postings = addPostings(writer, reader.key, reader.offset, positions, postings);
+                if (reader.next())
+                    queue.add(reader);
+            }
+        } finally {
+            for (RunReader runReader : readers)
+                runReader.close();
+        }
+    }
+
+
+    /*
+     * Give the writer postings of one record, read from the positions file
+     * Returns the postings array, grown if the record did not fit
+     */
+    private static int[] addPostings (PostingsWriter writer, long key, long offset, MappedIndexFile positions,
+            int[] postings) throws IOException {
+
+        int count = positions.getInt(offset);
+        if (count + 2 > postings.length)
+            postings = new int[(count + 2) * 2];
+
+        postings[0] = (int) key; // Document id
+        postings[1] = count;
+        for (int index = 0; index < count; index++)
+            postings[index + 2] = positions.getInt(offset + 4 + index * 4L);
+
+        writer.addPostings((int) (key >>> 32), postings, 0, count + 2);
+        return postings;
+    }
+
+
+    /*
+     * Reads the records of a run file one at a time
+     */
+    private static class RunReader {
+
+        private final DataInputStream runStream;
+        private long remainingRecords;
+        private long key;
+        private long offset;
+
+
+        private RunReader (File runFile) throws IOException {
+
+            this.runStream = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), 1 << 16));
+            this.remainingRecords = runFile.length() / 16;
+        }
+
+
+        /*
+         * Read the next record, false at the end of the run
+         */
+        private boolean next () throws IOException {
+
+            if (remainingRecords == 0)
+                return false;
+            remainingRecords--;
+            key = runStream.readLong();
+            offset = runStream.readLong();
+            return true;
+        }
+
+
+        private void close () throws IOException {
+
+            runStream.close();
+        }
+
+    }
+
+}
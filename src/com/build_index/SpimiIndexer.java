@@ -0,0 +1,280 @@
+package com.build_index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Single pass in memory inverted indexing
+ *
+ *         Postings of each document are appended to a growable int buffer per term as the document is indexed
+ *         {docId, position count, positions...}, so the forward index does not have to be sorted and read back to be
+ *         inverted. When the buffers grow past the memory budget they are written, terms in id order, to a binary
+ *         segment file and emptied. At the end the segments are merged term by term, documents of a term following
+ *         segment order, and given to a PostingsWriter.
+ *
+ */
+public class SpimiIndexer implements DocumentInverter {
+
+    private static final int termOverhead = 96; // Estimated bytes of a term's map entry, key and buffer object
+    private static final int initialBufferSize = 8;
+
+    private final File segmentFolder;
+    private final long memoryBudget;
+
+    private HashMap<Integer, PostingsBuffer> postings = new HashMap<Integer, PostingsBuffer>();
+    private long bufferedBytes = 0; // Estimated heap used by postings
+    private final List<File> segments = new ArrayList<File>();
+    private long segmentBytes = 0; // Size of all segments written
+
+
+    /**
+     * segmentFolder
+     * - folder receiving segment files, created when the first segment is written
+     * memoryBudget
+     * - bytes of buffered postings after which they are written to a segment
+     */
+    public SpimiIndexer (File segmentFolder, long memoryBudget) {
+
+        this.segmentFolder = segmentFolder;
+        this.memoryBudget = memoryBudget;
+    }
+
+
+    @Override
+    public void addDocument (int docId, DocumentTerms docTerms) throws IOException {
+
+        for (int index = 0; index < docTerms.size(); index++) {
+
+            int termId = docTerms.getTermId(index);
+            PostingsBuffer buffer = postings.get(termId);
+            if (null == buffer) { // First occurrence of term since last segment
+                buffer = new PostingsBuffer();
+                postings.put(termId, buffer);
+                bufferedBytes += termOverhead + initialBufferSize * 4;
+            }
+            bufferedBytes += buffer.add(docId, docTerms.getPositions(index), docTerms.getPositionCount(index)) * 4;
+        }
+
+        if (bufferedBytes > memoryBudget)
+            writeSegment();
+    }
+
+
+    @Override
+    public void writeInvertedIndex (PostingsWriter writer) throws IOException {
+
+        try {
+            if (segments.isEmpty()) { // Everything fit in memory
+                for (int termId : sortedTermIds()) {
+                    PostingsBuffer buffer = postings.get(termId);
+                    writer.addPostings(termId, buffer.data, 0, buffer.size);
+                }
+            } else {
+                if (!postings.isEmpty())
+                    writeSegment();
+                mergeSegments(writer);
+            }
+        } finally {
+            writer.close();
+            postings = new HashMap<Integer, PostingsBuffer>();
+            bufferedBytes = 0;
+            for (File segment : segments)
+                segment.delete();
+            segments.clear();
+            segmentFolder.delete(); // Only removed if nothing else is left in it
+        }
+    }
+
+
+    public int getSegmentCount () {
+
+        return segments.size();
+    }
+
+
+    /*
+     * Bytes of all segments written so far
+     */
+    public long getSegmentBytes () {
+
+        return segmentBytes;
+    }
+
+
+    /*
+     * Write buffered postings to a new segment file in term id order and empty the buffers
+     * {term count, [termId, int count, postings...]...}
+     */
+    private void writeSegment () throws IOException {
+
+        segmentFolder.mkdirs();
+        File segment = new File(segmentFolder, "segment_" + segments.size() + ".bin");
+        DataOutputStream segmentStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment),
+                1 << 16));
+        try {
+            int[] termIds = sortedTermIds();
+            segmentStream.writeInt(termIds.length);
+            for (int termId : termIds) {
+                PostingsBuffer buffer = postings.get(termId);
+                segmentStream.writeInt(termId);
+                segmentStream.writeInt(buffer.size);
+                for (int index = 0; index < buffer.size; index++)
+                    segmentStream.writeInt(buffer.data[index]);
+            }
+        } finally {
+            segmentStream.close();
+        }
+
+        segments.add(segment);
+        segmentBytes += segment.length();
+        postings = new HashMap<Integer, PostingsBuffer>();
+        bufferedBytes = 0;
+    }
+
+
+    /*
+     * K-way merge of all segments, a term's postings are taken from the segments in the order they were written
+     */
+    private void mergeSegments (PostingsWriter writer) throws IOException {
+
+        PriorityQueue<SegmentReader> queue = new PriorityQueue<SegmentReader>(segments.size(),
+                new Comparator<SegmentReader>() {
+
+                    @Override
+                    public int compare (SegmentReader reader1, SegmentReader reader2) {
+
+                        if (reader1.termId != reader2.termId)
+                            return reader1.termId < reader2.termId ? -1 : 1;
+                        return reader1.segment - reader2.segment; // Earlier segments hold earlier documents
+                    }
+                });
+
+        List<SegmentReader> readers = new ArrayList<SegmentReader>();
+        try {
+            for (int segment = 0; segment < segments.size(); segment++) {
+                SegmentReader reader = new SegmentReader(segments.get(segment), segment);
+                readers.add(reader);
+                if (reader.next())
+                    queue.add(reader);
+            }
+
+            SegmentReader reader;
+            while (null != (reader = queue.poll())) {
+                writer.addPostings(reader.termId, reader.postings, 0, reader.length);
+                if (reader.next())
+                    queue.add(reader);
+            }
+        } finally {
+            for (SegmentReader segmentReader : readers)
+                segmentReader.close();
+        }
+    }
+
+
+    private int[] sortedTermIds () {
+
+        int[] termIds = new int[postings.size()];
+        int index = 0;
+        for (Integer termId : postings.keySet())
+            termIds[index++] = termId;
+        Arrays.sort(termIds);
+        return termIds;
+    }
+
+
+    /*
+     * Growable postings of one term {docId, position count, positions...}
+     */
+    private static class PostingsBuffer {
+
+        private int[] data = new int[initialBufferSize];
+        private int size = 0;
+
+
+        /*
+         * Append postings of a document, returns how many ints the buffer grew by
+         */
+        private int add (int docId, int[] positions, int positionCount) {
+
+            int grownBy = 0;
+            int required = size + 2 + positionCount;
+            if (required > data.length) {
+                int capacity = Math.max(data.length * 2, required);
+                grownBy = capacity - data.length;
+                data = Arrays.copyOf(data, capacity);
+            }
+
+            data[size++] = docId;
+            data[size++] = positionCount;
+            System.arraycopy(positions, 0, data, size, positionCount);
+            size += positionCount;
+            return grownBy;
+        }
+
+    }
+
+
+    /*
+     * Reads the terms of a segment one at a time
+     */
+    private static class SegmentReader {
+
+        private final DataInputStream segmentStream;
+        private final int segment;
+        private int remainingTerms;
+        private int termId;
+        private int[] postings = new int[initialBufferSize];
+        private int length;
+
+
+        private SegmentReader (File segmentFile, int segment) throws IOException {
+
+            this.segmentStream = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile),
+                    1 << 16));
+            this.segment = segment;
+            this.remainingTerms = segmentStream.readInt();
+        }
+
+
+        /*
+         * Read the next term and its postings, false at the end of the segment
+         */
+        private boolean next () throws IOException {
+
+            if (remainingTerms == 0)
+                return false;
+            remainingTerms--;
+
+            termId = segmentStream.readInt();
+            length = segmentStream.readInt();
+            if (length > postings.length)
+                postings = new int[length];
+            for (int index = 0; index < length; index++)
+                postings[index] = segmentStream.readInt();
+            return true;
+        }
+
+
+        private void close () throws IOException {
+
+            segmentStream.close();
+        }
+
+    }
+
+}
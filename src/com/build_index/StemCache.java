@@ -0,0 +1,225 @@
+package com.build_index;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.tartarus.snowball.EnglishSnowballStemmerFactory;
+import org.tartarus.snowball.util.StemmerException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Bounded thread safe cache of Snowball stems keyed by the characters of a word, shared by every thread that
+ *         indexes documents or analyzes queries
+ *
+ *         Text is Zipfian, a few thousand words make up most of it, so nearly every word is stemmed from the cache.
+ *         Words are spread over stripes, each an open addressing table with linear probing. Lookups take no lock: an
+ *         entry is never changed once put in a table, a stripe grows or is emptied by publishing a new table. Only a
+ *         word not in the cache locks its stripe to add its stem, and the stemmer to work the stem out. A stripe is
+ *         emptied once it holds its share of maximumWords so memory stays bounded on huge vocabularies.
+ */
+public class StemCache {
+
+    private static final int defaultMaximumWords = 1 << 20;
+    private static final int stripeBits = 4; // 16 stripes
+    private static final int initialCapacity = 256; // Table slots per stripe to begin with
+
+    private static StemCache sharedInstance;
+
+    private final EnglishSnowballStemmerFactory stemmer;
+    private final int maximumStripeWords; // Words a stripe holds before it is emptied
+    private final Stripe[] stripes = new Stripe[1 << stripeBits];
+    private final LongAdder hits = new LongAdder(); // Counted without contention from many threads
+    private final LongAdder misses = new LongAdder();
+
+
+    /*
+     * Cache of stems worked out by given stemmer holding at most maximumWords words, 0 to stem every word again
+     */
+    public StemCache (EnglishSnowballStemmerFactory stemmer, int maximumWords) {
+
+        this.stemmer = stemmer;
+        this.maximumStripeWords = maximumWords / stripes.length;
+        for (int stripe = 0; stripe < stripes.length; stripe++)
+            stripes[stripe] = new Stripe();
+    }
+
+
+    /*
+     * Return the cache shared by the indexer and the ranker
+     */
+    public static synchronized StemCache getInstance () throws StemmerException {
+
+        if (null == sharedInstance)
+            sharedInstance = new StemCache(EnglishSnowballStemmerFactory.getInstance(), defaultMaximumWords);
+        return sharedInstance;
+    }
+
+
+    /*
+     * Stem of given word
+     */
+    public String stem (String word) throws StemmerException {
+
+        return stem(word.toCharArray(), 0, word.length());
+    }
+
+
+    /*
+     * Stem of the word of given length at offset in chars, only a word not in the cache makes new Strings
+     */
+    public String stem (char[] chars, int offset, int length) throws StemmerException {
+
+        int hash = 0;
+        for (int index = offset; index < offset + length; index++)
+            hash = 31 * hash + chars[index]; // Same as String.hashCode
+        hash ^= hash >>> 16; // Low bits pick the table slot
+        Stripe stripe = stripes[(hash * 0x9E3779B9) >>> (32 - stripeBits)];
+
+        String stem = stripe.get(chars, offset, length, hash);
+        if (null != stem) {
+            hits.increment();
+            return stem;
+        }
+        misses.increment();
+
+        String word = new String(chars, offset, length);
+        synchronized (stemmer) { // The stemmer is shared by all threads
+            stem = stemmer.process(word);
+        }
+        if (maximumStripeWords > 0)
+            stripe.put(new Entry(chars, offset, length, hash, stem));
+        return stem;
+    }
+
+
+    /*
+     * Count of words stemmed from the cache
+     */
+    public long getHits () {
+
+        return hits.sum();
+    }
+
+
+    /*
+     * Count of words the stemmer was run on
+     */
+    public long getMisses () {
+
+        return misses.sum();
+    }
+
+
+    /*
+     * Count of words cached
+     */
+    public int size () {
+
+        int size = 0;
+        for (Stripe stripe : stripes)
+            synchronized (stripe) {
+                size += stripe.wordCount;
+            }
+        return size;
+    }
+
+
+    /*
+     * Hits, misses and hit rate
+     */
+    @Override
+    public String toString () {
+
+        long hitCount = getHits();
+        long lookups = hitCount + getMisses();
+        return String.format("stem cache %d hits, %d misses(%.1f%% hit rate), %d words", hitCount, lookups
+                - hitCount, lookups == 0 ? 0 : 100.0 * hitCount / lookups, size());
+    }
+
+
+    /*
+     * Word and its stem, never changed once made so a thread reading it without a lock sees all of it
+     */
+    private static final class Entry {
+
+        final char[] word;
+        final int hash;
+        final String stem;
+
+
+        Entry (char[] chars, int offset, int length, int hash, String stem) {
+
+            this.word = new char[length];
+            System.arraycopy(chars, offset, this.word, 0, length);
+            this.hash = hash;
+            this.stem = stem;
+        }
+
+
+        boolean isWord (char[] chars, int offset, int length, int hash) {
+
+            if (this.hash != hash || word.length != length)
+                return false;
+            for (int index = 0; index < length; index++)
+                if (word[index] != chars[offset + index])
+                    return false;
+            return true;
+        }
+    }
+
+
+    /*
+     * One table of the cache, read without a lock and changed only while holding the stripe's lock
+     */
+    private final class Stripe {
+
+        private volatile Entry[] entries = new Entry[initialCapacity]; // Replaced to grow or empty the stripe
+        private int wordCount = 0;
+
+
+        /*
+         * Stem of given word, null if not cached
+         */
+        String get (char[] chars, int offset, int length, int hash) {
+
+            Entry[] table = entries;
+            int mask = table.length - 1;
+            for (int slot = hash & mask; null != table[slot]; slot = (slot + 1) & mask)
+                if (table[slot].isWord(chars, offset, length, hash))
+                    return table[slot].stem;
+            return null;
+        }
+
+
+        synchronized void put (Entry entry) {
+
+            if (wordCount >= maximumStripeWords) {
+                entries = new Entry[initialCapacity];
+                wordCount = 0;
+            }
+
+            Entry[] table = entries;
+            int mask = table.length - 1;
+            int slot = entry.hash & mask;
+            for (; null != table[slot]; slot = (slot + 1) & mask)
+                if (table[slot].isWord(entry.word, 0, entry.word.length, entry.hash))
+                    return; // Added by another thread meanwhile
+            table[slot] = entry;
+
+            if (++wordCount * 2 > table.length) { // Keep probes short
+                Entry[] grown = new Entry[table.length * 2];
+                mask = grown.length - 1;
+                for (Entry moved : table)
+                    if (null != moved) {
+                        slot = moved.hash & mask;
+                        while (null != grown[slot])
+                            slot = (slot + 1) & mask;
+                        grown[slot] = moved;
+                    }
+                entries = grown;
+            }
+        }
+    }
+
+}
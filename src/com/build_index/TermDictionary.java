@@ -0,0 +1,125 @@
+package com.build_index;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Ids of all terms in the corpus
+ *
+ *         Replaces a map of terms to boxed ids: terms and their ids are kept in parallel arrays of an open addressing
+ *         table with linear probing, so looking up a term allocates nothing. Term ids start from 1, 0 stands for a
+ *         term without an id.
+ *
+ *         Read from term_ids.txt once, it looks up query terms of the ranker and terms asked for through ExtractInfo
+ *         without scanning the file for every term.
+ */
+public class TermDictionary {
+
+    private String[] terms = new String[1 << 12];
+    private int[] ids = new int[terms.length];
+    private int size = 0;
+    private int maxId = 0;
+
+
+    /*
+     * Read the ids of all terms from term_ids.txt {termId, term}
+     */
+    public static TermDictionary read (File termsIdFile) throws IOException {
+
+        TermDictionary dictionary = new TermDictionary();
+        BufferedReader reader = new BufferedReader(new FileReader(termsIdFile));
+        try {
+            String line;
+            while (null != (line = reader.readLine())) {
+                int separator = line.indexOf('\t');
+                dictionary.put(line.substring(separator + 1), Integer.parseInt(line.substring(0, separator)));
+            }
+        } finally {
+            reader.close();
+        }
+        return dictionary;
+    }
+
+
+    /*
+     * Id of given term, 0 if it has none
+     */
+    public int get (String term) {
+
+        int mask = terms.length - 1;
+        for (int slot = mix(term.hashCode()) & mask; null != terms[slot]; slot = (slot + 1) & mask)
+            if (term == terms[slot] || term.equals(terms[slot])) // Stems from the stem cache are the same String
+                return ids[slot];
+        return 0;
+    }
+
+
+    /*
+     * Give a term its id, replacing any id it had
+     */
+    public void put (String term, int id) {
+
+        maxId = Math.max(maxId, id);
+        int mask = terms.length - 1;
+        int slot = mix(term.hashCode()) & mask;
+        while (null != terms[slot]) {
+            if (term.equals(terms[slot])) {
+                ids[slot] = id;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        terms[slot] = term;
+        ids[slot] = id;
+
+        if (++size * 2 > terms.length)
+            growTable();
+    }
+
+
+    public int size () {
+
+        return size;
+    }
+
+
+    /*
+     * Highest id given to a term, 0 if there are none
+     */
+    public int getMaxId () {
+
+        return maxId;
+    }
+
+
+    private void growTable () {
+
+        String[] oldTerms = terms;
+        int[] oldIds = ids;
+        terms = new String[oldTerms.length * 2];
+        ids = new int[terms.length];
+
+        int mask = terms.length - 1;
+        for (int index = 0; index < oldTerms.length; index++) {
+            if (null == oldTerms[index])
+                continue;
+            int slot = mix(oldTerms[index].hashCode()) & mask;
+            while (null != terms[slot])
+                slot = (slot + 1) & mask;
+            terms[slot] = oldTerms[index];
+            ids[slot] = oldIds[index];
+        }
+    }
+
+
+    private static int mix (int hash) {
+
+        return hash ^ (hash >>> 16);
+    }
+
+}
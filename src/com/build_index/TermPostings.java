@@ -0,0 +1,41 @@
+package com.build_index;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Postings of one term read from the inverted index, visited one document at a time in increasing document id
+ *         order
+ */
+public interface TermPostings {
+
+    /*
+     * Return count of documents containing the term
+     */
+    int getDocCount ();
+
+
+    /*
+     * Move to the next document, return false after the last one
+     */
+    boolean nextDoc ();
+
+
+    /*
+     * Return id of the current document
+     */
+    int getDocId ();
+
+
+    /*
+     * Return count of occurrences of the term in the current document
+     */
+    int getFrequency ();
+
+
+    /*
+     * Return positions of the term in the current document
+     */
+    int[] getPositions ();
+
+}
@@ -0,0 +1,141 @@
+package com.build_index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Reads postings from the text term_index.txt written by TextPostingsWriter
+ *
+ *         term_index.txt is memory mapped and the doc:position pairs of a term's line are scanned in place instead of
+ *         being read and split into strings.
+ */
+public class TextPostingsReader extends PostingsReader {
+
+    private MappedIndexFile indexFile;
+
+
+    public TextPostingsReader (File termIndexFile) throws IOException {
+
+        indexFile = new MappedIndexFile(termIndexFile);
+    }
+
+
+    @Override
+    public TermPostings read (long offset) {
+
+        MappedIndexFile indexFile = this.indexFile;
+        long length = indexFile.length();
+
+        // Skip term id
+        long index = offset;
+        byte current = 0;
+        while (index < length && (current = indexFile.get(index)) != '\t' && current != '\r' && current != '\n')
+            index++;
+
+        int[] docIds = new int[16];
+        int[] positionStarts = new int[17]; // Positions of document i are positionStarts[i]..positionStarts[i + 1]
+        int[] positions = new int[16];
+        int docCount = 0;
+        int posCount = 0;
+        int docId = 0;
+        int position = 0;
+
+        while (index < length && current == '\t') { // Read \t<docDelta>:<position> pairs until the line ends
+            int docDelta = 0;
+            for (index++; (current = indexFile.get(index)) != ':'; index++)
+                docDelta = docDelta * 10 + current - '0';
+            int value = 0;
+            for (index++; index < length && (current = indexFile.get(index)) >= '0' && current <= '9'; index++)
+                value = value * 10 + current - '0';
+
+            if (docDelta != 0 || docCount == 0) { // First position of a new document
+                if (docCount + 1 == docIds.length) {
+                    docIds = Arrays.copyOf(docIds, docIds.length * 2);
+                    positionStarts = Arrays.copyOf(positionStarts, docIds.length + 1);
+                }
+                docId += docDelta;
+                docIds[docCount] = docId;
+                positionStarts[docCount++] = posCount;
+                position = value;
+            } else
+                position += value; // Positions after the first are deltas
+
+            if (posCount == positions.length)
+                positions = Arrays.copyOf(positions, posCount * 2);
+            positions[posCount++] = position;
+        }
+        positionStarts[docCount] = posCount;
+
+        return new TextTermPostings(docIds, positionStarts, positions, docCount);
+    }
+
+
+    @Override
+    public void close () {
+
+        indexFile = null; // Unmapped once no postings refer to it
+    }
+
+
+    /*
+     * Postings of a term decoded from its line
+     */
+    private static class TextTermPostings implements TermPostings {
+
+        private final int[] docIds;
+        private final int[] positionStarts;
+        private final int[] positions;
+        private final int docCount;
+        private int current = -1;
+
+
+        private TextTermPostings (int[] docIds, int[] positionStarts, int[] positions, int docCount) {
+
+            this.docIds = docIds;
+            this.positionStarts = positionStarts;
+            this.positions = positions;
+            this.docCount = docCount;
+        }
+
+
+        @Override
+        public int getDocCount () {
+
+            return docCount;
+        }
+
+
+        @Override
+        public boolean nextDoc () {
+
+            return ++current < docCount;
+        }
+
+
+        @Override
+        public int getDocId () {
+
+            return docIds[current];
+        }
+
+
+        @Override
+        public int getFrequency () {
+
+            return positionStarts[current + 1] - positionStarts[current];
+        }
+
+
+        @Override
+        public int[] getPositions () {
+
+            return Arrays.copyOfRange(positions, positionStarts[current], positionStarts[current + 1]);
+        }
+
+    }
+
+}
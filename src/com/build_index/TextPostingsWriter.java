@@ -0,0 +1,110 @@
+package com.build_index;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Writes postings as text to term_index.txt, one line per term with delta encoded doc:position pairs
+ *         {termId [docDelta:firstPosition 0:positionDelta...]...}
+ */
+public class TextPostingsWriter implements PostingsWriter {
+
+    private static final String seperator = "\t";
+    private static final String newLine = "\r\n";
+
+    private final OutputStream termIndexStream;
+    private final BufferedWriter termInfoWriter;
+    private final StringBuilder buffer = new StringBuilder(1024);
+
+    private long position = 0; // Bytes written to term_index
+    private int currentTermId = -1;
+    private long termOffset = 0;
+    private int previousDocId = 0;
+    private int docCount = 0;
+    private int posCount = 0;
+
+
+    public TextPostingsWriter (File termIndexFile, File termInfoFile) throws IOException {
+
+        termIndexStream = new BufferedOutputStream(new FileOutputStream(termIndexFile), 1 << 16);
+        termInfoWriter = new BufferedWriter(new FileWriter(termInfoFile.getAbsoluteFile(), true));
+    }
+
+
+    @Override
+    public void addPostings (int termId, int[] postings, int from, int to) throws IOException {
+
+        if (termId != currentTermId) { // Encountered new term
+            finishTerm();
+            if (currentTermId != -1)
+                write(newLine); // Start new line for new term
+            termOffset = position;
+            write(String.valueOf(termId));
+
+            currentTermId = termId;
+            previousDocId = 0;
+            docCount = 0;
+            posCount = 0;
+        }
+
+        int index = from;
+        while (index < to) {
+            int docId = postings[index++];
+            int positionCount = postings[index++];
+
+            buffer.setLength(0);
+            int previousPosition = postings[index++];
+            buffer.append(seperator).append(docId - previousDocId).append(':').append(previousPosition);
+            for (int count = 1; count < positionCount; count++) { // Delta encoded positions
+                int currentPosition = postings[index++];
+                buffer.append(seperator).append('0').append(':').append(currentPosition - previousPosition);
+                previousPosition = currentPosition;
+            }
+            write(buffer);
+
+            docCount++;
+            posCount += positionCount;
+            previousDocId = docId;
+        }
+    }
+
+
+    @Override
+    public void close () throws IOException {
+
+        finishTerm();
+        termIndexStream.close();
+        termInfoWriter.close();
+    }
+
+
+    /*
+     * Write term_info for the current term
+     */
+    private void finishTerm () throws IOException {
+
+        if (currentTermId != -1)
+            termInfoWriter.write(currentTermId + seperator + termOffset + seperator + posCount + seperator + docCount
+                    + newLine);
+    }
+
+
+    /*
+     * Write ascii text to term_index
+     */
+    private void write (CharSequence text) throws IOException {
+
+        for (int index = 0; index < text.length(); index++)
+            termIndexStream.write(text.charAt(index));
+        position += text.length();
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.crawler;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Probabilistic seen url store using a Bloom filter over a long[] bit array
+ * 
+ *         Sized from the expected url count and the accepted false positive rate: a url reported as seen may in rare
+ *         cases never have been added (and is then skipped by the crawler), a url reported as unseen never was added.
+ *         Costs about 1.2 bytes per url at 1% false positives instead of hundreds of bytes for a set of strings.
+ *         Bit positions are derived from the 64 bit url fingerprint by double hashing.
+ */
+public class BloomSeenUrlStore implements SeenUrlStore {
+
+    private static final double ln2 = Math.log(2);
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long size = 0;
+
+
+    /*
+     * Create a filter holding expectedUrls urls at given false positive rate(0 < rate < 1)
+     */
+    public BloomSeenUrlStore (long expectedUrls, double falsePositiveRate) {
+
+        if (expectedUrls <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("Invalid bloom filter size: " + expectedUrls + " urls at "
+                    + falsePositiveRate + " false positive rate");
+
+        long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long wordCount = (optimalBits + 63) >>> 6;
+        if (wordCount > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Bloom filter too large for " + expectedUrls + " urls");
+
+        bits = new long[(int) wordCount];
+        bitCount = wordCount << 6;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUrls * ln2));
+    }
+
+
+    @Override
+    public boolean add (String url) {
+
+        long fingerprint = UrlFingerprint.fingerprint(url);
+        long hash1 = fingerprint;
+        long hash2 = UrlFingerprint.mix(fingerprint) | 1; // Odd step so positions do not repeat early
+
+        boolean added = false;
+        for (int count = 0; count < hashCount; count++) {
+            long bit = ((hash1 + count * hash2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) { // At least one new bit, url was not present
+                bits[word] |= mask;
+                added = true;
+            }
+        }
+
+        if (added)
+            size++;
+        return added;
+    }
+
+
+    @Override
+    public boolean contains (String url) {
+
+        long fingerprint = UrlFingerprint.fingerprint(url);
+        long hash1 = fingerprint;
+        long hash2 = UrlFingerprint.mix(fingerprint) | 1;
+
+        for (int count = 0; count < hashCount; count++) {
+            long bit = ((hash1 + count * hash2) & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+
+    @Override
+    public long size () {
+
+        return size;
+    }
+
+
+    /*
+     * Return memory used by the bit array in bytes
+     */
+    public long getMemoryUsage () {
+
+        return (long) bits.length << 3;
+    }
+
+
+    @Override
+    public void flush () {
+
+    }
+
+
+    @Override
+    public void close () {
+
+    }
+
+}
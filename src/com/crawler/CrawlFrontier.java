@@ -0,0 +1,319 @@
+package com.crawler;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Thread safe url frontier used by the concurrent crawler
+ *
+ *         Urls are kept in one queue per host, a host is handed out to at most one worker at a time and only after its
+ *         crawl delay has elapsed since the previous fetch completed. Hosts waiting to be fetched are ordered by the
+ *         time at which they become ready so that workers always pick the earliest fetchable host.
+ */
+public class CrawlFrontier {
+
+    private final long defaultCrawlDelay; // Delay in milliseconds between two fetches from the same host
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hostReady = lock.newCondition(); // Signalled when a host may have become fetchable
+
+    private final SeenUrlStore seenUrls; // Every url ever added to the frontier
+    private final HashMap<String, HostQueue> hostQueues = new HashMap<String, HostQueue>(); // Pending urls per host
+    private final PriorityQueue<HostQueue> readyHosts = new PriorityQueue<HostQueue>(11, new Comparator<HostQueue>() {
+
+        @Override
+        public int compare (HostQueue h1, HostQueue h2) {
+
+            return Long.compare(h1.nextFetchTime, h2.nextFetchTime); // Earliest fetchable host first
+        }
+    });
+
+    private int pendingUrls = 0; // Count of urls queued but not yet handed out
+    private int inFlightUrls = 0; // Count of urls handed out and not yet completed
+    private boolean closed = false;
+    private boolean keepOpen = false; // Wait for urls from outside the crawl instead of finishing when idle
+
+
+    public CrawlFrontier (long defaultCrawlDelay) {
+
+        this(defaultCrawlDelay, new HashSeenUrlStore());
+    }
+
+
+    /*
+     * Frontier using given store for duplicate checks, the store is only accessed under the frontier lock
+     */
+    public CrawlFrontier (long defaultCrawlDelay, SeenUrlStore seenUrls) {
+
+        this.defaultCrawlDelay = defaultCrawlDelay;
+        this.seenUrls = seenUrls;
+    }
+
+
+    /*
+     * Add url to the frontier if it has never been seen before, return true if it was added
+     */
+    public boolean add (String url) {
+
+        return add(url, -1);
+    }
+
+
+    /*
+     * Add url to the frontier if it has never been seen before, return true if it was added
+     * hostCrawlDelay(milliseconds) raises the default crawl delay for the url's host when the host is first seen,
+     * -1 keeps the default
+     */
+    public boolean add (String url, long hostCrawlDelay) {
+
+        String host = getHost(url);
+        if (null == host)
+            return false;
+
+        lock.lock();
+        try {
+            if (closed || !seenUrls.add(url)) // Frontier stopped or url already seen
+                return false;
+
+            HostQueue hostQueue = hostQueues.get(host);
+            if (null == hostQueue) { // First url for this host
+                hostQueue = new HostQueue(host, Math.max(defaultCrawlDelay, hostCrawlDelay));
+                hostQueues.put(host, hostQueue);
+            }
+
+            hostQueue.urls.add(url);
+            pendingUrls++;
+
+            if (!hostQueue.busy && hostQueue.urls.size() == 1) { // Host idle and was empty, make it schedulable
+                readyHosts.add(hostQueue);
+                hostReady.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Check whether the url has ever been added to the frontier
+     */
+    public boolean contains (String url) {
+
+        lock.lock();
+        try {
+            return seenUrls.contains(url);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Block till a url from a polite host is available and return it
+     * Returns null once the frontier is closed or there is no pending and no in flight url left(unless kept open)
+     */
+    public String take () throws InterruptedException {
+
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+
+                if (closed || (readyHosts.isEmpty() && inFlightUrls == 0 && !keepOpen)) // Nothing left that could
+                    return null;                                                          // produce urls
+
+                HostQueue hostQueue = readyHosts.peek();
+                if (null == hostQueue) { // Every remaining host is being fetched, wait for a completion
+                    hostReady.await();
+                    continue;
+                }
+
+                long waitTime = hostQueue.nextFetchTime - System.currentTimeMillis();
+                if (waitTime > 0) { // Earliest host is still within its crawl delay
+                    hostReady.await(waitTime, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+
+                readyHosts.poll();
+                hostQueue.busy = true; // Only one fetch per host at a time
+                pendingUrls--;
+                inFlightUrls++;
+                return hostQueue.urls.poll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Mark the fetch of given url as complete so that its host can be scheduled again after the crawl delay
+     */
+    public void complete (String url) {
+
+        String host = getHost(url);
+
+        lock.lock();
+        try {
+            inFlightUrls--;
+
+            HostQueue hostQueue = hostQueues.get(host);
+            if (null != hostQueue) {
+                hostQueue.busy = false;
+                hostQueue.nextFetchTime = System.currentTimeMillis() + hostQueue.crawlDelay;
+                if (!hostQueue.urls.isEmpty()) // More urls pending for this host
+                    readyHosts.add(hostQueue);
+            }
+            hostReady.signalAll(); // Wake workers waiting on a host or on termination
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Override the crawl delay for given host, e.g. from Crawl-delay in robots.txt
+     */
+    public void setCrawlDelay (String host, long crawlDelay) {
+
+        lock.lock();
+        try {
+            HostQueue hostQueue = hostQueues.get(host);
+            if (null == hostQueue) {
+                hostQueue = new HostQueue(host, crawlDelay);
+                hostQueues.put(host, hostQueue);
+            } else
+                hostQueue.crawlDelay = crawlDelay;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Stop handing out urls, waiting workers return immediately
+     */
+    public void close () {
+
+        lock.lock();
+        try {
+            closed = true;
+            hostReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Keep workers waiting when the frontier runs empty, for urls added by another source than the workers, e.g. the
+     * other workers of a distributed crawl. Turning it off lets workers finish once the frontier is idle.
+     */
+    public void setKeepOpen (boolean keepOpen) {
+
+        lock.lock();
+        try {
+            this.keepOpen = keepOpen;
+            hostReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Check whether no url is pending or being fetched
+     */
+    public boolean isIdle () {
+
+        lock.lock();
+        try {
+            return pendingUrls == 0 && inFlightUrls == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    public boolean isClosed () {
+
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Return count of urls waiting to be fetched
+     */
+    public int size () {
+
+        lock.lock();
+        try {
+            return pendingUrls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Return count of distinct hosts seen by the frontier
+     */
+    public int hostCount () {
+
+        lock.lock();
+        try {
+            return hostQueues.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Extract host from given url, null if url is malformed
+     */
+    public static String getHost (String url) {
+
+        try {
+            return new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+
+    /*
+     * Pending urls and politeness state for a single host
+     */
+    private static class HostQueue {
+
+        final String host;
+        final ArrayDeque<String> urls = new ArrayDeque<String>();
+        long crawlDelay;
+        long nextFetchTime = 0; // Earliest time at which the next fetch may start
+        boolean busy = false; // A worker is currently fetching from this host
+
+
+        HostQueue (String host, long crawlDelay) {
+
+            this.host = host;
+            this.crawlDelay = crawlDelay;
+        }
+    }
+
+}
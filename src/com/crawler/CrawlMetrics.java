@@ -0,0 +1,452 @@
+package com.crawler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Timespan;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Fetch latency, throughput and error counters of a crawl
+ *
+ *         Every fetch of the crawler(pages, HEAD probes and robots.txt) is recorded with its host, status, bytes and
+ *         the time spent looking up the host, waiting for the response headers and reading the body. Latencies go to
+ *         per host histograms with power of two buckets, so recording costs a few array increments and memory does not
+ *         grow with the number of fetches.
+ *
+ *         While reporting, a snapshot(pages/s, bytes/s, frontier size, robots cache hit rate, counts by status and the
+ *         per host latency percentiles, slowest hosts first) replaces the snapshot file at a fixed interval. Each fetch
+ *         is also committed as a com.crawler.Fetch JFR event and each snapshot as a com.crawler.CrawlStatistics event,
+ *         so a flight recording of the crawl shows them next to GC and thread activity.
+ *
+ *         Thread safe.
+ */
+public class CrawlMetrics {
+
+    private static final long defaultReportInterval = 10000; // Milliseconds between two snapshots
+
+    private final HashMap<String, HostMetrics> hosts = new HashMap<String, HostMetrics>();
+    private final TreeMap<Integer, Long> statusCounts = new TreeMap<Integer, Long>();
+    private final long startNanos = System.nanoTime();
+
+    private long fetches = 0;
+    private long errors = 0;
+    private long pages = 0; // Html pages with their body read
+    private long bytes = 0; // Bytes received on the wire
+    private volatile long frontierSize = 0;
+    private volatile RobotsCache robotsCache;
+
+    private ScheduledExecutorService reporter;
+    private long lastReportNanos = startNanos;
+    private long lastReportPages = 0;
+    private long lastReportBytes = 0;
+
+
+    /*
+     * Record a completed fetch of given url
+     */
+    public void recordFetch (String url, FetchedPage page) {
+
+        String host = getHostKey(url);
+        synchronized (this) {
+            fetches++;
+            bytes += page.getByteCount();
+            if (page.isHtml() && (null != page.getContent() || null != page.getLinks()))
+                pages++;
+            Long statusCount = statusCounts.get(page.getStatusCode());
+            statusCounts.put(page.getStatusCode(), null == statusCount ? 1 : statusCount + 1);
+
+            HostMetrics hostMetrics = getHostMetrics(host);
+            hostMetrics.fetches++;
+            hostMetrics.dns.add(page.getDnsNanos());
+            hostMetrics.headers.add(page.getHeadersNanos());
+            hostMetrics.transfer.add(page.getTransferNanos());
+            hostMetrics.total.add(page.getDnsNanos() + page.getHeadersNanos() + page.getTransferNanos());
+        }
+
+        FetchEvent event = new FetchEvent();
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.host = host;
+            event.status = page.getStatusCode();
+            event.bytes = page.getByteCount();
+            event.dnsTime = page.getDnsNanos();
+            event.headersTime = page.getHeadersNanos();
+            event.transferTime = page.getTransferNanos();
+            event.commit();
+        }
+    }
+
+
+    /*
+     * Record a fetch of given url that failed after elapsedNanos(timeout, refused connection, unknown host...)
+     */
+    public void recordError (String url, long elapsedNanos) {
+
+        String host = getHostKey(url);
+        synchronized (this) {
+            fetches++;
+            errors++;
+            HostMetrics hostMetrics = getHostMetrics(host);
+            hostMetrics.fetches++;
+            hostMetrics.errors++;
+            hostMetrics.total.add(elapsedNanos);
+        }
+
+        FetchEvent event = new FetchEvent();
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.host = host;
+            event.status = -1;
+            event.transferTime = elapsedNanos;
+            event.commit();
+        }
+    }
+
+
+    /*
+     * Set count of urls waiting to be crawled
+     */
+    public void setFrontierSize (long frontierSize) {
+
+        this.frontierSize = frontierSize;
+    }
+
+
+    /*
+     * Report hit rate of given robots.txt cache
+     */
+    public void setRobotsCache (RobotsCache robotsCache) {
+
+        this.robotsCache = robotsCache;
+    }
+
+
+    /*
+     * Start writing a snapshot to given file every intervalMillis and committing it as a JFR event, a null file only
+     * commits the events
+     */
+    public synchronized void startReporting (final File snapshotFile, long intervalMillis) {
+
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread (Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "crawl-metrics");
+                thread.setDaemon(true); // Never keeps a finished crawl alive
+                return thread;
+            }
+        });
+        reporter.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run () {
+
+                report(snapshotFile);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    public void startReporting (File snapshotFile) {
+
+        startReporting(snapshotFile, defaultReportInterval);
+    }
+
+
+    /*
+     * Stop periodic snapshots, the caller writes a final one with report if needed
+     */
+    public synchronized void stopReporting () {
+
+        if (null != reporter) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+
+    /*
+     * Write a snapshot to given file(replacing it once complete) and commit it as a JFR event
+     */
+    public void report (File snapshotFile) {
+
+        String snapshot;
+        CrawlStatisticsEvent event = new CrawlStatisticsEvent();
+        synchronized (this) {
+            long now = System.nanoTime();
+            double seconds = (now - startNanos) / 1e9;
+            double intervalSeconds = Math.max(now - lastReportNanos, 1) / 1e9;
+
+            event.pages = pages;
+            event.pagesPerSecond = (pages - lastReportPages) / intervalSeconds;
+            event.bytesPerSecond = (long) ((bytes - lastReportBytes) / intervalSeconds);
+            event.frontierSize = frontierSize;
+            event.errors = errors;
+            event.robotsCacheHitRate = getRobotsCacheHitRate();
+
+            snapshot = getSnapshot(seconds, intervalSeconds);
+            lastReportNanos = now;
+            lastReportPages = pages;
+            lastReportBytes = bytes;
+        }
+        event.commit();
+
+        if (null == snapshotFile)
+            return;
+
+        File partialFile = new File(snapshotFile.getAbsolutePath() + ".tmp"); // Readers never see half a snapshot
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(partialFile));
+            writer.write(snapshot);
+            writer.close();
+            if (!partialFile.renameTo(snapshotFile)) {
+                snapshotFile.delete();
+                partialFile.renameTo(snapshotFile);
+            }
+        } catch (IOException e) {
+            System.err.println("IO exception occurent while writing crawl metrics: " + snapshotFile.getAbsolutePath());
+        }
+    }
+
+
+    /*
+     * Return a readable snapshot of all counters
+     */
+    public synchronized String getSnapshot () {
+
+        long now = System.nanoTime();
+        return getSnapshot((now - startNanos) / 1e9, Math.max(now - lastReportNanos, 1) / 1e9);
+    }
+
+
+    public synchronized long getPages () {
+
+        return pages;
+    }
+
+
+    public synchronized long getErrors () {
+
+        return errors;
+    }
+
+
+    private String getSnapshot (double seconds, double intervalSeconds) {
+
+        StringBuilder snapshot = new StringBuilder();
+        String newline = System.getProperty("line.separator");
+
+        snapshot.append(String.format("Crawl metrics after %.1f s%n", seconds));
+        snapshot.append(String.format("pages            %d (%.1f/s, last interval %.1f/s)%n", pages, pages / seconds,
+                (pages - lastReportPages) / intervalSeconds));
+        snapshot.append(String.format("bytes            %d (%.1f KB/s, last interval %.1f KB/s)%n", bytes, bytes
+                / seconds / 1024, (bytes - lastReportBytes) / intervalSeconds / 1024));
+        snapshot.append(String.format("fetches          %d (%d errors)%n", fetches, errors));
+        snapshot.append(String.format("frontier size    %d%n", frontierSize));
+
+        RobotsCache robots = robotsCache;
+        if (null != robots)
+            snapshot.append(String.format("robots cache     %d hits, %d misses(%.1f%% hit rate)%n", robots.getHits(),
+                    robots.getMisses(), 100 * getRobotsCacheHitRate()));
+
+        for (Map.Entry<Integer, Long> statusCount : statusCounts.entrySet())
+            snapshot.append(String.format("status %d       %d%n", statusCount.getKey(), statusCount.getValue()));
+
+        snapshot.append(newline).append("Latency percentiles p50/p99 in ms").append(newline).append(
+                String.format("%-40s %7s %6s %13s %13s %13s %13s%n", "host", "fetches", "errors", "dns", "headers",
+                        "transfer", "total"));
+
+        List<Map.Entry<String, HostMetrics>> hostEntries = new ArrayList<Map.Entry<String, HostMetrics>>(hosts
+                .entrySet());
+        Collections.sort(hostEntries, new Comparator<Map.Entry<String, HostMetrics>>() {
+
+            @Override
+            public int compare (Map.Entry<String, HostMetrics> e1, Map.Entry<String, HostMetrics> e2) {
+
+                return Long.compare(e2.getValue().total.sum, e1.getValue().total.sum); // Most crawl time first
+            }
+        });
+        for (Map.Entry<String, HostMetrics> hostEntry : hostEntries) {
+            HostMetrics hostMetrics = hostEntry.getValue();
+            snapshot.append(String.format("%-40s %7d %6d %13s %13s %13s %13s%n", hostEntry.getKey(),
+                    hostMetrics.fetches, hostMetrics.errors, hostMetrics.dns.getPercentiles(), hostMetrics.headers
+                            .getPercentiles(), hostMetrics.transfer.getPercentiles(), hostMetrics.total
+                            .getPercentiles()));
+        }
+        return snapshot.toString();
+    }
+
+
+    private double getRobotsCacheHitRate () {
+
+        RobotsCache robots = robotsCache;
+        if (null == robots)
+            return 0;
+        long lookups = robots.getHits() + robots.getMisses();
+        return lookups == 0 ? 0 : (double) robots.getHits() / lookups;
+    }
+
+
+    private HostMetrics getHostMetrics (String host) {
+
+        HostMetrics hostMetrics = hosts.get(host);
+        if (null == hostMetrics) {
+            hostMetrics = new HostMetrics();
+            hosts.put(host, hostMetrics);
+        }
+        return hostMetrics;
+    }
+
+
+    private static String getHostKey (String url) {
+
+        String host = CrawlFrontier.getHost(url);
+        return null == host ? "(invalid)" : host;
+    }
+
+
+    private static class HostMetrics {
+
+        long fetches;
+        long errors;
+        final LatencyHistogram dns = new LatencyHistogram();
+        final LatencyHistogram headers = new LatencyHistogram();
+        final LatencyHistogram transfer = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+    }
+
+
+    /**
+     * Latency histogram with a bucket per power of two microseconds, percentiles are reported as the upper bound of
+     * their bucket so they are exact to within a factor of two
+     */
+    static class LatencyHistogram {
+
+        private static final int bucketCount = 32; // Last bucket holds everything from 2^30 microseconds(18 min) up
+
+        private final long[] buckets = new long[bucketCount];
+        long count;
+        long sum; // Nanoseconds
+        long max;
+
+
+        void add (long nanos) {
+
+            long micros = Math.max(nanos, 0) / 1000;
+            buckets[Math.min(64 - Long.numberOfLeadingZeros(micros), bucketCount - 1)]++;
+            count++;
+            sum += nanos;
+            max = Math.max(max, nanos);
+        }
+
+
+        /*
+         * Upper bound of the bucket holding given percentile in milliseconds, exact max for the top bucket
+         */
+        double getPercentile (double percentile) {
+
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank && seen > 0)
+                    return Math.min(1L << bucket, Math.max(max / 1000, 1)) / 1000.0;
+            }
+            return 0;
+        }
+
+
+        String getPercentiles () {
+
+            return count == 0 ? "-" : String.format("%.1f/%.1f", getPercentile(50), getPercentile(99));
+        }
+    }
+
+
+    @Name("com.crawler.Fetch")
+    @Label("Crawler Fetch")
+    @Category("Crawler")
+    @Description("Http request sent by the crawler, status -1 for a failed request")
+    static class FetchEvent extends Event {
+
+        @Label("Url")
+        String url;
+
+        @Label("Host")
+        String host;
+
+        @Label("Status")
+        int status;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("DNS Time")
+        @Timespan
+        long dnsTime;
+
+        @Label("Headers Time")
+        @Description("Request sent to response headers received, includes connecting unless a connection was reused")
+        @Timespan
+        long headersTime;
+
+        @Label("Transfer Time")
+        @Timespan
+        long transferTime;
+    }
+
+
+    @Name("com.crawler.CrawlStatistics")
+    @Label("Crawl Statistics")
+    @Category("Crawler")
+    @Description("Crawl counters at a metrics snapshot, rates over the interval since the previous snapshot")
+    static class CrawlStatisticsEvent extends Event {
+
+        @Label("Pages")
+        long pages;
+
+        @Label("Pages per Second")
+        double pagesPerSecond;
+
+        @Label("Bytes per Second")
+        @DataAmount(DataAmount.BYTES)
+        long bytesPerSecond;
+
+        @Label("Frontier Size")
+        long frontierSize;
+
+        @Label("Errors")
+        long errors;
+
+        @Label("Robots Cache Hit Rate")
+        @Percentage
+        double robotsCacheHitRate;
+    }
+
+}
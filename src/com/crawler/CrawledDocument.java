@@ -0,0 +1,36 @@
+package com.crawler;
+
+import org.jsoup.nodes.Document;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Html page fetched and parsed by the crawler, handed to the indexer in the crawl and index mode so that the
+ *         page is neither fetched nor parsed a second time
+ */
+public class CrawledDocument {
+
+    private final String url; // Url as crawled, before any redirect
+    private final Document document;
+
+
+    public CrawledDocument (String url, Document document) {
+
+        this.url = url;
+        this.document = document;
+    }
+
+
+    public String getUrl () {
+
+        return url;
+    }
+
+
+    public Document getDocument () {
+
+        return document;
+    }
+
+}
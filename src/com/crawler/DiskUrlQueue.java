@@ -0,0 +1,411 @@
+package com.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         FIFO queue of urls stored in append-only segment files on disk
+ *
+ *         Urls are appended one per line to the tail segment, a new segment is started once the tail grows past the
+ *         segment size. The head is read sequentially, fully consumed segments are deleted by the next checkpoint.
+ *         checkpoint() records the read and write positions and any extra crawl counters in a small properties file
+ *         so that a crawl can resume from the last checkpoint. On resume the queue is exactly as it was at the
+ *         checkpoint: urls read after it are handed out again, urls appended after it are dropped from the queue and
+ *         returned by getDroppedUrls() so the caller can undo whatever it recorded for them.
+ *
+ *         Not thread safe.
+ */
+public class DiskUrlQueue {
+
+    private static final Charset utf8 = Charset.forName("UTF-8");
+    private static final String checkpointFileName = "checkpoint";
+    private static final String segmentPrefix = "queue_";
+    private static final String segmentExtension = ".seg";
+    private static final long defaultSegmentSize = 64L << 20; // 64MB per segment
+
+    private final File directory;
+    private final long segmentSize;
+
+    // Tail segment being appended to
+    private int tailSegment;
+    private long tailLength;
+    private OutputStream tailWriter;
+
+    // Head segment being read from
+    private int headSegment;
+    private int oldestSegment; // First segment still on disk, segments before headSegment are kept till a checkpoint
+    private long headOffset; // Offset of the first unread byte in head segment
+    private RandomAccessFile headReader;
+    private byte[] readBuffer = new byte[64 << 10];
+    private int bufferStart = 0; // Start of unread bytes in read buffer
+    private int bufferEnd = 0; // End of valid bytes in read buffer
+
+    private long size; // Urls queued and not yet read
+    private Properties checkpoint = new Properties(); // Last checkpoint including caller counters
+    private List<String> droppedUrls = new ArrayList<String>(); // Urls appended after the checkpoint resumed from
+
+
+    /*
+     * Open a queue in given directory with default segment size, resuming from its checkpoint if one exists
+     */
+    public DiskUrlQueue (File directory) throws IOException {
+
+        this(directory, defaultSegmentSize);
+    }
+
+
+    /*
+     * Open a queue in given directory, resuming from its checkpoint if one exists
+     */
+    public DiskUrlQueue (File directory, long segmentSize) throws IOException {
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        directory.mkdirs();
+
+        File checkpointFile = new File(directory, checkpointFileName);
+        if (checkpointFile.exists()) { // Resume from last checkpoint
+            FileInputStream checkpointStream = new FileInputStream(checkpointFile);
+            checkpoint.load(checkpointStream);
+            checkpointStream.close();
+
+            headSegment = Integer.parseInt(checkpoint.getProperty("queue.headSegment"));
+            headOffset = Long.parseLong(checkpoint.getProperty("queue.headOffset"));
+            tailSegment = Integer.parseInt(checkpoint.getProperty("queue.tailSegment"));
+            oldestSegment = headSegment;
+            String checkpointTailLength = checkpoint.getProperty("queue.tailLength");
+            if (null != checkpointTailLength) {
+                tailLength = Long.parseLong(checkpointTailLength);
+                size = Long.parseLong(checkpoint.getProperty("queue.size"));
+                rollBackTail();
+            } else
+                keepTail(); // Checkpoint written before tail lengths were recorded
+        } else { // Fresh queue, discard segments of an earlier crawl
+            File[] oldSegments = directory.listFiles();
+            if (null != oldSegments)
+                for (File oldSegment : oldSegments)
+                    if (oldSegment.getName().startsWith(segmentPrefix))
+                        oldSegment.delete();
+        }
+
+        tailWriter = new BufferedOutputStream(new FileOutputStream(getSegmentFile(tailSegment), true), 64 << 10);
+    }
+
+
+    /*
+     * Check whether the queue was resumed from an earlier checkpoint
+     */
+    public boolean isResumed () {
+
+        return !checkpoint.isEmpty();
+    }
+
+
+    /*
+     * Return counter saved with the last checkpoint or default value if absent
+     */
+    public long getCheckpointValue (String key, long defaultValue) {
+
+        String value = checkpoint.getProperty(key);
+        return null == value ? defaultValue : Long.parseLong(value);
+    }
+
+
+    /*
+     * Return urls that were appended after the checkpoint the queue resumed from, in the order they were added
+     * Only complete lines are returned, a url whose write was cut short by a crash never left the queue's buffer
+     */
+    public List<String> getDroppedUrls () {
+
+        return droppedUrls;
+    }
+
+
+    /*
+     * Append url to the tail of the queue, it is buffered till the next flush, poll or checkpoint
+     */
+    public void add (String url) throws IOException {
+
+        if (tailLength >= segmentSize) { // Roll over to a new segment
+            tailWriter.close();
+            tailSegment++;
+            tailLength = 0;
+            tailWriter = new BufferedOutputStream(new FileOutputStream(getSegmentFile(tailSegment), true), 64 << 10);
+        }
+
+        byte[] line = (url + "\n").getBytes(utf8);
+        tailWriter.write(line);
+        tailLength += line.length;
+        size++;
+    }
+
+
+    /*
+     * Remove and return the url at the head of the queue, null if the queue is empty
+     */
+    public String poll () throws IOException {
+
+        while (true) {
+
+            for (int index = bufferStart; index < bufferEnd; index++) { // Look for a complete line in buffer
+                if (readBuffer[index] == '\n') {
+                    String url = new String(readBuffer, bufferStart, index - bufferStart, utf8);
+                    headOffset += index + 1 - bufferStart;
+                    bufferStart = index + 1;
+                    size--;
+                    return url;
+                }
+            }
+
+            if (!fillBuffer()) { // Nothing more in head segment
+                if (headSegment >= tailSegment)
+                    return null; // Queue empty
+
+                closeHeadReader(); // Head segment consumed, move on to the next one, checkpoint deletes it
+                headSegment++;
+                headOffset = 0;
+            }
+        }
+    }
+
+
+    /*
+     * Return count of urls in the queue
+     */
+    public long size () {
+
+        return size;
+    }
+
+
+    /*
+     * Write buffered urls to the tail segment, a url added and flushed survives a crash of the process
+     */
+    public void flush () throws IOException {
+
+        tailWriter.flush();
+    }
+
+
+    /*
+     * Flush the queue and atomically record its position together with given crawl counters, then delete the
+     * segments consumed before it
+     */
+    public void checkpoint (Properties counters) throws IOException {
+
+        tailWriter.flush();
+
+        Properties newCheckpoint = new Properties();
+        if (null != counters)
+            newCheckpoint.putAll(counters);
+        newCheckpoint.setProperty("queue.headSegment", String.valueOf(headSegment));
+        newCheckpoint.setProperty("queue.headOffset", String.valueOf(headOffset));
+        newCheckpoint.setProperty("queue.tailSegment", String.valueOf(tailSegment));
+        newCheckpoint.setProperty("queue.tailLength", String.valueOf(tailLength));
+        newCheckpoint.setProperty("queue.size", String.valueOf(size));
+
+        File temporaryFile = new File(directory, checkpointFileName + ".tmp");
+        FileOutputStream checkpointStream = new FileOutputStream(temporaryFile);
+        newCheckpoint.store(checkpointStream, "Crawl frontier checkpoint");
+        checkpointStream.getFD().sync();
+        checkpointStream.close();
+
+        File checkpointFile = new File(directory, checkpointFileName);
+        checkpointFile.delete();
+        if (!temporaryFile.renameTo(checkpointFile))
+            throw new IOException("Could not write checkpoint in " + directory.getAbsolutePath());
+        checkpoint = newCheckpoint;
+
+        for (; oldestSegment < headSegment; oldestSegment++) // No longer needed to resume
+            getSegmentFile(oldestSegment).delete();
+    }
+
+
+    /*
+     * Close segment files, queue contents stay on disk
+     */
+    public void close () throws IOException {
+
+        tailWriter.close();
+        closeHeadReader();
+    }
+
+
+    /*
+     * Read more bytes of head segment after the unread part of the buffer, return false if nothing new was read
+     */
+    private boolean fillBuffer () throws IOException {
+
+        if (headSegment == tailSegment) // Reading the segment being written, make appended urls visible
+            tailWriter.flush();
+
+        if (null == headReader) {
+            File segment = getSegmentFile(headSegment);
+            if (!segment.exists())
+                return false;
+            headReader = new RandomAccessFile(segment, "r");
+            bufferStart = bufferEnd = 0;
+        }
+
+        int unread = bufferEnd - bufferStart;
+        if (unread == readBuffer.length) { // Line longer than buffer, grow it
+            byte[] largerBuffer = new byte[readBuffer.length * 2];
+            System.arraycopy(readBuffer, bufferStart, largerBuffer, 0, unread);
+            readBuffer = largerBuffer;
+        } else
+            System.arraycopy(readBuffer, bufferStart, readBuffer, 0, unread); // Move partial line to the front
+        bufferStart = 0;
+        bufferEnd = unread;
+
+        headReader.seek(headOffset + unread);
+        int read = headReader.read(readBuffer, bufferEnd, readBuffer.length - bufferEnd);
+        if (read <= 0)
+            return false;
+
+        bufferEnd += read;
+        return true;
+    }
+
+
+    /*
+     * Cut the tail back to the checkpoint: collect urls appended after it into droppedUrls, truncate the checkpoint's
+     * tail segment to its recorded length and delete later segments. Segments consumed before the checkpoint but not
+     * yet deleted are removed too
+     */
+    private void rollBackTail () throws IOException {
+
+        readLines(getSegmentFile(tailSegment), tailLength, droppedUrls);
+        for (int segment = tailSegment + 1; getSegmentFile(segment).exists(); segment++) {
+            readLines(getSegmentFile(segment), 0, droppedUrls);
+            getSegmentFile(segment).delete();
+        }
+
+        RandomAccessFile segmentFile = new RandomAccessFile(getSegmentFile(tailSegment), "rw");
+        segmentFile.setLength(tailLength);
+        segmentFile.close();
+
+        for (int segment = headSegment - 1; getSegmentFile(segment).exists(); segment--)
+            getSegmentFile(segment).delete();
+    }
+
+
+    /*
+     * Keep the urls appended after a checkpoint that has no tail length: continue writing after the last complete line
+     * of the last segment and count every url from the head on, since the checkpointed size does not include them
+     */
+    private void keepTail () throws IOException {
+
+        while (getSegmentFile(tailSegment + 1).exists())
+            tailSegment++;
+        tailLength = truncatePartialLine(getSegmentFile(tailSegment));
+
+        size = 0;
+        for (int segment = headSegment; segment <= tailSegment; segment++)
+            size += countLines(getSegmentFile(segment), segment == headSegment ? headOffset : 0);
+    }
+
+
+    /*
+     * Drop a partially written last line left by a crash, return resulting length of the segment
+     */
+    private static long truncatePartialLine (File segment) throws IOException {
+
+        if (!segment.exists())
+            return 0;
+
+        RandomAccessFile segmentFile = new RandomAccessFile(segment, "rw");
+        long length = segmentFile.length();
+        while (length > 0) { // Walk back to the last complete line
+            segmentFile.seek(length - 1);
+            if (segmentFile.read() == '\n')
+                break;
+            length--;
+        }
+        segmentFile.setLength(length);
+        segmentFile.close();
+        return length;
+    }
+
+
+    /*
+     * Count the complete lines of segment from given offset on
+     */
+    private static long countLines (File segment, long offset) throws IOException {
+
+        if (!segment.exists())
+            return 0;
+
+        long count = 0;
+        FileInputStream segmentStream = new FileInputStream(segment);
+        try {
+            segmentStream.getChannel().position(offset);
+            InputStream segmentReader = new BufferedInputStream(segmentStream, 64 << 10);
+            int next;
+            while ((next = segmentReader.read()) != -1)
+                if (next == '\n')
+                    count++;
+        } finally {
+            segmentStream.close();
+        }
+        return count;
+    }
+
+
+    /*
+     * Add the complete lines of segment from given offset on to lines, a partial last line is skipped
+     */
+    private static void readLines (File segment, long offset, List<String> lines) throws IOException {
+
+        if (!segment.exists())
+            return;
+
+        FileInputStream segmentStream = new FileInputStream(segment);
+        try {
+            segmentStream.getChannel().position(offset);
+            InputStream segmentReader = new BufferedInputStream(segmentStream, 64 << 10);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int next;
+            while ((next = segmentReader.read()) != -1) {
+                if (next == '\n') {
+                    lines.add(new String(line.toByteArray(), utf8));
+                    line.reset();
+                } else
+                    line.write(next);
+            }
+        } finally {
+            segmentStream.close();
+        }
+    }
+
+
+    private void closeHeadReader () throws IOException {
+
+        if (null != headReader) {
+            headReader.close();
+            headReader = null;
+        }
+        bufferStart = bufferEnd = 0;
+    }
+
+
+    private File getSegmentFile (int segment) {
+
+        return new File(directory, segmentPrefix + String.format("%05d", segment) + segmentExtension);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.crawler;
+
+import java.util.HashMap;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Set of allowed domains stored as a trie of reversed host labels(neu.edu is stored as edu -> neu)
+ * 
+ *         A host matches if it equals an allowed domain or is one of its sub domains, found by walking the host labels
+ *         from the right. The cost of a lookup depends on the number of labels in the host and not on the number of
+ *         allowed domains, and unlike a substring test notneu.edu does not match neu.edu.
+ */
+public class DomainSuffixTrie {
+
+    private final LabelNode root = new LabelNode();
+    private int size = 0;
+
+
+    /*
+     * Add an allowed domain, its sub domains are allowed as well
+     */
+    public void add (String domain) {
+
+        String[] labels = domain.toLowerCase().split("\\.");
+        LabelNode node = root;
+        for (int index = labels.length - 1; index >= 0; index--) { // Walk labels right to left
+            if (labels[index].isEmpty())
+                continue;
+            LabelNode child = node.children.get(labels[index]);
+            if (null == child) {
+                child = new LabelNode();
+                node.children.put(labels[index], child);
+            }
+            node = child;
+        }
+        if (!node.terminal)
+            size++;
+        node.terminal = true;
+    }
+
+
+    /*
+     * Check whether host is an allowed domain or a sub domain of one
+     */
+    public boolean matches (String host) {
+
+        LabelNode node = root;
+        int end = host.length();
+        if (end > 0 && host.charAt(end - 1) == '.') // Fully qualified host name
+            end--;
+
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            node = node.children.get(host.substring(start, end).toLowerCase());
+            if (null == node)
+                return false;
+            if (node.terminal) // Allowed domain reached, remaining labels are a sub domain
+                return true;
+            end = start - 1;
+        }
+        return false;
+    }
+
+
+    /*
+     * Return count of allowed domains
+     */
+    public int size () {
+
+        return size;
+    }
+
+
+    private static class LabelNode {
+
+        final HashMap<String, LabelNode> children = new HashMap<String, LabelNode>(4);
+        boolean terminal = false; // An allowed domain ends at this label
+    }
+
+}
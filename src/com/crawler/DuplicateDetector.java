@@ -0,0 +1,190 @@
+package com.crawler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Detects pages that repeat the content of an earlier page, used by the crawler and the indexer
+ *
+ *         Exact duplicates are caught by a 64 bit hash of the whole content. Near duplicates(mirrors, session id
+ *         variants, pages differing in a date or a counter) are caught by 64 bit SimHash fingerprints of the page
+ *         tokens: similar token streams give fingerprints differing in few bits. A page is a near duplicate if an
+ *         earlier fingerprint lies within maxDistance bits of its own. To avoid comparing against every fingerprint the
+ *         64 bits are split into maxDistance + 1 bands, two fingerprints within maxDistance bits agree exactly on at
+ *         least one band, so only fingerprints sharing a band value are compared.
+ *
+ *         Thread safe.
+ */
+public class DuplicateDetector {
+
+    private static final int defaultMaxDistance = 3; // Bits two fingerprints may differ in and still be near duplicates
+
+    private final int maxDistance;
+    private final int bandCount;
+    private final int bandWidth; // Bits per band, the last band takes the remaining bits
+
+    private final HashSet<Long> contentHashes = new HashSet<Long>();
+    private final ArrayList<HashMap<Long, ArrayList<Long>>> bands; // Per band: band value -> fingerprints with it
+
+    private long exactDuplicates = 0;
+    private long nearDuplicates = 0;
+
+
+    public DuplicateDetector () {
+
+        this(defaultMaxDistance);
+    }
+
+
+    public DuplicateDetector (int maxDistance) {
+
+        this.maxDistance = maxDistance;
+        this.bandCount = maxDistance + 1;
+        this.bandWidth = 64 / bandCount;
+
+        bands = new ArrayList<HashMap<Long, ArrayList<Long>>>(bandCount);
+        for (int band = 0; band < bandCount; band++)
+            bands.add(new HashMap<Long, ArrayList<Long>>());
+    }
+
+
+    /*
+     * Record content hash of given content, return false if the same content was recorded before
+     */
+    public boolean addContent (CharSequence content) {
+
+        return addContentHash(contentHash(content));
+    }
+
+
+    /*
+     * Record a hash computed with contentHash, return false if the same hash was recorded before
+     */
+    public synchronized boolean addContentHash (long contentHash) {
+
+        if (contentHashes.add(contentHash))
+            return true;
+
+        exactDuplicates++;
+        return false;
+    }
+
+
+    /*
+     * Record given SimHash fingerprint, return false without recording it if a fingerprint within maxDistance bits was
+     * recorded before
+     */
+    public synchronized boolean addFingerprint (long fingerprint) {
+
+        for (int band = 0; band < bandCount; band++) {
+            ArrayList<Long> candidates = bands.get(band).get(getBand(fingerprint, band));
+            if (null == candidates)
+                continue;
+            for (long candidate : candidates) {
+                if (Long.bitCount(candidate ^ fingerprint) <= maxDistance) {
+                    nearDuplicates++;
+                    return false;
+                }
+            }
+        }
+
+        for (int band = 0; band < bandCount; band++) {
+            Long bandValue = getBand(fingerprint, band);
+            ArrayList<Long> fingerprints = bands.get(band).get(bandValue);
+            if (null == fingerprints) {
+                fingerprints = new ArrayList<Long>(2);
+                bands.get(band).put(bandValue, fingerprints);
+            }
+            fingerprints.add(fingerprint);
+        }
+        return true;
+    }
+
+
+    /*
+     * Forget all recorded content and reset the duplicate counts
+     */
+    public synchronized void clear () {
+
+        contentHashes.clear();
+        for (HashMap<Long, ArrayList<Long>> band : bands)
+            band.clear();
+        exactDuplicates = 0;
+        nearDuplicates = 0;
+    }
+
+
+    /*
+     * Return count of pages rejected as exact duplicates
+     */
+    public synchronized long getExactDuplicates () {
+
+        return exactDuplicates;
+    }
+
+
+    /*
+     * Return count of pages rejected as near duplicates
+     */
+    public synchronized long getNearDuplicates () {
+
+        return nearDuplicates;
+    }
+
+
+    /*
+     * 64 bit hash of the whole content
+     */
+    public static long contentHash (CharSequence content) {
+
+        return UrlFingerprint.fingerprint(content);
+    }
+
+
+    /*
+     * Value of given band of the fingerprint
+     */
+    private long getBand (long fingerprint, int band) {
+
+        int shift = band * bandWidth;
+        int width = band == bandCount - 1 ? 64 - shift : bandWidth;
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        return (fingerprint >>> shift) & mask;
+    }
+
+
+    /**
+     * SimHash of a token stream: every token votes on each of the 64 bits with its hash, the fingerprint keeps the
+     * bits that got a majority
+     */
+    public static class SimHash {
+
+        private final int[] votes = new int[64];
+
+
+        /*
+         * Add one occurrence of a token, repeated tokens weigh more
+         */
+        public void add (CharSequence token) {
+
+            long tokenHash = UrlFingerprint.fingerprint(token);
+            for (int bit = 0; bit < 64; bit++)
+                votes[bit] += ((tokenHash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+
+
+        public long getFingerprint () {
+
+            long fingerprint = 0;
+            for (int bit = 0; bit < 64; bit++)
+                if (votes[bit] > 0)
+                    fingerprint |= 1L << bit;
+            return fingerprint;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.crawler;
+
+import java.util.List;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Result of fetching a url with PageFetcher
+ */
+public class FetchedPage {
+
+    private static final String htmlContentType = "text/html";
+
+    private final String url; // Final url after redirects
+    private final int statusCode;
+    private final String contentType;
+    private final String content; // Decoded body, null if the body was not read
+    private final List<String> links; // Links read from the body by PageFetcher.fetchLinks, null otherwise
+    private final long byteCount; // Bytes received on the wire for the body
+    private final long dnsNanos; // Host name lookup, close to zero once the JVM resolver cached the host
+    private final long headersNanos; // Request sent to response headers received, includes connecting to the host
+                                     // unless a pooled connection was reused
+    private final long transferNanos; // Response headers to body fully read
+
+
+    public FetchedPage (String url, int statusCode, String contentType, String content, long byteCount) {
+
+        this(url, statusCode, contentType, content, byteCount, 0, 0, 0);
+    }
+
+
+    public FetchedPage (String url, int statusCode, String contentType, String content, long byteCount, long dnsNanos,
+            long headersNanos, long transferNanos) {
+
+        this(url, statusCode, contentType, content, null, byteCount, dnsNanos, headersNanos, transferNanos);
+    }
+
+
+    public FetchedPage (String url, int statusCode, String contentType, String content, List<String> links,
+            long byteCount, long dnsNanos, long headersNanos, long transferNanos) {
+
+        this.url = url;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.content = content;
+        this.links = links;
+        this.byteCount = byteCount;
+        this.dnsNanos = dnsNanos;
+        this.headersNanos = headersNanos;
+        this.transferNanos = transferNanos;
+    }
+
+
+    /*
+     * Check for a successful response with html content type
+     */
+    public boolean isHtml () {
+
+        return statusCode == 200 && null != contentType && contentType.toLowerCase().contains(htmlContentType);
+    }
+
+
+    public String getUrl () {
+
+        return url;
+    }
+
+
+    public int getStatusCode () {
+
+        return statusCode;
+    }
+
+
+    public String getContentType () {
+
+        return contentType;
+    }
+
+
+    public String getContent () {
+
+        return content;
+    }
+
+
+    public List<String> getLinks () {
+
+        return links;
+    }
+
+
+    public long getByteCount () {
+
+        return byteCount;
+    }
+
+
+    public long getDnsNanos () {
+
+        return dnsNanos;
+    }
+
+
+    public long getHeadersNanos () {
+
+        return headersNanos;
+    }
+
+
+    public long getTransferNanos () {
+
+        return transferNanos;
+    }
+
+}
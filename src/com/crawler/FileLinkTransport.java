@@ -0,0 +1,134 @@
+package com.crawler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Link transport through a shared directory, for workers on one machine or on a shared file system
+ *
+ *         Every partition has an inbox directory partition_N. A batch is written to a temporary file in the inbox of
+ *         its target and renamed once complete, so readers never see partial batches. Batch names start with the
+ *         sending partition and a sequence number, so several processes can write to the same inbox. The receiver
+ *         polls its inbox, reads batches in name order and deletes them.
+ */
+public class FileLinkTransport implements LinkTransport {
+
+    private static final String batchExtension = ".links";
+    private static final String partialExtension = ".tmp";
+    private static final long pollInterval = 20; // Milliseconds between two scans of an empty inbox
+
+    private final File directory;
+    private final int partition;
+    private final File inbox;
+    private long batchSequence = 0;
+
+
+    public FileLinkTransport (File directory, int partition) throws IOException {
+
+        this.directory = directory;
+        this.partition = partition;
+        this.inbox = getInbox(directory, partition);
+        if (!inbox.isDirectory() && !inbox.mkdirs())
+            throw new IOException("Could not create link inbox: " + inbox.getAbsolutePath());
+    }
+
+
+    @Override
+    public synchronized void send (int targetPartition, List<String> urls) throws IOException {
+
+        if (urls.isEmpty())
+            return;
+
+        File targetInbox = getInbox(directory, targetPartition);
+        targetInbox.mkdirs();
+        String batchName = String.format("%05d_%012d", partition, batchSequence++);
+        File partialFile = new File(targetInbox, batchName + partialExtension);
+
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partialFile), "UTF-8"));
+        try {
+            for (String url : urls) {
+                writer.write(url);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!partialFile.renameTo(new File(targetInbox, batchName + batchExtension)))
+            throw new IOException("Could not publish link batch: " + partialFile.getAbsolutePath());
+    }
+
+
+    @Override
+    public List<String> receive (long timeout) throws IOException, InterruptedException {
+
+        long deadline = System.currentTimeMillis() + timeout;
+        List<String> urls = new ArrayList<String>();
+
+        while (true) {
+            File[] batches = inbox.listFiles(new FilenameFilter() {
+
+                @Override
+                public boolean accept (File dir, String name) {
+
+                    return name.endsWith(batchExtension);
+                }
+            });
+
+            if (null != batches && batches.length > 0) {
+                Arrays.sort(batches); // Batches of one sender in the order they were sent
+                for (File batch : batches)
+                    readBatch(batch, urls);
+                return urls;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return urls;
+            Thread.sleep(Math.min(pollInterval, remaining));
+        }
+    }
+
+
+    @Override
+    public void close () {
+
+    }
+
+
+    private static void readBatch (File batch, List<String> urls) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(batch), "UTF-8"));
+        try {
+            String url;
+            while (null != (url = reader.readLine()))
+                if (!url.isEmpty())
+                    urls.add(url);
+        } finally {
+            reader.close();
+        }
+
+        if (!batch.delete())
+            throw new IOException("Could not remove link batch: " + batch.getAbsolutePath());
+    }
+
+
+    private static File getInbox (File directory, int partition) {
+
+        return new File(directory, "partition_" + partition);
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.crawler;
+
+import java.util.HashSet;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         In-memory seen url store keeping the full url strings, exact but costs hundreds of bytes per url
+ */
+public class HashSeenUrlStore implements SeenUrlStore {
+
+    private final HashSet<String> urls = new HashSet<String>();
+
+
+    @Override
+    public boolean add (String url) {
+
+        return urls.add(url);
+    }
+
+
+    @Override
+    public boolean contains (String url) {
+
+        return urls.contains(url);
+    }
+
+
+    @Override
+    public long size () {
+
+        return urls.size();
+    }
+
+
+    @Override
+    public void flush () {
+
+    }
+
+
+    @Override
+    public void close () {
+
+        urls.clear();
+    }
+
+}
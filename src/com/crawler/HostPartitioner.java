@@ -0,0 +1,90 @@
+package com.crawler;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Assigns every host to one of the workers of a distributed crawl by consistent hashing
+ *
+ *         Each partition owns virtualNodes points on a 64 bit hash ring, a host belongs to the partition owning the
+ *         first point at or after the hash of the host name. All urls of a host land on the same worker so its
+ *         politeness state lives in one place, and adding a worker moves only about 1/N of the hosts.
+ *
+ *         Thread safe, every worker must use the same partition count.
+ */
+public class HostPartitioner {
+
+    private static final int defaultVirtualNodes = 128; // Ring points per partition, more points spread hosts evenly
+
+    private final int partitionCount;
+    private final long[] ringPoints; // Sorted hashes of the ring points
+    private final int[] ringPartitions; // Partition owning the ring point at the same index
+
+
+    public HostPartitioner (int partitionCount) {
+
+        this(partitionCount, defaultVirtualNodes);
+    }
+
+
+    public HostPartitioner (int partitionCount, int virtualNodes) {
+
+        if (partitionCount < 1)
+            throw new IllegalArgumentException("Partition count must be positive: " + partitionCount);
+
+        this.partitionCount = partitionCount;
+        int pointCount = partitionCount * virtualNodes;
+
+        long[] points = new long[pointCount];
+        for (int partition = 0; partition < partitionCount; partition++)
+            for (int node = 0; node < virtualNodes; node++)
+                points[partition * virtualNodes + node] = pointHash(partition, node);
+
+        long[] sortedPoints = points.clone();
+        Arrays.sort(sortedPoints);
+        ringPoints = sortedPoints;
+        ringPartitions = new int[pointCount];
+        for (int index = 0; index < pointCount; index++) // Owner of each sorted point
+            ringPartitions[Arrays.binarySearch(sortedPoints, points[index])] = index / virtualNodes;
+    }
+
+
+    /*
+     * Return the partition owning the host of given url, 0 for a malformed url
+     */
+    public int getPartition (String url) {
+
+        String host = CrawlFrontier.getHost(url);
+        return null == host ? 0 : getHostPartition(host.toLowerCase());
+    }
+
+
+    /*
+     * Return the partition owning given host
+     */
+    public int getHostPartition (String host) {
+
+        if (partitionCount == 1)
+            return 0;
+
+        int index = Arrays.binarySearch(ringPoints, UrlFingerprint.fingerprint(host));
+        if (index < 0)
+            index = -index - 1; // First point after the host hash
+        return ringPartitions[index == ringPoints.length ? 0 : index]; // Wrap around the ring
+    }
+
+
+    public int getPartitionCount () {
+
+        return partitionCount;
+    }
+
+
+    private static long pointHash (int partition, int node) {
+
+        return UrlFingerprint.fingerprint("partition-" + partition + "#" + node);
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.crawler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Outgoing side of a distributed crawl worker: decides which links stay local and batches the others for the
+ *         workers owning their hosts
+ *
+ *         Links are sent once per worker, a link found again on another page is dropped here instead of crossing the
+ *         transport. Crawl threads only queue links, the exchange thread of the worker sends them on flush in batches
+ *         of at most batchSize urls.
+ *
+ *         Thread safe.
+ */
+public class LinkExchange {
+
+    private static final int defaultBatchSize = 256;
+
+    private final HostPartitioner partitioner;
+    private final int partition;
+    private final LinkTransport transport;
+    private final int batchSize;
+
+    private final SeenUrlStore sentUrls = new HashSeenUrlStore();
+    private final List<List<String>> outgoingBatches; // Per partition: urls waiting to be sent
+    private long sentCount = 0;
+    private long receivedCount = 0;
+
+
+    public LinkExchange (HostPartitioner partitioner, int partition, LinkTransport transport) {
+
+        this(partitioner, partition, transport, defaultBatchSize);
+    }
+
+
+    public LinkExchange (HostPartitioner partitioner, int partition, LinkTransport transport, int batchSize) {
+
+        this.partitioner = partitioner;
+        this.partition = partition;
+        this.transport = transport;
+        this.batchSize = batchSize;
+
+        outgoingBatches = new ArrayList<List<String>>(partitioner.getPartitionCount());
+        for (int target = 0; target < partitioner.getPartitionCount(); target++)
+            outgoingBatches.add(new ArrayList<String>());
+    }
+
+
+    /*
+     * Check whether the host of url belongs to this worker
+     */
+    public boolean isLocal (String url) {
+
+        return partitioner.getPartition(url) == partition;
+    }
+
+
+    /*
+     * Queue url for the worker owning its host, return false if it was queued before
+     * Nothing is sent here so crawl threads never wait on the transport, flush sends the queued urls
+     */
+    public synchronized boolean send (String url) {
+
+        if (!sentUrls.add(url))
+            return false;
+
+        outgoingBatches.get(partitioner.getPartition(url)).add(url);
+        sentCount++;
+        return true;
+    }
+
+
+    /*
+     * Send every queued url in batches of at most batchSize urls
+     */
+    public void flush () throws IOException {
+
+        for (int target = 0; target < outgoingBatches.size(); target++) {
+            List<String> urls;
+            synchronized (this) {
+                urls = outgoingBatches.get(target);
+                if (urls.isEmpty())
+                    continue;
+                outgoingBatches.set(target, new ArrayList<String>());
+            }
+            for (int start = 0; start < urls.size(); start += batchSize) // Outside the lock, threads keep queueing
+                transport.send(target, urls.subList(start, Math.min(start + batchSize, urls.size())));
+        }
+    }
+
+
+    /*
+     * Return urls sent to this worker by the others, waiting up to timeout milliseconds
+     */
+    public List<String> receive (long timeout) throws IOException, InterruptedException {
+
+        List<String> urls = transport.receive(timeout);
+        synchronized (this) {
+            receivedCount += urls.size();
+        }
+        return urls;
+    }
+
+
+    public int getPartition () {
+
+        return partition;
+    }
+
+
+    public synchronized long getSentCount () {
+
+        return sentCount;
+    }
+
+
+    public synchronized long getReceivedCount () {
+
+        return receivedCount;
+    }
+
+}
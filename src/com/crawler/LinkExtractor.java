@@ -0,0 +1,394 @@
+package com.crawler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Extracts links from html with a single pass tokenizer instead of building a DOM
+ *
+ *         Returns the absolute href of every <a> tag in document order, resolved against the page url or the first
+ *         <base href> of the page, the same links Jsoup's select("a[href]") with abs:href gives. Comments, doctype and
+ *         the contents of script and style elements are skipped. Reading stops as soon as maxLinks links were found
+ *         unless the page text is being fingerprinted as well, in which case words outside tags are fed to a SimHash
+ *         in the same pass. Tag and attribute names are matched in reusable buffers, only the href values that are
+ *         kept become strings.
+ *
+ *         Not thread safe, use one extractor per thread.
+ */
+public class LinkExtractor {
+
+    private static final int bufferSize = 8 << 10;
+
+    private final char[] buffer = new char[bufferSize];
+    private int bufferStart = 0;
+    private int bufferEnd = 0;
+    private Reader input;
+
+    private final StringBuilder tagName = new StringBuilder(16);
+    private final StringBuilder attributeName = new StringBuilder(16);
+    private final StringBuilder attributeValue = new StringBuilder(128);
+    private final StringBuilder word = new StringBuilder(32);
+
+
+    /*
+     * Extract up to maxLinks absolute links from html read from input
+     * textHash : optional SimHash receiving the lower cased words of the page text, when given the whole page is read
+     */
+    public List<String> extract (Reader input, String pageUrl, int maxLinks, DuplicateDetector.SimHash textHash)
+            throws IOException {
+
+        this.input = input;
+        bufferStart = bufferEnd = 0;
+        word.setLength(0);
+
+        List<String> links = new ArrayList<String>();
+        URL baseUrl;
+        try {
+            baseUrl = new URL(pageUrl);
+        } catch (MalformedURLException e) {
+            return links;
+        }
+        boolean baseSeen = false; // Only the first <base> applies
+
+        int character;
+        while (-1 != (character = read())) {
+
+            if (character != '<' || !isTagStart(peek())) { // Text content
+                if (null != textHash)
+                    addWordCharacter(character, textHash);
+                continue;
+            }
+
+            if (null != textHash)
+                endWord(textHash);
+
+            character = read();
+            if (character == '!') { // Comment or doctype
+                if (peek() == '-') {
+                    skipPast("-->");
+                } else
+                    skipPast(">");
+                continue;
+            }
+            if (character == '?') { // Processing instruction
+                skipPast(">");
+                continue;
+            }
+
+            boolean endTag = character == '/';
+            if (!endTag)
+                unread();
+
+            readTagName();
+            boolean anchor = !endTag && equals(tagName, "a");
+            boolean base = !endTag && !baseSeen && equals(tagName, "base");
+            String href = readAttributes(anchor || base);
+
+            if (null != href) {
+                URL resolved = resolve(baseUrl, href);
+                if (base) {
+                    baseSeen = true;
+                    if (null != resolved)
+                        baseUrl = resolved;
+                } else
+                    if (null != resolved) {
+                        links.add(resolved.toExternalForm());
+                        if (links.size() >= maxLinks && null == textHash) // Cap reached, leave the rest unread
+                            break;
+                    }
+            }
+
+            if (!endTag && (equals(tagName, "script") || equals(tagName, "style"))) // Raw text, may contain '<'
+                skipRawText();
+        }
+
+        if (null != textHash)
+            endWord(textHash);
+        this.input = null;
+        return links.size() > maxLinks ? links.subList(0, maxLinks) : links;
+    }
+
+
+    /*
+     * Read attributes of the current tag up to its closing '>', return the href value if wanted and present
+     */
+    private String readAttributes (boolean wantHref) throws IOException {
+
+        String href = null;
+        int character;
+
+        while (true) {
+            character = skipWhitespace();
+            if (character == -1 || character == '>')
+                return href;
+            if (character == '/')
+                continue;
+
+            attributeName.setLength(0);
+            while (character != -1 && character != '=' && character != '>' && character != '/'
+                    && !Character.isWhitespace(character)) {
+                attributeName.append(Character.toLowerCase((char) character));
+                character = read();
+            }
+            if (Character.isWhitespace(character))
+                character = skipWhitespace();
+
+            if (character != '=') { // Attribute without value
+                if (character != -1)
+                    unread();
+                continue;
+            }
+
+            boolean keep = wantHref && null == href && equals(attributeName, "href");
+            readAttributeValue(keep);
+            if (keep)
+                href = decodeEntities(attributeValue).trim();
+        }
+    }
+
+
+    /*
+     * Read a quoted or unquoted attribute value, stored in attributeValue only if keep is set
+     */
+    private void readAttributeValue (boolean keep) throws IOException {
+
+        attributeValue.setLength(0);
+        int character = skipWhitespace();
+
+        if (character == '"' || character == '\'') {
+            int quote = character;
+            while (-1 != (character = read()) && character != quote)
+                if (keep)
+                    attributeValue.append((char) character);
+            return;
+        }
+
+        while (character != -1 && character != '>' && !Character.isWhitespace(character)) {
+            if (keep)
+                attributeValue.append((char) character);
+            character = read();
+        }
+        if (character == '>')
+            unread(); // Let the attribute loop see the end of the tag
+    }
+
+
+    private void readTagName () throws IOException {
+
+        tagName.setLength(0);
+        int character;
+        while (-1 != (character = read())) {
+            if (Character.isWhitespace(character) || character == '>' || character == '/') {
+                unread();
+                return;
+            }
+            tagName.append(Character.toLowerCase((char) character));
+        }
+    }
+
+
+    /*
+     * Skip the contents of a script or style element up to its end tag
+     */
+    private void skipRawText () throws IOException {
+
+        String endTag = "</" + tagName;
+        int matched = 0;
+        int character;
+        while (-1 != (character = read())) {
+            if (Character.toLowerCase((char) character) == endTag.charAt(matched)) {
+                if (++matched == endTag.length()) {
+                    skipPast(">");
+                    return;
+                }
+            } else
+                matched = character == '<' ? 1 : 0;
+        }
+    }
+
+
+    /*
+     * Skip input up to and including given marker
+     */
+    private void skipPast (String marker) throws IOException {
+
+        int matched = 0;
+        int character;
+        while (-1 != (character = read())) {
+            if (character == marker.charAt(matched)) {
+                if (++matched == marker.length())
+                    return;
+            } else
+                matched = character == marker.charAt(0) ? 1 : 0;
+        }
+    }
+
+
+    private int skipWhitespace () throws IOException {
+
+        int character;
+        while (-1 != (character = read()) && Character.isWhitespace(character))
+            ;
+        return character;
+    }
+
+
+    /*
+     * Feed a text character to the current word, words are runs of letters, digits and underscores
+     */
+    private void addWordCharacter (int character, DuplicateDetector.SimHash textHash) {
+
+        if (Character.isLetterOrDigit(character) || character == '_')
+            word.append(Character.toLowerCase((char) character));
+        else
+            endWord(textHash);
+    }
+
+
+    private void endWord (DuplicateDetector.SimHash textHash) {
+
+        if (word.length() > 0) {
+            textHash.add(word);
+            word.setLength(0);
+        }
+    }
+
+
+    private int read () throws IOException {
+
+        if (bufferStart == bufferEnd && !fill())
+            return -1;
+        return buffer[bufferStart++];
+    }
+
+
+    private int peek () throws IOException {
+
+        if (bufferStart == bufferEnd && !fill())
+            return -1;
+        return buffer[bufferStart];
+    }
+
+
+    /*
+     * Step back over the character just read, always possible since fill keeps the buffer until it is consumed
+     */
+    private void unread () {
+
+        bufferStart--;
+    }
+
+
+    /*
+     * Refill the buffer keeping the last consumed character so it can be unread
+     */
+    private boolean fill () throws IOException {
+
+        int keep = bufferEnd > 0 ? 1 : 0;
+        if (keep == 1)
+            buffer[0] = buffer[bufferEnd - 1];
+
+        int read = input.read(buffer, keep, buffer.length - keep);
+        if (read <= 0) {
+            bufferStart = bufferEnd = keep; // Still allow unread of the last character
+            return false;
+        }
+        bufferStart = keep;
+        bufferEnd = keep + read;
+        return true;
+    }
+
+
+    private static boolean isTagStart (int character) {
+
+        return character == '/' || character == '!' || character == '?' || (character >= 'a' && character <= 'z')
+                || (character >= 'A' && character <= 'Z');
+    }
+
+
+    private static boolean equals (StringBuilder builder, String value) {
+
+        if (builder.length() != value.length())
+            return false;
+        for (int index = 0; index < value.length(); index++)
+            if (builder.charAt(index) != value.charAt(index))
+                return false;
+        return true;
+    }
+
+
+    /*
+     * Resolve href against base url, null if it is not a valid url
+     */
+    private static URL resolve (URL baseUrl, String href) {
+
+        try {
+            return new URL(baseUrl, href);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+
+    /*
+     * Decode the character references commonly found in urls(&amp; &quot; &lt; &gt; &apos; and numeric ones)
+     */
+    private static String decodeEntities (StringBuilder value) {
+
+        if (value.indexOf("&") < 0)
+            return value.toString();
+
+        StringBuilder decoded = new StringBuilder(value.length());
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            int end = character == '&' ? value.indexOf(";", index) : -1;
+            if (end < 0 || end - index > 10) {
+                decoded.append(character);
+                continue;
+            }
+
+            String entity = value.substring(index + 1, end);
+            int codePoint = -1;
+            if (entity.equals("amp"))
+                codePoint = '&';
+            else
+                if (entity.equals("quot"))
+                    codePoint = '"';
+                else
+                    if (entity.equals("lt"))
+                        codePoint = '<';
+                    else
+                        if (entity.equals("gt"))
+                            codePoint = '>';
+                        else
+                            if (entity.equals("apos"))
+                                codePoint = '\'';
+                            else
+                                if (entity.startsWith("#")) {
+                                    try {
+                                        codePoint = entity.startsWith("#x") || entity.startsWith("#X") ? Integer
+                                                .parseInt(entity.substring(2), 16) : Integer.parseInt(entity
+                                                .substring(1));
+                                    } catch (NumberFormatException e) {
+                                        codePoint = -1;
+                                    }
+                                }
+
+            if (codePoint < 0 || !Character.isValidCodePoint(codePoint)) {
+                decoded.append(character);
+                continue;
+            }
+            decoded.appendCodePoint(codePoint);
+            index = end;
+        }
+        return decoded.toString();
+    }
+
+}
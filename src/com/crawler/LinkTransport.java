@@ -0,0 +1,34 @@
+package com.crawler;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Carries batches of discovered urls between the workers of a distributed crawl
+ *
+ *         Each worker owns one partition of the hosts, links found for a host of another partition are sent to its
+ *         owner. Delivery must not lose batches, duplicates are harmless since the owner drops urls it has seen.
+ */
+public interface LinkTransport {
+
+    /*
+     * Send a batch of urls to the worker owning given partition
+     */
+    void send (int partition, List<String> urls) throws IOException;
+
+
+    /*
+     * Return urls sent to this worker, waiting up to timeout milliseconds for them, empty if none arrived
+     */
+    List<String> receive (long timeout) throws IOException, InterruptedException;
+
+
+    /*
+     * Release resources held by the transport
+     */
+    void close () throws IOException;
+
+}
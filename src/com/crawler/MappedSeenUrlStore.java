@@ -0,0 +1,232 @@
+package com.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Seen url store backed by a memory mapped open addressing table of 64 bit url fingerprints
+ *
+ *         The table lives in a file so heap usage stays constant however many urls are seen, and the store survives
+ *         a restart of the crawler. Two different urls collide only if their 64 bit fingerprints are equal.
+ *
+ *         File layout: {magic, capacity, size} header followed by capacity slots of 8 bytes, 0 marks an empty slot.
+ *         Slots are mapped in chunks of 1GB so tables larger than 2GB can be addressed.
+ */
+public class MappedSeenUrlStore implements SeenUrlStore {
+
+    private static final long magic = 0x5345454e55524c31L; // "SEENURL1"
+    private static final int headerSize = 24;
+    private static final int chunkShift = 27; // 2^27 slots of 8 bytes per mapped chunk
+    private static final long chunkMask = (1L << chunkShift) - 1;
+    private static final double maxLoadFactor = 0.75;
+
+    private final File storeFile;
+    private RandomAccessFile file;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] chunks;
+    private long capacity;
+    private long size;
+
+
+    /*
+     * Open the store in given file, creating it with given initial capacity(rounded to a power of 2) if it does not
+     * exist
+     */
+    public MappedSeenUrlStore (File storeFile, long initialCapacity) throws IOException {
+
+        this.storeFile = storeFile;
+
+        if (storeFile.exists() && storeFile.length() >= headerSize) {
+            open();
+            if (header.getLong(0) != magic)
+                throw new IOException("Not a seen url store: " + storeFile.getAbsolutePath());
+        } else {
+            long tableCapacity = Long.highestOneBit(Math.max(1024, initialCapacity) - 1) << 1;
+            create(storeFile, tableCapacity);
+            open();
+        }
+    }
+
+
+    @Override
+    public boolean add (String url) {
+
+        long fingerprint = UrlFingerprint.fingerprint(url);
+        long slot = findSlot(fingerprint);
+
+        if (getSlot(slot) == fingerprint) // Already present
+            return false;
+
+        putSlot(slot, fingerprint);
+        size++;
+        header.putLong(16, size);
+
+        if (size > capacity * maxLoadFactor) { // Keep probe sequences short
+            try {
+                resize(capacity << 1);
+            } catch (IOException e) {
+                System.err.println("Could not grow seen url store: " + storeFile.getAbsolutePath());
+            }
+        }
+        return true;
+    }
+
+
+    /*
+     * Remove url from the store, return false if it was not present
+     * Later entries of the probe sequence are shifted back into the freed slot, so no tombstones are needed
+     */
+    public boolean remove (String url) {
+
+        long fingerprint = UrlFingerprint.fingerprint(url);
+        long hole = findSlot(fingerprint);
+        if (getSlot(hole) != fingerprint)
+            return false;
+
+        long mask = capacity - 1;
+        long slot = (hole + 1) & mask;
+        long value;
+        while ((value = getSlot(slot)) != 0) {
+            if (((slot - value) & mask) >= ((slot - hole) & mask)) { // Home slot not between hole and slot, move the
+                putSlot(hole, value);                                  // entry back so its probe still finds it
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        putSlot(hole, 0);
+        size--;
+        header.putLong(16, size);
+        return true;
+    }
+
+
+    @Override
+    public boolean contains (String url) {
+
+        long fingerprint = UrlFingerprint.fingerprint(url);
+        return getSlot(findSlot(fingerprint)) == fingerprint;
+    }
+
+
+    @Override
+    public long size () {
+
+        return size;
+    }
+
+
+    @Override
+    public void flush () {
+
+        header.force();
+        for (MappedByteBuffer chunk : chunks)
+            chunk.force();
+    }
+
+
+    @Override
+    public void close () throws IOException {
+
+        flush();
+        file.close();
+        header = null;
+        chunks = null;
+    }
+
+
+    /*
+     * Linear probe for given fingerprint, return its slot or the first empty slot
+     */
+    private long findSlot (long fingerprint) {
+
+        long mask = capacity - 1;
+        long slot = fingerprint & mask;
+        long value;
+        while ((value = getSlot(slot)) != 0 && value != fingerprint)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+
+    private long getSlot (long slot) {
+
+        return chunks[(int) (slot >>> chunkShift)].getLong((int) ((slot & chunkMask) << 3));
+    }
+
+
+    private void putSlot (long slot, long fingerprint) {
+
+        chunks[(int) (slot >>> chunkShift)].putLong((int) ((slot & chunkMask) << 3), fingerprint);
+    }
+
+
+    /*
+     * Rehash every fingerprint into a table of new capacity written next to the store, then swap the files
+     */
+    private void resize (long newCapacity) throws IOException {
+
+        File resizedFile = new File(storeFile.getPath() + ".resize");
+        create(resizedFile, newCapacity);
+
+        MappedSeenUrlStore resized = new MappedSeenUrlStore(resizedFile, newCapacity);
+        for (long slot = 0; slot < capacity; slot++) {
+            long fingerprint = getSlot(slot);
+            if (fingerprint != 0)
+                resized.putSlot(resized.findSlot(fingerprint), fingerprint);
+        }
+        resized.size = size;
+        resized.header.putLong(16, size);
+        resized.close();
+
+        file.close();
+        header = null;
+        chunks = null;
+        if (!storeFile.delete() || !resizedFile.renameTo(storeFile))
+            throw new IOException("Could not replace " + storeFile.getAbsolutePath());
+        open();
+    }
+
+
+    /*
+     * Map header and slot chunks of the store file
+     */
+    private void open () throws IOException {
+
+        file = new RandomAccessFile(storeFile, "rw");
+        FileChannel channel = file.getChannel();
+
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+        capacity = header.getLong(8);
+        size = header.getLong(16);
+
+        int chunkCount = (int) ((capacity + chunkMask) >>> chunkShift);
+        chunks = new MappedByteBuffer[chunkCount];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            long firstSlot = (long) chunk << chunkShift;
+            long slotCount = Math.min(1L << chunkShift, capacity - firstSlot);
+            chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, headerSize + (firstSlot << 3), slotCount << 3);
+        }
+    }
+
+
+    /*
+     * Create an empty store file with given capacity
+     */
+    private static void create (File storeFile, long capacity) throws IOException {
+
+        RandomAccessFile newFile = new RandomAccessFile(storeFile, "rw");
+        newFile.setLength(0);
+        newFile.setLength(headerSize + (capacity << 3)); // Sparse zero filled slots
+        newFile.writeLong(magic);
+        newFile.writeLong(capacity);
+        newFile.writeLong(0);
+        newFile.close();
+    }
+
+}
@@ -0,0 +1,384 @@
+package com.crawler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.security.Security;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Http fetcher shared by the crawler and the online indexer
+ * 
+ *         Built on a single java.net.http.HttpClient so connections are pooled and kept alive across requests, HTTP/2 is
+ *         negotiated where the server supports it and requests can run asynchronously. Responses are requested gzip
+ *         encoded and decoded here. Host name lookups are cached by the JVM resolver as configured for the JVM, a
+ *         crawler should call cacheHostLookups() at startup so hosts are not looked up again for every page.
+ * 
+ *         Bodies are streamed: when only html is wanted the stream is closed as soon as the headers show another content
+ *         type, so large non html bodies are not downloaded, and fetchLinks reads links while the body arrives and
+ *         stops the transfer at the link cap. Every result carries the time spent looking up the host, waiting for the
+ *         response headers and reading the body.
+ */
+public class PageFetcher {
+
+    private static final String userAgent = "Mozilla/5.0 (Windows NT 6.1; WOW64) Chrome/23.0.1271.95 Safari/537.11";
+    private static final int defaultTimeout = 3000; // Milliseconds, same as the previous per connection timeout
+    private static final String dnsCacheSeconds = "300";
+    private static final Charset defaultCharset = Charset.forName("UTF-8");
+
+    private static PageFetcher sharedInstance;
+
+    private final HttpClient client;
+    private final ExecutorService executor; // Runs host lookups and the client's response handling
+    private final Duration timeout;
+
+    public PageFetcher () {
+
+        this(defaultTimeout);
+    }
+
+
+    public PageFetcher (int timeout) {
+
+        this.timeout = Duration.ofMillis(timeout);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            @Override
+            public Thread newThread (Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "page-fetcher");
+                thread.setDaemon(true); // Never keeps a finished crawl alive
+                return thread;
+            }
+        });
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL).connectTimeout(this.timeout).executor(executor).build();
+    }
+
+
+    /*
+     * Cache successful host name lookups of the whole JVM for dnsCacheSeconds, unless the networkaddress.cache.ttl
+     * security property was set already, e.g. in the java.security file
+     * This changes a JVM wide setting, so it is left to the program starting a crawl and has to run before the first
+     * host name lookup of the JVM, the resolver reads the property once
+     */
+    public static void cacheHostLookups () {
+
+        if (null == Security.getProperty("networkaddress.cache.ttl"))
+            Security.setProperty("networkaddress.cache.ttl", dnsCacheSeconds);
+    }
+
+
+    /*
+     * Return the fetcher shared by crawler and indexer, so both reuse one connection pool
+     */
+    public static synchronized PageFetcher getInstance () {
+
+        if (null == sharedInstance)
+            sharedInstance = new PageFetcher();
+        return sharedInstance;
+    }
+
+
+    /*
+     * Fetch url asynchronously, the host lookup runs on the fetcher's executor so the caller never blocks on it
+     * htmlOnly : read the body only for html responses, others complete with a null content
+     */
+    public CompletableFuture<FetchedPage> fetchAsync (String url, boolean htmlOnly) {
+
+        return fetchAsync(url, htmlOnly, null, 0);
+    }
+
+
+    /*
+     * Fetch url and extract up to maxLinks links from the body of an html response with linkExtractor as it arrives,
+     * the body is not kept and the rest of it is not transferred once the cap is reached. Links of the result are null
+     * if the response is not html
+     */
+    public FetchedPage fetchLinks (String url, LinkExtractor linkExtractor, int maxLinks) throws IOException {
+
+        return await(fetchAsync(url, true, linkExtractor, maxLinks));
+    }
+
+
+    /*
+     * Fetch url asynchronously, reading links with linkExtractor instead of the content if given
+     */
+    private CompletableFuture<FetchedPage> fetchAsync (String url, final boolean htmlOnly,
+            final LinkExtractor linkExtractor, final int maxLinks) {
+
+        final FetchTiming timing = new FetchTiming();
+        final HttpRequest request;
+        try {
+            request = newRequest(url).GET().build();
+        } catch (IOException e) {
+            CompletableFuture<FetchedPage> failed = new CompletableFuture<FetchedPage>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        return CompletableFuture.runAsync(new Runnable() {
+
+            @Override
+            public void run () {
+
+                try {
+                    timing.resolve(request.uri());
+                } catch (UnknownHostException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, executor).thenCompose(new Function<Void, CompletionStage<HttpResponse<InputStream>>>() {
+
+            @Override
+            public CompletionStage<HttpResponse<InputStream>> apply (Void resolved) {
+
+                return client.sendAsync(request, timing.handler(HttpResponse.BodyHandlers.ofInputStream()));
+            }
+        }).thenApply(new Function<HttpResponse<InputStream>, FetchedPage>() {
+
+            @Override
+            public FetchedPage apply (HttpResponse<InputStream> response) {
+
+                try {
+                    return readResponse(response, htmlOnly, linkExtractor, maxLinks, timing);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        });
+    }
+
+
+    /*
+     * Fetch url and wait for the result
+     */
+    public FetchedPage fetch (String url, boolean htmlOnly) throws IOException {
+
+        return await(fetchAsync(url, htmlOnly));
+    }
+
+
+    /*
+     * Send a HEAD request, url of the result is the final url after redirects
+     */
+    public FetchedPage head (String url) throws IOException {
+
+        HttpRequest request = newRequest(url).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+        FetchTiming timing = new FetchTiming();
+        timing.resolve(request.uri());
+        try {
+            HttpResponse<Void> response = client.send(request, timing.handler(HttpResponse.BodyHandlers.discarding()));
+            return new FetchedPage(response.uri().toString(), response.statusCode(), response.headers()
+                    .firstValue("Content-Type").orElse(null), null, 0, timing.dnsNanos, timing.getHeadersNanos(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        }
+    }
+
+
+    /*
+     * Wait for an asynchronous fetch and unwrap its failure
+     */
+    public static FetchedPage await (CompletableFuture<FetchedPage> pageFuture) throws IOException {
+
+        try {
+            return pageFuture.get();
+        } catch (InterruptedException e) {
+            pageFuture.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+
+    private HttpRequest.Builder newRequest (String url) throws IOException {
+
+        try {
+            URI uri = new URI(url);
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(timeout).header("User-Agent", userAgent)
+                    .header("Accept-Encoding", "gzip");
+            if ("http".equalsIgnoreCase(uri.getScheme())) // Cleartext upgrade to HTTP/2 costs a round trip and is
+                builder.version(HttpClient.Version.HTTP_1_1); // rarely supported, negotiate it over TLS only
+            return builder;
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid url: " + url, e);
+        } catch (IllegalArgumentException e) { // Unsupported scheme or missing host
+            throw new IOException("Invalid url: " + url, e);
+        }
+    }
+
+
+    /*
+     * Decode response body or read its links, close the stream early if the body or the rest of it is not wanted
+     */
+    private static FetchedPage readResponse (HttpResponse<InputStream> response, boolean htmlOnly,
+            LinkExtractor linkExtractor, int maxLinks, FetchTiming timing) throws IOException {
+
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        String url = response.uri().toString();
+        InputStream body = response.body();
+
+        FetchedPage headersOnly = new FetchedPage(url, response.statusCode(), contentType, null, 0, timing.dnsNanos,
+                timing.getHeadersNanos(), 0);
+        if (htmlOnly && !headersOnly.isHtml()) { // Abort transfer of unwanted bodies
+            body.close();
+            return headersOnly;
+        }
+
+        CountingInputStream countedBody = new CountingInputStream(body);
+        InputStream decodedBody = countedBody;
+        if ("gzip".equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse("")))
+            decodedBody = new GZIPInputStream(countedBody);
+
+        try {
+            if (null != linkExtractor) { // Body is parsed as it arrives and dropped
+                List<String> links = linkExtractor.extract(new InputStreamReader(decodedBody, getCharset(contentType)),
+                        url, maxLinks, null);
+                return new FetchedPage(url, response.statusCode(), contentType, null, links, countedBody.count,
+                        timing.dnsNanos, timing.getHeadersNanos(), System.nanoTime() - timing.headersAt);
+            }
+
+            String content = new String(IOUtils.toByteArray(decodedBody), getCharset(contentType));
+            return new FetchedPage(url, response.statusCode(), contentType, content, countedBody.count,
+                    timing.dnsNanos, timing.getHeadersNanos(), System.nanoTime() - timing.headersAt);
+        } finally {
+            decodedBody.close();
+        }
+    }
+
+
+    /*
+     * Extract charset from content type, UTF-8 if absent or unknown
+     */
+    private static Charset getCharset (String contentType) {
+
+        if (null != contentType) {
+            int charsetIndex = contentType.toLowerCase().indexOf("charset=");
+            if (charsetIndex >= 0) {
+                String charset = contentType.substring(charsetIndex + 8).split(";")[0].trim().replace("\"", "");
+                try {
+                    return Charset.forName(charset);
+                } catch (IllegalArgumentException e) {
+                    // Unknown charset, use default
+                }
+            }
+        }
+        return defaultCharset;
+    }
+
+
+    /*
+     * Phases of one request: host name lookup, waiting for the response headers and reading the body
+     */
+    private static class FetchTiming {
+
+        long dnsNanos;
+        long sentAt;
+        volatile long headersAt; // Set on the client's thread when the headers arrive
+
+
+        /*
+         * Look the host up ahead of the client so the lookup is timed on its own, the client then finds it in the JVM
+         * address cache
+         */
+        void resolve (URI uri) throws UnknownHostException {
+
+            long start = System.nanoTime();
+            if (null != uri.getHost())
+                InetAddress.getByName(uri.getHost());
+            sentAt = System.nanoTime();
+            dnsNanos = sentAt - start;
+        }
+
+
+        /*
+         * Wrap a body handler to note when the response headers arrived
+         */
+        <T> HttpResponse.BodyHandler<T> handler (final HttpResponse.BodyHandler<T> bodyHandler) {
+
+            return new HttpResponse.BodyHandler<T>() {
+
+                @Override
+                public HttpResponse.BodySubscriber<T> apply (HttpResponse.ResponseInfo responseInfo) {
+
+                    headersAt = System.nanoTime();
+                    return bodyHandler.apply(responseInfo);
+                }
+            };
+        }
+
+
+        long getHeadersNanos () {
+
+            return headersAt - sentAt;
+        }
+    }
+
+
+    /*
+     * Input stream counting bytes read from the wire
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        long count = 0;
+
+
+        CountingInputStream (InputStream in) {
+
+            super(in);
+        }
+
+
+        @Override
+        public int read () throws IOException {
+
+            int value = super.read();
+            if (value >= 0)
+                count++;
+            return value;
+        }
+
+
+        @Override
+        public int read (byte[] buffer, int offset, int length) throws IOException {
+
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Reads pages written by PageStoreWriter
+ *
+ *         next() streams every record of every store file in the directory in the order they were written, reading
+ *         each file sequentially and inflating one block at a time. read() fetches a single record using the offsets
+ *         listed in the .idx file next to its store file. A block cut short by a crash ends its file.
+ *
+ *         Not thread safe.
+ */
+public class PageStoreReader {
+
+    private final File directory;
+    private final Inflater inflater = new Inflater();
+
+    private int fileNumber = 0; // Store file being streamed
+    private DataInputStream storeStream;
+    private byte[] blockBuffer = new byte[0]; // Uncompressed records of the current block
+    private DataInputStream blockReader;
+    private int blockRecordsLeft = 0;
+    private byte[] compressedBuffer = new byte[0];
+
+
+    public PageStoreReader (File directory) {
+
+        this.directory = directory;
+    }
+
+
+    /*
+     * Check whether given directory holds a page store
+     */
+    public static boolean isPageStore (File directory) {
+
+        return PageStoreWriter.getStoreFile(directory, 0).isFile();
+    }
+
+
+    /*
+     * Return the next stored page, null once every store file has been read
+     * Url of the returned page is the url it was stored under
+     */
+    public FetchedPage next () throws IOException {
+
+        while (blockRecordsLeft == 0) { // Current block exhausted, move to the next block or store file
+
+            if (null == storeStream) {
+                File storeFile = PageStoreWriter.getStoreFile(directory, fileNumber);
+                if (!storeFile.isFile())
+                    return null; // No more store files
+                storeStream = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile), 1 << 20));
+            }
+
+            if (!readBlock(storeStream)) { // End of store file
+                storeStream.close();
+                storeStream = null;
+                fileNumber++;
+            }
+        }
+
+        blockRecordsLeft--;
+        return readRecord(blockReader);
+    }
+
+
+    /*
+     * Read one record given the store file number and the offsets of its index line
+     */
+    public FetchedPage read (int storeFileNumber, long blockOffset, int recordOffset) throws IOException {
+
+        File store = PageStoreWriter.getStoreFile(directory, storeFileNumber);
+        RandomAccessFile storeFile = new RandomAccessFile(store, "r");
+        try {
+            storeFile.seek(blockOffset);
+            if (!readBlock(storeFile))
+                throw new IOException("No block at offset " + blockOffset + " of page store file " + storeFileNumber);
+        } finally {
+            storeFile.close();
+        }
+
+        blockRecordsLeft = 0; // Streaming position is lost
+        blockReader.skipBytes(recordOffset);
+        return readRecord(blockReader);
+    }
+
+
+    public void close () throws IOException {
+
+        if (null != storeStream)
+            storeStream.close();
+        inflater.end();
+    }
+
+
+    /*
+     * Read and inflate the block at the current position of input, return false at a clean or truncated end of file
+     */
+    private boolean readBlock (DataInput input) throws IOException {
+
+        int magic, uncompressedLength, compressedLength;
+        try {
+            magic = input.readInt();
+            uncompressedLength = input.readInt();
+            compressedLength = input.readInt();
+            blockRecordsLeft = input.readInt();
+
+            if (magic != PageStoreWriter.blockMagic)
+                throw new IOException("Corrupt page store block in " + directory.getAbsolutePath());
+
+            if (compressedBuffer.length < compressedLength)
+                compressedBuffer = new byte[compressedLength];
+            input.readFully(compressedBuffer, 0, compressedLength);
+        } catch (EOFException e) { // Clean end of file, or a block whose write was cut short
+            blockRecordsLeft = 0;
+            return false;
+        }
+
+        if (blockBuffer.length < uncompressedLength)
+            blockBuffer = new byte[uncompressedLength];
+
+        inflater.reset();
+        inflater.setInput(compressedBuffer, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < uncompressedLength && !inflater.finished())
+                inflated += inflater.inflate(blockBuffer, inflated, uncompressedLength - inflated);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt page store block in " + directory.getAbsolutePath(), e);
+        }
+
+        blockReader = new DataInputStream(new ByteArrayInputStream(blockBuffer, 0, uncompressedLength));
+        return true;
+    }
+
+
+    private static FetchedPage readRecord (DataInputStream block) throws IOException {
+
+        String url = block.readUTF();
+        int statusCode = block.readInt();
+        String contentType = block.readUTF();
+        byte[] content = new byte[block.readInt()];
+        block.readFully(content);
+
+        return new FetchedPage(url, statusCode, contentType.isEmpty() ? null : contentType, new String(content,
+                PageStoreWriter.utf8), content.length);
+    }
+
+}
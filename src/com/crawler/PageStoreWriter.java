@@ -0,0 +1,203 @@
+package com.crawler;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Append-only store of fetched pages in large block compressed files, in the spirit of WARC
+ *
+ *         Records {url, status, content type, content} are buffered into blocks of about blockSize bytes and every
+ *         block is deflated on its own, so a record can be read back by inflating a single block. Each block is
+ *         written as {magic, uncompressed length, compressed length, record count} followed by the deflated bytes.
+ *         Next to every pages_NNNNN.store file a pages_NNNNN.idx text file lists {url, block offset, record offset
+ *         within the block} for each record. A writer never touches existing files, it starts a new store file when
+ *         opened and whenever the current one grows past maxFileSize.
+ *
+ *         Thread safe, records of concurrent writers are serialized.
+ */
+public class PageStoreWriter {
+
+    static final int blockMagic = 0x50414745; // "PAGE"
+    static final int blockHeaderSize = 16;
+    static final String storePrefix = "pages_";
+    static final String storeExtension = ".store";
+    static final String indexExtension = ".idx";
+    static final Charset utf8 = Charset.forName("UTF-8");
+
+    private static final int defaultBlockSize = 1 << 20; // 1MB of uncompressed records per block
+    private static final long maxFileSize = 1L << 30; // Start a new store file after 1GB
+    private static final String seperator = "\t";
+
+    private final File directory;
+    private final int blockSize;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+    private int fileNumber;
+    private FileOutputStream storeStream;
+    private BufferedWriter indexWriter;
+    private long fileOffset; // Offset at which the next block starts
+
+    private ByteArrayOutputStream blockBuffer; // Uncompressed records of the current block
+    private DataOutputStream blockWriter;
+    private int blockRecords = 0;
+    private StringBuilder blockIndex = new StringBuilder(); // Index lines of the current block, written with the block
+    private byte[] compressBuffer = new byte[64 << 10];
+    private long recordCount = 0;
+
+
+    /*
+     * Open a store in given directory with default block size
+     */
+    public PageStoreWriter (File directory) throws IOException {
+
+        this(directory, defaultBlockSize);
+    }
+
+
+    /*
+     * Open a store in given directory, records are appended to a new store file after any existing ones
+     */
+    public PageStoreWriter (File directory, int blockSize) throws IOException {
+
+        this.directory = directory;
+        this.blockSize = blockSize;
+        directory.mkdirs();
+
+        fileNumber = 0;
+        while (getStoreFile(directory, fileNumber).exists())
+            fileNumber++;
+
+        blockBuffer = new ByteArrayOutputStream(blockSize + (blockSize >> 2));
+        blockWriter = new DataOutputStream(blockBuffer);
+        openStoreFile();
+    }
+
+
+    /*
+     * Append a fetched page under given url, usually the url as crawled rather than the final url after redirects
+     */
+    public synchronized void write (String url, FetchedPage page) throws IOException {
+
+        byte[] content = null == page.getContent() ? new byte[0] : page.getContent().getBytes(utf8);
+
+        blockIndex.append(url).append(seperator).append(fileOffset).append(seperator).append(blockBuffer.size())
+                .append('\n');
+
+        blockWriter.writeUTF(url);
+        blockWriter.writeInt(page.getStatusCode());
+        blockWriter.writeUTF(null == page.getContentType() ? "" : page.getContentType());
+        blockWriter.writeInt(content.length);
+        blockWriter.write(content);
+        blockRecords++;
+        recordCount++;
+
+        if (blockBuffer.size() >= blockSize)
+            writeBlock();
+    }
+
+
+    /*
+     * Write buffered records to disk, records are only readable once their block is written
+     */
+    public synchronized void flush () throws IOException {
+
+        writeBlock();
+        storeStream.flush();
+        indexWriter.flush();
+    }
+
+
+    /*
+     * Return count of records written by this writer
+     */
+    public synchronized long getRecordCount () {
+
+        return recordCount;
+    }
+
+
+    public synchronized void close () throws IOException {
+
+        writeBlock();
+        storeStream.close();
+        indexWriter.close();
+        deflater.end();
+    }
+
+
+    /*
+     * Deflate the buffered records and append them as one block, then their index lines
+     */
+    private void writeBlock () throws IOException {
+
+        if (blockRecords == 0)
+            return;
+
+        blockWriter.flush();
+        byte[] records = blockBuffer.toByteArray();
+
+        deflater.reset();
+        deflater.setInput(records);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressBuffer.length) { // Incompressible block, grow the buffer
+                byte[] largerBuffer = new byte[compressBuffer.length * 2];
+                System.arraycopy(compressBuffer, 0, largerBuffer, 0, compressedLength);
+                compressBuffer = largerBuffer;
+            }
+            compressedLength += deflater.deflate(compressBuffer, compressedLength, compressBuffer.length
+                    - compressedLength);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(blockHeaderSize);
+        header.putInt(blockMagic).putInt(records.length).putInt(compressedLength).putInt(blockRecords);
+        storeStream.write(header.array());
+        storeStream.write(compressBuffer, 0, compressedLength);
+        fileOffset += blockHeaderSize + compressedLength;
+
+        indexWriter.write(blockIndex.toString()); // Index only ever points at blocks already written
+        blockIndex.setLength(0);
+        blockBuffer.reset();
+        blockRecords = 0;
+
+        if (fileOffset >= maxFileSize) { // Roll over to a new store file
+            storeStream.close();
+            indexWriter.close();
+            fileNumber++;
+            openStoreFile();
+        }
+    }
+
+
+    private void openStoreFile () throws IOException {
+
+        storeStream = new FileOutputStream(getStoreFile(directory, fileNumber));
+        indexWriter = new BufferedWriter(new FileWriter(getIndexFile(directory, fileNumber)));
+        fileOffset = 0;
+    }
+
+
+    static File getStoreFile (File directory, int fileNumber) {
+
+        return new File(directory, storePrefix + String.format("%05d", fileNumber) + storeExtension);
+    }
+
+
+    static File getIndexFile (File directory, int fileNumber) {
+
+        return new File(directory, storePrefix + String.format("%05d", fileNumber) + indexExtension);
+    }
+
+}
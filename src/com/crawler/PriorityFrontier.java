@@ -0,0 +1,208 @@
+package com.crawler;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Url frontier of the sequential crawl ordered by an online page importance estimate(OPIC)
+ *
+ *         Every url holds an amount of cash, the seed starts with 1. When a page is crawled its cash is split equally
+ *         among the links found on it, so pages linked from many important pages accumulate cash before they are
+ *         crawled, and the url with the most cash is crawled next. To keep one well linked host from taking the whole
+ *         crawl budget the cash of a url is divided by 1 + pages already crawled from its host.
+ *
+ *         Urls live in a binary heap. A change of cash pushes a new heap entry instead of updating the old one in
+ *         place, entries superseded by a later one are skipped when polled. Entries whose priority dropped because
+ *         their host was crawled meanwhile are pushed back with the lower priority when they reach the top.
+ *
+ *         Not thread safe.
+ */
+public class PriorityFrontier {
+
+    private static final double seedCash = 1.0;
+
+    private final SeenUrlStore seenUrls; // Every url ever added, queued or crawled
+    private final HashMap<String, UrlState> queuedUrls = new HashMap<String, UrlState>(); // State of urls not yet
+                                                                                        // crawled
+    private final HashMap<String, Integer> hostCrawlCounts = new HashMap<String, Integer>(); // Pages polled per host
+    private final PriorityQueue<HeapEntry> heap = new PriorityQueue<HeapEntry>(64, new Comparator<HeapEntry>() {
+
+        @Override
+        public int compare (HeapEntry e1, HeapEntry e2) {
+
+            int byPriority = Double.compare(e2.priority, e1.priority); // Highest priority first
+            return byPriority != 0 ? byPriority : Long.compare(e1.sequence, e2.sequence); // Ties in push order
+        }
+    });
+
+    private long nextSequence = 0;
+    private double polledCash = 0; // Cash of the last polled url, handed out by distributeCash
+
+
+    public PriorityFrontier () {
+
+        this(new HashSeenUrlStore());
+    }
+
+
+    public PriorityFrontier (SeenUrlStore seenUrls) {
+
+        this.seenUrls = seenUrls;
+    }
+
+
+    /*
+     * Add a seed url with the initial cash, return false if the url was seen before
+     */
+    public boolean addSeed (String url) {
+
+        return add(url, seedCash);
+    }
+
+
+    /*
+     * Add a newly discovered url without cash, it receives cash from distributeCash, return false if the url was seen
+     * before
+     */
+    public boolean add (String url) {
+
+        return add(url, 0);
+    }
+
+
+    /*
+     * Check whether the url was ever added to the frontier
+     */
+    public boolean contains (String url) {
+
+        return queuedUrls.containsKey(url) || seenUrls.contains(url);
+    }
+
+
+    /*
+     * Remove and return the url with the highest priority, null if the frontier is empty
+     */
+    public String poll () {
+
+        HeapEntry entry;
+        while (null != (entry = heap.poll())) {
+
+            UrlState state = queuedUrls.get(entry.url);
+            if (null == state || state.sequence != entry.sequence) // Crawled already or superseded by a later entry
+                continue;
+
+            double priority = getPriority(state);
+            if (priority < entry.priority) { // Host crawled since the entry was pushed, requeue at its real priority
+                push(entry.url, state, priority);
+                continue;
+            }
+
+            queuedUrls.remove(entry.url);
+            Integer crawlCount = hostCrawlCounts.get(state.host);
+            hostCrawlCounts.put(state.host, null == crawlCount ? 1 : crawlCount + 1);
+            polledCash = state.cash;
+            return entry.url;
+        }
+        return null;
+    }
+
+
+    /*
+     * Split the cash of the last polled url equally among the links found on it, links that are crawled already or
+     * were never added keep nothing
+     */
+    public void distributeCash (List<String> links) {
+
+        if (links.isEmpty())
+            return;
+
+        double share = polledCash / links.size();
+        for (String link : links) {
+            UrlState state = queuedUrls.get(link);
+            if (null != state) {
+                state.cash += share;
+                push(link, state, getPriority(state));
+            }
+        }
+        polledCash = 0;
+    }
+
+
+    /*
+     * Return count of urls waiting to be crawled
+     */
+    public int size () {
+
+        return queuedUrls.size();
+    }
+
+
+    public boolean isEmpty () {
+
+        return queuedUrls.isEmpty();
+    }
+
+
+    private boolean add (String url, double cash) {
+
+        if (queuedUrls.containsKey(url) || !seenUrls.add(url))
+            return false;
+
+        UrlState state = new UrlState();
+        state.host = CrawlFrontier.getHost(url);
+        state.cash = cash;
+        queuedUrls.put(url, state);
+        push(url, state, getPriority(state));
+        return true;
+    }
+
+
+    /*
+     * Push a new heap entry for the url, superseding its earlier entries
+     */
+    private void push (String url, UrlState state, double priority) {
+
+        state.sequence = nextSequence++;
+        heap.add(new HeapEntry(url, priority, state.sequence));
+    }
+
+
+    /*
+     * Cash of the url shared with the pages already crawled from its host
+     */
+    private double getPriority (UrlState state) {
+
+        Integer crawlCount = hostCrawlCounts.get(state.host);
+        return state.cash / (1 + (null == crawlCount ? 0 : crawlCount));
+    }
+
+
+    private static class UrlState {
+
+        String host;
+        double cash;
+        long sequence; // Sequence of the latest heap entry, older entries are stale
+    }
+
+
+    private static class HeapEntry {
+
+        final String url;
+        final double priority;
+        final long sequence;
+
+
+        HeapEntry (String url, double priority, long sequence) {
+
+            this.url = url;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.crawler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Bounded cache of compiled robots.txt rules keyed by host
+ * 
+ *         Entries expire after a time to live so that changed robots.txt files are picked up on long crawls, and the
+ *         least recently used host is evicted once maxHosts hosts are cached. Robots.txt of a host is loaded once even
+ *         when several threads ask for it at the same time, the other threads wait for that load.
+ */
+public class RobotsCache {
+
+    /*
+     * Fetch and compile robots.txt for a host key
+     */
+    public interface Loader {
+
+        RobotsRules load (String hostKey);
+    }
+
+    private final Loader loader;
+    private final long timeToLive; // Milliseconds
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+
+    public RobotsCache (final int maxHosts, long timeToLive, Loader loader) {
+
+        this.loader = loader;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) { // Access order for LRU eviction
+
+            private static final long serialVersionUID = 1L;
+
+
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<String, CacheEntry> eldest) {
+
+                return size() > maxHosts;
+            }
+        };
+    }
+
+
+    /*
+     * Return rules for given host key, loading them if absent or expired
+     */
+    public RobotsRules getRules (final String hostKey) {
+
+        CacheEntry entry;
+        boolean load = false;
+
+        synchronized (entries) {
+            entry = entries.get(hostKey);
+            if (null == entry || entry.expiryTime < System.currentTimeMillis()) { // Missing or stale
+                entry = new CacheEntry(new FutureTask<RobotsRules>(new Callable<RobotsRules>() {
+
+                    @Override
+                    public RobotsRules call () {
+
+                        return loader.load(hostKey);
+                    }
+                }), System.currentTimeMillis() + timeToLive);
+                entries.put(hostKey, entry);
+                load = true;
+                misses++;
+            } else
+                hits++;
+        }
+
+        if (load) // Load outside the lock so other hosts are not blocked
+            entry.rules.run();
+
+        try {
+            return entry.rules.get();
+        } catch (ExecutionException e) {
+            return RobotsRules.allowAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RobotsRules.allowAll();
+        }
+    }
+
+
+    /*
+     * Return count of lookups answered from the cache
+     */
+    public long getHits () {
+
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+
+    /*
+     * Return count of lookups that needed a robots.txt load
+     */
+    public long getMisses () {
+
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+
+    /*
+     * Return count of hosts currently cached
+     */
+    public int size () {
+
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+
+    /*
+     * Rules of one host, possibly still being loaded
+     */
+    private static class CacheEntry {
+
+        final FutureTask<RobotsRules> rules;
+        final long expiryTime;
+
+
+        CacheEntry (FutureTask<RobotsRules> rules, long expiryTime) {
+
+            this.rules = rules;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+}
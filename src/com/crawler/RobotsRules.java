@@ -0,0 +1,289 @@
+package com.crawler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ *
+ * @author Swapnil Gupta
+ *
+ *         Robots.txt rules of a single host compiled into a prefix trie over url paths
+ *
+ *         Only the group that best matches the crawler's user agent is kept(longest matching User-agent value,
+ *         falling back to *). A path is checked by walking the trie once: the longest matching Allow or Disallow rule
+ *         wins and Allow wins a tie, so the cost of a check depends on the path length and not on the rule count.
+ *         A trailing $ anchors a rule to the end of the path. The few rules containing a * wildcard cannot live in the
+ *         trie and are matched one by one after the trie walk.
+ */
+public class RobotsRules {
+
+    private static final RobotsRules allowAll = new RobotsRules(new TrieNode(), new ArrayList<String[]>(), -1);
+
+    private final TrieNode root;
+    private final List<String[]> wildcardRules; // {allow|disallow, pattern} for rules containing *
+    private final long crawlDelay; // Milliseconds, -1 if not specified
+
+
+    private RobotsRules (TrieNode root, List<String[]> wildcardRules, long crawlDelay) {
+
+        this.root = root;
+        this.wildcardRules = wildcardRules;
+        this.crawlDelay = crawlDelay;
+    }
+
+
+    /*
+     * Rules allowing every path, used when a host has no usable robots.txt
+     */
+    public static RobotsRules allowAll () {
+
+        return allowAll;
+    }
+
+
+    /*
+     * Parse robots.txt content and compile the group applying to given user agent
+     */
+    public static RobotsRules parse (String robotsTxt, String userAgent) {
+
+        String agent = userAgent.toLowerCase();
+        List<Group> groups = new ArrayList<Group>();
+        Group currentGroup = null;
+        boolean readingAgents = false; // Consecutive User-agent lines share one group
+
+        try {
+            BufferedReader reader = new BufferedReader(new StringReader(robotsTxt));
+            String line;
+            while (null != (line = reader.readLine())) {
+
+                int commentIndex = line.indexOf('#'); // Strip comments
+                if (commentIndex >= 0)
+                    line = line.substring(0, commentIndex);
+
+                int colonIndex = line.indexOf(':');
+                if (colonIndex < 0)
+                    continue;
+
+                String field = line.substring(0, colonIndex).trim().toLowerCase();
+                String value = line.substring(colonIndex + 1).trim();
+
+                if (field.equals("user-agent")) {
+                    if (!readingAgents) { // Start of a new group
+                        currentGroup = new Group();
+                        groups.add(currentGroup);
+                    }
+                    currentGroup.agents.add(value.toLowerCase());
+                    readingAgents = true;
+                    continue;
+                }
+
+                readingAgents = false;
+                if (null == currentGroup) // Rules before any User-agent line are ignored
+                    continue;
+
+                if (field.equals("disallow")) {
+                    if (!value.isEmpty()) // Empty Disallow allows everything
+                        currentGroup.rules.add(new String[] {"disallow", value});
+                } else
+                    if (field.equals("allow")) {
+                        if (!value.isEmpty())
+                            currentGroup.rules.add(new String[] {"allow", value});
+                    } else
+                        if (field.equals("crawl-delay")) {
+                            try {
+                                currentGroup.crawlDelay = (long) (Double.parseDouble(value) * 1000);
+                            } catch (NumberFormatException e) {
+                                // Ignore malformed delay
+                            }
+                        }
+            }
+        } catch (IOException e) {
+            // Reading from a string never fails
+        }
+
+        Group matchedGroup = selectGroup(groups, agent);
+        if (null == matchedGroup)
+            return allowAll;
+
+        TrieNode root = new TrieNode();
+        List<String[]> wildcardRules = new ArrayList<String[]>();
+        for (String[] rule : matchedGroup.rules) {
+            if (rule[1].indexOf('*') >= 0)
+                wildcardRules.add(rule);
+            else
+                addRule(root, rule[1], rule[0].equals("allow"));
+        }
+
+        return new RobotsRules(root, wildcardRules, matchedGroup.crawlDelay);
+    }
+
+
+    /*
+     * Check whether the path(including query string) may be crawled
+     */
+    public boolean isAllowed (String path) {
+
+        if (path.isEmpty())
+            path = "/";
+
+        TrieNode node = root;
+        int matchedDepth = -1; // Length of the longest matching rule so far
+        boolean allowed = true;
+
+        for (int depth = 0; node != null; depth++) {
+
+            if (node.rule != TrieNode.noRule && depth >= matchedDepth) { // Longer prefix rule, Allow wins a tie
+                if (depth > matchedDepth || node.rule == TrieNode.allowRule)
+                    allowed = node.rule == TrieNode.allowRule;
+                matchedDepth = depth;
+            }
+
+            if (depth == path.length()) { // End of path, anchored rules apply here
+                if (node.anchoredRule != TrieNode.noRule && depth >= matchedDepth) {
+                    if (depth > matchedDepth || node.anchoredRule == TrieNode.allowRule)
+                        allowed = node.anchoredRule == TrieNode.allowRule;
+                }
+                break;
+            }
+
+            node = node.children.get(path.charAt(depth));
+        }
+
+        for (String[] rule : wildcardRules) { // Rule length decides precedence like for prefix rules
+            int ruleLength = rule[1].length();
+            boolean allowRule = rule[0].equals("allow");
+            if ((ruleLength > matchedDepth || (ruleLength == matchedDepth && allowRule))
+                    && matchesWildcard(rule[1], 0, path, 0)) {
+                allowed = allowRule;
+                matchedDepth = ruleLength;
+            }
+        }
+        return allowed;
+    }
+
+
+    /*
+     * Match path from pathIndex against pattern from patternIndex, * matches any run of characters and a trailing $
+     * the end of the path
+     */
+    private static boolean matchesWildcard (String pattern, int patternIndex, String path, int pathIndex) {
+
+        while (patternIndex < pattern.length()) {
+            char character = pattern.charAt(patternIndex);
+
+            if (character == '*') {
+                for (int index = pathIndex; index <= path.length(); index++) // Try every length for the wildcard
+                    if (matchesWildcard(pattern, patternIndex + 1, path, index))
+                        return true;
+                return false;
+            }
+
+            if (character == '$' && patternIndex == pattern.length() - 1)
+                return pathIndex == path.length();
+
+            if (pathIndex >= path.length() || path.charAt(pathIndex) != character)
+                return false;
+
+            patternIndex++;
+            pathIndex++;
+        }
+        return true; // Pattern is a prefix of the remaining path
+    }
+
+
+    /*
+     * Return crawl delay in milliseconds requested by the host, -1 if none
+     */
+    public long getCrawlDelay () {
+
+        return crawlDelay;
+    }
+
+
+    /*
+     * Pick the group with the longest User-agent value contained in our agent, else the * group
+     */
+    private static Group selectGroup (List<Group> groups, String agent) {
+
+        Group wildcardGroup = null;
+        Group bestGroup = null;
+        int bestLength = 0;
+
+        for (Group group : groups) {
+            for (String groupAgent : group.agents) {
+                if (groupAgent.equals("*")) {
+                    if (null == wildcardGroup)
+                        wildcardGroup = group;
+                } else
+                    if (agent.contains(groupAgent) && groupAgent.length() > bestLength) {
+                        bestGroup = group;
+                        bestLength = groupAgent.length();
+                    }
+            }
+        }
+        return null != bestGroup ? bestGroup : wildcardGroup;
+    }
+
+
+    /*
+     * Insert a rule path without wildcards into the trie
+     */
+    private static void addRule (TrieNode root, String pattern, boolean allow) {
+
+        boolean anchored = false;
+        if (pattern.endsWith("$")) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+            anchored = true;
+        }
+
+        TrieNode node = root;
+        for (int index = 0; index < pattern.length(); index++) {
+            char character = pattern.charAt(index);
+            TrieNode child = node.children.get(character);
+            if (null == child) {
+                child = new TrieNode();
+                node.children.put(character, child);
+            }
+            node = child;
+        }
+
+        byte rule = allow ? TrieNode.allowRule : TrieNode.disallowRule;
+        if (anchored) {
+            if (node.anchoredRule != TrieNode.allowRule) // Allow wins between duplicate rules
+                node.anchoredRule = rule;
+        } else
+            if (node.rule != TrieNode.allowRule)
+                node.rule = rule;
+    }
+
+
+    /*
+     * Node of the path trie, one child per next path character
+     */
+    private static class TrieNode {
+
+        static final byte noRule = 0;
+        static final byte allowRule = 1;
+        static final byte disallowRule = 2;
+
+        final HashMap<Character, TrieNode> children = new HashMap<Character, TrieNode>(4);
+        byte rule = noRule; // Rule for paths starting with the prefix ending here
+        byte anchoredRule = noRule; // Rule for paths exactly equal to the prefix ending here
+    }
+
+
+    /*
+     * One User-agent group while parsing
+     */
+    private static class Group {
+
+        final List<String> agents = new ArrayList<String>();
+        final List<String[]> rules = new ArrayList<String[]>();
+        long crawlDelay = -1;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.crawler;
+
+import java.io.IOException;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         Set of urls already seen by the crawler, used for duplicate checks on every extracted link
+ * 
+ *         Implementations are not thread safe, callers sharing a store across threads must synchronize access
+ */
+public interface SeenUrlStore {
+
+    /*
+     * Add url to the store, return true if it was not present before
+     */
+    boolean add (String url);
+
+
+    /*
+     * Check whether url is present in the store
+     */
+    boolean contains (String url);
+
+
+    /*
+     * Return count of urls added to the store
+     */
+    long size ();
+
+
+    /*
+     * Persist any buffered state, no-op for in-memory stores
+     */
+    void flush () throws IOException;
+
+
+    /*
+     * Release resources held by the store
+     */
+    void close () throws IOException;
+
+}
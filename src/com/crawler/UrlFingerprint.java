@@ -0,0 +1,49 @@
+package com.crawler;
+
+/**
+ * 
+ * @author Swapnil Gupta
+ * 
+ *         64 bit url fingerprints used by the compact seen url stores
+ */
+public final class UrlFingerprint {
+
+    private static final long fnvOffsetBasis = 0xcbf29ce484222325L;
+    private static final long fnvPrime = 0x100000001b3L;
+
+
+    private UrlFingerprint () {
+
+    }
+
+
+    /*
+     * FNV-1a over the url characters followed by a murmur style finalizer to spread the bits, never returns 0
+     */
+    public static long fingerprint (CharSequence url) {
+
+        long hash = fnvOffsetBasis;
+        for (int index = 0; index < url.length(); index++) {
+            hash ^= url.charAt(index);
+            hash *= fnvPrime;
+        }
+
+        hash = mix(hash);
+        return hash == 0 ? 1 : hash; // 0 marks an empty slot in the stores
+    }
+
+
+    /*
+     * Murmur3 64 bit finalizer
+     */
+    public static long mix (long hash) {
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
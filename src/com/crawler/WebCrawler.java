@@ -4,17 +4,26 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Scanner;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import com.generic_utilities.Utilities;
 
@@ -26,76 +35,113 @@ import edu.uci.ics.crawler4j.url.URLCanonicalizer;
  * 
  *         Crawler to extract links(limited to 100) from webpages starting from initial seed
  *
+ *         Supports a sequential crawl on the calling thread, visiting the most important known page(OPIC) first, and a
+ *         concurrent crawl where a bounded pool of workers pulls urls from a per-host politeness frontier, so that slow
+ *         hosts do not hold up the rest of the crawl. The concurrent crawl can also run as one of several worker
+ *         processes, each owning the hosts of one partition and exchanging links with the others through a
+ *         LinkTransport
+ *
+ *         Every fetch is recorded in CrawlMetrics(per host latency, throughput, status counts), which can be written
+ *         to a snapshot file periodically during the crawl
+ *
  */
 public class WebCrawler {
 
     /*********************************************************************** Counters and variables *********************************************************************/
-    private static final int visitedUrlsLimit = 100;
-    private static final int extractedUrlsLimit = 120;
-
-    private static int extractedUrlsCount = 0;
+    private static final int defaultVisitedUrlsLimit = 100;
+    private static final int defaultExtractedUrlsLimit = 120;
+    private static final int defaultMaxLinksPerPage = 500; // Links read from one page, the rest of it is skipped
+    private static final int checkpointInterval = 100; // Pages crawled between two checkpoints of a disk frontier
+    private static final String seenUrlsFileName = "seen_urls.bin";
+    private static final long metricsInterval = 10000; // Milliseconds between two crawl metrics snapshots
+    private static final int robotsCacheSize = 10000; // Hosts whose robots.txt rules are kept in memory
+    private static final long robotsTimeToLive = 24 * 60 * 60 * 1000L; // Refetch robots.txt of a host after a day
+    private static final String robotsUserAgent = "Mozilla"; // User agent matched against robots.txt groups
+    private static final HashSet<String> nonHtmlExtensions = new HashSet<String>(Arrays.asList("pdf", "ps", "doc",
+            "docx", "xls", "xlsx", "ppt", "pptx", "rtf", "txt", "csv", "xml", "json", "rss", "css", "js", "jpg",
+            "jpeg", "png", "gif", "bmp", "svg", "ico", "tif", "tiff", "mp3", "mp4", "avi", "mov", "wmv", "flv", "wav",
+            "zip", "gz", "tgz", "tar", "rar", "7z", "jar", "exe", "dmg", "iso", "bin")); // Never fetched as pages
+                                                                                         // when head probe is off
+
+    private int visitedUrlsLimit = defaultVisitedUrlsLimit;
+    private int extractedUrlsLimit = defaultExtractedUrlsLimit;
+    private int maxLinksPerPage = defaultMaxLinksPerPage;
+
+    private static final int defaultThreadCount = 8; // Global cap on concurrent fetches in concurrent mode
+    private static final long defaultCrawlDelay = 1000; // Milliseconds between two fetches from the same host
+    private static final long exchangeInterval = 100; // Milliseconds a distributed worker waits for incoming links
+
+    private AtomicInteger extractedUrlsCount = new AtomicInteger(0);
     private static final String urlSeperator = " ";
-    private static final String htmlContentType = "text/html";
 
     /******************************************************************************************************************************************************************/
 
     /************************************************************************** Data structures *************************************************************************/
-    private static HashSet<String> allowedDomains = new HashSet<String>(); // Store set of all the allowed domains
-    private static HashSet<String> uniqueHosts = new HashSet<String>(); // Store set of all the unique domains helpful
-                                                                        // for tracking robots.txt
-    private static HashSet<String> restrictedUrls = new HashSet<String>(); // Store set of restricted urls extracted
-                                                                           // from robots.txt's
-    private static HashSet<String> visitedUrls = new HashSet<String>(); // Store set of visited urls increases with each
-                                                                        // visited url
+    private DomainSuffixTrie allowedDomains = new DomainSuffixTrie(); // Store all the allowed domains
+    private RobotsCache robotsCache = new RobotsCache(robotsCacheSize, robotsTimeToLive, new RobotsCache.Loader() {
+
+        @Override
+        public RobotsRules load (String hostKey) {
+
+            return parseRobotsTxt(hostKey);
+        }
+    }); // Compiled robots.txt rules for each host, loaded once per host
+    private SeenUrlStore seenUrlStore; // Optional store replacing the in-memory url set of the frontier
+    private boolean headProbe = true; // Send a HEAD request for every extracted link to verify it is html
+    private PageFetcher fetcher = PageFetcher.getInstance(); // Pooled http client shared with the online indexer
+    private volatile BlockingQueue<CrawledDocument> pageQueue; // Optional queue receiving every fetched html page
+    private PageStoreWriter pageStore; // Optional store keeping every fetched html page for offline indexing
+    private DuplicateDetector duplicateDetector = new DuplicateDetector(); // Skips pages repeating an earlier page
+    private final ThreadLocal<LinkExtractor> linkExtractor = new ThreadLocal<LinkExtractor>() {
+
+        @Override
+        protected LinkExtractor initialValue () {
+
+            return new LinkExtractor();
+        }
+    }; // Reusable extractor buffers, one per crawl thread
+    private CrawlMetrics metrics = new CrawlMetrics(); // Fetch latency, throughput and error counters
+    private File metricsFile; // Optional file receiving periodic metrics snapshots
 
     /**
-     * Efficient url_queue implementation : 2 separate hash set one for each BFS level one current and another next
-     * level.
-     * When current frontier becomes empty future_frontier becomes current and iteration continues
-     * When both current and future frontier become empty execution stops
+     * Url queue of the sequential crawl ordered by page importance(OPIC), the highest priority url is crawled next so a
+     * limited crawl spends its budget on the best linked pages instead of arbitrary ones
      **/
-    private static HashSet<String> currentFrontier = new HashSet<String>(); // Store list of extracted urls at current
-                                                                            // level of BFS iteration
-    private static HashSet<String> futureFrontier = new HashSet<String>(); // Store list of extracted urls at next level
-                                                                           // of BFS iteration
-
+    private PriorityFrontier urlFrontier = new PriorityFrontier();
 
     /******************************************************************************************************************************************************************/
 
     /*
-     * Crawl web pages from the given initial seed url into the output file
+     * Crawl web pages from the given initial seed url into the output file, most important pages first
      */
     public void crawlWebPages (String seedUrl, String outputFile) {
 
         final File file = new File(outputFile); // Output file containing set of links
         new Utilities().initializeFile(file); // Initializing the file for storing the links to be initially empty
 
-        currentFrontier.add(seedUrl); // Put the initial seed in current frontier data structure
+        urlFrontier = new PriorityFrontier(null != seenUrlStore ? seenUrlStore : new HashSeenUrlStore());
+        urlFrontier.addSeed(seedUrl); // Put the initial seed in the frontier
+        int visitedCount = 0;
+        startMetrics();
 
         BufferedWriter urlWriter;
         try {
 
             urlWriter = new BufferedWriter(new FileWriter(file.getAbsoluteFile(), true));
 
-            Iterator<String> iterator = currentFrontier.iterator(); // Continue till there are no more url's to parse or
-                                                                    // max limit reached
-            while (visitedUrls.size() <= visitedUrlsLimit && (iterator.hasNext() || !futureFrontier.isEmpty())) {
-
-                if (!iterator.hasNext()) { // Check for current frontier being empty
-                    currentFrontier = futureFrontier; // Make future frontier the current frontier
-                    iterator = currentFrontier.iterator(); // Get iterator for the new current frontier
-                    futureFrontier = new HashSet<String>(); // Reinitialize future frontier
-                }
-
-                String pageUrl = iterator.next(); // Get next element from current frontier
-
-                visitedUrls.add(pageUrl); // Add visited url to visited urls set
-                urlWriter.write(pageUrl);
+            String pageUrl;
+            while (visitedCount <= visitedUrlsLimit && null != (pageUrl = urlFrontier.poll())) { // Continue till there
+                                                                                                  // are no more url's
+                                                                                                  // to parse or max
+                                                                                                  // limit reached
+                visitedCount++;
+                metrics.setFrontierSize(urlFrontier.size());
 
-                if (extractedUrlsCount <= extractedUrlsLimit) // Limit extracted urls early on
-                    extractLinks(pageUrl, urlWriter); // Extract links from url
-
-                iterator.remove(); // Remove visited url from extracted urls set
+                if (isFetchNeeded()) { // Limit extracted urls early on
+                    if (!extractLinks(pageUrl, urlWriter)) // Extract links from url
+                        continue; // Not an html page, leave it out of the output
+                } else
+                    urlWriter.write(pageUrl);
 
                 urlWriter.newLine();
             }
@@ -105,36 +151,499 @@ public class WebCrawler {
         } catch (IOException e) {
             System.err.println("IO exception occurent while writing: " + file.getAbsolutePath());
         }
+        stopMetrics();
     }
 
 
     /*
      * Process the web page at given url and extract all the links on the page
      * Write the text file {current url [set of unique urls in this page.....]}
+     * Returns false without writing anything if the url does not refer to an html page
      */
-    public void extractLinks (String url, BufferedWriter urlWriter) throws IOException {
+    public boolean extractLinks (String url, BufferedWriter urlWriter) throws IOException {
 
-        Document doc = Jsoup.connect(url).userAgent("Mozilla").timeout(3000).get(); // Get the document associated with
-                                                                                    // given url
+        List<String> links = getPageLinks(url); // Fetch the page and extract the links on it
+        if (null == links)
+            return false;
 
-        Elements links = doc.select("a[href]"); // Extract all the links in this page
-        for (Element link : links) {
+        urlWriter.write(url);
 
-            if (extractedUrlsCount <= extractedUrlsLimit) // Limit extracted urls
+        List<String> knownLinks = new ArrayList<String>(); // Links in the frontier, they share the cash of this page
+        for (String linkUrl : links) {
+
+            String cannonicalUrl = URLCanonicalizer.getCanonicalURL(linkUrl);
+            if (null != cannonicalUrl && urlFrontier.contains(cannonicalUrl)) { // Known url, another in-link for it
+                knownLinks.add(cannonicalUrl);
+                continue;
+            }
+
+            if (extractedUrlsCount.get() <= extractedUrlsLimit) // Limit extracted urls
             {
-                String cannonicalUrl = processUrl(link.attr("abs:href")); // Process each extracted url
-                if (cannonicalUrl != null && !visitedUrls.contains(cannonicalUrl)
-                        && !currentFrontier.contains(cannonicalUrl) && !futureFrontier.contains(cannonicalUrl)) {
-                    extractedUrlsCount++;
-                    futureFrontier.add(cannonicalUrl);
+                cannonicalUrl = processUrl(linkUrl); // Process each extracted url
+                if (cannonicalUrl != null && urlFrontier.add(cannonicalUrl)) {
+                    extractedUrlsCount.incrementAndGet();
+                    knownLinks.add(cannonicalUrl);
                     urlWriter.write(urlSeperator + cannonicalUrl);
                 }
-            } else
-                break;
+            }
+        }
+        urlFrontier.distributeCash(knownLinks); // Pass importance of this page on to the pages it links
+        return true;
+    }
+
+
+    /*
+     * Check whether a visited page has to be fetched, once the extracted urls limit is hit pages are written to the
+     * output unfetched unless they still have to be verified to be html(no head probe) or indexed(page queue set)
+     */
+    private boolean isFetchNeeded () {
+
+        return extractedUrlsCount.get() <= extractedUrlsLimit || !headProbe || null != pageQueue;
+    }
+
+
+    /*
+     * Crawl web pages sequentially in BFS order from the given initial seed url into the output file, keeping the
+     * frontier on disk in frontierDirectory instead of in memory
+     * 	- pending urls are kept in append-only queue segments and seen urls in a memory mapped fingerprint table, so
+     * 	  heap usage does not grow with the number of urls
+     * 	- the crawl is checkpointed every checkpointInterval pages, if frontierDirectory holds a checkpoint the crawl
+     * 	  resumes from it instead of starting from the seed: output, queue and seen urls are all put back to the
+     * 	  checkpoint, so pages visited after it are crawled again with the same links as before the crash
+     * 	- new urls of a page are flushed to the queue before they are recorded as seen, the urls appended after the
+     * 	  checkpoint then tell which seen urls to forget on resume
+     * Duplicate detection, if set, starts over on resume
+     */
+    public void crawlWebPages (String seedUrl, String outputFile, File frontierDirectory) {
+
+        final File file = new File(outputFile); // Output file containing set of links
+
+        try {
+
+            DiskUrlQueue urlQueue = new DiskUrlQueue(frontierDirectory); // Pending urls in BFS order
+            File seenUrlsFile = new File(frontierDirectory, seenUrlsFileName);
+            if (!urlQueue.isResumed()) // Urls seen by a crawl that never reached a checkpoint
+                seenUrlsFile.delete();
+            MappedSeenUrlStore seenUrls = new MappedSeenUrlStore(seenUrlsFile, 1 << 20);
+            for (String droppedUrl : urlQueue.getDroppedUrls()) // Seen after the checkpoint, found again on resume
+                seenUrls.remove(droppedUrl);
+
+            long visitedCount = urlQueue.getCheckpointValue("crawl.visited", 0);
+            extractedUrlsCount.set((int) urlQueue.getCheckpointValue("crawl.extracted", 0));
+
+            if (urlQueue.isResumed()) { // Drop output written after the last checkpoint
+                RandomAccessFile outputTruncator = new RandomAccessFile(file, "rw");
+                outputTruncator.setLength(urlQueue.getCheckpointValue("crawl.outputLength", 0));
+                outputTruncator.close();
+                System.out.println("Resuming crawl after " + visitedCount + " visited urls");
+            } else {
+                new Utilities().initializeFile(file); // Initializing the file for storing the links to be initially
+                                                      // empty
+                urlQueue.add(seedUrl); // Put the initial seed in the frontier
+                urlQueue.flush();
+                seenUrls.add(seedUrl);
+            }
+
+            BufferedWriter urlWriter = new BufferedWriter(new FileWriter(file.getAbsoluteFile(), true));
+            startMetrics();
+
+            String pageUrl;
+            while (visitedCount <= visitedUrlsLimit && null != (pageUrl = urlQueue.poll())) {
+
+                visitedCount++;
+                metrics.setFrontierSize(urlQueue.size());
+                StringBuilder line = new StringBuilder(pageUrl);
+                boolean htmlPage = true;
+                Set<String> newUrls = new LinkedHashSet<String>(); // Unique urls found on this page
+
+                try {
+                    if (isFetchNeeded()) { // Limit extracted urls early on
+                        List<String> pageLinks = getPageLinks(pageUrl);
+                        htmlPage = null != pageLinks;
+                        for (int index = 0; htmlPage && index < pageLinks.size(); index++) {
+                            if (extractedUrlsCount.get() > extractedUrlsLimit) // Limit extracted urls
+                                break;
+                            String cannonicalUrl = processUrl(pageLinks.get(index)); // Process each extracted url
+                            if (cannonicalUrl != null && !seenUrls.contains(cannonicalUrl)
+                                    && newUrls.add(cannonicalUrl)) { // Unique url found
+                                extractedUrlsCount.incrementAndGet();
+                                line.append(urlSeperator).append(cannonicalUrl);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not fetch: " + pageUrl);
+                }
+
+                for (String newUrl : newUrls)
+                    urlQueue.add(newUrl);
+                urlQueue.flush(); // Queued before seen, so a crash never leaves a seen url out of the queue
+                for (String newUrl : newUrls)
+                    seenUrls.add(newUrl);
+
+                if (htmlPage) { // Pages that turned out not to be html are left out of the output
+                    urlWriter.write(line.toString());
+                    urlWriter.newLine();
+                }
+
+                if (visitedCount % checkpointInterval == 0)
+                    checkpointCrawl(urlQueue, seenUrls, urlWriter, file, visitedCount);
+            }
+
+            checkpointCrawl(urlQueue, seenUrls, urlWriter, file, visitedCount);
+            urlWriter.close();
+            urlQueue.close();
+            seenUrls.close();
+
+        } catch (IOException e) {
+            System.err.println("IO exception occurent while crawling with frontier in: "
+                    + frontierDirectory.getAbsolutePath());
+        }
+        stopMetrics();
+    }
+
+
+    /*
+     * Flush output and seen urls, then record the frontier position with crawl counters
+     */
+    private void checkpointCrawl (DiskUrlQueue urlQueue, SeenUrlStore seenUrls, BufferedWriter urlWriter, File file,
+            long visitedCount) throws IOException {
+
+        urlWriter.flush();
+        seenUrls.flush();
+
+        Properties counters = new Properties();
+        counters.setProperty("crawl.visited", String.valueOf(visitedCount));
+        counters.setProperty("crawl.extracted", String.valueOf(extractedUrlsCount.get()));
+        counters.setProperty("crawl.outputLength", String.valueOf(file.length()));
+        urlQueue.checkpoint(counters);
+    }
+
+
+    /*
+     * Crawl web pages from the given initial seed url into the output file using the default number of workers
+     */
+    public void crawlWebPagesConcurrently (String seedUrl, String outputFile) {
+
+        crawlWebPagesConcurrently(seedUrl, outputFile, defaultThreadCount, defaultCrawlDelay);
+    }
+
+
+    /*
+     * Crawl web pages concurrently from the given initial seed url into the output file
+     * 	- threadCount : global cap on the number of pages fetched at the same time
+     * 	- crawlDelay : milliseconds to wait between two fetches from the same host
+     * Each output line has the same format as the sequential crawl {current url [set of unique urls in this page.....]}
+     */
+    public void crawlWebPagesConcurrently (String seedUrl, String outputFile, int threadCount, long crawlDelay) {
+
+        crawlConcurrently(seedUrl, outputFile, threadCount, crawlDelay, null, 0);
+    }
+
+
+    /*
+     * Crawl web pages as one worker of a distributed crawl, every worker runs this with its own partition and output
+     * file, the same seed, partition count and transport
+     * 	- the worker only fetches urls of hosts in its partition(consistent hash of the host), links to other hosts
+     * 	  are sent in batches through the transport to the worker owning them, so per-host politeness stays on one node
+     * 	- visit and extracted url limits apply per worker
+     * 	- a worker finishes at its visit limit, or once its frontier was idle and no link arrived for idleTimeout
+     * 	  milliseconds
+     * Output lines have the same format as the concurrent crawl, the outputs of all workers together cover the crawl
+     */
+    public void crawlWebPagesDistributed (String seedUrl, String outputFile, HostPartitioner partitioner,
+            int partition, LinkTransport transport, int threadCount, long crawlDelay, long idleTimeout) {
+
+        final LinkExchange exchange = new LinkExchange(partitioner, partition, transport);
+        if (!exchange.isLocal(seedUrl)) // Seed is crawled by the worker owning its host
+            seedUrl = null;
+
+        crawlConcurrently(seedUrl, outputFile, threadCount, crawlDelay, exchange, idleTimeout);
+        System.out.println("Partition " + partition + " sent " + exchange.getSentCount() + " and received "
+                + exchange.getReceivedCount() + " links");
+    }
+
+
+    /*
+     * Concurrent crawl, distributed when an exchange is given: the frontier then stays open for links from the other
+     * workers and an exchange thread moves links in and out till the frontier is done
+     */
+    private void crawlConcurrently (String seedUrl, String outputFile, int threadCount, long crawlDelay,
+            final LinkExchange exchange, final long idleTimeout) {
+
+        final File file = new File(outputFile); // Output file containing set of links
+        new Utilities().initializeFile(file); // Initializing the file for storing the links to be initially empty
+
+        final CrawlFrontier frontier = // Thread safe per-host url queues
+        new CrawlFrontier(crawlDelay, null != seenUrlStore ? seenUrlStore : new HashSeenUrlStore());
+        final AtomicInteger visitedCount = new AtomicInteger(0);
+        if (null != seedUrl)
+            frontier.add(seedUrl); // Put the initial seed in the frontier
+        frontier.setKeepOpen(null != exchange);
+        startMetrics();
+
+        try {
+
+            final BufferedWriter urlWriter = new BufferedWriter(new FileWriter(file.getAbsoluteFile(), true));
+            ExecutorService workers = Executors.newFixedThreadPool(null != exchange ? threadCount + 1 : threadCount);
+
+            for (int count = 0; count < threadCount; count++) {
+                workers.execute(new Runnable() {
+
+                    @Override
+                    public void run () {
+
+                        crawlWorker(frontier, visitedCount, urlWriter, exchange);
+                    }
+                });
+            }
+            if (null != exchange) {
+                workers.execute(new Runnable() {
+
+                    @Override
+                    public void run () {
+
+                        exchangeWorker(frontier, exchange, idleTimeout);
+                    }
+                });
+            }
+
+            workers.shutdown(); // Workers exit once the frontier is exhausted or the visit limit is hit
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS))
+                ;
+
+            urlWriter.close();
+
+        } catch (IOException e) {
+            System.err.println("IO exception occurent while writing: " + file.getAbsolutePath());
+        } catch (InterruptedException e) {
+            frontier.close();
+            Thread.currentThread().interrupt();
+        }
+        stopMetrics();
+    }
+
+
+    /*
+     * Worker loop for concurrent crawl, fetch urls from frontier till it is exhausted or visit limit is reached
+     */
+    private void crawlWorker (CrawlFrontier frontier, AtomicInteger visitedCount, BufferedWriter urlWriter,
+            LinkExchange exchange) {
+
+        try {
+            String pageUrl;
+            while (null != (pageUrl = frontier.take())) {
+
+                if (visitedCount.incrementAndGet() > visitedUrlsLimit + 1) { // Same limit as sequential crawl
+                    frontier.close();
+                    break;
+                }
+
+                StringBuilder line = new StringBuilder(pageUrl);
+                boolean htmlPage = true;
+                try {
+                    if (isFetchNeeded()) { // Limit extracted urls early on
+                        List<String> pageLinks = getPageLinks(pageUrl);
+                        htmlPage = null != pageLinks;
+                        for (int index = 0; htmlPage && index < pageLinks.size(); index++) {
+                            if (extractedUrlsCount.get() > extractedUrlsLimit) // Limit extracted urls
+                                break;
+                            String cannonicalUrl = processUrl(pageLinks.get(index)); // Process each extracted url
+                            if (null == cannonicalUrl)
+                                continue;
+                            boolean added = null != exchange && !exchange.isLocal(cannonicalUrl) ? exchange
+                                    .send(cannonicalUrl) // Host owned by another worker
+                                    : frontier.add(cannonicalUrl, getCrawlDelay(cannonicalUrl));
+                            if (added) {
+                                extractedUrlsCount.incrementAndGet();
+                                line.append(urlSeperator).append(cannonicalUrl);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not fetch: " + pageUrl);
+                } finally {
+                    frontier.complete(pageUrl); // Let the host be scheduled again after its crawl delay
+                    metrics.setFrontierSize(frontier.size());
+                }
+
+                if (htmlPage) { // Pages that turned out not to be html are left out of the output
+                    synchronized (urlWriter) { // Write one complete line per page
+                        urlWriter.write(line.toString());
+                        urlWriter.newLine();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("IO exception occurent while writing crawled urls");
+            frontier.close();
+        }
+    }
+
+
+    /*
+     * Exchange loop of a distributed crawl worker: send queued links, add links received from other workers to the
+     * frontier, and let the frontier finish once it was idle with nothing received for idleTimeout milliseconds
+     */
+    private void exchangeWorker (CrawlFrontier frontier, LinkExchange exchange, long idleTimeout) {
+
+        long idleSince = System.currentTimeMillis();
+        try {
+            while (!frontier.isClosed()) {
+
+                exchange.flush();
+                List<String> receivedUrls = exchange.receive(exchangeInterval);
+                for (String url : receivedUrls)
+                    frontier.add(url, getCrawlDelay(url)); // Politeness for the host is kept on this worker
+
+                if (!receivedUrls.isEmpty() || !frontier.isIdle())
+                    idleSince = System.currentTimeMillis();
+                else
+                    if (System.currentTimeMillis() - idleSince > idleTimeout)
+                        break;
+            }
+            exchange.flush(); // Links found by the last pages
+        } catch (IOException e) {
+            System.err.println("IO exception occurent while exchanging links of partition " + exchange.getPartition());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            frontier.setKeepOpen(false); // Let the crawl threads finish
+        }
+    }
+
+
+    /*
+     * Crawl delay requested by robots.txt of the url's host, -1 if none
+     */
+    private long getCrawlDelay (String pageUrl) {
+
+        try {
+            return getRobotsRules(new URL(pageUrl)).getCrawlDelay();
+        } catch (MalformedURLException e) {
+            return -1;
+        }
+    }
+
+
+    /*
+     * Fetch the web page at given url and return the absolute links on the page in document order(at most
+     * maxLinksPerPage), null if the url does not refer to an html page or duplicates a page crawled before
+     * Links are read by a streaming LinkExtractor instead of a Jsoup DOM, the page is only parsed into a document when
+     * it is handed to the indexer. When no duplicate detector, page store or page queue needs the page text, links are
+     * read straight from the response as it arrives and the rest of the page is not downloaded once maxLinksPerPage
+     * links were found. Links are returned unprocessed so that callers only pay for processUrl on the links they keep
+     */
+    public List<String> getPageLinks (String url) throws IOException {
+
+        if (null == duplicateDetector && null == pageStore && null == pageQueue) { // Page text not needed
+            FetchedPage linksPage = fetchLinks(url);
+            return linksPage.isHtml() ? linksPage.getLinks() : null;
+        }
+
+        FetchedPage page = fetch(url, true); // Body is only read for html responses
+        if (!page.isHtml()) // Error status or not html
+            return null;
+
+        if (null != duplicateDetector && !duplicateDetector.addContent(page.getContent())) // Byte identical to a page
+            return null;                                                                 // crawled before
+
+        DuplicateDetector.SimHash textHash = null == duplicateDetector ? null : new DuplicateDetector.SimHash();
+        List<String> pageLinks = linkExtractor.get().extract(new StringReader(page.getContent()), page.getUrl(),
+                maxLinksPerPage, textHash); // Final url as base for absolute links, text hashed in the same pass
+
+        if (null != textHash && !duplicateDetector.addFingerprint(textHash.getFingerprint())) // Mirror or session
+            return null;                                                                      // id variant
+
+        if (null != pageStore)
+            pageStore.write(url, page); // Keep the page to index it again without fetching
+
+        BlockingQueue<CrawledDocument> queue = pageQueue;
+        if (null != queue) { // Hand the page to the indexer, waiting while it is behind
+            try {
+                queue.put(new CrawledDocument(url, Jsoup.parse(page.getContent(), page.getUrl())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing page: " + url);
+            }
+        }
+        return pageLinks;
+    }
+
+
+    /*
+     * Fetch url with the shared fetcher and record the fetch in the crawl metrics
+     */
+    private FetchedPage fetch (String url, boolean htmlOnly) throws IOException {
+
+        long start = System.nanoTime();
+        try {
+            FetchedPage page = fetcher.fetch(url, htmlOnly);
+            metrics.recordFetch(url, page);
+            return page;
+        } catch (IOException e) {
+            metrics.recordError(url, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+
+    /*
+     * Fetch links of url with the shared fetcher and record the fetch in the crawl metrics
+     */
+    private FetchedPage fetchLinks (String url) throws IOException {
+
+        long start = System.nanoTime();
+        try {
+            FetchedPage page = fetcher.fetchLinks(url, linkExtractor.get(), maxLinksPerPage);
+            metrics.recordFetch(url, page);
+            return page;
+        } catch (IOException e) {
+            metrics.recordError(url, System.nanoTime() - start);
+            throw e;
         }
     }
 
 
+    /*
+     * Send a HEAD request with the shared fetcher and record it in the crawl metrics
+     */
+    private FetchedPage head (String url) throws IOException {
+
+        long start = System.nanoTime();
+        try {
+            FetchedPage page = fetcher.head(url);
+            metrics.recordFetch(url, page);
+            return page;
+        } catch (IOException e) {
+            metrics.recordError(url, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+
+    /*
+     * Start periodic metrics snapshots for a crawl
+     */
+    private void startMetrics () {
+
+        metrics.setRobotsCache(robotsCache);
+        metrics.startReporting(metricsFile, metricsInterval);
+    }
+
+
+    /*
+     * Stop periodic metrics snapshots and write the final one
+     */
+    private void stopMetrics () {
+
+        metrics.stopReporting();
+        metrics.report(metricsFile);
+    }
+
+
     /*
      * Process each url, check to be in allowed domain, not in restricted domain and cannonize url
      */
@@ -145,15 +654,12 @@ public class WebCrawler {
 
             String host = url.getHost();
 
-            if (checkDomain(host, allowedDomains)) { // Check whether host is in allowed domain or its sub domain
+            if (allowedDomains.matches(host)) { // Check whether host is in allowed domain or its sub domain
 
-                if (!uniqueHosts.contains(host)) { // New host found check for robots.txt
-                    uniqueHosts.add(host);
-                    parseRobotsTxt(url.getProtocol(), host);
-                }
+                String path = url.getFile(); // Path and query checked against robots.txt rules of the host
 
-                if (!checkDomain(pageUrl, restrictedUrls) && isHtmlDoc(pageUrl)) // Check url to be not restricted and a
-                                                                                 // valid html
+                if (getRobotsRules(url).isAllowed(path) // Check url to be not restricted and a valid html, either
+                        && (headProbe ? isHtmlDoc(pageUrl) : isLikelyHtml(url))) // verified or guessed from the url
                     return URLCanonicalizer.getCanonicalURL(pageUrl); // Get canonical url using library
             }
 
@@ -165,37 +671,56 @@ public class WebCrawler {
 
 
     /*
-     * Parse the robots.txt for the given domain if it exists, not very robust
+     * Return compiled robots.txt rules for the host of given url, fetching robots.txt on first use of the host
      */
-    public void parseRobotsTxt (String protocol, String host) {
+    public RobotsRules getRobotsRules (URL url) {
 
-        try {
+        return robotsCache.getRules(getHostKey(url));
+    }
 
-            URL robotURL = new URL(protocol, host, "robots.txt");
-            HttpURLConnection connection = (HttpURLConnection) robotURL.openConnection();
-            connection.setRequestProperty("User-Agent",
-                    "Mozilla/5.0 (Windows NT 6.1; WOW64) Chrome/23.0.1271.95 Safari/537.11");
 
-            int statusCode = connection.getResponseCode();
-            if (statusCode == HttpURLConnection.HTTP_OK) { // Verify existence of robots.txt for given domain
+    /*
+     * Key identifying the robots.txt of a url's host: protocol, host and port
+     */
+    private static String getHostKey (URL url) {
 
-                Scanner robotsScanner = new Scanner(connection.getInputStream()); // Get robots.txt input stream
-                while (robotsScanner.hasNextLine()) {
+        return url.getProtocol() + "://" + url.getHost() + (url.getPort() == -1 ? "" : ":" + url.getPort());
+    }
 
-                    String[] tokens = robotsScanner.nextLine().split(" ");
-                    if (tokens[0].contains("Disallow:")) {
-                        String restrictedUrl = host + tokens[1].toLowerCase();
 
-                        if (!restrictedUrls.contains(restrictedUrl)) // Add unique restricted url to restrictedUrls
-                            restrictedUrls.add(restrictedUrl);
-                    }
-                }
+    /*
+     * Fetch and compile the robots.txt for the given host key if it exists, else allow everything
+     */
+    public RobotsRules parseRobotsTxt (String hostKey) {
+
+        try {
+
+            FetchedPage robotsPage = fetch(hostKey + "/robots.txt", false);
+            if (robotsPage.getStatusCode() == HttpURLConnection.HTTP_OK) // Verify existence of robots.txt for given
+                                                                         // domain
+                return RobotsRules.parse(robotsPage.getContent(), robotsUserAgent);
 
-                robotsScanner.close();
-            }
         } catch (IOException e) {
-            System.err.println("IO exception for host: " + host);
+            System.err.println("IO exception for host: " + hostKey);
         }
+        return RobotsRules.allowAll();
+    }
+
+
+    /*
+     * Guess from the url alone whether it refers to an html page, used instead of isHtmlDoc when the head probe is
+     * disabled. Urls without an extension or with an unknown one are accepted, the content type of the actual fetch
+     * decides for those.
+     */
+    public boolean isLikelyHtml (URL url) {
+
+        String path = url.getPath();
+        int slashIndex = path.lastIndexOf('/');
+        int dotIndex = path.lastIndexOf('.');
+        if (dotIndex <= slashIndex) // No extension in last path segment
+            return true;
+
+        return !nonHtmlExtensions.contains(path.substring(dotIndex + 1).toLowerCase());
     }
 
 
@@ -205,16 +730,9 @@ public class WebCrawler {
     public boolean isHtmlDoc (String url) {
 
         try {
-            // Thread.sleep(5000);
-            HttpURLConnection.setFollowRedirects(false);
-            HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
-            con.setRequestProperty("User-Agent",
-                    "Mozilla/5.0 (Windows NT 6.1; WOW64) Chrome/23.0.1271.95 Safari/537.11");
-            con.setRequestMethod("HEAD");
-            String contentType = con.getContentType();
-
-            return ((con.getResponseCode() == HttpURLConnection.HTTP_OK) && contentType.contains(htmlContentType));
+            FetchedPage page = head(url);
 
+            return page.isHtml() && page.getUrl().equals(url); // Redirected urls are not accepted
         } catch (Exception e) {
             System.err.println("Invalid url: " + url);
             return false;
@@ -223,26 +741,122 @@ public class WebCrawler {
 
 
     /*
-     * Check for a string containing any of the elements in a hash set at any position
+     * Provide allowed domains to be parsed 
      */
-    public boolean checkDomain (String url, HashSet<String> domainSet) {
+    public void setupAllowedDomains () {
+
+        allowedDomains.add("northeastern.edu");
+        allowedDomains.add("neu.edu");
 
-        for (String allowedDomain : domainSet) {
-            if (url.contains(allowedDomain)) // Match url host with each element in domain set
-                return true;
-        }
-        return false;
     }
 
 
     /*
-     * Provide allowed domains to be parsed 
+     * Change the crawl limits, useful with a disk frontier where memory no longer bounds the crawl
+     * 	- visitedUrlsLimit : maximum count of pages visited
+     * 	- extractedUrlsLimit : maximum count of unique links extracted
      */
-    public void setupAllowedDomains () {
+    public void setCrawlLimits (int visitedUrlsLimit, int extractedUrlsLimit) {
 
-        allowedDomains.add("northeastern.edu");
-        allowedDomains.add("neu.edu");
+        this.visitedUrlsLimit = visitedUrlsLimit;
+        this.extractedUrlsLimit = extractedUrlsLimit;
+    }
+
+
+    /*
+     * Use given store for duplicate checks of extracted links in the in-memory crawl modes, e.g. a
+     * BloomSeenUrlStore to trade a small false positive rate for a much smaller memory footprint
+     */
+    public void setSeenUrlStore (SeenUrlStore seenUrlStore) {
+
+        this.seenUrlStore = seenUrlStore;
+    }
+
+
+    /*
+     * Set the maximum count of links read from a single page
+     * Extraction stops at the cap without reading the rest of the page, unless the page text is needed for duplicate
+     * detection
+     */
+    public void setMaxLinksPerPage (int maxLinksPerPage) {
+
+        this.maxLinksPerPage = maxLinksPerPage;
+    }
+
+
+    /*
+     * Enable or disable the HEAD request sent for every extracted link
+     * Without it links are filtered by url extension and every visited page is checked to be html from the content
+     * type of its GET response, saving one round trip per link
+     */
+    public void setHeadProbe (boolean headProbe) {
+
+        this.headProbe = headProbe;
+    }
+
+
+    /*
+     * Send every html page fetched by a crawl to given queue, null stops sending pages
+     * The queue should be bounded: once it is full the crawl waits for the consumer, so fetching never runs ahead of
+     * indexing by more than the queue capacity
+     */
+    public void setPageQueue (BlockingQueue<CrawledDocument> pageQueue) {
+
+        this.pageQueue = pageQueue;
+    }
+
+
+    /*
+     * Write every html page fetched by a crawl to given page store, null stops storing pages
+     * The store is not closed by the crawl
+     */
+    public void setPageStore (PageStoreWriter pageStore) {
+
+        this.pageStore = pageStore;
+    }
+
+
+    /*
+     * Use given detector to skip pages duplicating or nearly duplicating a page crawled before, their links are not
+     * followed and they are left out of the output; null crawls every page
+     */
+    public void setDuplicateDetector (DuplicateDetector duplicateDetector) {
+
+        this.duplicateDetector = duplicateDetector;
+    }
+
+
+    /*
+     * Write a crawl metrics snapshot to given file every few seconds during a crawl and once when it ends, null only
+     * records the metrics and their JFR events
+     */
+    public void setMetricsFile (File metricsFile) {
+
+        this.metricsFile = metricsFile;
+    }
+
+
+    /*
+     * Record fetches in given metrics instead of the crawler's own, e.g. to share them between crawlers
+     */
+    public void setMetrics (CrawlMetrics metrics) {
+
+        this.metrics = metrics;
+    }
+
+
+    public CrawlMetrics getMetrics () {
+
+        return metrics;
+    }
+
+
+    /*
+     * Add a domain to be parsed in addition to the default ones
+     */
+    public void addAllowedDomain (String domain) {
 
+        allowedDomains.add(domain);
     }
 
 }
@@ -4,12 +4,16 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
 
-import org.tartarus.snowball.EnglishSnowballStemmerFactory;
 import org.tartarus.snowball.util.StemmerException;
 
+import com.build_index.IndexReader;
+import com.build_index.IndexSegments;
+import com.build_index.StemCache;
+import com.build_index.TermDictionary;
+import com.build_index.TermPostings;
+
 /**
  * 
  * @author Swapnil Gupta
@@ -21,6 +25,11 @@ public class ExtractInfo {
     private final String seperator = "\t";
     private final String newLine = "\n";
 
+    private static TermDictionary termDictionary; // Term ids read from term_ids.txt, kept between look ups
+    private static File termDictionaryFile;
+    private static long termDictionaryModified;
+    private static long termDictionaryLength;
+
 
     /*
      * Function returning metadata for given document
@@ -66,39 +75,37 @@ public class ExtractInfo {
     /*
      * Function returning metadata for given term
      */
-    public void getTerm (String term, File termsIdFile, File termInfoFile) {
+    public void getTerm (String term, File termsIdFile, File termIndexFile, File termPostingsFile, File termInfoFile,
+            File segmentInfoFile) {
 
         String stemmed = term; // Apply snowball stemmer for stemming terms
         try {
-            stemmed = EnglishSnowballStemmerFactory.getInstance().process(term);
+            stemmed = StemCache.getInstance().stem(term);
         } catch (StemmerException e) {
             System.out.println("Stemming failed for term: " + term);
         }
 
-        String termId = new Utilities().getID(termsIdFile, stemmed); // Get the term id corresponding to given term
+        String termId = getTermId(termsIdFile, stemmed); // Get the term id corresponding to given term
 
         if (null != termId) {
             try {
-                BufferedReader reader = new BufferedReader(new FileReader(termInfoFile));// Read terms_info.txt
-
-                String line;
-                // Iterate through terms_info.txt to find metadata for given term id
-                while ((line = reader.readLine()) != null) {
-
-                    String[] temp = line.split(seperator);
-                    if (temp[0].equals(termId)) {
-
-                        // Print metadata on output stream
-                        System.out.println(newLine + "Listing for term: " + stemmed);
-                        System.out.println("TERMID: " + termId);
-                        System.out.println("Number of documents containing term: " + temp[3]);
-                        System.out.println("Term frequency in corpus: " + temp[2]);
-                        System.out.println("Inverted list offset: " + temp[1]);
-
-                        reader.close(); // Close term_info.txt reader
-                        break;
-                    }
+                // Counts of the term summed over term_info.txt of the index and its segments
+                IndexReader indexReader = new IndexSegments(segmentInfoFile).openIndexReader(termIndexFile,
+                        termPostingsFile, termInfoFile);
+                int id = Integer.parseInt(termId);
+
+                if (indexReader.contains(id)) {
+                    long offset = indexReader.getOffset(id); // Offset in the base index
+
+                    // Print metadata on output stream
+                    System.out.println(newLine + "Listing for term: " + stemmed);
+                    System.out.println("TERMID: " + termId);
+                    System.out.println("Number of documents containing term: " + indexReader.getDocCount(id));
+                    System.out.println("Term frequency in corpus: " + indexReader.getOccurrences(id));
+                    System.out.println("Inverted list offset: " + (offset < 0 ? "Only in added segments" : offset));
                 }
+
+                indexReader.close(); // Close inverted index reader
             } catch (IOException e) {
                 System.err.println("Could not read file" + termInfoFile.getAbsolutePath());
             }
@@ -110,70 +117,39 @@ public class ExtractInfo {
      * Function returning metadata for given term in given document
      */
     public void getTermInDoc (String term, String filename, File docIdFile, File termsIdFile, File termIndexFile,
-            File termInfoFile) {
+            File termPostingsFile, File termInfoFile, File segmentInfoFile) {
 
         String stemmed = term;
         try {
-            stemmed = EnglishSnowballStemmerFactory.getInstance().process(term); // Apply snoball stemmer for stemming
-                                                                                 // terms
+            stemmed = StemCache.getInstance().stem(term); // Apply snoball stemmer for stemming terms
         } catch (StemmerException e) {
             System.out.println("Stemming failed for term: " + term);
         }
 
-        String termId = new Utilities().getID(termsIdFile, stemmed); // Get the term id corresponding to given term
+        String termId = getTermId(termsIdFile, stemmed); // Get the term id corresponding to given term
 
         String docId = new Utilities().getID(docIdFile, filename); // Get the document ID corresponding to document name
 
         if (docId != null && termId != null) {
-            long offset = 0;
-
-            String line;
-            try {
-                BufferedReader reader = new BufferedReader(new FileReader(termInfoFile));// Read termsinfo.txt
-
-                // Iterate through terms_info.txt to find term_index.txt offset for given term id
-                while ((line = reader.readLine()) != null) {
-                    String[] temp = line.split(seperator);
-
-                    if (temp[0].equals(termId)) {
-                        offset = Long.parseLong(temp[1]);
-                        break;
-                    }
-                }
-                reader.close(); // Close term_info.txt reader
-
-            } catch (IOException e) {
-                System.err.println("Could not read file" + termInfoFile.getAbsolutePath());
-            }
-
             try {
-                RandomAccessFile indexFile = new RandomAccessFile(termIndexFile, "r"); // Randomly access terms_index
-                                                                                       // file
-                indexFile.seek(offset);
-
-                line = indexFile.readLine(); // Read line at the given offset
-                String[] termOcurrence = line.split(seperator); // Split to get tokens
-                String[] docOcurrence;
+                // Look up the term in term_info.txt of the index and its segments and read its postings in the format
+                // they were built with
+                IndexReader indexReader = new IndexSegments(segmentInfoFile).openIndexReader(termIndexFile,
+                        termPostingsFile, termInfoFile);
                 ArrayList<Integer> positions = new ArrayList<Integer>();
 
-                int docCount = 0;
-                int count = 0;
-
-                for (int i = 1; i < termOcurrence.length; i++) {
-                    docOcurrence = termOcurrence[i].split(":"); // Split document:position pair
-                    docCount += Integer.parseInt(docOcurrence[0]); // Increment document id in this case count
-                    if (docCount != Integer.parseInt(docId)) // Doc id does not match continue
-                        continue;
-                    else { // Traversing positions for required document build position list
-                        count += Integer.parseInt(docOcurrence[1]);
-                        positions.add(count);
+                if (indexReader.contains(Integer.parseInt(termId))) {
+                    TermPostings postings = indexReader.getPostings(Integer.parseInt(termId));
+                    int targetDocId = Integer.parseInt(docId);
+                    while (postings.nextDoc() && postings.getDocId() <= targetDocId) { // Documents before the required
+                                                                                        // one are skipped
+                        if (postings.getDocId() == targetDocId) // Build position list of required document
+                            for (int position : postings.getPositions())
+                                positions.add(position);
                     }
-                    if (docCount > Integer.parseInt(docId)) // Already found the document skip traversing remaining
-                                                            // documents for the term
-                        break;
                 }
 
-                indexFile.close(); // Close term_index.txt reader
+                indexReader.close(); // Close inverted index reader
 
                 // Print metadata for a given term in a document
                 System.out.println(newLine + "Inverted list for term: " + stemmed);
@@ -198,4 +174,34 @@ public class ExtractInfo {
         System.out.println();
     }
 
+
+    /*
+     * Id of given term from term_ids.txt, null if it is not in the corpus
+     * The terms are read once and read again only when the index is built again
+     */
+    private static synchronized String getTermId (File termsIdFile, String term) {
+
+        try {
+            if (null == termDictionary || !termsIdFile.equals(termDictionaryFile)
+                    || termsIdFile.lastModified() != termDictionaryModified
+                    || termsIdFile.length() != termDictionaryLength) {
+                termDictionaryFile = termsIdFile;
+                termDictionaryModified = termsIdFile.lastModified();
+                termDictionaryLength = termsIdFile.length();
+                termDictionary = TermDictionary.read(termsIdFile);
+            }
+        } catch (IOException e) {
+            termDictionary = null;
+            System.out.println("Could not read the file : " + termsIdFile.getAbsolutePath());
+            return null;
+        }
+
+        int termId = termDictionary.get(term);
+        if (0 == termId) {
+            System.out.println(term + " is not present in corpus");
+            return null;
+        }
+        return String.valueOf(termId);
+    }
+
 }
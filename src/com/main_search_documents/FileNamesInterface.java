@@ -19,11 +19,15 @@ public interface FileNamesInterface {
     static final File termsIdFile = new File(indexFolder + "/term_ids.txt"); // Term id's file
 
     static final File docIndexFile = new File(indexFolder + "/doc_index.txt"); // Document index file
-    static final File sortedDocIndexFile = new File(indexFolder + "/sorted_doc_index.txt"); // Sorted Document index
-                                                                                            // file
+    static final File docStatsFile = new File(indexFolder + "/doc_stats.bin"); // Document lengths and corpus totals
+    static final File docNormsFile = new File(indexFolder + "/doc_norms.bin"); // Document vector magnitudes
 
     static final File termIndexFile = new File(indexFolder + "/term_index.txt"); // Term index file
     static final File termInfoFile = new File(indexFolder + "/term_info.txt"); // Term info file
+    static final File termPostingsFile = new File(indexFolder + "/term_postings.bin"); // Compressed term index file
+
+    static final File segmentFolder = new File(indexFolder + "/segments"); // Temporary files of inverting
+    static final File segmentInfoFile = new File(indexFolder + "/segment_info.txt"); // Segments added to the index
 
     /***************************************************************************************************************************************************/
 
@@ -5,6 +5,10 @@ import java.io.IOException;
 import java.util.Scanner;
 
 import com.build_index.BuildIndexes;
+import com.crawler.FileLinkTransport;
+import com.crawler.HostPartitioner;
+import com.crawler.PageFetcher;
+import com.crawler.PageStoreWriter;
 import com.crawler.WebCrawler;
 import com.generic_utilities.ExtractInfo;
 import com.rank_documents.DocumentPreProcessor;
@@ -18,9 +22,16 @@ import com.rank_documents.DocumentRanker;
  *         Provides
  *         1. Web Crawler - Expects seed url and a text file name to store crawled url's
  *         2. Online Indexer - Creates indexes from urls(on the Internet) in above urls.txt
- *         3. Offline Indexer - Creates indexes from webpages stored locally on computer
+ *         3. Offline Indexer - Creates indexes from webpages stored locally on computer, either one file per page or a
+ *         page store written by the crawler
  *         4. Rank Documents - Rank documents using the indexes generated from above to rank documents
  *         5. Extract Info - Extract required about any document and term
+ *         6. Crawl and Index - Crawls from a seed url and builds indexes from the crawled pages without fetching them
+ *         again
+ *         7. Distributed Crawl - Runs one worker of a crawl split by host across several processes, the workers
+ *         exchange links through a shared directory
+ *         8. Add to Indexes - Adds webpages stored locally to indexes built before as a new segment, without
+ *         rebuilding them
  */
 public class SearchDocuments implements FileNamesInterface {
 
@@ -29,9 +40,14 @@ public class SearchDocuments implements FileNamesInterface {
     public static String textFileExtension = ".txt";
     public static DocumentRanker ranker; // Global object to avoid pre processing of documents again
 
+    private static final int workerThreadCount = 8; // Concurrent fetches of a distributed crawl worker
+    private static final long workerCrawlDelay = 1000; // Milliseconds between two fetches from the same host
+    private static final long workerIdleTimeout = 30000; // Milliseconds a worker waits for links once it ran dry
+
 
     public static void main (String[] args) {
 
+        PageFetcher.cacheHostLookups(); // Before any crawl or online indexing looks a host up
         checkContinueMenu(0, "Continue in main menu (y/n):", null); // Start and loop on main menu till user wants to
                                                                     // exit
         System.out.println(newline + "Program execution complete");
@@ -86,7 +102,10 @@ public class SearchDocuments implements FileNamesInterface {
         System.out.println("3. Build indexes from local files");
         System.out.println("4. Rank documents***");
         System.out.println("5. Get Info");
-        System.out.println("6. Exit Program");
+        System.out.println("6. Crawl urls from web and build indexes from crawled pages*");
+        System.out.println("7. Crawl urls from web as one worker of a distributed crawl*");
+        System.out.println("8. Add local files to indexes built before");
+        System.out.println("9. Exit Program");
         System.out.println("Note : ");
         System.out
                 .println("*Crawler crawls maximum 100 links and needs list of allowed domains. Change source file WebCrawler.java if required");
@@ -110,8 +129,41 @@ public class SearchDocuments implements FileNamesInterface {
                         System.out.println(newline + "Please enter output file name");
                         String outputFileName = new Scanner(System.in).next(); // Get output filename
 
-                        crawler.crawlWebPages(seedUrl, outputFileName); // Crawl webpages into output file starting from
-                                                                        // seed url
+                        System.out.println("If you want to keep crawled pages for offline indexing give a page store "
+                                + "directory below, else n");
+                        String pageStorePath = new Scanner(System.in).next(); // Get page store directory
+
+                        PageStoreWriter pageStore = null;
+                        if (!pageStorePath.equals("n")) {
+                            try {
+                                pageStore = new PageStoreWriter(new File(pageStorePath));
+                                crawler.setPageStore(pageStore);
+                            } catch (IOException e) {
+                                System.err.println("Could not open page store at : " + pageStorePath);
+                            }
+                        }
+
+                        System.out.println("If you want a crawl that can be resumed after it was stopped give a "
+                                + "frontier directory below, else n");
+                        String frontierPath = new Scanner(System.in).next(); // Get frontier directory
+
+                        crawler.setMetricsFile(new File(outputFileName + ".metrics")); // Fetch latency and throughput
+                        if (!frontierPath.equals("n")) // Frontier on disk, resumes from its last checkpoint if any
+                            crawler.crawlWebPages(seedUrl, outputFileName, new File(frontierPath));
+                        else
+                            crawler.crawlWebPages(seedUrl, outputFileName); // Crawl webpages into output file starting
+                                                                            // from seed url
+                        System.out.println("Crawl metrics written to " + outputFileName + ".metrics");
+
+                        if (null != pageStore) {
+                            try {
+                                pageStore.close();
+                                System.out.println("Crawled pages stored in " + pageStorePath
+                                        + ", index them with option 3");
+                            } catch (IOException e) {
+                                System.err.println("Could not write page store at : " + pageStorePath);
+                            }
+                        }
                     }
                     break;
 
@@ -169,7 +221,77 @@ public class SearchDocuments implements FileNamesInterface {
                     checkContinueMenu(2, "Continue in extract information (y/n):", null);
                     break;
 
-                case 6: // User wants to exit
+                case 6: // Crawl web pages and index them as they are fetched
+
+                    WebCrawler indexingCrawler = new WebCrawler(); // Intantiate crawler object
+                    indexingCrawler.setupAllowedDomains(); // Setup allowed domains for crawler
+                    String indexingSeedUrl = getValidUrl(indexingCrawler, "Enter seed url"); // Get valid seed url
+
+                    if (null != indexingSeedUrl) { // If valid seed url then crawl and index starting from this seed
+
+                        System.out.println(newline + "Please enter output file name");
+                        String crawledUrlsFileName = new Scanner(System.in).next(); // Get output filename for urls
+
+                        System.out.println("If you want to use a stop list text file give its path below");
+                        String stopListFileName = new Scanner(System.in).next(); // Get stop list path
+
+                        indexingCrawler.setMetricsFile(new File(crawledUrlsFileName + ".metrics"));
+                        new BuildIndexes().buildIndexFromCrawl(indexingCrawler, indexingSeedUrl, crawledUrlsFileName,
+                                stopListFileName, false); // Crawl and build indexes in a single pass
+                    }
+                    break;
+
+                case 7: // Crawl the hosts of one partition, exchanging links with the other workers
+
+                    WebCrawler workerCrawler = new WebCrawler(); // Intantiate crawler object
+                    workerCrawler.setupAllowedDomains(); // Setup allowed domains for crawler
+                    String workerSeedUrl = getValidUrl(workerCrawler, "Enter seed url, the same for every worker");
+
+                    if (null != workerSeedUrl) {
+
+                        int partitionCount = getValidNumber("Enter number of workers", 1);
+                        int partition = partitionCount > 0 ? getValidNumber("Enter number of this worker(0 to "
+                                + (partitionCount - 1) + ")", 0) : -1;
+                        if (partition < 0 || partition >= partitionCount) {
+                            System.out.println("Incorrect input");
+                            break;
+                        }
+
+                        System.out.println(newline + "Please enter directory shared by the workers for links");
+                        File linkDirectory = new File(new Scanner(System.in).next());
+
+                        System.out.println(newline + "Please enter output file name");
+                        String workerOutputFileName = new Scanner(System.in).next(); // Get output filename
+
+                        try {
+                            workerCrawler.setMetricsFile(new File(workerOutputFileName + ".metrics"));
+                            workerCrawler.crawlWebPagesDistributed(workerSeedUrl, workerOutputFileName,
+                                    new HostPartitioner(partitionCount), partition, new FileLinkTransport(
+                                            linkDirectory, partition), workerThreadCount, workerCrawlDelay,
+                                    workerIdleTimeout);
+                            System.out.println("Crawled urls of partition " + partition + " written to "
+                                    + workerOutputFileName);
+                        } catch (IOException e) {
+                            System.err.println("Could not use link directory : " + linkDirectory.getAbsolutePath());
+                        }
+                    }
+                    break;
+
+                case 8: // Add offline webpages to existing indexes
+
+                    String addedCorpusPath = getValidDirectory("Enter path of files to add");
+
+                    if (null != addedCorpusPath) {
+                        System.out.println("If you want to use a stop list text file give its path below");
+                        String stopListFileName = new Scanner(System.in).next(); // Get stop list path
+
+                        new BuildIndexes().addToIndex(addedCorpusPath, stopListFileName, true); // Add a segment
+                        ranker = null; // Pre process documents again on next ranking
+                    }
+                    break;
+
+                case 9: // User wants to exit
+                    BuildIndexes.waitForMerges(); // Leave merged segments in place before exiting
                     return true;
 
                 default:
@@ -250,7 +372,8 @@ public class SearchDocuments implements FileNamesInterface {
 
                 case 1:
                     System.out.println(newline + "Enter Term");
-                    info.getTerm(new Scanner(System.in).next(), termsIdFile, termInfoFile); // Get term info
+                    info.getTerm(new Scanner(System.in).next(), termsIdFile, termIndexFile, termPostingsFile,
+                            termInfoFile, segmentInfoFile); // Get term info
                     break;
 
                 case 2:
@@ -265,8 +388,8 @@ public class SearchDocuments implements FileNamesInterface {
                     System.out.println("Enter Document name");
                     String doc = input.next();
 
-                    info.getTermInDoc(term, doc, docIdFile, termsIdFile, termIndexFile, termInfoFile); // Get term info
-                                                                                                       // in document
+                    info.getTermInDoc(term, doc, docIdFile, termsIdFile, termIndexFile, termPostingsFile,
+                            termInfoFile, segmentInfoFile); // Get term info in document
                     break;
 
                 case 4: // User want to return to main menu
@@ -339,6 +462,21 @@ public class SearchDocuments implements FileNamesInterface {
     }
 
 
+    /*
+     * Ask for a number not below minimum, return -1 if the user exits
+     */
+    public static int getValidNumber (String message, int minimum) {
+
+        System.out.println(newline + message);
+        String number = new Scanner(System.in).next();
+
+        while ((number != null) && (!number.matches("\\d{1,9}") || Integer.parseInt(number) < minimum))
+            number = getUserInput(message);
+
+        return null == number ? -1 : Integer.parseInt(number);
+    }
+
+
     /*
      * Check whether user wants to give input, if yes return the input else exit
      * Expects message to be shown to user when invalid input is passed
@@ -15,8 +15,14 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.tartarus.snowball.util.StemmerException;
 import org.w3c.dom.NodeList;
 
+import com.build_index.Analyzer;
+import com.build_index.DocumentStats;
+import com.build_index.IndexReader;
+import com.build_index.StemCache;
+
 /**
  * 
  * @author Swapnil Gupta
@@ -29,7 +35,6 @@ public class DocumentPreProcessor {
     String seperator = "\t";
     double avgDocLength, avgQueryLength;
     int vocabularySize, documentCount, corpusTermsCount, queryCount, queryTermsCount;
-    HashMap<Integer, Integer> docLengths;
 
 
     /*
@@ -68,19 +73,22 @@ public class DocumentPreProcessor {
 
 
     /*
-     * Return average query length after removing stop words
+     * Return average query length after removing stop words, counting terms the way queries are analyzed
      */
     public double getAvgQueryLength (HashMap<String, String> queries, HashSet<String> stopWords) {
 
         int termCount = 0; // Initialize term count to 0
-        String queryTokens[];
 
-        for (Map.Entry<String, String> query : queries.entrySet()) { // Process each query one by one
-            queryTokens = query.getValue().split(" "); // Extract terms from each query
-            for (String token : queryTokens) { // Process each query term one at a time
-                if (!stopWords.contains(token)) // Check for query term for being a stop word
-                    termCount++; // If query term not a stop word increment count by 1
+        try {
+            Analyzer analyzer = new Analyzer(stopWords, StemCache.getInstance());
+            for (Map.Entry<String, String> query : queries.entrySet()) { // Process each query one by one
+                analyzer.reset(query.getValue());
+                while (analyzer.next())
+                    // Each query term not a stop word
+                    termCount++;
             }
+        } catch (StemmerException e) {
+            System.out.println("Stemming failed for queries");
         }
 
         queryCount = queries.size(); // Store count of total number of queries into global variable
@@ -141,99 +149,46 @@ public class DocumentPreProcessor {
 
 
     /*
-     * Traverse doc_index.txt to compute various info
-     * Hash Map containing word count of each document, average document length, total number of documents in corpus, total number of words in corpus
+     * Read document lengths and corpus totals written by the indexer to doc_stats.bin, or work them out from
+     * doc_index.txt and term_ids.txt for indexes built without it
      */
-    public HashMap<Integer, HashMap<String, Integer>> getDocTermCounts (File docIndexFile) {
+    public DocumentStats getDocumentStats (File docStatsFile, File docIndexFile, File termsIdFile) {
 
-        HashMap<Integer, HashMap<String, Integer>> docTermCount = new HashMap<Integer, HashMap<String, Integer>>();
+        DocumentStats documentStats = new DocumentStats();
         try {
-
-            BufferedReader reader = new BufferedReader(new FileReader(docIndexFile)); // Initialize doc_index.txt reader
-            HashMap<String, Integer> termCount; // Initialize hash map to store document lengths
-            docLengths = new HashMap<Integer, Integer>(); // Initialize hash map to store document lengths
-
-            int docCount = 1; // Count total number of documents in corpus
-            int termFrequency = 0; // Count number of positions in a line
-            int corpusTermCount = 0; // Count corpus length(total terms in corpus)
-            int documentTermsCount = 0; // Count document length(total terms in document)
-
-            while ((line = reader.readLine()) != null) { // Parse one document at a time to find its length
-
-                String[] temp = line.split(seperator); // Split each line based on tab character
-                termFrequency = temp.length - 2; // -2 as first element is docId and second is termId
-
-                if (Integer.parseInt(temp[0]) == docCount) { // Parsing term-positions for same document
-                    if (!docTermCount.containsKey(docCount)) // Document not existing in relevant documents
-                        termCount = new HashMap<String, Integer>();
-                    else
-                        // Document exist in relevant document list
-                        termCount = docTermCount.get(docCount); // Extract hash map of term-frequency pairs
-                    termCount.put(temp[1], termFrequency); // Add current term-frequency pair to term-frequency pairs
-                    docTermCount.put(docCount, termCount); // Add all term-frequency pairs to relevant documents list
-                    documentTermsCount += termFrequency; // Update document total term count
-                } else { // Encountered new document
-                    corpusTermCount += documentTermsCount; // Update corpus term count
-                    docLengths.put(docCount, documentTermsCount); // Add docId and its length to docLengths HashMap
-                    docCount++; // Update document count
-                    documentTermsCount = termFrequency; // Reset document term count to the terms encountered
-                } // in first line of the current document
-            }
-            corpusTermCount += documentTermsCount; // Add term count for the last document to corpus
-            docLengths.put(docCount, documentTermsCount); // Add term count of last document to hash map
-
-            reader.close(); // Close doc_index.txt reader
-
-            avgDocLength = (double) corpusTermCount / docCount; // Set average document length of corpus in global
-                                                                // variable
-            documentCount = docCount; // Set total document count in corpus into global variable
-            corpusTermsCount = corpusTermCount; // Set total corpus term count into global variable
-
-        }
-
-        catch (IOException e) {
-            System.err.println("Could not read file" + docIndexFile.getAbsolutePath());
+            if (docStatsFile.exists())
+                documentStats = DocumentStats.read(docStatsFile);
+            else
+                documentStats = DocumentStats.readForwardIndex(docIndexFile, termsIdFile);
+        } catch (IOException e) {
+            System.err.println("Could not read file : " + (docStatsFile.exists() ? docStatsFile : docIndexFile)
+                    .getAbsolutePath());
         }
 
-        return docTermCount; // Return HashMap containing document id's and their length
-
+        avgDocLength = documentStats.getAvgDocLength(); // Kept for printInfo
+        documentCount = documentStats.getDocumentCount();
+        corpusTermsCount = (int) documentStats.getCorpusTermCount();
+        vocabularySize = documentStats.getVocabularySize();
+        return documentStats;
     }
 
 
     /*
-     * Return document lengths for all the document in corpus
+     * Extract total count of documents in which each term occurs, summed over all segments of the index
      */
-    public HashMap<Integer, Integer> getDocLengths () {
-
-        return docLengths;
-    }
-
-
-    /*
-     * Extract total count of documents in which each term occurs
-     */
-    public LinkedHashMap<String, Integer> getTermOccurenceInDocuments (File termInfoFile) {
+    public LinkedHashMap<String, Integer> getTermOccurenceInDocuments (IndexReader indexReader) {
 
         LinkedHashMap<String, Integer> termOccurenceInDocuments = new LinkedHashMap<String, Integer>();// Store total
                                                                                                        // number of
                                                                                                        // documents in
                                                                                                        // which the term
                                                                                                        // occurs
+        if (null == indexReader)
+            return termOccurenceInDocuments;
 
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(termInfoFile)); // Read termsinfo.txt
-
-            while ((line = reader.readLine()) != null) { // Parse one term at a time
-
-                String[] tokens = line.split(seperator); // Split each line based on tab character
-                String termId = tokens[0];
-                int termDocCount = Integer.parseInt(tokens[3]); // Store the count of term's total document occurrences
-                termOccurenceInDocuments.put(termId, termDocCount);
-            }
-            reader.close();
-        } catch (IOException e) {
-            System.err.println("Could not read file" + termInfoFile.getAbsolutePath());
-        }
+        for (int termId = 1; termId <= indexReader.getMaxTermId(); termId++) // Terms in increasing id order like
+            if (indexReader.contains(termId))                                // term_info.txt
+                termOccurenceInDocuments.put(String.valueOf(termId), indexReader.getDocCount(termId));
         return termOccurenceInDocuments;
     }
 
@@ -1,20 +1,24 @@
 package com.rank_documents;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
-import org.tartarus.snowball.EnglishSnowballStemmerFactory;
 import org.tartarus.snowball.util.StemmerException;
 
+import com.build_index.Analyzer;
+import com.build_index.DocumentNorms;
+import com.build_index.DocumentStats;
+import com.build_index.IndexReader;
+import com.build_index.IndexSegments;
+import com.build_index.StemCache;
+import com.build_index.TermDictionary;
+import com.build_index.TermPostings;
 import com.generic_utilities.Utilities;
 import com.main_search_documents.FileNamesInterface;
 
@@ -33,7 +37,6 @@ import com.main_search_documents.FileNamesInterface;
 public class DocumentRanker implements FileNamesInterface {
 
     private static String seperator = "\t";
-    private static String deltaSeperator = ":";
 
     /*********************************************************** Pre Processed data structures and variables *************************************************************/
     private static int totalDocumentCount; // Store total count of number of documnts in corpus
@@ -44,10 +47,10 @@ public class DocumentRanker implements FileNamesInterface {
 
     private static HashSet<String> stopWords; // Store all the stop words
     private static LinkedHashMap<String, String> queries; // Store all the queries in consideration
-    private static HashMap<Integer, Integer> docLengths; // Store document length for each document
-    private static HashMap<Integer, Double> documentMagnitudes; // Store document magnitude for each document
-    private static HashMap<Integer, HashMap<String, Integer>> docTermCount; // Store document term-count for each term
-                                                                            // in document
+    private static int[] docLengths; // Store document length for each document id
+    private static DocumentNorms documentNorms; // Store Okapi TF and TF-IDF magnitude for each document
+    private static IndexReader indexReader; // Term info and postings of the inverted index
+    private static TermDictionary termDictionary; // Store term id for each term in corpus
     /*******************************************************************************************************************************************************************/
 
     /*********************************************************** Data structures created for individual query ************************************************************/
@@ -92,8 +95,8 @@ public class DocumentRanker implements FileNamesInterface {
 
                 String queryText = query.getValue(); // Get query text from HashMap
 
-                termOffsetInIndex = processQuery(queryText, genUtility, stopWords); // Get term offsets for all terms in
-                                                                                    // the current query
+                termOffsetInIndex = processQuery(queryText, stopWords); // Get term offsets for all terms in the
+                                                                        // current query
                 relevantDocuments = getRelevantDocuments(termOffsetInIndex); // Extract relevant document list for
                                                                              // current query
 
@@ -109,18 +112,9 @@ public class DocumentRanker implements FileNamesInterface {
                                                                                                         // vector for
                                                                                                         // current query
                         documentVector = // Build Okapi TF document vector for current query
-                        scoringFn.buildTFDocumentVector(relevantDocuments, docTermCount, docLengths, avgDocLength);
-                        documentMagnitudes = scoringFn.getDocumentMagnitudes();
-                        scoredDocuments = scoringFn.computeOkapiScore(documentVector, queryVector, documentMagnitudes); // Compute
-                                                                                                                        // Okapi
-                                                                                                                        // score
-                                                                                                                        // for
-                                                                                                                        // all
-                                                                                                                        // relevant
-                                                                                                                        // documents
-                                                                                                                        // of
-                                                                                                                        // current
-                                                                                                                        // query
+                        scoringFn.buildTFDocumentVector(relevantDocuments, docLengths, avgDocLength);
+                        scoredDocuments = // Compute Okapi score for all relevant documents of current query
+                        scoringFn.computeOkapiScore(documentVector, queryVector, documentNorms.getOkapiTFNorms());
                         break;
 
                     case 2: // TF-IDF
@@ -132,22 +126,12 @@ public class DocumentRanker implements FileNamesInterface {
                                                                                                         // vector for
                                                                                                         // current query
                         LinkedHashMap<String, Double> termTfIdfScore = scoringFn.getTermTfIdfScores(
-                                termOccurenceInDocuments, docLengths.size()); // Compute tf idf scores for all terms in
+                                termOccurenceInDocuments, totalDocumentCount); // Compute tf idf scores for all terms in
                                                                               // current query
                         documentVector = // Build TFIDF document vector for current query
-                        scoringFn.buildTFIDFDocumentVector(relevantDocuments, termTfIdfScore, docTermCount, docLengths,
-                                avgDocLength);
-                        documentMagnitudes = scoringFn.getDocumentMagnitudes();
-                        scoredDocuments = scoringFn.computeOkapiScore(documentVector, queryVector, documentMagnitudes); // Compute
-                                                                                                                        // Okapi
-                                                                                                                        // score
-                                                                                                                        // for
-                                                                                                                        // all
-                                                                                                                        // relevant
-                                                                                                                        // documents
-                                                                                                                        // of
-                                                                                                                        // current
-                                                                                                                        // query
+                        scoringFn.buildTFIDFDocumentVector(relevantDocuments, termTfIdfScore, docLengths, avgDocLength);
+                        scoredDocuments = // Compute Okapi score for all relevant documents of current query
+                        scoringFn.computeOkapiScore(documentVector, queryVector, documentNorms.getTfIdfNorms());
                         break;
 
                     case 3: // Okapi BM-25
@@ -199,51 +183,31 @@ public class DocumentRanker implements FileNamesInterface {
     /*
      * Get term offsets for all the terms in query
      */
-    public static LinkedHashMap<String, Long> processQuery (String query, Utilities genUtility,
-            HashSet<String> stopWords) {
-
-        String line;
-        long offset = 0; // Initialize term offset to 0
+    public static LinkedHashMap<String, Long> processQuery (String query, HashSet<String> stopWords) {
 
         LinkedHashMap<String, Long> termOffsetInIndex = new LinkedHashMap<String, Long>(); // Initialize structure for
                                                                                            // holding term offsets
 
-        for (String term : query.split(" ")) {
-            term = term.toLowerCase(); // Convert tokens to lower case
-
-            if (!stopWords.contains(term)) { // Filter Stop Words
-                try {
-                    term = EnglishSnowballStemmerFactory.getInstance().process(term); // Create tokens using snowball
-                                                                                      // stemmer
-                } catch (StemmerException e) {
-                    System.out.println("Stemming failed for term: " + term);
-                }
-
-                String termId = genUtility.getID(termsIdFile, term); // Get the term id corresponding to given term
-
-                try {
-
-                    BufferedReader reader = new BufferedReader(new FileReader(termInfoFile)); // Read termsinfo.txt
-                    while ((line = reader.readLine()) != null) { // Parse one term at a time
-
-                        String[] tokens = line.split(seperator); // Split each line based on tab character
-
-                        if (tokens[0].equals(termId)) { // Check for query term in corpus
-
-                            offset = Long.parseLong(tokens[1]); // Store the offset for the term in term_index.txt
-                            termOffsetInIndex.put(tokens[0], offset);
-
-                            queryTermsCorpusOccurences += Integer.parseInt(tokens[2]); // Store the count of all query
-                                                                                       // terms corpus occurrence
-
-                            break; // Break the loop if the term found
-                        }
+        try {
+            // Split the query into terms exactly like documents are split when indexed
+            Analyzer analyzer = new Analyzer(stopWords, StemCache.getInstance());
+            analyzer.reset(query);
+            while (analyzer.next()) { // Lower cased and stemmed query terms that are not stop words
+
+                int termKey = null == termDictionary ? 0 : termDictionary.get(analyzer.getTerm()); // Get the term id
+                                                                                                   // of given term
+                if (0 == termKey) {
+                    System.out.println(analyzer.getTerm() + " is not present in corpus");
+                } else
+                    if (null != indexReader && indexReader.contains(termKey)) { // Check for query term in corpus
+                        // Store the offset for the term in the base postings file
+                        termOffsetInIndex.put(String.valueOf(termKey), indexReader.getOffset(termKey));
+                        // Store the count of all query terms corpus occurrence
+                        queryTermsCorpusOccurences += indexReader.getOccurrences(termKey);
                     }
-                    reader.close(); // Close term_index.txt
-                } catch (IOException e) {
-                    System.err.println("Could not read file : " + termsIdFile.getAbsolutePath());
-                }
             }
+        } catch (StemmerException e) {
+            System.out.println("Stemming failed for query: " + query);
         }
         return termOffsetInIndex;
     }
@@ -263,58 +227,19 @@ public class DocumentRanker implements FileNamesInterface {
             for (Map.Entry<String, Long> term : termOffset.entrySet()) { // Parse each term in query one by one
 
                 String termId = term.getKey(); // Extract term id
-                long offset = term.getValue(); // Extract term offset
-
-                RandomAccessFile indexFile = new RandomAccessFile(termIndexFile, "r"); // Randomly access terms_index
-                                                                                       // file
-                indexFile.seek(offset); // Traverse to the offset within the term_index file
-
-                String line = indexFile.readLine(); // Read line at given offset
-                String[] termPoisitons = line.split(seperator); // Split each line based on tab character to find all
-                                                                // term-position pairs
-                String[] deltaDocId; // Initialize variable for storing document Id's
-
-                int docId = 0; // Track unique document id in which term occurs
-                int previousDocId = Integer.parseInt(termPoisitons[1].split(deltaSeperator)[0]); // Track previous
-                                                                                                 // document id
-                int termFrequency = 0; // Track term frequency
-
-                for (int i = 1; i < termPoisitons.length; i++) { // Start from 1 as first element is the term id
-
-                    deltaDocId = termPoisitons[i].split(deltaSeperator); // Split term document-position pairs
-                    docId += Integer.parseInt(deltaDocId[0]); // Update document id for unique documents it is non 0
-                                                              // while for different
-                                                              // positions within the same document it is 0 so no effect
-                                                              // of summation
-                    if (docId == previousDocId)
-                        termFrequency++; // Update frequency as traversing same document
-                    else { // New doc id found for given term
-
-                        if (!relevantDocuments.containsKey(previousDocId)) // Document not existing in relevant
-                                                                           // documents
-                            termCount = new LinkedHashMap<String, Integer>();
-                        else
-                            // Document exist in relevant document list
-                            termCount = relevantDocuments.get(previousDocId); // Extract hash map of term-frequency
-                                                                              // pairs
-                        termCount.put(termId, termFrequency); // Add current term-frequency pair to term-frequency pairs
-                        relevantDocuments.put(previousDocId, termCount); // Add all term-frequency pairs to relevant
-                                                                         // documents list
-
-                        termFrequency = 1; // Initialize term frequency to one
-                        previousDocId = docId; // Update previous document id
+                TermPostings postings = indexReader.getPostings(Integer.parseInt(termId)); // Postings in all segments
+
+                while (postings.nextDoc()) { // Visit each document containing the term
+
+                    int docId = postings.getDocId();
+                    termCount = relevantDocuments.get(docId); // Extract hash map of term-frequency pairs
+                    if (null == termCount) { // Document not existing in relevant documents
+                        termCount = new LinkedHashMap<String, Integer>();
+                        relevantDocuments.put(docId, termCount);
                     }
+                    termCount.put(termId, postings.getFrequency()); // Add current term-frequency pair to
+                                                                    // term-frequency pairs
                 }
-                if (!relevantDocuments.containsKey(previousDocId)) // Add the values for last document
-                    termCount = new LinkedHashMap<String, Integer>();
-                else
-                    // Document exist in relevant document list
-                    termCount = relevantDocuments.get(previousDocId); // Extract hash map of term-frequency pairs
-                termCount.put(termId, termFrequency); // Add last term-frequency pair to term-frequency pairs
-                relevantDocuments.put(previousDocId, termCount); // Add all term-frequency pairs to relevant documents
-                                                                 // list
-
-                indexFile.close(); // Close term_index RandomAccess Reader
             }
         } catch (IOException e) {
             System.err.println("Could not read file : " + termIndexFile.getAbsolutePath());
@@ -323,6 +248,32 @@ public class DocumentRanker implements FileNamesInterface {
     }
 
 
+    /*
+     * Read document magnitudes written by the indexer to doc_norms.bin, or work them out from the open index when the
+     * file is missing or was written for a different number of documents
+     */
+    private static DocumentNorms getDocumentNorms (DocumentStats documentStats) {
+
+        try {
+            if (docNormsFile.exists()) {
+                DocumentNorms norms = DocumentNorms.read(docNormsFile);
+                if (norms.getDocumentCount() == documentStats.getDocumentCount())
+                    return norms;
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read file : " + docNormsFile.getAbsolutePath());
+        }
+
+        try {
+            if (null != indexReader)
+                return DocumentNorms.compute(indexReader, documentStats);
+        } catch (IOException e) {
+            System.err.println("Could not read file : " + termPostingsFile.getAbsolutePath());
+        }
+        return new DocumentNorms(); // No index to read so no document gets scored
+    }
+
+
     /*
      * Pre process all the queries and documents in corpus
      */
@@ -333,16 +284,33 @@ public class DocumentRanker implements FileNamesInterface {
         queries = preProcess.extractQueriesXML(new File(topicsXml)); // Extract queries from queries.xml
         avgQueryLength = preProcess.getAvgQueryLength(queries, stopWords); // Get average query length in queries.xml
 
-        docTermCount = preProcess.getDocTermCounts(docIndexFile);
-        docLengths = preProcess.getDocLengths(); // Get lengths for all documents in corpus
-        avgDocLength = preProcess.getAvgDocLength(); // Get average document length in corpus
-        vocabularySize = preProcess.getVocabularySize(termsIdFile); // Get vocabulary size of corpus
-        termOccurenceInDocuments = preProcess.getTermOccurenceInDocuments(termInfoFile); // Get total count of number of
-                                                                                         // documents in which term
-                                                                                         // occurs
+        DocumentStats documentStats = preProcess.getDocumentStats(docStatsFile, docIndexFile, termsIdFile);
+        docLengths = documentStats.getDocLengths(); // Get lengths for all documents in corpus
+        avgDocLength = documentStats.getAvgDocLength(); // Get average document length in corpus
+        vocabularySize = documentStats.getVocabularySize(); // Get vocabulary size of corpus
+
+        try {
+            if (null != indexReader)
+                indexReader.close();
+            indexReader = new IndexSegments(segmentInfoFile).openIndexReader(termIndexFile, termPostingsFile,
+                    termInfoFile); // Open inverted index and its segments once for all queries
+        } catch (IOException e) {
+            indexReader = null;
+            System.err.println("Could not open inverted index in : " + termInfoFile.getAbsoluteFile().getParent());
+        }
+        try {
+            termDictionary = TermDictionary.read(termsIdFile); // Look up query terms in memory
+        } catch (IOException e) {
+            termDictionary = null;
+            System.err.println("Could not read file : " + termsIdFile.getAbsolutePath());
+        }
+        termOccurenceInDocuments = preProcess.getTermOccurenceInDocuments(indexReader); // Get total count of number of
+                                                                                        // documents in which term
+                                                                                        // occurs
 
-        totalDocumentCount = preProcess.getDocumentCount(); // Get count of total number of documents in corpus
-        totalTermCount = preProcess.getCorpusTermCount(); // Get total count of terms in corpus
+        totalDocumentCount = documentStats.getDocumentCount(); // Get count of total number of documents in corpus
+        totalTermCount = documentStats.getCorpusTermCount(); // Get total count of terms in corpus
+        documentNorms = getDocumentNorms(documentStats); // Get document magnitudes for Okapi TF and TF-IDF
         // preProcess.printInfo(); //Print necessary info
     }
 
@@ -5,6 +5,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.build_index.DocumentNorms;
+
 /**
  * 
  * @author Swapnil Gupta
@@ -14,7 +16,6 @@ import java.util.Map.Entry;
 public class ScoringFunctions {
 
     double logBase2 = Math.log(2); // Compute constant log base 2
-    HashMap<Integer, Double> documentMagnitudes; // Store document magnitude
 
 
     /*
@@ -66,7 +67,7 @@ public class ScoringFunctions {
      */
     public double computeOkapiComponent (int frequency, double ratio) {
 
-        return (frequency / (frequency + 0.5 + 1.5 * ratio)); // okapi term vector formula
+        return DocumentNorms.okapiTF(frequency, ratio); // Same formula the indexer uses for document magnitudes
     }
 
 
@@ -74,16 +75,13 @@ public class ScoringFunctions {
      * Create and return the Okapi TF document vector for all the relevant documents for current query
      */
     public HashMap<Integer, HashMap<String, Double>> buildTFDocumentVector (
-            LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments,
-            HashMap<Integer, HashMap<String, Integer>> docTermCount, HashMap<Integer, Integer> docLengths,
+            LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments, int[] docLengths,
             double avgDocLength) {
 
         int docId, termFrequency; // Define variables to hold intermediate values
-        double ratio, magnitude, termOkapiComponent;
+        double ratio, termOkapiComponent;
 
-        HashMap<String, Integer> termCounts; // Track document term counts
         HashMap<String, Double> termVector; // Track query-term okapi component
-        documentMagnitudes = new HashMap<Integer, Double>(); // Track document magnitudes
 
         HashMap<Integer, HashMap<String, Double>> documentVector = new HashMap<Integer, HashMap<String, Double>>(); // Initialize
                                                                                                                     // new
@@ -95,9 +93,8 @@ public class ScoringFunctions {
                                                                                                        // document one
                                                                                                        // by one
 
-            magnitude = 0.0; // Initialize document magnitude score
             docId = document.getKey(); // Extract document id
-            ratio = docLengths.get(docId) / avgDocLength; // Compute constant ratio for using calculations
+            ratio = docLengths[docId] / avgDocLength; // Compute constant ratio for using calculations
 
             termVector = new HashMap<String, Double>(); // Initialize termVector reference
             for (Map.Entry<String, Integer> termDocumentFrequency : document.getValue().entrySet()) { // Traverse all
@@ -111,44 +108,21 @@ public class ScoringFunctions {
                 termVector.put(termId, termOkapiComponent); // Link term id and term okapi component
                 documentVector.put(docId, termVector); // Store term okapi component for all query terms in document
             }
-
-            termCounts = docTermCount.get(docId); // Get all term counts for current document
-            for (Map.Entry<String, Integer> termDocumentFrequency : termCounts.entrySet()) { // Process term frequency
-                                                                                             // one at a time
-                termFrequency = termDocumentFrequency.getValue(); // Get term frequency of current term
-                termOkapiComponent = computeOkapiComponent(termFrequency, ratio); // Compute and store okapi component
-                                                                                  // for a term
-                magnitude += (termOkapiComponent * termOkapiComponent); // Increment magnitude of the document
-            }
-            documentMagnitudes.put(docId, Math.sqrt(magnitude)); // Store document magnitude into hash map
         }
         return documentVector; // Return set of all the document vectors
     }
 
 
-    /*
-     * Return document magnitude for all the documents in corpus
-     */
-    public HashMap<Integer, Double> getDocumentMagnitudes () {
-
-        return documentMagnitudes;
-    }
-
-
     /*
      * Create and return the TF IDF document vector for all the relevant documents for current query
      */
     public HashMap<Integer, HashMap<String, Double>> buildTFIDFDocumentVector (
             LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments,
-            LinkedHashMap<String, Double> termTfIdfScore, HashMap<Integer, HashMap<String, Integer>> docTermCount,
-            HashMap<Integer, Integer> docLengths, double avgDocLength) {
+            LinkedHashMap<String, Double> termTfIdfScore, int[] docLengths, double avgDocLength) {
 
         String termId;
         int docId, termFrequency; // Define variables to hold intermediate values
-        double ratio, termOkapiComponent, tfidfFactor, tfIdfScore, magnitude;
-
-        documentMagnitudes = new HashMap<Integer, Double>(); // Store document magnitudes
-        HashMap<String, Integer> termCounts = new HashMap<String, Integer>(); // Stor term frequency in documents
+        double ratio, termOkapiComponent, tfidfFactor, tfIdfScore;
 
         HashMap<String, Double> termVector; // Track query-term okapi component
         HashMap<Integer, HashMap<String, Double>> documentVector = new HashMap<Integer, HashMap<String, Double>>(); // Initialize
@@ -160,9 +134,8 @@ public class ScoringFunctions {
                                                                                                        // relevant
                                                                                                        // document one
                                                                                                        // by one
-            magnitude = 0.0;
             docId = document.getKey(); // Extract document id
-            ratio = docLengths.get(docId) / avgDocLength; // Compute constant ratio for using calculations
+            ratio = docLengths[docId] / avgDocLength; // Compute constant ratio for using calculations
 
             termVector = new HashMap<String, Double>(); // Initialize termVector reference
             for (Map.Entry<String, Integer> termDocumentFrequency : document.getValue().entrySet()) { // Traverse all
@@ -180,21 +153,8 @@ public class ScoringFunctions {
                 termVector.put(termId, tfIdfScore); // Link term id and term tf-idf component
                 documentVector.put(docId, termVector); // Store term tf-idf component for all query terms in document
             }
-
-            termCounts = docTermCount.get(docId); // Get all term counts for current document
-            for (Map.Entry<String, Integer> termDocumentFrequency : termCounts.entrySet()) { // Process term frequency
-                                                                                             // one at a time
-                termId = termDocumentFrequency.getKey();
-                termFrequency = termDocumentFrequency.getValue(); // Get term frequency of current term
-                termOkapiComponent = computeOkapiComponent(termFrequency, ratio); // Compute and store okapi component
-                                                                                  // for a term
-                tfidfFactor = termTfIdfScore.get(termId); // Extract tf-idf factor for given term
-                tfIdfScore = termOkapiComponent * tfidfFactor; // Compute okapi tf-idf score for document-term pair
-                magnitude += (termOkapiComponent * tfIdfScore); // Increment magnitude of the document
-            }
-            documentMagnitudes.put(docId, Math.sqrt(magnitude)); // Store document magnitude into hash map
         }
-        return documentVector; // Return set of all the document vectors //Return set of all the document vectors
+        return documentVector; // Return set of all the document vectors
     }
 
 
@@ -210,8 +170,8 @@ public class ScoringFunctions {
         for (Entry<String, Integer> entry : termOccurenceInDocuments.entrySet()) { // Parse each element one by one
             String termId = entry.getKey(); // Extract term id
             int occurenceInDistinctDocuments = entry.getValue(); // Extract term occurence in document
-            double tfIdfScore = Math.log(documentCount / occurenceInDistinctDocuments) / logBase2; // Compute tf-idf
-                                                                                                   // score
+            double tfIdfScore = DocumentNorms.idf(documentCount, occurenceInDistinctDocuments); // Compute tf-idf
+                                                                                                // score
 
             termTfIdfScore.put(termId, tfIdfScore); // Store tf-idf factor for each query-term
         }
@@ -221,9 +181,10 @@ public class ScoringFunctions {
 
     /*
      * Compute document rank using okapi tf/tf-idf algorithm
+     * documentNorms : magnitude of each document vector written by the indexer, indexed by document id
      */
     public Map<Integer, Double> computeOkapiScore (HashMap<Integer, HashMap<String, Double>> documentVector,
-            HashMap<String, Double> queryVector, HashMap<Integer, Double> documentMagnitudes) {
+            HashMap<String, Double> queryVector, float[] documentNorms) {
 
         Map<Integer, Double> okapiScoredDocuments = new HashMap<Integer, Double>(); // Initialize struct for document
                                                                                     // score
@@ -257,7 +218,7 @@ public class ScoringFunctions {
 
                 vectorProduct += (termDocumentScore * termQueryScore); // Compute vector product for given term
             }
-            documentMagnitude = documentMagnitudes.get(docId); // Extract document magnitude for given document-term
+            documentMagnitude = documentNorms[docId]; // Extract document magnitude for given document
             okapiScore = vectorProduct / (documentMagnitude * sqrtQueryVector); // Compute final document okapi score
             okapiScoredDocuments.put(docId, okapiScore); // Store document okapi score
         }
@@ -271,7 +232,7 @@ public class ScoringFunctions {
     public HashMap<Integer, Double> computeBM25Score (
             LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments,
             LinkedHashMap<String, Integer> queryTermFrequency, LinkedHashMap<String, Integer> termDocumentOccurence,
-            HashMap<Integer, Integer> docLengths, double avgDocLength, int documentCount) {
+            int[] docLengths, double avgDocLength, int documentCount) {
 
         double k1 = 1.2; // BM 25 constant values
         double k2 = 100;
@@ -289,7 +250,7 @@ public class ScoringFunctions {
 
             score = 0.0; // Initialize score
             docId = document.getKey(); // Extract docId
-            K = k1 * ((1 - b) + (b * (docLengths.get(docId) / avgDocLength))); // Compute constant K
+            K = k1 * ((1 - b) + (b * (docLengths[docId] / avgDocLength))); // Compute constant K
 
             for (Map.Entry<String, Integer> termFrequency : document.getValue().entrySet()) { // Process one term at a
                                                                                               // time
@@ -317,7 +278,7 @@ public class ScoringFunctions {
      */
     public HashMap<Integer, Double> computeLaplaceScore (
             LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments,
-            LinkedHashMap<String, Long> termOffsetInIndex, HashMap<Integer, Integer> docLengths, double vocabularySize) {
+            LinkedHashMap<String, Long> termOffsetInIndex, int[] docLengths, double vocabularySize) {
 
         int termFrequency, docId;
         double denominator, probability, score;
@@ -337,7 +298,7 @@ public class ScoringFunctions {
             docId = document.getKey(); // Extract docId
 
             termDocumentFrequency = document.getValue(); // Extract term count in document
-            denominator = docLengths.get(docId) + vocabularySize; // Compute constant denominator for a document
+            denominator = docLengths[docId] + vocabularySize; // Compute constant denominator for a document
 
             for (Map.Entry<String, Long> term : termOffsetInIndex.entrySet()) { // Process each term one at a time
                 String termId = term.getKey();
@@ -363,7 +324,7 @@ public class ScoringFunctions {
      */
     public HashMap<Integer, Double> computeJMScore (
             LinkedHashMap<Integer, LinkedHashMap<String, Integer>> relevantDocuments,
-            LinkedHashMap<String, Long> termOffsetInIndex, HashMap<Integer, Integer> docLengths, double JMConstant) {
+            LinkedHashMap<String, Long> termOffsetInIndex, int[] docLengths, double JMConstant) {
 
         int docId, termFrequency, documentLength; // Define intermediate variable
         double probability, score;
@@ -378,7 +339,7 @@ public class ScoringFunctions {
                                                                                                    // one by one
 
             docId = docs.getKey(); // Extract docId
-            documentLength = docLengths.get(docId); // Extract document length for current document
+            documentLength = docLengths[docId]; // Extract document length for current document
             termDocumentFrequency = docs.getValue(); // Extract term frequency in document
 
             score = 0.0; // Initialize jm score of document to 0